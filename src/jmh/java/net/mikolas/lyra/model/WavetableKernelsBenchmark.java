@@ -0,0 +1,104 @@
+package net.mikolas.lyra.model;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Timing of the bounce kernels, from one crossfaded wave up to a full bounce.
+ *
+ * <p>Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.include=WavetableKernels}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WavetableKernelsBenchmark {
+
+    private final int[] out = new int[128];
+    private final int[][] waves = new int[64][128];
+    private int[] a;
+    private int[] b;
+    private Keyframe curveFrom;
+    private Keyframe curveTo;
+    private Keyframe morphFrom;
+    private Keyframe morphTo;
+    private Wavetable spectralTable;
+
+    private static Keyframe randomKeyframe(Random random, int index) {
+        Keyframe kf = new Keyframe(index);
+        for (int s = 0; s < 128; s++) {
+            kf.setSample(s, random.nextInt(2097152) - 1048576);
+        }
+        return kf;
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        a = randomKeyframe(random, 0).getSamples();
+        b = randomKeyframe(random, 0).getSamples();
+
+        curveFrom = randomKeyframe(random, 0);
+        curveFrom.setTransformMode(Keyframe.TransformMode.CURVE);
+        curveFrom.setCurveFunction("Sine");
+        curveTo = randomKeyframe(random, 63);
+
+        morphFrom = randomKeyframe(random, 0);
+        morphFrom.setTransformMode(Keyframe.TransformMode.SPECTRAL_MORPH);
+        morphTo = randomKeyframe(random, 63);
+
+        // Spectral keyframes with many harmonics: the case bounce() parallelizes
+        spectralTable = new Wavetable();
+        for (int index = 0; index < 64; index += 8) {
+            Keyframe kf = randomKeyframe(random, index);
+            kf.setTransformMode(Keyframe.TransformMode.SPECTRAL);
+            for (int n = 1; n <= 40; n++) {
+                kf.getHarmonics().add(new Harmonic(n, Harmonic.WaveType.SINE, 0.02));
+            }
+            spectralTable.getKeyframes().add(kf);
+        }
+    }
+
+    @Benchmark
+    public int[] crossfade() {
+        WavetableKernels.crossfade(out, a, b, 0.3);
+        return out;
+    }
+
+    @Benchmark
+    public int[] crossfadeRolled() {
+        WavetableKernels.crossfadeRolled(out, a, b, 0.3, 37);
+        return out;
+    }
+
+    @Benchmark
+    public int[][] curveSegment() {
+        WavetableKernels.curve(waves, curveFrom, curveTo, 0, 63);
+        return waves;
+    }
+
+    @Benchmark
+    public int[][] spectralMorphSegment() {
+        WavetableKernels.spectralMorph(waves, morphFrom, morphTo, 0, 63);
+        return waves;
+    }
+
+    @Benchmark
+    public Wavetable fullSpectralBounce() {
+        spectralTable.markDirty();
+        spectralTable.bounce();
+        return spectralTable;
+    }
+}
@@ -18,6 +18,9 @@ public class Main extends Application {
     // Initialize MIDI service
     MidiManager.getInstance().initialize();
 
+    // Replay edits left unsaved by a crash before the library is loaded
+    net.mikolas.lyra.db.EditJournal.getInstance().start(net.mikolas.lyra.db.Database.getInstance());
+
     // Set AtlantaFX theme
     Application.setUserAgentStylesheet(new PrimerDark().getUserAgentStylesheet());
 
@@ -26,6 +29,10 @@ public class Main extends Application {
     Parent root = loader.load();
     net.mikolas.lyra.ui.LibrarianController controller = loader.getController();
 
+    // Later compactions update the loaded library's filter index
+    net.mikolas.lyra.db.EditJournal.getInstance()
+        .setIndex(net.mikolas.lyra.db.SoundRepository.getInstance().getIndex());
+
     // Apply custom CSS
     Scene scene = new Scene(root, 1200, 800);
     scene.getStylesheets().add(getClass().getResource("/net/mikolas/lyra/ui/librarian.css").toExternalForm());
@@ -36,12 +43,18 @@ public class Main extends Application {
     primaryStage.setMinHeight(700);
     primaryStage.show();
 
+    // Periodic database snapshots (background thread)
+    net.mikolas.lyra.db.DatabaseBackupService.getInstance()
+        .start(new net.mikolas.lyra.model.AppSettings());
+
     // Cleanup on exit
     primaryStage.setOnCloseRequest(event -> {
       if (controller != null) {
         controller.shutdown();
       }
       MidiManager.getInstance().shutdown();
+      net.mikolas.lyra.db.EditJournal.getInstance().shutdown();
+      net.mikolas.lyra.db.DatabaseBackupService.getInstance().shutdown();
       net.mikolas.lyra.db.Database.shutdown();
     });
   }
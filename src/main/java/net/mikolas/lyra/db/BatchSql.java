@@ -0,0 +1,53 @@
+package net.mikolas.lyra.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Helpers for set-based SQL over ID lists.
+ *
+ * <p>IDs are integers, so they are inlined into {@code IN (...)} lists rather than bound as
+ * parameters. Lists are chunked to keep individual statements a manageable size.
+ */
+public final class BatchSql {
+
+  /** IDs per statement. */
+  public static final int CHUNK_SIZE = 5000;
+
+  private BatchSql() {}
+
+  /**
+   * Split IDs into comma-separated chunks for {@code IN (...)} clauses.
+   *
+   * @param ids row IDs (nulls are skipped, duplicates removed)
+   * @return one comma-separated string per chunk, empty if there are no IDs
+   */
+  public static List<String> inLists(Collection<Integer> ids) {
+    List<Integer> distinct = ids.stream().filter(id -> id != null).distinct().toList();
+    List<String> chunks = new ArrayList<>();
+    for (int i = 0; i < distinct.size(); i += CHUNK_SIZE) {
+      chunks.add(distinct.subList(i, Math.min(i + CHUNK_SIZE, distinct.size())).stream()
+          .map(String::valueOf)
+          .collect(Collectors.joining(",")));
+    }
+    return chunks;
+  }
+
+  /**
+   * Split ID pairs into chunks of {@code VALUES} tuples.
+   *
+   * @param pairs two-element ID pairs
+   * @return one {@code (a,b),(c,d),...} string per chunk, empty if there are no pairs
+   */
+  public static List<String> valueLists(List<int[]> pairs) {
+    List<String> chunks = new ArrayList<>();
+    for (int i = 0; i < pairs.size(); i += CHUNK_SIZE) {
+      chunks.add(pairs.subList(i, Math.min(i + CHUNK_SIZE, pairs.size())).stream()
+          .map(pair -> "(" + pair[0] + "," + pair[1] + ")")
+          .collect(Collectors.joining(",")));
+    }
+    return chunks;
+  }
+}
@@ -2,12 +2,20 @@ package net.mikolas.lyra.db;
 
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
-import com.j256.ormlite.table.TableUtils;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.UpdateBuilder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import net.mikolas.lyra.model.AppSettings;
 import net.mikolas.lyra.model.Collection;
 import net.mikolas.lyra.model.MultiPatch;
 import net.mikolas.lyra.model.Sound;
 import net.mikolas.lyra.model.SoundCollection;
+import net.mikolas.lyra.model.SoundRevision;
 import net.mikolas.lyra.model.SoundTag;
 import net.mikolas.lyra.model.Tag;
 import net.mikolas.lyra.model.Wavetable;
@@ -26,22 +34,51 @@ import net.mikolas.lyra.model.Wavetable;
  */
 public class Database implements AutoCloseable {
   private static Database instance;
+  private final String dbPath;
   private final DatabaseManager dbManager;
+  private SoundParameterStore parameterStore;
 
-  public final Dao<Sound, Integer> sounds;
+  public final SoundDao sounds;
   public final Dao<MultiPatch, Integer> multis;
   public final Dao<Wavetable, Integer> wavetables;
   public final Dao<Collection, Integer> collections;
   public final Dao<Tag, Integer> tags;
   public final Dao<SoundCollection, Integer> soundCollections;
   public final Dao<SoundTag, Integer> soundTags;
+  public final Dao<SoundRevision, Integer> soundRevisions;
 
   private Database() throws SQLException {
-    this(DatabaseManager.getDefaultDatabasePath());
+    this(DatabaseManager.getDefaultDatabasePath(), defaultParameterStore());
   }
 
   public Database(String dbPath) throws SQLException {
-    dbManager = new DatabaseManager(dbPath);
+    this(dbPath, (Path) null);
+  }
+
+  /**
+   * Open a database, optionally keeping sound parameters in a memory-mapped store.
+   *
+   * <p>With a store, parameter blobs still held in SQLite are moved into it. Without one, blobs
+   * left in the store of an earlier session at {@code dbPath + ".params"} are moved back.
+   *
+   * @param dbPath SQLite database path
+   * @param parameterStore parameter store file, or null to keep parameters in SQLite
+   * @throws SQLException if the database cannot be opened or migrated (see {@link SchemaMigrator})
+   */
+  public Database(String dbPath, Path parameterStore) throws SQLException {
+    this(dbPath, new DatabaseManager(dbPath));
+
+    new SchemaMigrator(this).migrate();
+    if (parameterStore != null) {
+      attachParameterStore(parameterStore);
+    } else if (!dbPath.equals(":memory:")) {
+      detachParameterStore(Path.of(dbPath + ".params"));
+    }
+  }
+
+  private Database(String dbPath, DatabaseManager dbManager) throws SQLException {
+    this.dbPath = dbPath;
+    this.dbManager = dbManager;
 
     sounds = DaoManager.createDao(dbManager.getConnectionSource(), Sound.class);
     multis = DaoManager.createDao(dbManager.getConnectionSource(), MultiPatch.class);
@@ -51,30 +88,90 @@ public class Database implements AutoCloseable {
     soundCollections =
         DaoManager.createDao(dbManager.getConnectionSource(), SoundCollection.class);
     soundTags = DaoManager.createDao(dbManager.getConnectionSource(), SoundTag.class);
+    soundRevisions = DaoManager.createDao(dbManager.getConnectionSource(), SoundRevision.class);
+  }
 
-    TableUtils.createTableIfNotExists(dbManager.getConnectionSource(), Sound.class);
-    TableUtils.createTableIfNotExists(dbManager.getConnectionSource(), MultiPatch.class);
-    TableUtils.createTableIfNotExists(dbManager.getConnectionSource(), Wavetable.class);
-    
-    // Manual migration for isFactory column
-    try (var results = wavetables.queryRaw("PRAGMA table_info(wavetables)")) {
-        boolean exists = false;
-        for (String[] row : results) {
-            if (row.length > 1 && "isFactory".equalsIgnoreCase(row[1])) {
-                exists = true;
-                break;
-            }
-        }
-        if (!exists) {
-            wavetables.executeRaw("ALTER TABLE wavetables ADD COLUMN isFactory BOOLEAN DEFAULT 0");
+  /**
+   * Open another connection to the same database, for writes made off the FX thread.
+   *
+   * <p>The connection shares this database's parameter store (and so its write locking) and is
+   * already migrated. Close it before this database. An in-memory database cannot be shared
+   * between connections, so for one this returns the database itself.
+   *
+   * @return database facade over a new connection, or this database if it is in memory
+   * @throws SQLException if the connection cannot be opened
+   */
+  public Database openConnection() throws SQLException {
+    if (dbPath.equals(":memory:")) return this;
+    Database connection = new Database(dbPath, new DatabaseManager(dbPath));
+    // The store stays owned (and closed) by this database
+    connection.sounds.setParameterStore(parameterStore);
+    return connection;
+  }
+
+  private static Path defaultParameterStore() {
+    return new AppSettings().isMappedSoundStoreEnabled()
+        ? Path.of(DatabaseManager.getDefaultDatabasePath() + ".params") : null;
+  }
+
+  /**
+   * Open the parameter store and move any parameter blobs still in SQLite into it.
+   */
+  private void attachParameterStore(Path file) throws SQLException {
+    try {
+      parameterStore = new SoundParameterStore(file);
+    } catch (IOException e) {
+      throw new SQLException("Failed to open parameter store " + file, e);
+    }
+    List<Sound> inline = sounds.queryBuilder()
+        .selectColumns("id", "parameters")
+        .where().raw("length(parameters) = " + SoundParameterStore.PARAM_SIZE)
+        .query();
+    if (!inline.isEmpty()) {
+      try {
+        for (Sound sound : inline) {
+          parameterStore.put(sound.getId(), sound.getParameters());
         }
-    } catch (Exception ignored) {
+      } catch (IOException e) {
+        throw new SQLException("Failed to fill parameter store " + file, e);
+      }
+      // Durable in the store before the blobs are dropped from SQLite
+      parameterStore.force();
+      sounds.executeRaw("UPDATE sounds SET parameters = X'' WHERE length(parameters) = "
+          + SoundParameterStore.PARAM_SIZE);
     }
+    sounds.setParameterStore(parameterStore);
+  }
 
-    TableUtils.createTableIfNotExists(dbManager.getConnectionSource(), Collection.class);
-    TableUtils.createTableIfNotExists(dbManager.getConnectionSource(), Tag.class);
-    TableUtils.createTableIfNotExists(dbManager.getConnectionSource(), SoundCollection.class);
-    TableUtils.createTableIfNotExists(dbManager.getConnectionSource(), SoundTag.class);
+  /**
+   * Move parameters left in a parameter store back into SQLite and delete the store.
+   */
+  private void detachParameterStore(Path file) throws SQLException {
+    if (!Files.exists(file)) return;
+    try (SoundParameterStore store = new SoundParameterStore(file)) {
+      List<Sound> empty = sounds.queryBuilder()
+          .selectColumns("id")
+          .where().raw("length(parameters) = 0")
+          .query();
+      TransactionManager.callInTransaction(dbManager.getConnectionSource(), (Callable<Void>) () -> {
+        for (Sound sound : empty) {
+          byte[] params = store.get(sound.getId());
+          if (params == null) continue;
+          UpdateBuilder<Sound, Integer> update = sounds.updateBuilder();
+          update.updateColumnValue("parameters", params);
+          update.where().idEq(sound.getId());
+          update.update();
+        }
+        return null;
+      });
+    } catch (IOException e) {
+      throw new SQLException("Failed to read parameter store " + file, e);
+    }
+    try {
+      Files.delete(file);
+    } catch (IOException e) {
+      System.err.println("Failed to delete parameter store: " + e.getMessage());
+    }
   }
 
   public static synchronized Database getInstance() {
@@ -106,6 +203,9 @@ public class Database implements AutoCloseable {
 
   @Override
   public void close() throws Exception {
+    if (parameterStore != null) {
+      parameterStore.close();
+    }
     dbManager.close();
   }
 }
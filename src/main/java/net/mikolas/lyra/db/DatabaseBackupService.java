@@ -0,0 +1,346 @@
+package net.mikolas.lyra.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+import net.mikolas.lyra.model.AppSettings;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteErrorCode;
+
+/**
+ * Periodic online backups of the live database.
+ *
+ * <p>Snapshots are taken with {@code VACUUM INTO} over a separate connection on a background
+ * thread, so the FX thread and the app's own connection keep running while the copy is made.
+ * Each snapshot is written to a temporary file and moved into place, so a crash mid-backup never
+ * leaves a truncated snapshot behind. When sound parameters live in a {@link SoundParameterStore},
+ * the store is copied next to the snapshot at the same point:
+ * {@link SoundParameterStore#quiesceLock()} is held only while a read transaction pins the
+ * database (which runs in WAL mode) and the store file is copied. The database pages are then
+ * copied from the pinned snapshot with the online backup API while the app keeps writing.
+ *
+ * <p>A run is skipped when the database file has not been modified since the newest snapshot; that
+ * is the only sense in which backups are incremental. Neither {@code VACUUM INTO} nor the online
+ * backup API can write a delta, so every snapshot is a full copy that can be opened on its own
+ * (compacted, unless it was taken with a parameter store). Snapshots are rotated: the newest
+ * {@code keepLatest} are kept, plus the newest snapshot of each of the last {@code keepDaily} days
+ * on which one was taken.
+ *
+ * <p>Usage:
+ *
+ * <pre>{@code
+ * DatabaseBackupService.getInstance().start(new AppSettings());
+ * ...
+ * DatabaseBackupService.getInstance().shutdown();
+ * }</pre>
+ */
+public class DatabaseBackupService {
+  private static DatabaseBackupService instance;
+
+  static final String PREFIX = "lyra-";
+  static final String SUFFIX = ".db";
+  private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+  /** Default number of most recent snapshots to keep. */
+  public static final int DEFAULT_KEEP_LATEST = 8;
+  /** Default number of days for which the last snapshot of the day is kept. */
+  public static final int DEFAULT_KEEP_DAILY = 7;
+
+  private final Path databaseFile;
+  private final Path backupDir;
+  private final int keepLatest;
+  private final int keepDaily;
+  private final SoundParameterStore parameterStore;
+  // Guards the schedule only, so starting or stopping never waits for a running backup
+  private final Object scheduleLock = new Object();
+  private ScheduledExecutorService executor;
+  private ScheduledFuture<?> task;
+
+  private DatabaseBackupService() {
+    this(Path.of(DatabaseManager.getDefaultDatabasePath()));
+  }
+
+  private DatabaseBackupService(Path databaseFile) {
+    this(databaseFile, databaseFile.resolveSibling("backups"), DEFAULT_KEEP_LATEST,
+        DEFAULT_KEEP_DAILY, Database.getInstance().sounds.getParameterStore());
+  }
+
+  /**
+   * Create a backup service for a specific database.
+   *
+   * @param databaseFile live database file
+   * @param backupDir directory for snapshots
+   * @param keepLatest number of most recent snapshots to keep
+   * @param keepDaily number of days to keep one snapshot for
+   */
+  public DatabaseBackupService(Path databaseFile, Path backupDir, int keepLatest, int keepDaily) {
+    this(databaseFile, backupDir, keepLatest, keepDaily, null);
+  }
+
+  /**
+   * Create a backup service for a specific database whose parameters live in a store.
+   *
+   * @param databaseFile live database file
+   * @param backupDir directory for snapshots
+   * @param keepLatest number of most recent snapshots to keep
+   * @param keepDaily number of days to keep one snapshot for
+   * @param parameterStore the live database's parameter store, or null if it has none
+   */
+  public DatabaseBackupService(Path databaseFile, Path backupDir, int keepLatest, int keepDaily,
+      SoundParameterStore parameterStore) {
+    this.databaseFile = databaseFile;
+    this.backupDir = backupDir;
+    this.keepLatest = Math.max(1, keepLatest);
+    this.keepDaily = Math.max(0, keepDaily);
+    this.parameterStore = parameterStore;
+  }
+
+  public static synchronized DatabaseBackupService getInstance() {
+    if (instance == null) {
+      instance = new DatabaseBackupService();
+    }
+    return instance;
+  }
+
+  /**
+   * Start (or restart) the schedule from the current settings.
+   *
+   * <p>Call again after the backup settings change. Does nothing but cancel the schedule when
+   * backups are disabled.
+   *
+   * @param settings application settings
+   */
+  public void start(AppSettings settings) {
+    synchronized (scheduleLock) {
+      if (task != null) {
+        task.cancel(false);
+        task = null;
+      }
+      if (!settings.isDatabaseBackupEnabled()) return;
+
+      if (executor == null) {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+          Thread t = new Thread(r, "lyra-db-backup");
+          t.setDaemon(true);
+          t.setPriority(Thread.MIN_PRIORITY);
+          return t;
+        });
+      }
+      long minutes = settings.getBackupIntervalMinutes();
+      task = executor.scheduleWithFixedDelay(this::runScheduled, minutes, minutes,
+          TimeUnit.MINUTES);
+    }
+  }
+
+  /**
+   * Stop the schedule without waiting for a running backup.
+   *
+   * <p>A backup cut short when the application exits leaves only temporary files, which the next
+   * snapshot removes.
+   */
+  public void shutdown() {
+    synchronized (scheduleLock) {
+      if (executor == null) return;
+      executor.shutdown();
+      executor = null;
+      task = null;
+    }
+  }
+
+  private void runScheduled() {
+    try {
+      backupIfChanged();
+    } catch (Exception e) {
+      System.err.println("Database backup failed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Take a snapshot if the database changed since the newest one, then rotate.
+   *
+   * @return the new snapshot, or empty if the run was skipped
+   * @throws SQLException if the snapshot fails
+   * @throws IOException if the backup directory cannot be written
+   */
+  public synchronized Optional<Path> backupIfChanged() throws SQLException, IOException {
+    if (!Files.exists(databaseFile)) return Optional.empty();
+    List<Path> snapshots = listSnapshots();
+    if (!snapshots.isEmpty()
+        && lastModified(databaseFile) <= Files.getLastModifiedTime(snapshots.get(0)).toMillis()) {
+      return Optional.empty();
+    }
+
+    Path snapshot = snapshot();
+    prune();
+    return Optional.of(snapshot);
+  }
+
+  /**
+   * Take a snapshot unconditionally.
+   *
+   * @return path of the new snapshot
+   * @throws SQLException if the snapshot fails
+   * @throws IOException if the backup directory cannot be written
+   */
+  public synchronized Path snapshot() throws SQLException, IOException {
+    Files.createDirectories(backupDir);
+    deleteTemporaryFiles();
+    String name = PREFIX + LocalDateTime.now().format(STAMP);
+    Path target = backupDir.resolve(name + SUFFIX);
+    for (int n = 1; Files.exists(target); n++) {
+      target = backupDir.resolve(name + "-" + n + SUFFIX);
+    }
+    Path temp = backupDir.resolve(target.getFileName() + ".tmp");
+    // Parameters kept in a memory-mapped store live next to the database, not in it
+    Path paramsTemp = Path.of(temp + ".params");
+    Files.deleteIfExists(temp);
+    Files.deleteIfExists(paramsTemp);
+    long sourceModified = lastModified(databaseFile);
+
+    try {
+      if (parameterStore == null) {
+        vacuumInto(temp);
+      } else {
+        backupWithStore(temp, paramsTemp);
+      }
+    } catch (SQLException | IOException e) {
+      Files.deleteIfExists(temp);
+      Files.deleteIfExists(paramsTemp);
+      throw e;
+    }
+    // Stamp the snapshot with the source's modification time as of the start of the copy, so
+    // writes that land while VACUUM INTO runs still count as changes for the next run
+    Files.setLastModifiedTime(temp, FileTime.fromMillis(sourceModified));
+
+    if (parameterStore != null) {
+      Files.move(paramsTemp, Path.of(target + ".params"), StandardCopyOption.ATOMIC_MOVE);
+    }
+    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    return target;
+  }
+
+  private void deleteTemporaryFiles() throws IOException {
+    List<Path> stale;
+    try (Stream<Path> files = Files.list(backupDir)) {
+      stale = files
+          .filter(p -> {
+            String n = p.getFileName().toString();
+            return n.startsWith(PREFIX) && n.contains(SUFFIX + ".tmp");
+          })
+          .toList();
+    }
+    for (Path file : stale) {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private void vacuumInto(Path file) throws SQLException {
+    try (Connection connection = open();
+        Statement statement = connection.createStatement()) {
+      statement.execute("VACUUM INTO '" + file.toString().replace("'", "''") + "'");
+    }
+  }
+
+  /**
+   * Copy the database and the parameter store as of one point. Sound writes are held off only
+   * until a read transaction has pinned the database and the store file is copied; the pinned
+   * pages are copied afterwards.
+   */
+  private void backupWithStore(Path file, Path paramsFile) throws SQLException, IOException {
+    try (Connection connection = open()) {
+      connection.setAutoCommit(false);
+      Lock lock = parameterStore.quiesceLock();
+      lock.lock();
+      try (Statement statement = connection.createStatement()) {
+        // The first read starts the transaction, which keeps seeing this point in the WAL
+        statement.executeQuery("SELECT count(*) FROM sqlite_master").close();
+        parameterStore.copyTo(paramsFile);
+      } finally {
+        lock.unlock();
+      }
+      // VACUUM INTO cannot run inside a transaction; the backup API reads through this one
+      int rc = connection.unwrap(SQLiteConnection.class).getDatabase()
+          .backup("main", file.toString(), null);
+      connection.rollback();
+      if (rc != SQLiteErrorCode.SQLITE_OK.code) {
+        throw new SQLException("Backup failed: " + SQLiteErrorCode.getErrorCode(rc));
+      }
+    }
+  }
+
+  private Connection open() throws SQLException {
+    return DriverManager.getConnection("jdbc:sqlite:" + databaseFile + "?busy_timeout=30000");
+  }
+
+  /**
+   * Delete snapshots outside the retention policy.
+   *
+   * @return number of deleted snapshots
+   * @throws IOException if the backup directory cannot be read
+   */
+  public synchronized int prune() throws IOException {
+    List<Path> snapshots = listSnapshots();
+    Set<String> daysKept = new HashSet<>();
+    int deleted = 0;
+    for (int i = 0; i < snapshots.size(); i++) {
+      Path snapshot = snapshots.get(i);
+      String day = snapshot.getFileName().toString().substring(PREFIX.length(), PREFIX.length() + 8);
+      boolean keep = i < keepLatest || (daysKept.size() < keepDaily && !daysKept.contains(day));
+      if (keep) {
+        daysKept.add(day);
+      }
+      if (!keep && Files.deleteIfExists(snapshot)) {
+        Files.deleteIfExists(Path.of(snapshot + ".params"));
+        deleted++;
+      }
+    }
+    return deleted;
+  }
+
+  /**
+   * List snapshots, newest first.
+   *
+   * @return snapshot files
+   * @throws IOException if the backup directory cannot be read
+   */
+  public List<Path> listSnapshots() throws IOException {
+    if (!Files.isDirectory(backupDir)) return List.of();
+    try (Stream<Path> files = Files.list(backupDir)) {
+      List<Path> snapshots = new ArrayList<>(files
+          .filter(p -> {
+            String n = p.getFileName().toString();
+            return n.startsWith(PREFIX) && n.endsWith(SUFFIX);
+          })
+          .toList());
+      // Timestamped names sort chronologically
+      snapshots.sort((a, b) -> b.getFileName().toString().compareTo(a.getFileName().toString()));
+      return snapshots;
+    }
+  }
+
+  private static long lastModified(Path databaseFile) throws IOException {
+    long modified = Files.getLastModifiedTime(databaseFile).toMillis();
+    File wal = new File(databaseFile + "-wal");
+    return wal.exists() ? Math.max(modified, wal.lastModified()) : modified;
+  }
+}
@@ -18,7 +18,8 @@ public class DatabaseManager implements AutoCloseable {
   }
 
   public DatabaseManager(String dbPath) throws SQLException {
-    String jdbcUrl = "jdbc:sqlite:" + dbPath + "?busy_timeout=30000";
+    // WAL lets backups and other readers run alongside the app's writes
+    String jdbcUrl = "jdbc:sqlite:" + dbPath + "?busy_timeout=30000&journal_mode=WAL";
     connectionSource = new JdbcConnectionSource(jdbcUrl);
   }
 
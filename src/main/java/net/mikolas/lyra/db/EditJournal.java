@@ -0,0 +1,401 @@
+package net.mikolas.lyra.db;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.model.SoundRevision;
+import net.mikolas.lyra.service.SoundHistoryService;
+import net.mikolas.lyra.service.SoundIndexService;
+
+/**
+ * Append-only write-ahead journal of sound parameter edits.
+ *
+ * <p>Each edit is a fixed 16-byte record (timestamp, sound ID, parameter ID, value, check byte)
+ * written into a memory-mapped file, so recording an edit costs a few stores and no database
+ * round trip. The OS flushes the mapping on its own schedule, which survives an application
+ * crash; records torn by a power loss fail their check byte and are ignored.
+ *
+ * <p>Pending edits are compacted into the {@code sounds} table in one transaction: after a short
+ * idle period, on close, and on startup (which replays the edits left behind by a crash). Only the
+ * last value of each (sound, parameter) pair is applied. Each sound gets one history revision per
+ * session, amended by later compactions, plus one for its state before the session's edits.
+ * Compacted sounds are re-indexed in the {@link SoundIndexService} set with {@link #setIndex}, so
+ * parameter and similarity filters see the new values.
+ *
+ * <p>Usage:
+ *
+ * <pre>{@code
+ * EditJournal.getInstance().start(Database.getInstance());
+ * ...
+ * EditJournal.getInstance().record(sound.getId(), paramId, value);
+ * ...
+ * EditJournal.getInstance().shutdown();
+ * }</pre>
+ */
+public class EditJournal {
+  private static EditJournal instance;
+
+  static final int RECORD_SIZE = 16;
+  private static final int INITIAL_RECORDS = 4096;
+
+  /** Default time without edits after which pending edits are compacted. */
+  public static final long DEFAULT_IDLE_MILLIS = 5000;
+
+  private final Path file;
+  private final long idleMillis;
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private int position;
+  private volatile long lastRecord;
+  private Database database;
+  /** Whether {@link #database} is a connection opened (and closed) by the journal. */
+  private boolean ownsDatabase;
+  private SoundIndexService index;
+  private ScheduledExecutorService executor;
+  private final Object compactLock = new Object();
+  /** History revision written for each sound this session; guarded by compactLock. */
+  private final Map<Integer, Integer> sessionRevisions = new HashMap<>();
+
+  private EditJournal() {
+    this(Path.of(DatabaseManager.getDefaultDatabasePath()).resolveSibling("lyra.journal"),
+        DEFAULT_IDLE_MILLIS);
+  }
+
+  /**
+   * Create a journal backed by a specific file.
+   *
+   * @param file journal file (created if missing)
+   * @param idleMillis time without edits after which pending edits are compacted
+   */
+  public EditJournal(Path file, long idleMillis) {
+    this.file = file;
+    this.idleMillis = idleMillis;
+  }
+
+  public static synchronized EditJournal getInstance() {
+    if (instance == null) {
+      instance = new EditJournal();
+    }
+    return instance;
+  }
+
+  /**
+   * Replay edits left by a previous session, then compact in the background whenever editing
+   * pauses. Compaction writes through its own connection (see {@link Database#openConnection()}),
+   * so it never shares a connection with the FX thread.
+   *
+   * @param database database to compact into
+   */
+  public void start(Database database) {
+    Database connection;
+    try {
+      connection = database.openConnection();
+    } catch (SQLException e) {
+      // Edits stay in the journal and are replayed on next startup
+      System.err.println("Failed to open edit journal connection: " + e.getMessage());
+      return;
+    }
+    synchronized (this) {
+      this.database = connection;
+      ownsDatabase = connection != database;
+    }
+    try {
+      int replayed = compact(connection);
+      if (replayed > 0) {
+        System.out.println("Recovered " + replayed + " unsaved edits from " + file);
+      }
+    } catch (IOException | SQLException e) {
+      System.err.println("Failed to replay edit journal: " + e.getMessage());
+    }
+
+    synchronized (this) {
+      if (executor != null) return;
+      executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "lyra-edit-journal");
+        t.setDaemon(true);
+        return t;
+      });
+      executor.scheduleWithFixedDelay(this::compactIfIdle, idleMillis, idleMillis,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Re-index compacted sounds in a filter index.
+   *
+   * @param index index over the loaded library, or null for none
+   */
+  public synchronized void setIndex(SoundIndexService index) {
+    this.index = index;
+  }
+
+  /** Stop the idle compaction, compact what is left and close the file. */
+  public void shutdown() {
+    ScheduledExecutorService running;
+    Database target;
+    boolean owned;
+    synchronized (this) {
+      running = executor;
+      target = database;
+      owned = ownsDatabase;
+      executor = null;
+      database = null;
+      ownsDatabase = false;
+    }
+    if (running != null) {
+      running.shutdown();
+      try {
+        running.awaitTermination(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    try {
+      if (target != null) {
+        compact(target);
+      }
+    } catch (IOException | SQLException e) {
+      // Edits stay in the journal and are replayed on next startup
+      System.err.println("Failed to compact edit journal: " + e.getMessage());
+    }
+    close();
+    if (owned) {
+      try {
+        target.close();
+      } catch (Exception e) {
+        System.err.println("Failed to close edit journal connection: " + e.getMessage());
+      }
+    }
+  }
+
+  private void compactIfIdle() {
+    if (System.currentTimeMillis() - lastRecord < idleMillis) return;
+    Database target;
+    synchronized (this) {
+      if (position == 0) return;
+      target = database;
+    }
+    try {
+      compact(target);
+    } catch (Exception e) {
+      System.err.println("Failed to compact edit journal: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Append an edit.
+   *
+   * @param soundId database ID of the edited sound
+   * @param paramId parameter ID (0-384)
+   * @param value new raw value
+   * @throws IOException if the journal file cannot be mapped or grown
+   */
+  public synchronized void record(int soundId, int paramId, int value) throws IOException {
+    ensureOpen();
+    if (position + RECORD_SIZE > buffer.capacity()) {
+      remap((long) buffer.capacity() * 2);
+    }
+    long timestamp = System.currentTimeMillis();
+    buffer.putLong(position, timestamp);
+    buffer.putInt(position + 8, soundId);
+    buffer.putShort(position + 12, (short) paramId);
+    buffer.put(position + 14, (byte) value);
+    buffer.put(position + 15, check(timestamp, soundId, paramId, value));
+    position += RECORD_SIZE;
+    lastRecord = timestamp;
+  }
+
+  /**
+   * Number of edits waiting to be compacted.
+   *
+   * @return pending record count
+   * @throws IOException if the journal file cannot be opened
+   */
+  public synchronized int size() throws IOException {
+    ensureOpen();
+    return position / RECORD_SIZE;
+  }
+
+  /**
+   * Latest pending value of each edited parameter, grouped by sound in order of first edit.
+   *
+   * @return sound ID to (parameter ID to raw value)
+   * @throws IOException if the journal file cannot be opened
+   */
+  public synchronized Map<Integer, Map<Integer, Integer>> pending() throws IOException {
+    ensureOpen();
+    return collapse(position);
+  }
+
+  /**
+   * Apply pending edits to the database in one transaction and drop them from the journal.
+   *
+   * <p>Edits recorded while the transaction runs stay in the journal for the next compaction.
+   * Edits for sounds that no longer exist are discarded.
+   *
+   * @param database database to write to
+   * @return number of journal records compacted
+   * @throws IOException if the journal file cannot be opened
+   * @throws SQLException if the database update fails (the journal is left untouched)
+   */
+  public int compact(Database database) throws IOException, SQLException {
+    synchronized (compactLock) {
+      return compactPending(database);
+    }
+  }
+
+  private int compactPending(Database database) throws IOException, SQLException {
+    int end;
+    Map<Integer, Map<Integer, Integer>> edits;
+    synchronized (this) {
+      ensureOpen();
+      end = position;
+      if (end == 0) return 0;
+      edits = collapse(end);
+    }
+
+    SoundHistoryService history = new SoundHistoryService(database);
+    List<Sound> updated = new ArrayList<>();
+    Map<Integer, Integer> revisions = new HashMap<>();
+    database.sounds.callInTransaction(() -> {
+      for (Map.Entry<Integer, Map<Integer, Integer>> entry : edits.entrySet()) {
+        Sound sound = database.sounds.queryForId(entry.getKey());
+        if (sound == null || sound.getParameters() == null) continue;
+        Integer sessionRevision = sessionRevisions.get(sound.getId());
+        if (sessionRevision == null) {
+          // Keep the state from before this session's edits restorable
+          history.record(sound);
+        }
+        byte[] params = sound.getParameters().clone();
+        for (Map.Entry<Integer, Integer> edit : entry.getValue().entrySet()) {
+          if (edit.getKey() < params.length) {
+            params[edit.getKey()] = edit.getValue().byteValue();
+          }
+        }
+        // Refreshes name and category from the edited bytes
+        sound.replaceParameters(params);
+        sound.updateContentHash();
+        database.sounds.update(sound);
+        Optional<SoundRevision> revision = sessionRevision == null
+            ? history.record(sound) : history.amend(sound, sessionRevision);
+        revision.ifPresent(r -> revisions.put(sound.getId(), r.getRevision()));
+        updated.add(sound);
+      }
+      return null;
+    });
+    sessionRevisions.putAll(revisions);
+
+    SoundIndexService target;
+    synchronized (this) {
+      target = index;
+    }
+    if (target != null) {
+      for (Sound sound : updated) {
+        target.indexSound(sound);
+      }
+    }
+
+    synchronized (this) {
+      // Keep whatever was appended during the transaction
+      int tail = position - end;
+      for (int i = 0; i < tail; i++) {
+        buffer.put(i, buffer.get(end + i));
+      }
+      for (int i = tail; i < position; i++) {
+        buffer.put(i, (byte) 0);
+      }
+      position = tail;
+      buffer.force();
+    }
+    return end / RECORD_SIZE;
+  }
+
+  /** Flush and release the journal file. */
+  public synchronized void close() {
+    if (channel == null) return;
+    try {
+      buffer.force();
+      channel.close();
+    } catch (IOException e) {
+      System.err.println("Failed to close edit journal: " + e.getMessage());
+    }
+    channel = null;
+    buffer = null;
+    position = 0;
+  }
+
+  private Map<Integer, Map<Integer, Integer>> collapse(int end) {
+    Map<Integer, Map<Integer, Integer>> edits = new LinkedHashMap<>();
+    for (int at = 0; at < end; at += RECORD_SIZE) {
+      edits.computeIfAbsent(buffer.getInt(at + 8), _ -> new LinkedHashMap<>())
+          .put((int) buffer.getShort(at + 12), buffer.get(at + 14) & 0xFF);
+    }
+    return edits;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (channel != null) return;
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    long size = Math.max(channel.size(), (long) INITIAL_RECORDS * RECORD_SIZE);
+    remap(size - size % RECORD_SIZE);
+    position = scan();
+  }
+
+  /** Find the end of the valid records: the first empty or torn record. */
+  private int scan() {
+    int at = 0;
+    while (at + RECORD_SIZE <= buffer.capacity()) {
+      long timestamp = buffer.getLong(at);
+      if (timestamp == 0
+          || buffer.get(at + 15) != check(timestamp, buffer.getInt(at + 8),
+              buffer.getShort(at + 12), buffer.get(at + 14) & 0xFF)) {
+        break;
+      }
+      at += RECORD_SIZE;
+    }
+    // Anything past the end is garbage, including valid records written after a torn one; clear
+    // all of it so none can resurface once new records are appended. Only dirty non-zero bytes.
+    for (int i = at; i < buffer.capacity(); i++) {
+      if (buffer.get(i) != 0) {
+        buffer.put(i, (byte) 0);
+      }
+    }
+    return at;
+  }
+
+  private void remap(long size) throws IOException {
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Edit journal is full: " + file);
+    }
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static byte check(long timestamp, int soundId, int paramId, int value) {
+    long h = timestamp * 31 + soundId;
+    h = h * 31 + (paramId & 0xFFFF);
+    h = h * 31 + (value & 0xFF);
+    h ^= h >>> 32;
+    h ^= h >>> 16;
+    h ^= h >>> 8;
+    // Never 0, so an all-zero record never validates
+    return (byte) ((h & 0x7F) | 0x80);
+  }
+}
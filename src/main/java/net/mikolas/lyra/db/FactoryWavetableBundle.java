@@ -0,0 +1,242 @@
+package net.mikolas.lyra.db;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import net.mikolas.lyra.model.Wavetable;
+import net.mikolas.lyra.model.WavetableCodec;
+
+/**
+ * Read-only bundle of the factory wavetables, shipped as a single resource.
+ *
+ * <p>The file is a 16-byte header (magic, version, entry count), a fixed-size index entry per
+ * table (slot, offset, length, name) and the tables' {@link WavetableCodec} blobs. Opening a
+ * bundle reads only the index. When the resource is a plain file it is memory-mapped, and a table
+ * is a single copy out of the mapping; inside a jar each table is streamed from its offset on
+ * demand.
+ *
+ * <p>Thread-safe.
+ */
+public class FactoryWavetableBundle {
+
+  /** Classpath location of the bundle shipped with Lyra. */
+  public static final String RESOURCE = "/presets/factory_wavetables.bundle";
+
+  static final int HEADER_SIZE = 16;
+  static final int ENTRY_SIZE = 28;
+  private static final long MAGIC = 0x4C59524146575442L; // "LYRAFWTB"
+  private static final int VERSION = 1;
+  private static final int NAME_SIZE = 16;
+
+  /** Index entry of one table. */
+  public record Entry(int slot, String name, int offset, int length) {}
+
+  @FunctionalInterface
+  private interface Source {
+    byte[] read(int offset, int length) throws IOException;
+  }
+
+  private static final FactoryWavetableBundle EMPTY =
+      new FactoryWavetableBundle(List.of(), (offset, length) -> {
+        throw new IOException("Empty bundle");
+      });
+
+  private final List<Entry> entries;
+  private final Source source;
+
+  private FactoryWavetableBundle(List<Entry> entries, Source source) {
+    this.entries = entries;
+    this.source = source;
+  }
+
+  /** A bundle without tables. */
+  public static FactoryWavetableBundle empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Memory-map a bundle file.
+   *
+   * @param file bundle file
+   * @return the bundle
+   * @throws IOException if the file cannot be read or is not a bundle
+   */
+  public static FactoryWavetableBundle open(Path file) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      // The mapping stays valid after the channel closes
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.capacity() < HEADER_SIZE) {
+      throw new IOException("Not a factory wavetable bundle: " + file);
+    }
+    int count = readHeader(buffer.slice(0, HEADER_SIZE));
+    if (buffer.capacity() < HEADER_SIZE + (long) count * ENTRY_SIZE) {
+      throw new IOException("Truncated factory wavetable bundle: " + file);
+    }
+    List<Entry> entries = readIndex(buffer.slice(HEADER_SIZE, count * ENTRY_SIZE), count,
+        buffer.capacity());
+    return new FactoryWavetableBundle(entries, (offset, length) -> {
+      byte[] data = new byte[length];
+      buffer.get(offset, data);
+      return data;
+    });
+  }
+
+  /**
+   * Open the bundle shipped on the classpath at {@link #RESOURCE}.
+   *
+   * @return the bundle, or an empty one if it is missing or unreadable
+   */
+  public static FactoryWavetableBundle openResource() {
+    URL url = FactoryWavetableBundle.class.getResource(RESOURCE);
+    if (url == null) {
+      System.err.println("Factory wavetable bundle not found: " + RESOURCE);
+      return EMPTY;
+    }
+    try {
+      if ("file".equals(url.getProtocol())) {
+        return open(Path.of(url.toURI()));
+      }
+      List<Entry> entries;
+      try (InputStream in = url.openStream()) {
+        int count = readHeader(ByteBuffer.wrap(readFully(in, HEADER_SIZE)));
+        entries = readIndex(ByteBuffer.wrap(readFully(in, count * ENTRY_SIZE)), count,
+            Integer.MAX_VALUE);
+      }
+      return new FactoryWavetableBundle(entries, (offset, length) -> {
+        try (InputStream in = url.openStream()) {
+          in.skipNBytes(offset);
+          return readFully(in, length);
+        }
+      });
+    } catch (IOException | URISyntaxException e) {
+      System.err.println("Failed to open factory wavetable bundle: " + e.getMessage());
+      return EMPTY;
+    }
+  }
+
+  private static int readHeader(ByteBuffer header) throws IOException {
+    if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION) {
+      throw new IOException("Not a factory wavetable bundle");
+    }
+    return header.getInt(12);
+  }
+
+  private static List<Entry> readIndex(ByteBuffer index, int count, long size)
+      throws IOException {
+    List<Entry> entries = new ArrayList<>(count);
+    byte[] name = new byte[NAME_SIZE];
+    for (int i = 0; i < count; i++) {
+      int at = i * ENTRY_SIZE;
+      int offset = index.getInt(at + 4);
+      int length = index.getInt(at + 8);
+      if (offset < 0 || length < 0 || (long) offset + length > size) {
+        throw new IOException("Corrupt factory wavetable bundle index");
+      }
+      index.get(at + 12, name);
+      entries.add(new Entry(index.getInt(at),
+          new String(name, StandardCharsets.US_ASCII).trim(), offset, length));
+    }
+    return List.copyOf(entries);
+  }
+
+  private static byte[] readFully(InputStream in, int length) throws IOException {
+    byte[] data = in.readNBytes(length);
+    if (data.length != length) {
+      throw new EOFException("Truncated factory wavetable bundle");
+    }
+    return data;
+  }
+
+  /** Tables in the bundle, in stored order. */
+  public List<Entry> entries() {
+    return entries;
+  }
+
+  /**
+   * Read a table's encoded data.
+   *
+   * @param entry entry of this bundle
+   * @return {@link WavetableCodec} blob
+   * @throws IOException if the bundle cannot be read
+   */
+  public byte[] read(Entry entry) throws IOException {
+    return source.read(entry.offset(), entry.length());
+  }
+
+  /**
+   * A factory wavetable whose data is read from the bundle the first time it is loaded.
+   *
+   * @param entry entry of this bundle
+   * @return unsaved wavetable with the entry's name and slot
+   */
+  public Wavetable wavetable(Entry entry) {
+    Wavetable wt = new Wavetable();
+    wt.setName(entry.name());
+    wt.setSlot(entry.slot());
+    wt.setFactory(true);
+    wt.setBinaryDataSource(() -> {
+      try {
+        return read(entry);
+      } catch (IOException e) {
+        System.err.println("Failed to read factory wavetable " + entry.name() + ": "
+            + e.getMessage());
+        return null;
+      }
+    });
+    return wt;
+  }
+
+  /**
+   * Write a bundle. Each table is stored with its bounced waves and keyframes.
+   *
+   * @param file target file
+   * @param wavetables tables to store, with names of at most 16 ASCII characters
+   * @throws IOException if writing fails
+   */
+  public static void write(Path file, List<Wavetable> wavetables) throws IOException {
+    List<byte[]> blobs = new ArrayList<>();
+    int size = HEADER_SIZE + wavetables.size() * ENTRY_SIZE;
+    for (Wavetable wt : wavetables) {
+      byte[] blob = WavetableCodec.encode(wt.getBouncedWaves(), wt.getKeyframes());
+      blobs.add(blob);
+      size += blob.length;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.putLong(MAGIC).putInt(VERSION).putInt(wavetables.size());
+    int offset = HEADER_SIZE + wavetables.size() * ENTRY_SIZE;
+    for (int i = 0; i < wavetables.size(); i++) {
+      Wavetable wt = wavetables.get(i);
+      byte[] name = new byte[NAME_SIZE];
+      byte[] ascii = wt.getName().getBytes(StandardCharsets.US_ASCII);
+      if (ascii.length > NAME_SIZE) {
+        throw new IllegalArgumentException("Name too long for bundle: " + wt.getName());
+      }
+      System.arraycopy(ascii, 0, name, 0, ascii.length);
+      buffer.putInt(wt.getSlot()).putInt(offset).putInt(blobs.get(i).length).put(name);
+      offset += blobs.get(i).length;
+    }
+    for (byte[] blob : blobs) {
+      buffer.put(blob);
+    }
+
+    buffer.flip();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+}
@@ -0,0 +1,221 @@
+package net.mikolas.lyra.db;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import net.mikolas.lyra.model.Collection;
+import net.mikolas.lyra.model.MultiPatch;
+import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.model.SoundCollection;
+import net.mikolas.lyra.model.SoundRevision;
+import net.mikolas.lyra.model.SoundTag;
+import net.mikolas.lyra.model.Tag;
+import net.mikolas.lyra.model.Wavetable;
+import net.mikolas.lyra.model.WavetableCodec;
+
+/**
+ * Versioned schema migrations, tracked in SQLite's {@code PRAGMA user_version}.
+ *
+ * <p>Migration {@code n} upgrades the schema from version {@code n - 1} to {@code n}. Each runs in
+ * its own transaction together with the version bump, so a failed migration leaves the database
+ * at the previous version. An up-to-date database costs a single pragma read.
+ *
+ * <p>Migrations are append-only: never edit or reorder one that has shipped, add a new one.
+ */
+public class SchemaMigrator {
+
+  /** One schema upgrade step. */
+  @FunctionalInterface
+  interface Migration {
+    void apply(Database db) throws SQLException;
+  }
+
+  /** Shipped migrations; index {@code i} upgrades version {@code i} to {@code i + 1}. */
+  static final List<Migration> MIGRATIONS = List.of(
+      SchemaMigrator::createBaseline,
+      SchemaMigrator::addJoinIndexes,
+      SchemaMigrator::hashSounds,
+      SchemaMigrator::dropFactoryWavetableCopies);
+
+  /** Schema version of a fully migrated database. */
+  public static final int LATEST_VERSION = MIGRATIONS.size();
+
+  private final Database db;
+  private final List<Migration> migrations;
+
+  public SchemaMigrator(Database db) {
+    this(db, MIGRATIONS);
+  }
+
+  SchemaMigrator(Database db, List<Migration> migrations) {
+    this.db = db;
+    this.migrations = migrations;
+  }
+
+  /**
+   * Read the database's schema version.
+   *
+   * @return value of {@code PRAGMA user_version} (0 for new and pre-versioning databases)
+   * @throws SQLException if the pragma cannot be read
+   */
+  public int version() throws SQLException {
+    return (int) db.sounds.queryRawValue("PRAGMA user_version");
+  }
+
+  /**
+   * Apply all pending migrations in order.
+   *
+   * @return number of migrations applied
+   * @throws SQLException if a migration fails (earlier migrations stay applied) or the database
+   *     was written by a newer version of Lyra
+   */
+  public int migrate() throws SQLException {
+    int version = version();
+    if (version > migrations.size()) {
+      throw new SQLException("Database schema version " + version
+          + " is newer than this version of Lyra supports (" + migrations.size() + ")");
+    }
+    ConnectionSource connectionSource = db.sounds.getConnectionSource();
+    for (int v = version; v < migrations.size(); v++) {
+      Migration migration = migrations.get(v);
+      int next = v + 1;
+      try {
+        TransactionManager.callInTransaction(connectionSource, (Callable<Void>) () -> {
+          migration.apply(db);
+          db.sounds.executeRaw("PRAGMA user_version = " + next);
+          return null;
+        });
+      } catch (SQLException e) {
+        throw new SQLException("Schema migration to version " + next + " failed", e);
+      }
+    }
+    return migrations.size() - version;
+  }
+
+  /**
+   * Version 1: all tables, plus the columns pre-versioning databases may be missing.
+   */
+  private static void createBaseline(Database db) throws SQLException {
+    // Older tables gain their missing columns first: creating the tables below also creates the
+    // contentHash index, which needs the column to exist
+    Set<String> wavetableColumns = columns(db.wavetables, "wavetables");
+    if (!wavetableColumns.isEmpty() && !wavetableColumns.contains("isfactory")) {
+      db.wavetables.executeRaw("ALTER TABLE wavetables ADD COLUMN isFactory BOOLEAN DEFAULT 0");
+    }
+    Set<String> soundColumns = columns(db.sounds, "sounds");
+    if (!soundColumns.isEmpty() && !soundColumns.contains("contenthash")) {
+      db.sounds.executeRaw("ALTER TABLE sounds ADD COLUMN contentHash BIGINT");
+    }
+
+    ConnectionSource connectionSource = db.sounds.getConnectionSource();
+    TableUtils.createTableIfNotExists(connectionSource, Sound.class);
+    TableUtils.createTableIfNotExists(connectionSource, MultiPatch.class);
+    TableUtils.createTableIfNotExists(connectionSource, Wavetable.class);
+    TableUtils.createTableIfNotExists(connectionSource, Collection.class);
+    TableUtils.createTableIfNotExists(connectionSource, Tag.class);
+    TableUtils.createTableIfNotExists(connectionSource, SoundCollection.class);
+    TableUtils.createTableIfNotExists(connectionSource, SoundTag.class);
+    TableUtils.createTableIfNotExists(connectionSource, SoundRevision.class);
+  }
+
+  /**
+   * Version 2: indexes for looking up sounds by tag and by collection.
+   *
+   * <p>Lookups by {@code sound_id} already use the index behind each join table's unique
+   * (sound_id, ...) constraint, so only the second column needs its own index.
+   */
+  private static void addJoinIndexes(Database db) throws SQLException {
+    db.soundTags.executeRaw(
+        "CREATE INDEX IF NOT EXISTS sound_tags_tag_id_idx ON sound_tags (tag_id)");
+    db.soundCollections.executeRaw("CREATE INDEX IF NOT EXISTS "
+        + "sound_collections_collection_id_idx ON sound_collections (collection_id)");
+  }
+
+  /**
+   * Version 3: content hashes for sounds saved before hashing existed.
+   */
+  private static void hashSounds(Database db) throws SQLException {
+    // Parameters held in a mapped store postdate hashing, so only inline blobs need a hash
+    List<Sound> unhashed = db.sounds.queryBuilder()
+        .selectColumns("id", "parameters")
+        .where().isNull("contentHash")
+        .and().raw("length(parameters) = " + SoundParameterStore.PARAM_SIZE)
+        .query();
+    for (Sound sound : unhashed) {
+      db.sounds.executeRaw("UPDATE sounds SET contentHash = " + sound.updateContentHash()
+          + " WHERE id = " + sound.getId());
+    }
+  }
+
+  /**
+   * Version 4: drop the factory wavetables earlier versions copied into every database. They are
+   * now read from the {@link FactoryWavetableBundle}.
+   *
+   * <p>Earlier versions also saved edits to a factory table in place, in the same raw format, so a
+   * copy is only dropped if its waves still match the bundled table in its slot.
+   */
+  private static void dropFactoryWavetableCopies(Database db) throws SQLException {
+    FactoryWavetableBundle bundle = FactoryWavetableBundle.openResource();
+    Map<Integer, FactoryWavetableBundle.Entry> bySlot = new HashMap<>();
+    for (FactoryWavetableBundle.Entry entry : bundle.entries()) {
+      bySlot.put(entry.slot(), entry);
+    }
+    List<Wavetable> copies = db.wavetables.queryBuilder()
+        .selectColumns("id", "slot", "binaryData")
+        .where().eq("isFactory", true)
+        .and().raw("length(binaryData) = " + WavetableCodec.LEGACY_SIZE)
+        .query();
+    for (Wavetable copy : copies) {
+      FactoryWavetableBundle.Entry entry = bySlot.get(copy.getSlot());
+      if (entry == null) continue;
+      try {
+        if (sameWaves(copy.getBinaryData(), bundle.read(entry))) {
+          db.wavetables.deleteById(copy.getId());
+        }
+      } catch (IOException e) {
+        // Keep the copy; it is still shown in place of the bundled table
+        System.err.println("Failed to compare factory wavetable " + entry.name() + ": "
+            + e.getMessage());
+      }
+    }
+  }
+
+  private static boolean sameWaves(byte[] a, byte[] b) {
+    int[] waveA = new int[128];
+    int[] waveB = new int[128];
+    for (int w = 0; w < 64; w++) {
+      WavetableCodec.decodeWave(a, w, waveA);
+      WavetableCodec.decodeWave(b, w, waveB);
+      if (!Arrays.equals(waveA, waveB)) return false;
+    }
+    return true;
+  }
+
+  /** Lower-case column names of a table; empty if the table does not exist. */
+  private static Set<String> columns(Dao<?, ?> dao, String table) throws SQLException {
+    Set<String> columns = new HashSet<>();
+    try (var results = dao.queryRaw("PRAGMA table_info(" + table + ")")) {
+      for (String[] row : results) {
+        if (row.length > 1) {
+          columns.add(row[1].toLowerCase(Locale.ROOT));
+        }
+      }
+    } catch (SQLException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new SQLException("Failed to inspect " + table + " table", e);
+    }
+    return columns;
+  }
+}
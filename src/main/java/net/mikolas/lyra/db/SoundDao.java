@@ -0,0 +1,297 @@
+package net.mikolas.lyra.db;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.PreparedQuery;
+import com.j256.ormlite.stmt.UpdateBuilder;
+import com.j256.ormlite.support.ConnectionSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Lock;
+import net.mikolas.lyra.model.Sound;
+
+/**
+ * DAO for sounds that can keep parameter blobs outside SQLite.
+ *
+ * <p>Without a {@link SoundParameterStore} this behaves exactly like the default DAO. With one,
+ * the {@code parameters} column is written as an empty blob and the real parameters go to the
+ * store; queries fill empty blobs back in from the store. A non-empty blob in the row always wins,
+ * so rows written around the DAO (raw SQL, update builders) stay correct until the next startup
+ * moves them into the store.
+ *
+ * <p>Store writes made inside {@link #callInTransaction} are undone if the transaction rolls back,
+ * so the store never holds parameters of an uncommitted row, and are forced to disk before the
+ * commit, so a committed row never points at parameters lost in a crash. Single writes outside a
+ * transaction run in one of their own. ({@link #callBatchTasks} only toggles
+ * autocommit on SQLite and never rolls back; use it only where partial writes are acceptable.)
+ * Every write holds the store's shared writer lock, so a backup holding
+ * {@link SoundParameterStore#quiesceLock()} sees no write half done.
+ */
+public class SoundDao extends BaseDaoImpl<Sound, Integer> {
+  private static final byte[] EMPTY = new byte[0];
+
+  private SoundParameterStore store;
+  /** Store contents replaced by the current thread's transaction (null values: not stored). */
+  private final ThreadLocal<Map<Integer, byte[]>> undo = new ThreadLocal<>();
+
+  public SoundDao(ConnectionSource connectionSource, Class<Sound> dataClass)
+      throws SQLException {
+    super(connectionSource, dataClass);
+  }
+
+  public SoundParameterStore getParameterStore() {
+    return store;
+  }
+
+  void setParameterStore(SoundParameterStore store) {
+    this.store = store;
+  }
+
+  /**
+   * Run work in a transaction on this DAO's connection; parameter store writes roll back with it.
+   *
+   * @param callable work to run
+   * @return the callable's result
+   * @throws SQLException if the work or the commit fails
+   */
+  public <T> T callInTransaction(Callable<T> callable) throws SQLException {
+    return withUndo(() -> TransactionManager.callInTransaction(getConnectionSource(), () -> {
+      T result = callable.call();
+      if (store != null) {
+        store.force();
+      }
+      return result;
+    }));
+  }
+
+  /** Run a single write inside the current transaction, or in a transaction of its own. */
+  private <T> T write(Callable<T> work) throws SQLException {
+    return undo.get() != null ? locked(work) : callInTransaction(work);
+  }
+
+  private <T> T withUndo(Callable<T> transaction) throws SQLException {
+    if (store == null || undo.get() != null) return call(transaction);
+    Map<Integer, byte[]> previous = new HashMap<>();
+    return locked(() -> {
+      undo.set(previous);
+      boolean committed = false;
+      try {
+        T result = call(transaction);
+        committed = true;
+        return result;
+      } finally {
+        undo.remove();
+        if (!committed) {
+          rollback(previous);
+        }
+      }
+    });
+  }
+
+  /** Run a write under the store's shared writer lock. */
+  private <T> T locked(Callable<T> write) throws SQLException {
+    if (store == null) return call(write);
+    Lock lock = store.writerLock();
+    lock.lock();
+    try {
+      return call(write);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static <T> T call(Callable<T> callable) throws SQLException {
+    try {
+      return callable.call();
+    } catch (SQLException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new SQLException("Database write failed", e);
+    }
+  }
+
+  private void rollback(Map<Integer, byte[]> previous) {
+    previous.forEach((soundId, params) -> {
+      if (params == null) {
+        store.remove(soundId);
+        return;
+      }
+      try {
+        // The slot already exists, so this never grows the store
+        store.put(soundId, params);
+      } catch (IOException e) {
+        System.err.println("Failed to roll back parameters of sound " + soundId + ": "
+            + e.getMessage());
+      }
+    });
+  }
+
+  /** Remember a sound's stored parameters before the current transaction first replaces them. */
+  private void remember(int soundId) {
+    Map<Integer, byte[]> previous = undo.get();
+    if (previous != null && !previous.containsKey(soundId)) {
+      previous.put(soundId, store.get(soundId));
+    }
+  }
+
+  /**
+   * Save only a sound's parameter blob.
+   *
+   * @param soundId sound ID
+   * @param parameters 385-byte parameter blob
+   * @throws SQLException if the blob cannot be written
+   */
+  public void updateParameters(int soundId, byte[] parameters) throws SQLException {
+    if (store != null) {
+      write(() -> {
+        put(soundId, parameters);
+        return null;
+      });
+      return;
+    }
+    UpdateBuilder<Sound, Integer> update = updateBuilder();
+    update.updateColumnValue("parameters", parameters);
+    update.where().idEq(soundId);
+    update.update();
+  }
+
+  @Override
+  public int create(Sound data) throws SQLException {
+    if (store == null || !storable(data)) return super.create(data);
+    return write(() -> {
+      // The row is written from a copy with an empty blob; the caller's sound is never emptied
+      Sound row = row(data);
+      int rows = super.create(row);
+      data.setId(row.getId());
+      put(data.getId(), data.getParameters());
+      return rows;
+    });
+  }
+
+  @Override
+  public int create(Collection<Sound> datas) throws SQLException {
+    if (store == null) return super.create(datas);
+    return callInTransaction(() -> {
+      int rows = 0;
+      for (Sound data : datas) {
+        rows += create(data);
+      }
+      return rows;
+    });
+  }
+
+  @Override
+  public int update(Sound data) throws SQLException {
+    if (store == null || !storable(data) || data.getId() == null) return super.update(data);
+    return write(() -> {
+      int rows = super.update(row(data));
+      put(data.getId(), data.getParameters());
+      return rows;
+    });
+  }
+
+  @Override
+  public int delete(Sound data) throws SQLException {
+    if (store == null || data == null || data.getId() == null) return super.delete(data);
+    return locked(() -> {
+      int rows = super.delete(data);
+      remove(data.getId());
+      return rows;
+    });
+  }
+
+  @Override
+  public int deleteById(Integer id) throws SQLException {
+    if (store == null || id == null) return super.deleteById(id);
+    return locked(() -> {
+      int rows = super.deleteById(id);
+      remove(id);
+      return rows;
+    });
+  }
+
+  @Override
+  public Sound queryForId(Integer id) throws SQLException {
+    return hydrate(super.queryForId(id));
+  }
+
+  @Override
+  public Sound queryForFirst(PreparedQuery<Sound> preparedQuery) throws SQLException {
+    return hydrate(super.queryForFirst(preparedQuery));
+  }
+
+  @Override
+  public List<Sound> queryForAll() throws SQLException {
+    return hydrate(super.queryForAll());
+  }
+
+  @Override
+  public List<Sound> query(PreparedQuery<Sound> preparedQuery) throws SQLException {
+    return hydrate(super.query(preparedQuery));
+  }
+
+  @Override
+  public int refresh(Sound data) throws SQLException {
+    int rows = super.refresh(data);
+    hydrate(data);
+    return rows;
+  }
+
+  /** The row stored for a sound: its columns with an empty parameter blob. */
+  private static Sound row(Sound data) {
+    return Sound.builder()
+        .id(data.getId())
+        .name(data.getName())
+        .category(data.getCategory())
+        .bank(data.getBank())
+        .program(data.getProgram())
+        .parameters(EMPTY)
+        .contentHash(data.getContentHash())
+        .build();
+  }
+
+  private static boolean storable(Sound data) {
+    return data.getParameters() != null
+        && data.getParameters().length == SoundParameterStore.PARAM_SIZE;
+  }
+
+  private void put(int soundId, byte[] params) throws SQLException {
+    remember(soundId);
+    try {
+      store.put(soundId, params);
+    } catch (IOException e) {
+      throw new SQLException("Failed to store parameters of sound " + soundId, e);
+    }
+  }
+
+  private void remove(int soundId) {
+    remember(soundId);
+    store.remove(soundId);
+  }
+
+  private List<Sound> hydrate(List<Sound> sounds) {
+    if (store != null) {
+      for (Sound sound : sounds) {
+        hydrate(sound);
+      }
+    }
+    return sounds;
+  }
+
+  private Sound hydrate(Sound sound) {
+    if (store == null || sound == null || sound.getId() == null) return sound;
+    byte[] params = sound.getParameters();
+    if (params == null || params.length == 0) {
+      byte[] stored = store.get(sound.getId());
+      if (stored != null) {
+        sound.setParameters(stored);
+      }
+    }
+    return sound;
+  }
+}
@@ -0,0 +1,180 @@
+package net.mikolas.lyra.db;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Memory-mapped, fixed-record store for sound parameter blobs.
+ *
+ * <p>The file is a 16-byte header followed by one slot per sound ID. Each slot is a presence byte
+ * followed by the 385 parameter bytes, so reading a sound is a single copy out of the mapping. The
+ * mapping grows by doubling. There is no bulk scan: {@link SoundDao} copies each sound's parameters
+ * out as it loads the row, and the index and export work from those loaded sounds.
+ *
+ * <p>Thread-safe; all access is synchronized on the store. {@link SoundDao} writes additionally
+ * hold a shared lock, so {@link #quiesceLock()} can stop them while the database and the store are
+ * copied together.
+ */
+public class SoundParameterStore implements AutoCloseable {
+
+  /** Size of one parameter blob. */
+  public static final int PARAM_SIZE = 385;
+
+  static final int SLOT_SIZE = PARAM_SIZE + 1;
+  static final int HEADER_SIZE = 16;
+  private static final long MAGIC = 0x4C5952415350524DL; // "LYRASPRM"
+  private static final int MIN_SLOTS = 1024;
+
+  private final Path file;
+  private final FileChannel channel;
+  private MappedByteBuffer buffer;
+  private int slots;
+  private final BitSet present = new BitSet();
+  private final ReentrantReadWriteLock writers = new ReentrantReadWriteLock();
+
+  /**
+   * Open (or create) a store.
+   *
+   * @param file store file
+   * @throws IOException if the file cannot be opened or is not a parameter store
+   */
+  public SoundParameterStore(Path file) throws IOException {
+    this.file = file;
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    long size = channel.size();
+    if (size == 0) {
+      map(MIN_SLOTS);
+      buffer.putLong(0, MAGIC);
+      buffer.putInt(8, PARAM_SIZE);
+    } else {
+      map((int) Math.max(MIN_SLOTS, (size - HEADER_SIZE) / SLOT_SIZE));
+      if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != PARAM_SIZE) {
+        channel.close();
+        throw new IOException("Not a sound parameter store: " + file);
+      }
+      for (int id = 0; id < slots; id++) {
+        if (buffer.get(offset(id)) != 0) {
+          present.set(id);
+        }
+      }
+    }
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Lock that waits for and then holds off every database write made through a {@link SoundDao}
+   * using this store. Hold it to copy the database and the store at one consistent point.
+   *
+   * @return exclusive lock
+   */
+  public Lock quiesceLock() {
+    return writers.writeLock();
+  }
+
+  /** Shared lock held by a {@link SoundDao} for the whole of a write. */
+  Lock writerLock() {
+    return writers.readLock();
+  }
+
+  /**
+   * Check whether a sound has parameters in the store.
+   *
+   * @param soundId sound ID
+   * @return true if stored
+   */
+  public synchronized boolean contains(int soundId) {
+    return soundId >= 0 && present.get(soundId);
+  }
+
+  /**
+   * Read a sound's parameters.
+   *
+   * @param soundId sound ID
+   * @return copy of the parameters, or null if not stored
+   */
+  public synchronized byte[] get(int soundId) {
+    if (!contains(soundId)) return null;
+    byte[] params = new byte[PARAM_SIZE];
+    buffer.get(offset(soundId) + 1, params);
+    return params;
+  }
+
+  /**
+   * Store (or overwrite) a sound's parameters.
+   *
+   * @param soundId sound ID
+   * @param params 385-byte parameter blob
+   * @throws IOException if the store cannot grow
+   */
+  public synchronized void put(int soundId, byte[] params) throws IOException {
+    if (params == null || params.length != PARAM_SIZE) {
+      throw new IllegalArgumentException("Parameters must be " + PARAM_SIZE + " bytes");
+    }
+    if (soundId >= slots) {
+      map(Math.max(soundId + 1, slots * 2));
+    }
+    int offset = offset(soundId);
+    buffer.put(offset + 1, params);
+    buffer.put(offset, (byte) 1);
+    present.set(soundId);
+  }
+
+  /**
+   * Remove a sound's parameters.
+   *
+   * @param soundId sound ID
+   */
+  public synchronized void remove(int soundId) {
+    if (!contains(soundId)) return;
+    buffer.put(offset(soundId), (byte) 0);
+    present.clear(soundId);
+  }
+
+  /**
+   * Copy the store file, with all written records.
+   *
+   * @param target destination file (replaced if it exists)
+   * @throws IOException if the copy fails
+   */
+  public synchronized void copyTo(Path target) throws IOException {
+    buffer.force();
+    Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /** Flush written records to disk. */
+  public synchronized void force() {
+    buffer.force();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (!channel.isOpen()) return;
+    buffer.force();
+    channel.close();
+  }
+
+  private static int offset(int soundId) {
+    return HEADER_SIZE + soundId * SLOT_SIZE;
+  }
+
+  private void map(int slotCount) throws IOException {
+    long size = HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Sound parameter store is full: " + file);
+    }
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    slots = slotCount;
+  }
+}
@@ -4,6 +4,7 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.service.SoundIndexService;
 
 import java.sql.SQLException;
 import java.util.List;
@@ -17,6 +18,7 @@ public class SoundRepository {
     
     private Database database;
     private final ObservableList<Sound> allSounds = FXCollections.observableArrayList();
+    private final SoundIndexService index = new SoundIndexService();
 
     private SoundRepository() {
         database = Database.getInstance();
@@ -38,6 +40,13 @@ public class SoundRepository {
         return allSounds;
     }
 
+    /**
+     * Membership index over the current library, rebuilt on {@link #refresh()}.
+     */
+    public SoundIndexService getIndex() {
+        return index;
+    }
+
     /**
      * Re-queries the database and updates the observable list.
      */
@@ -45,6 +54,7 @@ public class SoundRepository {
         if (database == null) return;
         try {
             List<Sound> sounds = database.sounds.queryForAll();
+            index.rebuild(database, sounds);
             allSounds.setAll(sounds);
         } catch (SQLException e) {
             System.err.println("Failed to refresh sounds: " + e.getMessage());
@@ -1,26 +1,54 @@
 package net.mikolas.lyra.db;
 
+import com.j256.ormlite.misc.TransactionManager;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import net.mikolas.lyra.model.Wavetable;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * Single source of truth for the Wavetable library.
+ *
+ * <p>Factory wavetables come from the {@link FactoryWavetableBundle} and are only written to the
+ * database once edited and saved; the saved copy then replaces the bundled one.
  */
 public class WavetableRepository {
     private static WavetableRepository instance;
     
     private Database database;
     private final ObservableList<Wavetable> allWavetables = FXCollections.observableArrayList();
+    private final FactoryWavetableBundle factoryBundle;
+    // Unsaved factory tables, one per bundle entry; their data is read when first opened
+    private final List<Wavetable> factoryWavetables = new ArrayList<>();
 
     private WavetableRepository() {
-        database = Database.getInstance();
+        this(Database.getInstance(), FactoryWavetableBundle.openResource());
+    }
+
+    /**
+     * Repository over a specific database, without the factory presets (e.g. for tests).
+     */
+    public WavetableRepository(Database database) {
+        this(database, FactoryWavetableBundle.empty());
+    }
+
+    public WavetableRepository(Database database, FactoryWavetableBundle factoryBundle) {
+        this.database = database;
+        this.factoryBundle = factoryBundle;
+        for (FactoryWavetableBundle.Entry entry : factoryBundle.entries()) {
+            factoryWavetables.add(factoryBundle.wavetable(entry));
+        }
         refresh();
-        // Load factory wavetables from binary resources if not present in DB
-        net.mikolas.lyra.service.PresetLoader.loadFactoryPresets(this);
     }
 
     public static synchronized WavetableRepository getInstance() {
@@ -34,12 +62,47 @@ public class WavetableRepository {
         if (database == null) return;
         try {
             List<Wavetable> wavetables = database.wavetables.queryForAll();
-            allWavetables.setAll(wavetables);
+            allWavetables.setAll(withFactoryWavetables(wavetables));
         } catch (SQLException e) {
             System.err.println("Failed to refresh wavetables: " + e.getMessage());
         }
     }
 
+    /**
+     * Factory tables in bundle order, edited ones as saved, followed by the rest of the library.
+     */
+    private List<Wavetable> withFactoryWavetables(List<Wavetable> stored) {
+        Map<Integer, Wavetable> edited = new HashMap<>();
+        for (Wavetable wt : stored) {
+            if (wt.isFactory() && wt.getSlot() != null) {
+                edited.putIfAbsent(wt.getSlot(), wt);
+            }
+        }
+
+        List<Wavetable> result = new ArrayList<>(factoryWavetables.size() + stored.size());
+        Set<Wavetable> placed = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<FactoryWavetableBundle.Entry> entries = factoryBundle.entries();
+        for (int i = 0; i < entries.size(); i++) {
+            Wavetable saved = edited.get(entries.get(i).slot());
+            if (saved != null) {
+                result.add(saved);
+                placed.add(saved);
+                continue;
+            }
+            // A table saved from here became its database row, which has since been deleted
+            if (factoryWavetables.get(i).getId() != null) {
+                factoryWavetables.set(i, factoryBundle.wavetable(entries.get(i)));
+            }
+            result.add(factoryWavetables.get(i));
+        }
+        for (Wavetable wt : stored) {
+            if (!placed.contains(wt)) {
+                result.add(wt);
+            }
+        }
+        return result;
+    }
+
     public ObservableList<Wavetable> getAllWavetables() {
         return allWavetables;
     }
@@ -49,17 +112,29 @@ public class WavetableRepository {
      * @return slot number, or null if all 39 user slots are full.
      */
     public Integer findNextAvailableSlot() {
-        List<Integer> usedSlots = allWavetables.stream()
-            .map(Wavetable::getSlot)
-            .filter(s -> s != null && s >= 80 && s <= 118)
-            .toList();
-        
+        List<Integer> free = findAvailableSlots();
+        return free.isEmpty() ? null : free.get(0);
+    }
+
+    /**
+     * Finds all free Blofeld User Wavetable slots in one pass over the library.
+     * @return free slots (80-118) in ascending order
+     */
+    public List<Integer> findAvailableSlots() {
+        boolean[] used = new boolean[119];
+        for (Wavetable wt : allWavetables) {
+            Integer slot = wt.getSlot();
+            if (slot != null && slot >= 80 && slot <= 118) {
+                used[slot] = true;
+            }
+        }
+        List<Integer> free = new ArrayList<>();
         for (int i = 80; i <= 118; i++) {
-            if (!usedSlots.contains(i)) {
-                return i;
+            if (!used[i]) {
+                free.add(i);
             }
         }
-        return null;
+        return free;
     }
 
     public void save(Wavetable wavetable) throws SQLException {
@@ -68,6 +143,21 @@ public class WavetableRepository {
         refresh();
     }
 
+    /**
+     * Save many wavetables in one transaction, then refresh the library once.
+     */
+    public void saveAll(Collection<Wavetable> wavetables) throws SQLException {
+        if (database == null || wavetables.isEmpty()) return;
+        TransactionManager.callInTransaction(database.wavetables.getConnectionSource(),
+                (Callable<Void>) () -> {
+                    for (Wavetable wavetable : wavetables) {
+                        database.wavetables.createOrUpdate(wavetable);
+                    }
+                    return null;
+                });
+        refresh();
+    }
+
     public void delete(Wavetable wavetable) throws SQLException {
         if (database == null) return;
         database.wavetables.delete(wavetable);
@@ -30,6 +30,9 @@ public class BlofeldProtocol {
   public static final byte CMD_SOUND_PARAMETER = 0x20; // SNDP
   public static final byte CMD_GLOBAL_PARAMETER = 0x05; // GLBP
 
+  /** Length of a WTBD message. */
+  public static final int WAVETABLE_DUMP_SIZE = 410;
+
   // Special bank values
   public static final int EDIT_BUFFER_BANK = 127;
   public static final int MULTI_MODE_BANK = 127;
@@ -94,6 +97,20 @@ public class BlofeldProtocol {
     };
   }
 
+  /**
+   * Check, without decoding, whether {@link #decode} would return a {@link WavetableDump} for a
+   * message. Lets bulk importers skip other messages without an exception per message.
+   *
+   * @param data SysEx byte array
+   * @return true for a complete WTBD message carrying one of the 64 waves of a table
+   */
+  public static boolean isWavetableDump(byte[] data) {
+    return data != null && data.length >= WAVETABLE_DUMP_SIZE
+        && data[0] == SYSEX_START && data[data.length - 1] == SYSEX_END
+        && data[1] == WALDORF_ID && data[2] == BLOFELD_ID && data[4] == CMD_WAVETABLE_DUMP
+        && (data[6] & 0xFF) < 64;
+  }
+
   /**
    * Decode SysEx bytes to a MIDI message.
    *
@@ -464,8 +481,9 @@ public class BlofeldProtocol {
   }
 
   private MidiMessage decodeWavetableDump(byte[] data, int deviceId) throws MidiException {
-    if (data.length < 410) {
-      throw new MidiException("Invalid WTBD message length (expected 410): " + data.length);
+    if (data.length < WAVETABLE_DUMP_SIZE) {
+      throw new MidiException("Invalid WTBD message length (expected " + WAVETABLE_DUMP_SIZE
+          + "): " + data.length);
     }
 
     int slot = data[5] & 0xFF;
@@ -1,5 +1,6 @@
 package net.mikolas.lyra.midi;
 
+import java.nio.ByteBuffer;
 import net.mikolas.lyra.model.Sound;
 
 /**
@@ -21,6 +22,9 @@ public class SysExGenerator {
   private static final byte SNDD_COMMAND = 0x10;
   private static final byte CHECKSUM = 0x7F; // Constant, not calculated
 
+  /** Size of a Sound Dump Data (SNDD) message. */
+  public static final int SOUND_DUMP_SIZE = 392;
+
   /**
    * Generate a Sound Parameter Change (SNDP) message.
    * Format: F0 3E 13 <dev> 11 <location> <paramId_H> <paramId_L> <value> 7F F7
@@ -59,29 +63,39 @@ public class SysExGenerator {
    * @return 392-byte SysEx message (Hardware standard)
    */
   public static byte[] generateSoundDump(Sound sound, int deviceId) {
-    byte[] sysex = new byte[392];
+    byte[] sysex = new byte[SOUND_DUMP_SIZE];
+    writeSoundDump(sound, deviceId, ByteBuffer.wrap(sysex));
+    return sysex;
+  }
 
+  /**
+   * Write a Sound Dump Data (SNDD) message into a buffer without allocating.
+   *
+   * @param sound Sound object to convert
+   * @param deviceId Device ID (0-127, use 0x7F for broadcast)
+   * @param out buffer with at least {@link #SOUND_DUMP_SIZE} bytes remaining; its position is
+   *     advanced past the message
+   */
+  public static void writeSoundDump(Sound sound, int deviceId, ByteBuffer out) {
     // Header
-    sysex[0] = SYSEX_START;
-    sysex[1] = WALDORF_ID;
-    sysex[2] = BLOFELD_ID;
-    sysex[3] = (byte) (deviceId & 0x7F);
-    sysex[4] = SNDD_COMMAND;
+    out.put(SYSEX_START);
+    out.put(WALDORF_ID);
+    out.put(BLOFELD_ID);
+    out.put((byte) (deviceId & 0x7F));
+    out.put(SNDD_COMMAND);
 
     // Bank and program
-    sysex[5] = (byte) (sound.getBank() & 0x7F);
-    sysex[6] = (byte) (sound.getProgram() & 0x7F);
+    out.put((byte) (sound.getBank() & 0x7F));
+    out.put((byte) (sound.getProgram() & 0x7F));
 
     // Parameters (383 bytes: parameters[0...382])
-    System.arraycopy(sound.getParameters(), 0, sysex, 7, 383);
+    out.put(sound.getParameters(), 0, 383);
 
     // Checksum (constant)
-    sysex[390] = CHECKSUM;
+    out.put(CHECKSUM);
 
     // End
-    sysex[391] = SYSEX_END;
-
-    return sysex;
+    out.put(SYSEX_END);
   }
 
   /**
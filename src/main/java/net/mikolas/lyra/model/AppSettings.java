@@ -52,6 +52,14 @@ public class AppSettings {
         prefs.putInt("database.backup.interval", minutes);
     }
 
+    public boolean isMappedSoundStoreEnabled() {
+        return prefs.getBoolean("database.mappedSoundStore", false);
+    }
+
+    public void setMappedSoundStoreEnabled(boolean enabled) {
+        prefs.putBoolean("database.mappedSoundStore", enabled);
+    }
+
     // MIDI settings
 
     public int getDeviceId() {
@@ -39,21 +39,28 @@ public class Harmonic implements Serializable {
      * @return 128 samples representing one cycle
      */
     public int[] generateWave() {
+        double[] unit = HarmonicTables.unit(type, number);
         int[] wave = new int[128];
         for (int i = 0; i < 128; i++) {
-            double phase = (i / 128.0) * number; // Multiply frequency by harmonic number
-            double value = switch (type) {
-                case SINE -> Math.sin(phase * 2 * Math.PI);
-                case SQUARE -> (phase % 1.0) < 0.5 ? 1.0 : -1.0;
-                case TRIANGLE -> {
-                    double p = phase % 1.0;
-                    yield p < 0.5 ? (4 * p - 1) : (3 - 4 * p);
-                }
-                case SAWTOOTH -> 2 * (phase % 1.0) - 1;
-                case INV_SAWTOOTH -> 1 - 2 * (phase % 1.0);
-            };
-            wave[i] = (int)(value * amplitude * 1048576); // Scale by amplitude and 21-bit range
+            wave[i] = (int)(unit[i] * amplitude * 1048576); // Scale by amplitude and 21-bit range
         }
         return wave;
     }
+
+    /**
+     * Add this harmonic, scaled by {@code gain}, into a wave without allocating.
+     *
+     * <p>Equivalent to adding {@code (int) (generateWave()[i] * gain)} to each sample and clamping
+     * to the 21-bit range.
+     *
+     * @param wave 128 samples to add to
+     * @param gain scale applied on top of the amplitude
+     */
+    public void accumulate(int[] wave, double gain) {
+        double[] unit = HarmonicTables.unit(type, number);
+        for (int i = 0; i < 128; i++) {
+            int sample = (int)(unit[i] * amplitude * 1048576);
+            wave[i] = Math.clamp(wave[i] + (int)(sample * gain), -1048576, 1048575);
+        }
+    }
 }
@@ -0,0 +1,61 @@
+package net.mikolas.lyra.model;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Shared cache of unit-amplitude harmonic waveforms, one 128-sample cycle per
+ * (wave type, harmonic number).
+ *
+ * <p>Tables are computed on first use and never change afterwards, so they can be shared between
+ * threads and wavetables. Callers must not modify the returned arrays.
+ */
+final class HarmonicTables {
+    /** Highest harmonic number that is cached; higher ones are computed on every call. */
+    static final int MAX_CACHED_NUMBER = 64;
+
+    private static final int TYPES = Harmonic.WaveType.values().length;
+    private static final AtomicReferenceArray<double[]> TABLES =
+            new AtomicReferenceArray<>(TYPES * (MAX_CACHED_NUMBER + 1));
+
+    private HarmonicTables() {
+    }
+
+    /**
+     * Get the unit-amplitude waveform of a harmonic.
+     *
+     * @param type wave type
+     * @param number harmonic number (frequency multiple)
+     * @return 128 samples in [-1, 1]; shared, do not modify
+     */
+    static double[] unit(Harmonic.WaveType type, int number) {
+        if (number < 0 || number > MAX_CACHED_NUMBER) {
+            return compute(type, number);
+        }
+        int slot = type.ordinal() * (MAX_CACHED_NUMBER + 1) + number;
+        double[] table = TABLES.get(slot);
+        if (table == null) {
+            // Racing threads compute identical tables; whichever lands first is shared
+            TABLES.compareAndSet(slot, null, compute(type, number));
+            table = TABLES.get(slot);
+        }
+        return table;
+    }
+
+    private static double[] compute(Harmonic.WaveType type, int number) {
+        double[] table = new double[128];
+        for (int i = 0; i < 128; i++) {
+            double phase = (i / 128.0) * number; // Multiply frequency by harmonic number
+            table[i] = switch (type) {
+                case SINE -> Math.sin(phase * 2 * Math.PI);
+                case SQUARE -> (phase % 1.0) < 0.5 ? 1.0 : -1.0;
+                case TRIANGLE -> {
+                    double p = phase % 1.0;
+                    yield p < 0.5 ? (4 * p - 1) : (3 - 4 * p);
+                }
+                case SAWTOOTH -> 2 * (phase % 1.0) - 1;
+                case INV_SAWTOOTH -> 1 - 2 * (phase % 1.0);
+            };
+        }
+        return table;
+    }
+}
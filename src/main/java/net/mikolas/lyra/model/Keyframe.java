@@ -16,9 +16,26 @@ public class Keyframe implements java.io.Serializable {
     private int translateOffset = 0;
     private String curveFunction = "Linear";
     private final List<Harmonic> harmonics = new ArrayList<>();
+    private PhaseMode phaseMode = PhaseMode.INTERPOLATE;
+
+    // FFT of samples, valid while samples equal spectrumSource
+    private transient WaveFft.Spectrum spectrum;
+    private transient int[] spectrumSource;
 
     public enum TransformMode {
-        CONSTANT, CURVE, TRANSLATE, SPECTRAL
+        CONSTANT, CURVE, TRANSLATE, SPECTRAL,
+        /** Interpolate FFT magnitudes towards the next keyframe; phase per {@link PhaseMode}. */
+        SPECTRAL_MORPH
+    }
+
+    /** How {@link TransformMode#SPECTRAL_MORPH} treats bin phases. */
+    public enum PhaseMode {
+        /** Rotate each bin's phase along the shortest arc. */
+        INTERPOLATE,
+        /** Keep this keyframe's phases throughout the segment. */
+        SOURCE,
+        /** Use the next keyframe's phases throughout the segment. */
+        TARGET
     }
 
     public Keyframe(int index) {
@@ -42,6 +59,44 @@ public class Keyframe implements java.io.Serializable {
     public void setCurveFunction(String function) { this.curveFunction = function; }
     
     public List<Harmonic> getHarmonics() { return harmonics; }
+
+    public PhaseMode getPhaseMode() { return phaseMode; }
+    public void setPhaseMode(PhaseMode mode) { this.phaseMode = mode; }
+
+    /**
+     * FFT of the current samples. Cached, and recomputed only once the samples have changed,
+     * however they were written. Treat the result as read-only.
+     */
+    public synchronized WaveFft.Spectrum getSpectrum() {
+        if (spectrum == null || !Arrays.equals(samples, spectrumSource)) {
+            spectrumSource = samples.clone();
+            spectrum = WaveFft.analyze(spectrumSource);
+        }
+        return spectrum;
+    }
+
+    /**
+     * Set one FFT bin and resynthesize the samples from the edited spectrum with a single
+     * inverse FFT. The edited spectrum becomes the cached one, so repeated edits (such as a drag)
+     * neither re-analyze the wave nor accumulate rounding error from it.
+     *
+     * @param bin bin to edit, 0 (DC) to 64 (Nyquist)
+     * @param magnitude new magnitude, negative values count as 0
+     * @param phase new phase in radians
+     */
+    public synchronized void setBin(int bin, double magnitude, double phase) {
+        WaveFft.Spectrum edited = getSpectrum().copy();
+        edited.magnitude()[bin] = Math.max(0, magnitude);
+        edited.phase()[bin] = phase;
+        WaveFft.synthesize(edited, samples);
+        boolean clipped = false;
+        for (int s = 0; s < 128 && !clipped; s++) {
+            clipped = samples[s] == -1048576 || samples[s] == 1048575;
+        }
+        // A clipped wave no longer has the edited spectrum; analyze it again on next use
+        spectrum = clipped ? null : edited;
+        spectrumSource = samples.clone();
+    }
     
     public void setSample(int sampleIdx, int value) {
         if (sampleIdx >= 0 && sampleIdx < 128) {
@@ -13,6 +13,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import net.mikolas.lyra.db.SoundDao;
 
 /**
  * Sound model representing a Blofeld sound with 385 parameters.
@@ -24,7 +25,7 @@ import lombok.NoArgsConstructor;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@DatabaseTable(tableName = "sounds")
+@DatabaseTable(tableName = "sounds", daoClass = SoundDao.class)
 public class Sound {
   @DatabaseField(generatedId = true)
   private Integer id;
@@ -44,6 +45,10 @@ public class Sound {
   @DatabaseField(dataType = DataType.BYTE_ARRAY, canBeNull = false)
   private byte[] parameters;
 
+  /** Hash of the sound content (parameters minus name and category); see {@link #contentHashOf}. */
+  @DatabaseField(index = true)
+  private Long contentHash;
+
   public byte[] getParameters() {
     return parameters;
   }
@@ -393,9 +398,55 @@ public class Sound {
         .bank(bank)
         .program(program)
         .parameters(newParams)
+        .contentHash(contentHash)
         .build();
   }
 
+  /**
+   * Recompute {@link #contentHash} from the current parameters. Call before saving.
+   *
+   * @return the new hash, or null if there are no parameters
+   */
+  public Long updateContentHash() {
+    contentHash = parameters == null ? null : contentHashOf(parameters);
+    return contentHash;
+  }
+
+  /**
+   * Hash the parameters that define how a sound sounds.
+   *
+   * <p>The name (IDs 363-378) and category (ID 379) are skipped, so a renamed or recategorized
+   * copy of a preset hashes the same as the original. 64-bit FNV-1a.
+   *
+   * @param parameters parameter bytes
+   * @return content hash
+   */
+  public static long contentHashOf(byte[] parameters) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < parameters.length; i++) {
+      if (i >= 363 && i <= 379) continue;
+      hash ^= parameters[i] & 0xFF;
+      hash *= 0x100000001b3L;
+    }
+    return hash ^ parameters.length;
+  }
+
+  /**
+   * Compare content with the same exclusions as {@link #contentHashOf}.
+   *
+   * @param a parameter bytes
+   * @param b parameter bytes
+   * @return true if both sound the same
+   */
+  public static boolean sameContent(byte[] a, byte[] b) {
+    if (a == null || b == null || a.length != b.length) return false;
+    for (int i = 0; i < a.length; i++) {
+      if (i >= 363 && i <= 379) continue;
+      if (a[i] != b[i]) return false;
+    }
+    return true;
+  }
+
   /**
    * Update name field from parameters IDs 363-378 (16 ASCII characters).
    */
@@ -0,0 +1,48 @@
+package net.mikolas.lyra.model;
+
+import com.j256.ormlite.field.DataType;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One saved revision of a sound's parameters.
+ *
+ * <p>Snapshot revisions hold the full 385-byte parameter blob. Every other revision holds a
+ * sparse delta against the latest snapshot before it: 3 bytes per changed parameter (ID high,
+ * ID low, value). See {@link net.mikolas.lyra.service.SoundHistoryService}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@DatabaseTable(tableName = "sound_revisions")
+public class SoundRevision {
+  @DatabaseField(generatedId = true)
+  private Integer id;
+
+  /** ID of the sound. Not a foreign key; deleting a sound deletes its history explicitly. */
+  @DatabaseField(canBeNull = false, uniqueCombo = true)
+  private Integer soundId;
+
+  /** Revision number, counting up from 1 per sound. */
+  @DatabaseField(canBeNull = false, uniqueCombo = true)
+  private Integer revision;
+
+  /** Save time in epoch milliseconds. */
+  @DatabaseField
+  private Long createdAt;
+
+  /** Sound name at the time of the save, for display. */
+  @DatabaseField
+  private String name;
+
+  @DatabaseField(canBeNull = false)
+  private boolean snapshot;
+
+  @DatabaseField(dataType = DataType.BYTE_ARRAY, canBeNull = false)
+  private byte[] data;
+}
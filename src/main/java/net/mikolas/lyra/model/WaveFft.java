@@ -0,0 +1,162 @@
+package net.mikolas.lyra.model;
+
+/**
+ * 128-point real FFT for single-cycle waves.
+ *
+ * <p>A wave of 128 real samples has 65 independent bins: DC, harmonics 1-63 and Nyquist (64).
+ * Bins are unnormalized, so a full-scale sine at harmonic {@code k} has magnitude
+ * {@code 64 * amplitude}. Twiddle factors and the bit-reversal permutation are computed once;
+ * transforms only allocate their result.
+ */
+public final class WaveFft {
+    /** Samples per wave. */
+    public static final int SIZE = 128;
+    /** Independent bins of a real wave, DC to Nyquist. */
+    public static final int BINS = SIZE / 2 + 1;
+
+    private static final int LOG2_SIZE = 7;
+    private static final int SAMPLE_MIN = -1048576;
+    private static final int SAMPLE_MAX = 1048575;
+
+    private static final double[] COS = new double[SIZE / 2];
+    private static final double[] SIN = new double[SIZE / 2];
+    private static final int[] REVERSED = new int[SIZE];
+
+    static {
+        for (int i = 0; i < SIZE / 2; i++) {
+            COS[i] = Math.cos(2 * Math.PI * i / SIZE);
+            SIN[i] = Math.sin(2 * Math.PI * i / SIZE);
+        }
+        for (int i = 0; i < SIZE; i++) {
+            REVERSED[i] = Integer.reverse(i) >>> (32 - LOG2_SIZE);
+        }
+    }
+
+    private WaveFft() {
+    }
+
+    /**
+     * Magnitude and phase of bins 0-64. Arrays are shared, not copied; treat them as read-only
+     * unless you own the instance.
+     */
+    public record Spectrum(double[] magnitude, double[] phase) {
+        public Spectrum {
+            if (magnitude.length != BINS || phase.length != BINS) {
+                throw new IllegalArgumentException("Spectrum needs " + BINS + " bins");
+            }
+        }
+
+        /** A spectrum with all bins at zero. */
+        public static Spectrum empty() {
+            return new Spectrum(new double[BINS], new double[BINS]);
+        }
+
+        /** Deep copy, for editing without touching a cached spectrum. */
+        public Spectrum copy() {
+            return new Spectrum(magnitude.clone(), phase.clone());
+        }
+    }
+
+    /**
+     * Transform one wave.
+     *
+     * @param samples 128 samples
+     * @return magnitude and phase of bins 0-64
+     */
+    public static Spectrum analyze(int[] samples) {
+        double[] re = new double[SIZE];
+        double[] im = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            re[i] = samples[i];
+        }
+        transform(re, im, false);
+
+        Spectrum spectrum = Spectrum.empty();
+        for (int k = 0; k < BINS; k++) {
+            spectrum.magnitude()[k] = Math.hypot(re[k], im[k]);
+            spectrum.phase()[k] = Math.atan2(im[k], re[k]);
+        }
+        return spectrum;
+    }
+
+    /**
+     * Inverse-transform a spectrum into a wave, rounded and clamped to the 21-bit range.
+     *
+     * @param spectrum bins 0-64
+     * @param out 128-sample destination
+     */
+    public static void synthesize(Spectrum spectrum, int[] out) {
+        double[] re = new double[SIZE];
+        double[] im = new double[SIZE];
+        double[] mag = spectrum.magnitude();
+        double[] phase = spectrum.phase();
+        for (int k = 0; k < BINS; k++) {
+            re[k] = mag[k] * Math.cos(phase[k]);
+            im[k] = mag[k] * Math.sin(phase[k]);
+        }
+        synthesize(re, im, out);
+    }
+
+    /**
+     * Inverse-transform bins 0-64 given in rectangular form. The negative-frequency half is
+     * mirrored from the positive one, so the result is real whatever the input; the imaginary
+     * parts of DC and Nyquist are ignored.
+     *
+     * <p>{@code re} and {@code im} must hold 128 entries and are used as scratch space: their
+     * contents are undefined afterwards.
+     *
+     * @param re real parts, bins 0-64 significant
+     * @param im imaginary parts, bins 0-64 significant
+     * @param out 128-sample destination
+     */
+    public static void synthesize(double[] re, double[] im, int[] out) {
+        im[0] = 0;
+        im[SIZE / 2] = 0;
+        for (int k = 1; k < SIZE / 2; k++) {
+            re[SIZE - k] = re[k];
+            im[SIZE - k] = -im[k];
+        }
+        transform(re, im, true);
+        for (int i = 0; i < SIZE; i++) {
+            long value = Math.round(re[i] / SIZE);
+            out[i] = (int) Math.clamp(value, SAMPLE_MIN, SAMPLE_MAX);
+        }
+    }
+
+    /**
+     * In-place iterative radix-2 complex FFT. The inverse uses conjugate twiddles and is not
+     * scaled.
+     */
+    static void transform(double[] re, double[] im, boolean inverse) {
+        for (int i = 0; i < SIZE; i++) {
+            int j = REVERSED[i];
+            if (j > i) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        double sign = inverse ? 1 : -1;
+        for (int len = 2; len <= SIZE; len <<= 1) {
+            int half = len >> 1;
+            int step = SIZE / len;
+            for (int start = 0; start < SIZE; start += len) {
+                for (int k = 0; k < half; k++) {
+                    double wr = COS[k * step];
+                    double wi = sign * SIN[k * step];
+                    int a = start + k;
+                    int b = a + half;
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
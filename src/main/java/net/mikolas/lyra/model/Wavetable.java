@@ -4,16 +4,20 @@ import com.j256.ormlite.field.DataType;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
 import java.util.*;
+import java.util.function.Supplier;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
 /**
  * Manages a Waldorf Blofeld wavetable consisting of 64 waves.
@@ -43,12 +47,20 @@ public class Wavetable {
     @DatabaseField(dataType = DataType.BYTE_ARRAY)
     private byte[] binaryData;
 
+    // Supplies binaryData on first load for tables not read from the database (factory bundle)
+    private transient Supplier<byte[]> binaryDataSource;
+
     private final ObservableList<Keyframe> keyframes = FXCollections.observableArrayList();
     
-    // Undo/Redo support
-    private static final int MAX_UNDO_HISTORY = 50;
-    private final Deque<WavetableState> undoStack = new ArrayDeque<>();
-    private final Deque<WavetableState> redoStack = new ArrayDeque<>();
+    // Undo/Redo support: a journal of entries holding only what each edit touched
+    static final int MAX_UNDO_HISTORY = 500;
+    private final Deque<UndoEntry> undoStack = new ArrayDeque<>();
+    private final Deque<UndoEntry> redoStack = new ArrayDeque<>();
+    // Entry collecting the edits of the current beginEdit()/endEdit() group
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private transient UndoEntry openEntry;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private transient int editDepth;
     
     // Transient JavaFX properties for UI binding
     private transient StringProperty nameProperty;
@@ -76,48 +88,117 @@ public class Wavetable {
         return slotProperty;
     }
 
+    /**
+     * Encode the bounced waves and keyframe graph into {@code binaryData}.
+     * See {@link WavetableCodec} for the format.
+     */
     public void prepareForSave() {
+        ensureDecoded();
         bounce(); // Ensure bouncedWaves is up to date
+        binaryData = WavetableCodec.encode(bouncedWaves, keyframes);
+    }
+
+    /**
+     * Restore waves and keyframes from {@code binaryData}.
+     *
+     * <p>Decoding is lazy: waves are unpacked on first access and keyframes on the first
+     * call to {@link #getKeyframes()} or any edit. Without data, it is first fetched from the
+     * {@code binaryDataSource}, if any.
+     */
+    public void loadFromData() {
+        if (binaryData == null && binaryDataSource != null) {
+            binaryData = binaryDataSource.get();
+        }
+        if (binaryData == null || binaryData.length == 0) return;
+        if (!WavetableCodec.isReadable(binaryData)) {
+            System.err.println("Unreadable wavetable data for " + name + ": " + binaryData.length + " bytes");
+            return;
+        }
+        pendingWaves = -1L; // all 64 waves
+        keyframesPending = true;
+        needsRebounce = false;
+        segmentsValid = false;
+    }
+
+    private void ensureWaveDecoded(int index) {
+        long bit = 1L << index;
+        if ((pendingWaves & bit) == 0) return;
+        pendingWaves &= ~bit;
         try {
-            java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
-            java.io.DataOutputStream dos = new java.io.DataOutputStream(baos);
-            
-            // Write 64 waves × 128 samples as raw integers
-            for (int i = 0; i < 64; i++) {
-                for (int s = 0; s < 128; s++) {
-                    dos.writeInt(bouncedWaves[i][s]);
-                }
-            }
-            dos.flush();
-            binaryData = baos.toByteArray();
-        } catch (java.io.IOException e) {
+            WavetableCodec.decodeWave(binaryData, index, bouncedWaves[index]);
+        } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    public void loadFromData() {
-        if (binaryData == null || binaryData.length == 0) return;
+    private void ensureKeyframesDecoded() {
+        if (!keyframesPending) return;
+        keyframesPending = false;
         try {
-            java.io.ByteArrayInputStream bais = new java.io.ByteArrayInputStream(binaryData);
-            java.io.DataInputStream dis = new java.io.DataInputStream(bais);
-            
-            // Read 64 waves × 128 samples as raw integers
-            for (int i = 0; i < 64; i++) {
-                for (int s = 0; s < 128; s++) {
-                    bouncedWaves[i][s] = dis.readInt();
-                }
-            }
-            needsRebounce = false;
+            keyframes.setAll(WavetableCodec.decodeKeyframes(binaryData));
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    private void ensureDecoded() {
+        while (pendingWaves != 0) {
+            ensureWaveDecoded(Long.numberOfTrailingZeros(pendingWaves));
+        }
+        ensureKeyframesDecoded();
+    }
+
+    public ObservableList<Keyframe> getKeyframes() {
+        ensureKeyframesDecoded();
+        return keyframes;
+    }
+
+    public int[][] getBouncedWaves() {
+        ensureDecoded();
+        return bouncedWaves;
+    }
+
     // Cached bounced waves (64 waves * 128 samples)
     private final int[][] bouncedWaves = new int[64][128];
     @Builder.Default
     private transient boolean needsRebounce = true;
 
+    // Lazy decoding state for binaryData: bit i set = wave i not yet decoded
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private transient long pendingWaves;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private transient boolean keyframesPending;
+
+    // Waves (times one plus the harmonic count) above which changed segments bounce in parallel
+    private static final long PARALLEL_WORK_THRESHOLD = 1024;
+    private static final boolean BOUNCE_VERIFICATION =
+            Boolean.getBoolean("lyra.wavetable.verifyBounce");
+
+    // Incremental bounce state: per wave, the segment it was last bounced from
+    @Getter(AccessLevel.NONE)
+    private final transient Keyframe[] bouncedOwner = new Keyframe[64];
+    @Getter(AccessLevel.NONE)
+    private final transient Keyframe[] bouncedNext = new Keyframe[64];
+    @Getter(AccessLevel.NONE)
+    private final transient int[] bouncedStart = new int[64];
+    @Getter(AccessLevel.NONE)
+    private final transient int[] bouncedEnd = new int[64];
+    @Getter(AccessLevel.NONE)
+    private final transient Set<UUID> dirtyKeyframes = new HashSet<>();
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private transient boolean segmentsValid;
+    // bit i set = wave i was overwritten directly and must be recomputed by the next bounce
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private transient long staleWaves;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private transient int lastBounceSegments;
+
+    // FFT per bounced wave, valid while the wave equals its source copy
+    @Getter(AccessLevel.NONE)
+    private final transient WaveFft.Spectrum[] waveSpectra = new WaveFft.Spectrum[64];
+    @Getter(AccessLevel.NONE)
+    private final transient int[][] waveSpectrumSources = new int[64][];
+
     // Custom constructor for default initialization since Lombok's Builder/NoArgs might conflict with FX initialization
     public static Wavetable createNew() {
         Wavetable wt = new Wavetable();
@@ -126,98 +207,177 @@ public class Wavetable {
     }
 
     /**
-     * Calculates all 64 waves based on keyframes and their transform modes.
+     * Calculates the 64 waves from the keyframes and their transform modes.
+     *
+     * <p>Only segments (a keyframe and the waves up to the next one) whose keyframes changed,
+     * moved or gained new neighbours since the last bounce are recomputed; see
+     * {@link #markDirty(Keyframe)}. {@link #markDirty()} forces a full bounce.
      */
     public void bounce() {
         if (!needsRebounce) return;
+        ensureDecoded();
         
         keyframes.sort(Comparator.comparingInt(Keyframe::getIndex));
-        
+
+        // Keyframes sharing an index overwrite each other in list order; only a full bounce
+        // reproduces that
+        boolean duplicates = false;
+        for (int i = 1; i < keyframes.size() && !duplicates; i++) {
+            duplicates = keyframes.get(i).getIndex() == keyframes.get(i - 1).getIndex();
+        }
+        boolean full = !segmentsValid || duplicates;
+
+        List<Integer> changed = new ArrayList<>();
+        long work = 0;
         for (int i = 0; i < keyframes.size(); i++) {
             Keyframe current = keyframes.get(i);
-            int startIdx = current.getIndex();
-            
-            // Fill current keyframe data
-            System.arraycopy(current.getSamples(), 0, bouncedWaves[startIdx], 0, 128);
-            
-            if (i < keyframes.size() - 1) {
-                Keyframe next = keyframes.get(i + 1);
-                int endIdx = next.getIndex();
-                interpolate(current, next, startIdx, endIdx);
-            } else {
-                // Fill remaining waves with last keyframe (Constant)
-                for (int j = startIdx + 1; j < 64; j++) {
-                    System.arraycopy(current.getSamples(), 0, bouncedWaves[j], 0, 128);
-                }
+            Keyframe next = i < keyframes.size() - 1 ? keyframes.get(i + 1) : null;
+            int start = current.getIndex();
+            int end = next != null ? next.getIndex() : 64;
+            if (full || segmentChanged(current, next, start, end)) {
+                changed.add(i);
+                work += (long) (end - start) * (1 + current.getHarmonics().size());
+            }
+        }
+        // Segments write disjoint waves, so big bounces can split them across cores; shared
+        // indices make segments overlap
+        boolean parallel = !duplicates && changed.size() > 1 && work >= PARALLEL_WORK_THRESHOLD;
+        (parallel ? changed.parallelStream() : changed.stream()).forEach(i -> {
+            Keyframe current = keyframes.get(i);
+            Keyframe next = i < keyframes.size() - 1 ? keyframes.get(i + 1) : null;
+            bounceSegment(bouncedWaves, current, next, current.getIndex(),
+                    next != null ? next.getIndex() : 64);
+        });
+
+        // Remember the layout so the next bounce can tell which segments changed
+        Arrays.fill(bouncedOwner, null);
+        for (int i = 0; i < keyframes.size(); i++) {
+            Keyframe current = keyframes.get(i);
+            Keyframe next = i < keyframes.size() - 1 ? keyframes.get(i + 1) : null;
+            int end = next != null ? next.getIndex() : 64;
+            for (int w = current.getIndex(); w < end; w++) {
+                bouncedOwner[w] = current;
+                bouncedNext[w] = next;
+                bouncedStart[w] = current.getIndex();
+                bouncedEnd[w] = end;
             }
         }
+        dirtyKeyframes.clear();
+        staleWaves = 0;
+        segmentsValid = true;
         needsRebounce = false;
+        lastBounceSegments = changed.size();
+
+        if (!full && BOUNCE_VERIFICATION && !verifyBounce()) {
+            System.err.println("Incremental bounce of " + name + " differed from a full bounce");
+        }
     }
 
-    private void interpolate(Keyframe a, Keyframe b, int start, int end) {
-        int range = end - start;
-        for (int i = start + 1; i < end; i++) {
-            double ratio = (double)(i - start) / range;
-            
-            switch (a.getTransformMode()) {
-                case CONSTANT -> System.arraycopy(a.getSamples(), 0, bouncedWaves[i], 0, 128);
-                case CURVE -> {
-                    double p = applyEasing(a.getCurveFunction(), ratio);
-                    for (int s = 0; s < 128; s++) {
-                        bouncedWaves[i][s] = (int)((1 - p) * a.getSamples()[s] + p * b.getSamples()[s]);
-                    }
-                }
-                case TRANSLATE -> {
-                    int offset = (int)(a.getTranslateOffset() * ratio);
-                    // Circular roll implementation
-                    for (int s = 0; s < 128; s++) {
-                        int sourceIdx = (s - offset) % 128;
-                        if (sourceIdx < 0) sourceIdx += 128;
-                        // Linear crossfade after roll
-                        bouncedWaves[i][s] = (int)((1 - ratio) * a.getSamples()[s] + ratio * b.getSamples()[sourceIdx]);
-                    }
-                }
-                case SPECTRAL -> {
-                    // Additive Synthesis: Base wave + harmonics
-                    // Linear interpolate base wave
-                    for (int s = 0; s < 128; s++) {
-                        bouncedWaves[i][s] = (int)((1 - ratio) * a.getSamples()[s] + ratio * b.getSamples()[s]);
-                    }
-                    
-                    // Add harmonics from source keyframe
-                    for (Harmonic h : a.getHarmonics()) {
-                        int[] harmonicWave = h.generateWave();
-                        for (int s = 0; s < 128; s++) {
-                            // Scale harmonic by ratio (fade out as we approach next keyframe)
-                            int harmonicValue = (int)(harmonicWave[s] * (1 - ratio));
-                            bouncedWaves[i][s] = Math.clamp(
-                                bouncedWaves[i][s] + harmonicValue,
-                                -1048576, 1048575
-                            );
-                        }
-                    }
-                }
+    /** Number of segments the last {@link #bounce()} recomputed. */
+    int lastBounceSegments() {
+        return lastBounceSegments;
+    }
+
+    /**
+     * Check that the bounced waves match a full bounce, and repair them if not.
+     *
+     * <p>Runs after every incremental bounce when the {@code lyra.wavetable.verifyBounce} system
+     * property is set.
+     *
+     * @return true if the waves already matched (or were loaded, not bounced)
+     */
+    public boolean verifyBounce() {
+        ensureDecoded();
+        bounce();
+        if (!segmentsValid) return true;
+        int[][] expected = new int[64][];
+        for (int w = 0; w < 64; w++) {
+            expected[w] = bouncedWaves[w].clone();
+        }
+        for (int i = 0; i < keyframes.size(); i++) {
+            Keyframe current = keyframes.get(i);
+            Keyframe next = i < keyframes.size() - 1 ? keyframes.get(i + 1) : null;
+            bounceSegment(expected, current, next, current.getIndex(),
+                    next != null ? next.getIndex() : 64);
+        }
+        boolean matches = true;
+        for (int w = 0; w < 64; w++) {
+            if (!Arrays.equals(expected[w], bouncedWaves[w])) {
+                System.arraycopy(expected[w], 0, bouncedWaves[w], 0, 128);
+                matches = false;
             }
         }
+        return matches;
+    }
+
+    /**
+     * Fully re-bounce many wavetables in parallel, e.g. to re-encode a whole library.
+     *
+     * <p>The tables must not be used elsewhere (such as an open editor) while this runs.
+     *
+     * @param wavetables tables to bounce
+     */
+    public static void bounceAll(Collection<Wavetable> wavetables) {
+        wavetables.parallelStream().forEach(wt -> {
+            wt.markDirty();
+            wt.bounce();
+        });
     }
 
-    private double applyEasing(String function, double t) {
-        return switch (function) {
-            case "InQuad" -> t * t;
-            case "OutQuad" -> t * (2 - t);
-            case "InOutQuad" -> t < 0.5 ? 2 * t * t : -1 + (4 - 2 * t) * t;
-            case "Sine" -> (1 - Math.cos(t * Math.PI)) / 2;
-            case "Exp" -> Math.pow(2, 10 * (t - 1));
-            default -> t; // Linear
-        };
+    /** Whether any wave of a segment was bounced from a different layout or changed since. */
+    private boolean segmentChanged(Keyframe current, Keyframe next, int start, int end) {
+        if (dirtyKeyframes.contains(current.getId())
+                || (next != null && dirtyKeyframes.contains(next.getId()))) {
+            return true;
+        }
+        for (int w = start; w < end; w++) {
+            // The interpolation ratio depends on both ends of the segment
+            if (bouncedOwner[w] != current || bouncedNext[w] != next || bouncedStart[w] != start
+                    || bouncedEnd[w] != end || (staleWaves & (1L << w)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Bounce the waves from {@code start} up to (excluding) {@code end} into {@code out}. */
+    private void bounceSegment(int[][] out, Keyframe current, Keyframe next, int start, int end) {
+        // Fill current keyframe data
+        System.arraycopy(current.getSamples(), 0, out[start], 0, 128);
+
+        if (next != null) {
+            WavetableKernels.interpolate(out, current, next, start, end);
+        } else {
+            // Fill remaining waves with last keyframe (Constant)
+            for (int j = start + 1; j < 64; j++) {
+                System.arraycopy(current.getSamples(), 0, out[j], 0, 128);
+            }
+        }
     }
 
     public int[] getWave(int index) {
         if (needsRebounce) bounce();
+        ensureWaveDecoded(index);
         return bouncedWaves[index];
     }
     
+    /**
+     * FFT of a bounced wave, cached until the wave changes. Treat the result as read-only.
+     *
+     * @param index wave (0-63)
+     * @return magnitude and phase of bins 0-64
+     */
+    public WaveFft.Spectrum getWaveSpectrum(int index) {
+        int[] wave = getWave(index);
+        if (waveSpectra[index] == null || !Arrays.equals(wave, waveSpectrumSources[index])) {
+            waveSpectrumSources[index] = wave.clone();
+            waveSpectra[index] = WaveFft.analyze(waveSpectrumSources[index]);
+        }
+        return waveSpectra[index];
+    }
+
     public List<net.mikolas.lyra.midi.WavetableDump> generateDumpMessages(int deviceId) {
+        ensureDecoded();
         if (needsRebounce) bounce();
         List<net.mikolas.lyra.midi.WavetableDump> messages = new ArrayList<>();
         for (int i = 0; i < 64; i++) {
@@ -232,8 +392,29 @@ public class Wavetable {
         return messages;
     }
 
+    /**
+     * Mark the whole table for a full bounce, e.g. after changing keyframes in unknown ways.
+     */
     public void markDirty() {
         needsRebounce = true;
+        segmentsValid = false;
+    }
+
+    /**
+     * Mark one keyframe's samples or transform settings as changed. The next bounce recomputes
+     * only its own segment and the one before it.
+     */
+    public void markDirty(Keyframe keyframe) {
+        dirtyKeyframes.add(keyframe.getId());
+        needsRebounce = true;
+    }
+
+    /**
+     * Mark keyframes as added, removed or moved without changing their contents. The next bounce
+     * recomputes only the segments whose boundaries changed.
+     */
+    public void markKeyframesChanged() {
+        needsRebounce = true;
     }
 
     @Override
@@ -242,23 +423,60 @@ public class Wavetable {
     }
 
     // Undo/Redo methods
-    
+
     /**
-     * Save current state before making a change.
+     * Start grouping edits into a single undo entry, e.g. for a drag stroke. Groups nest; the
+     * entry is committed by the outermost {@link #endEdit()}. Within a group each wave and
+     * keyframe is journaled once, with its state from before the group began.
      */
-    private void saveState() {
-        WavetableState state = new WavetableState(this);
-        undoStack.push(state);
-        
-        // Limit undo history
+    public void beginEdit() {
+        if (editDepth++ == 0) {
+            ensureDecoded();
+            openEntry = new UndoEntry();
+        }
+    }
+
+    /**
+     * Close a group opened by {@link #beginEdit()}. Empty groups leave no undo entry.
+     */
+    public void endEdit() {
+        if (editDepth == 0 || --editDepth > 0) return;
+        UndoEntry entry = openEntry;
+        openEntry = null;
+        if (entry.isEmpty()) return;
+        undoStack.push(entry);
         if (undoStack.size() > MAX_UNDO_HISTORY) {
             undoStack.removeLast();
         }
-        
         // Clear redo stack when new change is made
         redoStack.clear();
     }
-    
+
+    /**
+     * Journal a keyframe's samples and settings before changing them. Outside a
+     * {@link #beginEdit()} group this is an undo entry of its own.
+     */
+    public void recordKeyframeEdit(Keyframe keyframe) {
+        beginEdit();
+        openEntry.recordKeyframe(keyframe);
+        endEdit();
+    }
+
+    /**
+     * Journal which keyframes the table holds before adding or removing some.
+     */
+    public void recordKeyframeListEdit() {
+        beginEdit();
+        openEntry.recordKeyframeList(keyframes);
+        endEdit();
+    }
+
+    private void recordWaveEdit(int index) {
+        beginEdit();
+        openEntry.recordWave(this, index);
+        endEdit();
+    }
+
     /**
      * Check if undo is available.
      */
@@ -274,39 +492,43 @@ public class Wavetable {
     }
     
     /**
-     * Undo the last change.
+     * Undo the last change. An open edit group is committed first.
      */
     public void undo() {
+        closeOpenEdit();
         if (!canUndo()) return;
-        
-        // Save current state to redo stack
-        redoStack.push(new WavetableState(this));
-        
-        // Restore previous state
-        WavetableState state = undoStack.pop();
-        state.restore(this);
+        ensureDecoded();
+        UndoEntry entry = undoStack.pop();
+        entry.swap(this);
+        redoStack.push(entry);
     }
     
     /**
      * Redo the last undone change.
      */
     public void redo() {
+        closeOpenEdit();
         if (!canRedo()) return;
-        
-        // Save current state to undo stack
-        undoStack.push(new WavetableState(this));
-        
-        // Restore redo state
-        WavetableState state = redoStack.pop();
-        state.restore(this);
+        ensureDecoded();
+        UndoEntry entry = redoStack.pop();
+        entry.swap(this);
+        undoStack.push(entry);
+    }
+
+    private void closeOpenEdit() {
+        if (editDepth > 0) {
+            editDepth = 1;
+            endEdit();
+        }
     }
     
     /**
      * Set wave data with undo support.
      */
     public void setWave(int index, int[] waveData) {
-        saveState();
+        recordWaveEdit(index);
         bouncedWaves[index] = waveData.clone();
+        staleWaves |= 1L << index;
         needsRebounce = false;
     }
     
@@ -314,7 +536,7 @@ public class Wavetable {
      * Add keyframe with undo support.
      */
     public void addKeyframe(int waveIndex) {
-        saveState();
+        recordKeyframeListEdit();
         Keyframe kf = new Keyframe(waveIndex);
         int[] wave = bouncedWaves[waveIndex];
         for (int i = 0; i < 128; i++) {
@@ -322,23 +544,24 @@ public class Wavetable {
         }
         keyframes.add(kf);
         keyframes.sort(Comparator.comparingInt(Keyframe::getIndex));
-        markDirty();
+        markKeyframesChanged();
     }
     
     /**
      * Remove keyframe with undo support.
      */
     public void removeKeyframe(int waveIndex) {
-        saveState();
+        recordKeyframeListEdit();
         keyframes.removeIf(kf -> kf.getIndex() == waveIndex);
-        markDirty();
+        markKeyframesChanged();
     }
     
     /**
      * Normalize wave with undo support.
      */
     public void normalize(int waveIndex) {
-        saveState();
+        recordWaveEdit(waveIndex);
+        staleWaves |= 1L << waveIndex;
         int[] wave = bouncedWaves[waveIndex];
         int max = 0;
         for (int sample : wave) {
@@ -356,59 +579,112 @@ public class Wavetable {
      * Get keyframe indices list (for testing).
      */
     public List<Integer> getKeyframeIndices() {
-        return keyframes.stream()
+        return getKeyframes().stream()
             .map(Keyframe::getIndex)
             .toList();
     }
     
     /**
-     * Internal state snapshot for undo/redo.
+     * One undoable edit: the other version of every wave and keyframe it touched. Swapping an
+     * entry with the table turns an undo entry into the matching redo entry and back, so history
+     * costs only what the edits changed.
      */
-    private static class WavetableState {
-        private final int[][] waves;
-        private final List<Keyframe> keyframesCopy;
-        
-        WavetableState(Wavetable wt) {
-            // Deep copy waves
-            waves = new int[64][128];
-            for (int i = 0; i < 64; i++) {
-                waves[i] = wt.bouncedWaves[i].clone();
+    private static class UndoEntry {
+        // Wave index -> samples, plus the waves' stale bits
+        private final Map<Integer, int[]> waves = new HashMap<>(4);
+        private long staleWaves;
+        private final Map<Keyframe, KeyframeContent> keyframes = new IdentityHashMap<>(4);
+        // Keyframes the table held, if the edit added or removed some
+        private List<Keyframe> keyframeList;
+
+        boolean isEmpty() {
+            return waves.isEmpty() && keyframes.isEmpty() && keyframeList == null;
+        }
+
+        void recordWave(Wavetable wt, int index) {
+            if (waves.containsKey(index)) return;
+            waves.put(index, wt.bouncedWaves[index].clone());
+            staleWaves |= wt.staleWaves & (1L << index);
+        }
+
+        void recordKeyframe(Keyframe kf) {
+            keyframes.computeIfAbsent(kf, KeyframeContent::new);
+        }
+
+        void recordKeyframeList(List<Keyframe> current) {
+            if (keyframeList == null) {
+                keyframeList = new ArrayList<>(current);
             }
-            
-            // Deep copy keyframes
-            keyframesCopy = new ArrayList<>();
-            for (Keyframe kf : wt.keyframes) {
-                Keyframe copy = new Keyframe(kf.getIndex());
-                for (int i = 0; i < 128; i++) {
-                    copy.setSample(i, kf.getSamples()[i]);
+        }
+
+        void swap(Wavetable wt) {
+            long mask = 0;
+            for (Map.Entry<Integer, int[]> e : waves.entrySet()) {
+                int[] wave = wt.bouncedWaves[e.getKey()];
+                int[] other = e.getValue();
+                for (int s = 0; s < 128; s++) {
+                    int t = wave[s];
+                    wave[s] = other[s];
+                    other[s] = t;
                 }
-                copy.setTransformMode(kf.getTransformMode());
-                copy.setCurveFunction(kf.getCurveFunction());
-                copy.setTranslateOffset(kf.getTranslateOffset());
-                keyframesCopy.add(copy);
+                mask |= 1L << e.getKey();
+            }
+            long current = wt.staleWaves & mask;
+            wt.staleWaves = (wt.staleWaves & ~mask) | staleWaves;
+            staleWaves = current;
+
+            for (Map.Entry<Keyframe, KeyframeContent> e : keyframes.entrySet()) {
+                KeyframeContent before = new KeyframeContent(e.getKey());
+                e.getValue().restore(e.getKey());
+                e.setValue(before);
+                wt.markDirty(e.getKey());
+            }
+            if (keyframeList != null) {
+                List<Keyframe> before = new ArrayList<>(wt.keyframes);
+                wt.keyframes.setAll(keyframeList);
+                keyframeList = before;
+            }
+            if (!keyframes.isEmpty() || keyframeList != null) {
+                wt.markKeyframesChanged();
             }
         }
-        
-        void restore(Wavetable wt) {
-            // Restore waves
-            for (int i = 0; i < 64; i++) {
-                wt.bouncedWaves[i] = waves[i].clone();
+    }
+
+    /**
+     * Everything about a keyframe that an edit can change.
+     */
+    private static class KeyframeContent {
+        private final int index;
+        private final int[] samples;
+        private final Keyframe.TransformMode transformMode;
+        private final int translateOffset;
+        private final String curveFunction;
+        private final Keyframe.PhaseMode phaseMode;
+        private final List<Harmonic> harmonics = new ArrayList<>();
+
+        KeyframeContent(Keyframe kf) {
+            index = kf.getIndex();
+            samples = kf.getSamples().clone();
+            transformMode = kf.getTransformMode();
+            translateOffset = kf.getTranslateOffset();
+            curveFunction = kf.getCurveFunction();
+            phaseMode = kf.getPhaseMode();
+            for (Harmonic h : kf.getHarmonics()) {
+                harmonics.add(new Harmonic(h.getNumber(), h.getType(), h.getAmplitude()));
             }
-            
-            // Restore keyframes
-            wt.keyframes.clear();
-            for (Keyframe kf : keyframesCopy) {
-                Keyframe copy = new Keyframe(kf.getIndex());
-                for (int i = 0; i < 128; i++) {
-                    copy.setSample(i, kf.getSamples()[i]);
-                }
-                copy.setTransformMode(kf.getTransformMode());
-                copy.setCurveFunction(kf.getCurveFunction());
-                copy.setTranslateOffset(kf.getTranslateOffset());
-                wt.keyframes.add(copy);
+        }
+
+        void restore(Keyframe kf) {
+            kf.setIndex(index);
+            System.arraycopy(samples, 0, kf.getSamples(), 0, 128);
+            kf.setTransformMode(transformMode);
+            kf.setTranslateOffset(translateOffset);
+            kf.setCurveFunction(curveFunction);
+            kf.setPhaseMode(phaseMode);
+            kf.getHarmonics().clear();
+            for (Harmonic h : harmonics) {
+                kf.getHarmonics().add(new Harmonic(h.getNumber(), h.getType(), h.getAmplitude()));
             }
-            
-            wt.needsRebounce = false;
         }
     }
 }
@@ -0,0 +1,262 @@
+package net.mikolas.lyra.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary codec for persisted wavetable data.
+ *
+ * <p>Format v2 layout:
+ * <pre>
+ * 'L' 'W' 'T' version              4 bytes header
+ * 64 waves x 128 samples           21-bit packed, 336 bytes per wave
+ * keyframe count                   unsigned short
+ * per keyframe:
+ *   index, flags, transform mode   3 bytes (flags: inline samples, phase mode in bits 1-2)
+ *   translate offset               short
+ *   curve function                 modified UTF-8
+ *   harmonic count                 byte, then (number, type, amplitude) per harmonic
+ *   samples                        336 packed bytes, only if FLAG_INLINE_SAMPLES is set
+ * </pre>
+ *
+ * <p>Keyframes whose samples equal the bounced wave at their index (the common case after a
+ * bounce) reference that wave instead of repeating it. Waves are fixed-size so any single wave
+ * can be decoded without touching the rest of the blob.
+ *
+ * <p>v1 is identical except that it predates phase modes; its keyframes decode with
+ * {@link Keyframe.PhaseMode#INTERPOLATE}. Blobs written before the format existed (64 x 128 big-endian ints, 32 KB, no header) are
+ * still readable.
+ */
+public final class WavetableCodec {
+    public static final int FORMAT_VERSION = 2;
+
+    private static final byte[] MAGIC = {'L', 'W', 'T'};
+    private static final int HEADER_SIZE = 4;
+    private static final int WAVE_COUNT = 64;
+    private static final int SAMPLES_PER_WAVE = 128;
+    private static final int BITS_PER_SAMPLE = 21;
+    private static final int SAMPLE_MASK = (1 << BITS_PER_SAMPLE) - 1;
+    private static final int SAMPLE_MIN = -1048576;
+    private static final int SAMPLE_MAX = 1048575;
+
+    /** Bytes of one packed wave (128 x 21 bits). */
+    public static final int PACKED_WAVE_SIZE = SAMPLES_PER_WAVE * BITS_PER_SAMPLE / 8;
+    private static final int KEYFRAME_SECTION = HEADER_SIZE + WAVE_COUNT * PACKED_WAVE_SIZE;
+
+    /** Size of the original raw int format. */
+    public static final int LEGACY_SIZE = WAVE_COUNT * SAMPLES_PER_WAVE * 4;
+
+    private static final int FLAG_INLINE_SAMPLES = 0x01;
+    private static final int PHASE_MODE_SHIFT = 1;
+    private static final int PHASE_MODE_MASK = 0x03;
+
+    private WavetableCodec() {}
+
+    /**
+     * Encode bounced waves and the keyframe graph.
+     *
+     * @param waves 64 waves of 128 samples (clamped to the 21-bit range)
+     * @param keyframes keyframes to persist
+     * @return encoded blob
+     */
+    public static byte[] encode(int[][] waves, List<Keyframe> keyframes) {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(KEYFRAME_SECTION + 64);
+            baos.write(MAGIC);
+            baos.write(FORMAT_VERSION);
+
+            byte[] packed = new byte[PACKED_WAVE_SIZE];
+            for (int i = 0; i < WAVE_COUNT; i++) {
+                packWave(waves[i], packed, 0);
+                baos.write(packed);
+            }
+
+            DataOutputStream dos = new DataOutputStream(baos);
+            dos.writeShort(keyframes.size());
+            for (Keyframe kf : keyframes) {
+                int index = kf.getIndex();
+                boolean inline = index < 0 || index >= WAVE_COUNT
+                        || !sameSamples(kf.getSamples(), waves[index]);
+
+                dos.writeByte(index);
+                int flags = inline ? FLAG_INLINE_SAMPLES : 0;
+                flags |= kf.getPhaseMode().ordinal() << PHASE_MODE_SHIFT;
+                dos.writeByte(flags);
+                dos.writeByte(kf.getTransformMode().ordinal());
+                dos.writeShort(kf.getTranslateOffset());
+                dos.writeUTF(kf.getCurveFunction() == null ? "Linear" : kf.getCurveFunction());
+
+                dos.writeByte(kf.getHarmonics().size());
+                for (Harmonic h : kf.getHarmonics()) {
+                    dos.writeByte(h.getNumber());
+                    dos.writeByte(h.getType().ordinal());
+                    dos.writeDouble(h.getAmplitude());
+                }
+
+                if (inline) {
+                    packWave(kf.getSamples(), packed, 0);
+                    dos.write(packed);
+                }
+            }
+            dos.flush();
+            return baos.toByteArray();
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException("Failed to encode wavetable", e);
+        }
+    }
+
+    /**
+     * Check whether a blob uses the original raw int format.
+     */
+    public static boolean isLegacy(byte[] data) {
+        return data != null && data.length == LEGACY_SIZE && !hasMagic(data);
+    }
+
+    /**
+     * Check whether a blob can be decoded by this codec.
+     */
+    public static boolean isReadable(byte[] data) {
+        if (data == null) return false;
+        if (isLegacy(data)) return true;
+        return hasMagic(data)
+                && data.length >= KEYFRAME_SECTION + 2
+                && (data[3] & 0xFF) <= FORMAT_VERSION;
+    }
+
+    /**
+     * Decode a single wave without touching the rest of the blob.
+     *
+     * @param data encoded blob
+     * @param waveIndex wave to decode (0-63)
+     * @param target 128-sample destination
+     */
+    public static void decodeWave(byte[] data, int waveIndex, int[] target) {
+        if (isLegacy(data)) {
+            int pos = waveIndex * SAMPLES_PER_WAVE * 4;
+            for (int s = 0; s < SAMPLES_PER_WAVE; s++, pos += 4) {
+                target[s] = (data[pos] << 24)
+                        | ((data[pos + 1] & 0xFF) << 16)
+                        | ((data[pos + 2] & 0xFF) << 8)
+                        | (data[pos + 3] & 0xFF);
+            }
+            return;
+        }
+        checkVersion(data);
+        unpackWave(data, HEADER_SIZE + waveIndex * PACKED_WAVE_SIZE, target);
+    }
+
+    /**
+     * Decode the keyframe graph. Legacy blobs carry no keyframes.
+     *
+     * @param data encoded blob
+     * @return decoded keyframes in stored order
+     */
+    public static List<Keyframe> decodeKeyframes(byte[] data) {
+        List<Keyframe> result = new ArrayList<>();
+        if (isLegacy(data)) return result;
+        checkVersion(data);
+
+        try {
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(
+                    data, KEYFRAME_SECTION, data.length - KEYFRAME_SECTION));
+            int count = dis.readUnsignedShort();
+            Keyframe.TransformMode[] modes = Keyframe.TransformMode.values();
+            Keyframe.PhaseMode[] phaseModes = Keyframe.PhaseMode.values();
+            Harmonic.WaveType[] types = Harmonic.WaveType.values();
+            byte[] packed = new byte[PACKED_WAVE_SIZE];
+
+            for (int k = 0; k < count; k++) {
+                Keyframe kf = new Keyframe(dis.readUnsignedByte());
+                int flags = dis.readUnsignedByte();
+                kf.setTransformMode(modes[dis.readUnsignedByte()]);
+                kf.setPhaseMode(phaseModes[(flags >> PHASE_MODE_SHIFT) & PHASE_MODE_MASK]);
+                kf.setTranslateOffset(dis.readShort());
+                kf.setCurveFunction(dis.readUTF());
+
+                int harmonicCount = dis.readUnsignedByte();
+                for (int h = 0; h < harmonicCount; h++) {
+                    int number = dis.readUnsignedByte();
+                    Harmonic.WaveType type = types[dis.readUnsignedByte()];
+                    kf.getHarmonics().add(new Harmonic(number, type, dis.readDouble()));
+                }
+
+                if ((flags & FLAG_INLINE_SAMPLES) != 0) {
+                    dis.readFully(packed);
+                    unpackWave(packed, 0, kf.getSamples());
+                } else {
+                    decodeWave(data, kf.getIndex(), kf.getSamples());
+                }
+                result.add(kf);
+            }
+        } catch (IOException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Corrupt wavetable keyframe data", e);
+        }
+        return result;
+    }
+
+    /**
+     * Pack 128 samples as 21-bit two's complement, MSB first.
+     */
+    static void packWave(int[] samples, byte[] out, int offset) {
+        long acc = 0;
+        int bits = 0;
+        int pos = offset;
+        for (int s = 0; s < SAMPLES_PER_WAVE; s++) {
+            int value = Math.clamp(samples[s], SAMPLE_MIN, SAMPLE_MAX);
+            acc = (acc << BITS_PER_SAMPLE) | (value & SAMPLE_MASK);
+            bits += BITS_PER_SAMPLE;
+            while (bits >= 8) {
+                bits -= 8;
+                out[pos++] = (byte) (acc >>> bits);
+            }
+        }
+    }
+
+    /**
+     * Unpack 128 21-bit samples, sign-extending to int.
+     */
+    static void unpackWave(byte[] in, int offset, int[] samples) {
+        long acc = 0;
+        int bits = 0;
+        int pos = offset;
+        for (int s = 0; s < SAMPLES_PER_WAVE; s++) {
+            while (bits < BITS_PER_SAMPLE) {
+                acc = (acc << 8) | (in[pos++] & 0xFF);
+                bits += 8;
+            }
+            bits -= BITS_PER_SAMPLE;
+            int raw = (int) (acc >>> bits) & SAMPLE_MASK;
+            samples[s] = (raw << (32 - BITS_PER_SAMPLE)) >> (32 - BITS_PER_SAMPLE);
+        }
+    }
+
+    private static boolean hasMagic(byte[] data) {
+        return data.length >= HEADER_SIZE
+                && data[0] == MAGIC[0] && data[1] == MAGIC[1] && data[2] == MAGIC[2];
+    }
+
+    private static void checkVersion(byte[] data) {
+        if (!hasMagic(data)) {
+            throw new IllegalArgumentException("Unknown wavetable data format");
+        }
+        int version = data[3] & 0xFF;
+        if (version > FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported wavetable format version: " + version);
+        }
+    }
+
+    private static boolean sameSamples(int[] a, int[] b) {
+        for (int s = 0; s < SAMPLES_PER_WAVE; s++) {
+            if (Math.clamp(a[s], SAMPLE_MIN, SAMPLE_MAX) != Math.clamp(b[s], SAMPLE_MIN, SAMPLE_MAX)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,136 @@
+package net.mikolas.lyra.model;
+
+/**
+ * Per-transform-mode kernels for bouncing one keyframe segment.
+ *
+ * <p>Each kernel fills the waves strictly between {@code start} and {@code end} from keyframe
+ * {@code a} towards keyframe {@code b}. Mode and per-wave parameters (easing, roll offset) are
+ * resolved once per wave, so the inner sample loops are plain, branch-free passes over
+ * {@code int[128]} arrays that the JIT can unroll and vectorize.
+ *
+ * <p>They are deliberately not written against the incubating Vector API: that module has to be
+ * added with {@code --add-modules} at compile time and on every launch, and the shaded jar is
+ * started with {@code java -jar}, whose manifest cannot add modules. The kernels are measured by
+ * {@code WavetableKernelsBenchmark} in the {@code benchmark} Maven profile.
+ */
+final class WavetableKernels {
+
+    private WavetableKernels() {
+    }
+
+    /** Dispatch to the kernel for {@code a}'s transform mode. */
+    static void interpolate(int[][] out, Keyframe a, Keyframe b, int start, int end) {
+        switch (a.getTransformMode()) {
+            case CONSTANT -> constant(out, a, start, end);
+            case CURVE -> curve(out, a, b, start, end);
+            case TRANSLATE -> translate(out, a, b, start, end);
+            case SPECTRAL -> spectral(out, a, b, start, end);
+            case SPECTRAL_MORPH -> spectralMorph(out, a, b, start, end);
+        }
+    }
+
+    static void constant(int[][] out, Keyframe a, int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            System.arraycopy(a.getSamples(), 0, out[i], 0, 128);
+        }
+    }
+
+    static void curve(int[][] out, Keyframe a, Keyframe b, int start, int end) {
+        int range = end - start;
+        String function = a.getCurveFunction();
+        for (int i = start + 1; i < end; i++) {
+            double p = ease(function, (double)(i - start) / range);
+            crossfade(out[i], a.getSamples(), b.getSamples(), p);
+        }
+    }
+
+    static void translate(int[][] out, Keyframe a, Keyframe b, int start, int end) {
+        int range = end - start;
+        for (int i = start + 1; i < end; i++) {
+            double ratio = (double)(i - start) / range;
+            int offset = (int)(a.getTranslateOffset() * ratio);
+            // Circular roll of b, then linear crossfade
+            crossfadeRolled(out[i], a.getSamples(), b.getSamples(), ratio, offset & 127);
+        }
+    }
+
+    static void spectral(int[][] out, Keyframe a, Keyframe b, int start, int end) {
+        int range = end - start;
+        for (int i = start + 1; i < end; i++) {
+            double ratio = (double)(i - start) / range;
+            // Additive synthesis: linearly interpolated base wave plus a's harmonics, fading
+            // out as we approach the next keyframe
+            crossfade(out[i], a.getSamples(), b.getSamples(), ratio);
+            for (Harmonic h : a.getHarmonics()) {
+                h.accumulate(out[i], 1 - ratio);
+            }
+        }
+    }
+
+    /**
+     * Interpolate FFT magnitudes from {@code a} to {@code b} (eased by {@code a}'s curve
+     * function) and inverse-transform each wave. Both keyframes' spectra come from their caches,
+     * so a segment costs one inverse FFT per wave. Only bins up to Nyquist are synthesized, so
+     * intermediate waves stay band-limited.
+     */
+    static void spectralMorph(int[][] out, Keyframe a, Keyframe b, int start, int end) {
+        WaveFft.Spectrum from = a.getSpectrum();
+        WaveFft.Spectrum to = b.getSpectrum();
+        Keyframe.PhaseMode phaseMode = a.getPhaseMode();
+        double[] re = new double[WaveFft.SIZE];
+        double[] im = new double[WaveFft.SIZE];
+        int range = end - start;
+        String function = a.getCurveFunction();
+        for (int i = start + 1; i < end; i++) {
+            double p = ease(function, (double)(i - start) / range);
+            for (int k = 0; k < WaveFft.BINS; k++) {
+                double magnitude = (1 - p) * from.magnitude()[k] + p * to.magnitude()[k];
+                double phase = switch (phaseMode) {
+                    case SOURCE -> from.phase()[k];
+                    case TARGET -> to.phase()[k];
+                    case INTERPOLATE -> from.phase()[k]
+                            + p * wrapPhase(to.phase()[k] - from.phase()[k]);
+                };
+                re[k] = magnitude * Math.cos(phase);
+                im[k] = magnitude * Math.sin(phase);
+            }
+            WaveFft.synthesize(re, im, out[i]);
+        }
+    }
+
+    /** Wrap a phase difference into [-pi, pi] so interpolation takes the shortest arc. */
+    static double wrapPhase(double delta) {
+        return delta - 2 * Math.PI * Math.rint(delta / (2 * Math.PI));
+    }
+
+    /** {@code out = (1 - p) * a + p * b}, truncated. */
+    static void crossfade(int[] out, int[] a, int[] b, double p) {
+        double q = 1 - p;
+        for (int s = 0; s < 128; s++) {
+            out[s] = (int)(q * a[s] + p * b[s]);
+        }
+    }
+
+    /** Like {@link #crossfade} with {@code b} rolled right by {@code roll} (0-127) samples. */
+    static void crossfadeRolled(int[] out, int[] a, int[] b, double p, int roll) {
+        double q = 1 - p;
+        // Two contiguous runs instead of a modulo per sample
+        for (int s = 0; s < roll; s++) {
+            out[s] = (int)(q * a[s] + p * b[s - roll + 128]);
+        }
+        for (int s = roll; s < 128; s++) {
+            out[s] = (int)(q * a[s] + p * b[s - roll]);
+        }
+    }
+
+    static double ease(String function, double t) {
+        return switch (function) {
+            case "InQuad" -> t * t;
+            case "OutQuad" -> t * (2 - t);
+            case "InOutQuad" -> t < 0.5 ? 2 * t * t : -1 + (4 - 2 * t) * t;
+            case "Sine" -> (1 - Math.cos(t * Math.PI)) / 2;
+            case "Exp" -> Math.pow(2, 10 * (t - 1));
+            default -> t; // Linear
+        };
+    }
+}
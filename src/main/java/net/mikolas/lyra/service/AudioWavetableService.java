@@ -0,0 +1,341 @@
+package net.mikolas.lyra.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import net.mikolas.lyra.model.WaveFft;
+
+/**
+ * Turns recordings into wavetables by extracting pitch-tracked single cycles.
+ *
+ * <p>Audio is streamed from any PCM WAV or AIFF file (8 to 32-bit integer or 32-bit float) and
+ * downmixed to mono. The period at each of the 64 analysis points is found with YIN; one cycle of
+ * that length is then taken apart into harmonics 1-63, rotated so that every wave starts at the
+ * same phase of its fundamental, and resynthesized at 128 samples. The result is band-limited and
+ * free of the phase jumps that slicing audio into fixed 128-sample chunks produces. Analysis
+ * points are independent, so they run in parallel.
+ */
+public class AudioWavetableService {
+
+  /** Waves in a table. */
+  public static final int WAVES = 64;
+
+  /** Lowest detectable fundamental, in Hz. */
+  static final double MIN_FREQUENCY = 30.0;
+  /** Highest detectable fundamental, in Hz. */
+  static final double MAX_FREQUENCY = 4000.0;
+  /** YIN dip threshold; higher accepts noisier signals as pitched. */
+  static final double YIN_THRESHOLD = 0.15;
+
+  private static final int SAMPLES_PER_WAVE = 128;
+  private static final int FULL_SCALE = 1048575;
+  /** Points per cycle for harmonic analysis; well above the 128 harmonics' Nyquist. */
+  private static final int CYCLE_POINTS = 512;
+  private static final int HARMONICS = 63;
+  private static final double[] COS = new double[CYCLE_POINTS];
+  private static final double[] SIN = new double[CYCLE_POINTS];
+
+  static {
+    for (int j = 0; j < CYCLE_POINTS; j++) {
+      COS[j] = Math.cos(2 * Math.PI * j / CYCLE_POINTS);
+      SIN[j] = Math.sin(2 * Math.PI * j / CYCLE_POINTS);
+    }
+  }
+
+  /**
+   * Mono audio, -1 to 1.
+   *
+   * @param samples downmixed samples
+   * @param sampleRate frames per second
+   */
+  public record AudioData(float[] samples, float sampleRate) {}
+
+  /**
+   * Extracted waves.
+   *
+   * @param waves 64 waves of 128 samples, normalized as a whole
+   * @param frequencies fundamental per wave in Hz, NaN where no pitch was found
+   * @param voiced number of waves with a detected pitch
+   */
+  public record Extraction(int[][] waves, double[] frequencies, int voiced) {
+    public String getSummary() {
+      if (voiced == 0) {
+        return "No pitch found; imported 128-sample slices";
+      }
+      double[] found = Arrays.stream(frequencies).filter(f -> !Double.isNaN(f)).sorted().toArray();
+      return String.format("Extracted %d cycles, %.1f-%.1f Hz", WAVES, found[0],
+          found[found.length - 1]);
+    }
+  }
+
+  /**
+   * Stream an audio file into mono samples.
+   *
+   * @param file WAV or AIFF file
+   * @return downmixed audio
+   * @throws UnsupportedAudioFileException if the file is not PCM audio this can read
+   * @throws IOException if reading fails
+   */
+  public AudioData load(File file) throws UnsupportedAudioFileException, IOException {
+    try (AudioInputStream in = AudioSystem.getAudioInputStream(file)) {
+      return read(in);
+    }
+  }
+
+  /**
+   * Read a PCM stream chunk by chunk, downmixing as it goes.
+   */
+  static AudioData read(AudioInputStream in) throws UnsupportedAudioFileException, IOException {
+    AudioFormat format = in.getFormat();
+    AudioFormat.Encoding encoding = format.getEncoding();
+    int bits = format.getSampleSizeInBits();
+    int bytesPerSample = (bits + 7) / 8;
+    int channels = format.getChannels();
+    int frameSize = format.getFrameSize();
+    boolean floating = AudioFormat.Encoding.PCM_FLOAT.equals(encoding);
+    boolean signed = AudioFormat.Encoding.PCM_SIGNED.equals(encoding);
+    if (!(floating || signed || AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding))
+        || bytesPerSample < 1 || bytesPerSample > 4 || (floating && bits != 32)
+        || channels < 1 || frameSize != bytesPerSample * channels) {
+      throw new UnsupportedAudioFileException("Unsupported audio format: " + format);
+    }
+    boolean bigEndian = format.isBigEndian();
+    float scale = 1f / ((1L << (bits - 1)) * (float) channels);
+
+    long frameLength = in.getFrameLength();
+    float[] mono = new float[frameLength > 0 && frameLength < Integer.MAX_VALUE
+        ? (int) frameLength : 1 << 16];
+    byte[] buffer = new byte[frameSize * 8192];
+    int count = 0;
+    int read;
+    while ((read = in.readNBytes(buffer, 0, buffer.length)) > 0) {
+      int frames = read / frameSize;
+      if (count + frames > mono.length) {
+        mono = Arrays.copyOf(mono, Math.max(mono.length * 2, count + frames));
+      }
+      for (int f = 0, pos = 0; f < frames; f++) {
+        float sum = 0;
+        for (int c = 0; c < channels; c++, pos += bytesPerSample) {
+          int raw = 0;
+          for (int b = 0; b < bytesPerSample; b++) {
+            int index = bigEndian ? pos + b : pos + bytesPerSample - 1 - b;
+            raw = (raw << 8) | (buffer[index] & 0xFF);
+          }
+          if (floating) {
+            sum += Float.intBitsToFloat(raw) / channels;
+          } else if (signed) {
+            sum += ((raw << (32 - bits)) >> (32 - bits)) * scale;
+          } else {
+            sum += (raw - (1 << (bits - 1))) * scale;
+          }
+        }
+        mono[count++] = sum;
+      }
+    }
+    return new AudioData(count == mono.length ? mono : Arrays.copyOf(mono, count),
+        format.getSampleRate());
+  }
+
+  /**
+   * Extract 64 single cycles evenly spread over a range of the audio.
+   *
+   * @param audio source audio
+   * @param from first frame of the range
+   * @param to end of the range (exclusive)
+   * @return waves and their detected pitch
+   */
+  public Extraction extract(AudioData audio, int from, int to) {
+    float[] x = audio.samples();
+    int minPeriod = (int) Math.floor(audio.sampleRate() / MAX_FREQUENCY);
+    int maxPeriod = (int) Math.ceil(audio.sampleRate() / MIN_FREQUENCY);
+    from = Math.clamp(from, 0, x.length);
+    to = Math.clamp(to, from, x.length);
+    // Each analysis point reads 2 * maxPeriod samples
+    int span = Math.max(0, to - from - 2 * maxPeriod);
+
+    int[] positions = new int[WAVES];
+    double[] periods = new double[WAVES];
+    for (int i = 0; i < WAVES; i++) {
+      positions[i] = from + (int) ((long) span * i / (WAVES - 1));
+    }
+    IntStream.range(0, WAVES).parallel().forEach(
+        i -> periods[i] = detectPeriod(x, positions[i], minPeriod, maxPeriod));
+
+    double[] frequencies = new double[WAVES];
+    int voiced = 0;
+    for (int i = 0; i < WAVES; i++) {
+      frequencies[i] = audio.sampleRate() / periods[i];
+      if (!Double.isNaN(periods[i])) voiced++;
+    }
+    fillUnvoiced(periods, voiced);
+
+    int[][] waves = new int[WAVES][SAMPLES_PER_WAVE];
+    if (voiced == 0) {
+      // Nothing pitched: consecutive slices, as before pitch tracking
+      for (int i = 0; i < WAVES; i++) {
+        for (int s = 0; s < SAMPLES_PER_WAVE; s++) {
+          int idx = from + i * SAMPLES_PER_WAVE + s;
+          waves[i][s] = idx < to ? Math.round(x[idx] * FULL_SCALE) : 0;
+        }
+      }
+    } else {
+      IntStream.range(0, WAVES).parallel().forEach(
+          i -> extractCycle(x, positions[i], periods[i], waves[i]));
+    }
+    normalize(waves);
+    return new Extraction(waves, frequencies, voiced);
+  }
+
+  /**
+   * Extract the single cycle starting at a position.
+   *
+   * @param audio source audio
+   * @param position frame to analyze
+   * @param out 128-sample destination
+   * @return detected fundamental in Hz, or NaN if the audio there is unpitched (out untouched)
+   */
+  public double extractCycle(AudioData audio, int position, int[] out) {
+    float[] x = audio.samples();
+    int minPeriod = (int) Math.floor(audio.sampleRate() / MAX_FREQUENCY);
+    int maxPeriod = (int) Math.ceil(audio.sampleRate() / MIN_FREQUENCY);
+    double period = detectPeriod(x, position, minPeriod, maxPeriod);
+    if (Double.isNaN(period)) return Double.NaN;
+    extractCycle(x, Math.clamp(position, 0, x.length), period, out);
+    int[][] wave = {out};
+    normalize(wave);
+    return audio.sampleRate() / period;
+  }
+
+  /**
+   * YIN pitch detection over {@code [start, start + 2 * maxPeriod)}.
+   *
+   * @return period in samples, interpolated between lags, or NaN if no lag dips below
+   *     {@link #YIN_THRESHOLD} (silence, noise, or too little audio)
+   */
+  static double detectPeriod(float[] x, int start, int minPeriod, int maxPeriod) {
+    int window = maxPeriod;
+    if (x.length < window + maxPeriod + 1) return Double.NaN;
+    start = Math.clamp(start, 0, x.length - window - maxPeriod - 1);
+
+    // Difference function, then cumulative mean normalized
+    double[] d = new double[maxPeriod + 2];
+    double running = 0;
+    d[0] = 1;
+    for (int tau = 1; tau <= maxPeriod + 1; tau++) {
+      double sum = 0;
+      for (int j = 0; j < window; j++) {
+        double delta = x[start + j] - x[start + j + tau];
+        sum += delta * delta;
+      }
+      running += sum;
+      d[tau] = running > 0 ? sum * tau / running : 1;
+    }
+
+    for (int tau = Math.max(2, minPeriod); tau <= maxPeriod; tau++) {
+      if (d[tau] < YIN_THRESHOLD) {
+        while (tau < maxPeriod && d[tau + 1] < d[tau]) {
+          tau++;
+        }
+        // Parabola through the dip and its neighbours
+        double a = d[tau - 1];
+        double b = d[tau];
+        double c = d[tau + 1];
+        double denominator = a - 2 * b + c;
+        double shift = denominator > 0 ? (a - c) / (2 * denominator) : 0;
+        return tau + Math.clamp(shift, -0.5, 0.5);
+      }
+    }
+    return Double.NaN;
+  }
+
+  /** Give unvoiced points the period of the nearest voiced one. */
+  private static void fillUnvoiced(double[] periods, int voiced) {
+    if (voiced == 0 || voiced == periods.length) return;
+    double[] source = periods.clone();
+    for (int i = 0; i < periods.length; i++) {
+      if (!Double.isNaN(source[i])) continue;
+      for (int distance = 1; distance < periods.length; distance++) {
+        if (i - distance >= 0 && !Double.isNaN(source[i - distance])) {
+          periods[i] = source[i - distance];
+          break;
+        }
+        if (i + distance < periods.length && !Double.isNaN(source[i + distance])) {
+          periods[i] = source[i + distance];
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Analyze one cycle into harmonics 1-63, rotate it so the fundamental starts at sine phase,
+   * and resynthesize it at 128 samples.
+   */
+  private static void extractCycle(float[] x, int start, double period, int[] out) {
+    double[] cycle = new double[CYCLE_POINTS];
+    double step = period / CYCLE_POINTS;
+    for (int j = 0; j < CYCLE_POINTS; j++) {
+      cycle[j] = interpolate(x, start + j * step);
+    }
+
+    double[] re = new double[SAMPLES_PER_WAVE];
+    double[] im = new double[SAMPLES_PER_WAVE];
+    // Scaled so the bins match a 128-point FFT of a full-scale wave
+    double scale = (double) FULL_SCALE * SAMPLES_PER_WAVE / CYCLE_POINTS;
+    for (int k = 1; k <= HARMONICS; k++) {
+      double sumRe = 0;
+      double sumIm = 0;
+      for (int j = 0, phase = 0; j < CYCLE_POINTS; j++, phase = (phase + k) & (CYCLE_POINTS - 1)) {
+        sumRe += cycle[j] * COS[phase];
+        sumIm -= cycle[j] * SIN[phase];
+      }
+      re[k] = sumRe * scale;
+      im[k] = sumIm * scale;
+    }
+
+    // Shifting by r radians of the fundamental turns harmonic k by k * r
+    double rotation = -Math.PI / 2 - Math.atan2(im[1], re[1]);
+    for (int k = 1; k <= HARMONICS; k++) {
+      double cos = Math.cos(k * rotation);
+      double sin = Math.sin(k * rotation);
+      double r = re[k] * cos - im[k] * sin;
+      im[k] = re[k] * sin + im[k] * cos;
+      re[k] = r;
+    }
+    WaveFft.synthesize(re, im, out);
+  }
+
+  /** Catmull-Rom interpolation at a fractional position, clamped to the audio. */
+  private static double interpolate(float[] x, double position) {
+    int i = (int) Math.floor(position);
+    double t = position - i;
+    double p0 = x[Math.clamp(i - 1, 0, x.length - 1)];
+    double p1 = x[Math.clamp(i, 0, x.length - 1)];
+    double p2 = x[Math.clamp(i + 1, 0, x.length - 1)];
+    double p3 = x[Math.clamp(i + 2, 0, x.length - 1)];
+    return p1 + 0.5 * t * (p2 - p0 + t * (2 * p0 - 5 * p1 + 4 * p2 - p3
+        + t * (3 * (p1 - p2) + p3 - p0)));
+  }
+
+  /** Scale all waves by one factor so the loudest sample is full scale. */
+  private static void normalize(int[][] waves) {
+    int peak = 0;
+    for (int[] wave : waves) {
+      for (int sample : wave) {
+        peak = Math.max(peak, Math.abs(sample));
+      }
+    }
+    if (peak == 0) return;
+    double factor = (double) FULL_SCALE / peak;
+    for (int[] wave : waves) {
+      for (int s = 0; s < wave.length; s++) {
+        wave[s] = (int) Math.round(wave[s] * factor);
+      }
+    }
+  }
+}
@@ -0,0 +1,248 @@
+package net.mikolas.lyra.service;
+
+import com.j256.ormlite.stmt.UpdateBuilder;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import net.mikolas.lyra.db.Database;
+import net.mikolas.lyra.model.ParameterMetadata;
+import net.mikolas.lyra.model.ParameterMetadata.ParamDef;
+import net.mikolas.lyra.model.Sound;
+
+/**
+ * Service for editing one or more parameters across many sounds at once.
+ *
+ * <p>New parameter blobs are computed in parallel without touching the sounds, written in a single
+ * batch transaction (together with their revision history), and only then applied to the
+ * in-memory sounds and the search index, one changed parameter at a time.
+ *
+ * <p>Usage:
+ *
+ * <pre>{@code
+ * List<ParamEdit> edits =
+ *     ParamEdit.parseAll("arpeggiatorMode = off; effect2Type = off").orElseThrow();
+ * BulkEditResult result = new BulkEditService(db, index).apply(sounds, edits);
+ * }</pre>
+ */
+public class BulkEditService {
+
+  /** How a {@link ParamEdit} changes a value. */
+  public enum Operation {
+    /** Replace the value. */
+    SET,
+    /** Add to the value. */
+    OFFSET,
+    /** Multiply the value. */
+    SCALE
+  }
+
+  private final Database database;
+  private final SoundIndexService index;
+  private final SoundHistoryService history;
+
+  public BulkEditService(Database database) {
+    this(database, null);
+  }
+
+  public BulkEditService(Database database, SoundIndexService index) {
+    this.database = database;
+    this.index = index;
+    this.history = new SoundHistoryService(database);
+  }
+
+  /**
+   * A single parameter edit.
+   *
+   * <p>Expression syntax is {@code <param> = <value>}, {@code <param> += <n>},
+   * {@code <param> -= <n>} or {@code <param> *= <factor>}, where {@code param} is a parameter ID
+   * or attribute name and a {@code =} value may be a display value (e.g. {@code off}). Results are
+   * rounded and clamped to the parameter's range.
+   *
+   * @param paramId parameter ID
+   * @param operation operation
+   * @param amount value, offset or factor
+   */
+  public record ParamEdit(int paramId, Operation operation, double amount) {
+
+    private static final Pattern SYNTAX =
+        Pattern.compile("\\s*([A-Za-z0-9_]+)\\s*(\\+=|-=|\\*=|=)\\s*(.+?)\\s*");
+
+    /**
+     * Apply the edit to a raw value.
+     *
+     * @param value current raw value
+     * @return new raw value, clamped to the parameter's range
+     */
+    public int apply(int value) {
+      double result = switch (operation) {
+        case SET -> amount;
+        case OFFSET -> value + amount;
+        case SCALE -> value * amount;
+      };
+      ParamDef def = ParameterMetadata.get(paramId);
+      int min = def != null ? def.min() : 0;
+      int max = def != null ? def.max() : 127;
+      return Math.clamp(Math.round(result), min, max);
+    }
+
+    /**
+     * Parse one edit expression.
+     *
+     * @param expression edit expression
+     * @return parsed edit, or empty if the syntax, parameter or value is unknown (name characters
+     *     cannot be bulk-edited)
+     */
+    public static Optional<ParamEdit> parse(String expression) {
+      if (expression == null) return Optional.empty();
+      Matcher m = SYNTAX.matcher(expression);
+      if (!m.matches()) return Optional.empty();
+
+      Integer paramId = ParamCondition.resolveParam(m.group(1));
+      if (paramId == null) return Optional.empty();
+      ParamDef def = ParameterMetadata.get(paramId);
+      if (def != null && "Name Char".equals(def.family())) return Optional.empty();
+
+      String value = m.group(3);
+      if (m.group(2).equals("=")) {
+        Integer raw = ParamCondition.resolveValue(paramId, value);
+        return raw == null
+            ? Optional.empty() : Optional.of(new ParamEdit(paramId, Operation.SET, raw));
+      }
+      double amount;
+      try {
+        amount = Double.parseDouble(value);
+      } catch (NumberFormatException e) {
+        return Optional.empty();
+      }
+      return Optional.of(switch (m.group(2)) {
+        case "+=" -> new ParamEdit(paramId, Operation.OFFSET, amount);
+        case "-=" -> new ParamEdit(paramId, Operation.OFFSET, -amount);
+        default -> new ParamEdit(paramId, Operation.SCALE, amount);
+      });
+    }
+
+    /**
+     * Parse a {@code ;}-separated list of edit expressions.
+     *
+     * @param expressions edit expressions
+     * @return parsed edits, or empty if any expression is invalid
+     */
+    public static Optional<List<ParamEdit>> parseAll(String expressions) {
+      if (expressions == null || expressions.isBlank()) return Optional.empty();
+      List<ParamEdit> edits = new ArrayList<>();
+      for (String expression : expressions.split(";")) {
+        if (expression.isBlank()) continue;
+        Optional<ParamEdit> edit = parse(expression);
+        if (edit.isEmpty()) return Optional.empty();
+        edits.add(edit.get());
+      }
+      return edits.isEmpty() ? Optional.empty() : Optional.of(edits);
+    }
+  }
+
+  /**
+   * Result of a bulk edit.
+   *
+   * @param total sounds considered
+   * @param changed sounds whose parameters changed and were saved
+   */
+  public record BulkEditResult(int total, int changed) {
+    public String getSummary() {
+      return String.format("Changed %d of %d sounds", changed, total);
+    }
+  }
+
+  /**
+   * Apply edits to sounds and save them.
+   *
+   * <p>Sounds the edits leave unchanged are not written. If the transaction fails, neither the
+   * database (including a mapped parameter store) nor the in-memory sounds are modified.
+   *
+   * @param sounds saved sounds to edit
+   * @param edits edits, applied in order
+   * @return counts of considered and changed sounds
+   * @throws SQLException if the batch update fails
+   */
+  public BulkEditResult apply(List<Sound> sounds, List<ParamEdit> edits) throws SQLException {
+    byte[][] updated = new byte[sounds.size()][];
+    IntStream.range(0, sounds.size()).parallel().forEach(i -> {
+      Sound sound = sounds.get(i);
+      if (sound.getId() != null && sound.getParameters() != null) {
+        updated[i] = edit(sound.getParameters(), edits);
+      }
+    });
+
+    int changed = 0;
+    for (byte[] params : updated) {
+      if (params != null) changed++;
+    }
+    if (changed == 0) return new BulkEditResult(sounds.size(), 0);
+
+    database.sounds.callInTransaction(() -> {
+      for (int i = 0; i < updated.length; i++) {
+        if (updated[i] == null) continue;
+        Sound sound = sounds.get(i);
+        // Keep the pre-edit state restorable even if the sound had no history yet
+        history.record(sound);
+
+        Sound saved = Sound.builder()
+            .id(sound.getId())
+            .name(sound.getName())
+            .parameters(updated[i])
+            .build();
+        saved.updateContentHash();
+        database.sounds.updateParameters(sound.getId(), updated[i]);
+        UpdateBuilder<Sound, Integer> update = database.sounds.updateBuilder();
+        update.updateColumnValue("category", updated[i][379] & 0xFF)
+            .updateColumnValue("contentHash", saved.getContentHash());
+        update.where().idEq(sound.getId());
+        update.update();
+        history.record(saved);
+      }
+      return null;
+    });
+
+    // Committed: mirror the changed parameters into the in-memory sounds and the index
+    for (int i = 0; i < updated.length; i++) {
+      if (updated[i] == null) continue;
+      Sound sound = sounds.get(i);
+      byte[] current = sound.getParameters();
+      for (ParamEdit edit : edits) {
+        int paramId = edit.paramId();
+        if (current[paramId] == updated[i][paramId]) continue;
+        int value = updated[i][paramId] & 0xFF;
+        current[paramId] = updated[i][paramId];
+        // Refreshes the sound's components, name/category properties and any open editor
+        sound.updateParameterSilently(paramId, value);
+        if (index != null) {
+          index.updateParameter(sound.getId(), paramId, value);
+        }
+      }
+      sound.updateContentHash();
+      if (index != null && edits.stream().anyMatch(edit -> edit.paramId() == 379)) {
+        index.indexSound(sound);
+      }
+    }
+    return new BulkEditResult(sounds.size(), changed);
+  }
+
+  /** Apply edits to a copy of the blob; returns null if nothing changed. */
+  static byte[] edit(byte[] params, List<ParamEdit> edits) {
+    byte[] result = null;
+    for (ParamEdit edit : edits) {
+      if (edit.paramId() >= params.length) continue;
+      byte[] source = result != null ? result : params;
+      int value = edit.apply(source[edit.paramId()] & 0xFF);
+      if ((byte) value == source[edit.paramId()]) continue;
+      if (result == null) {
+        result = params.clone();
+      }
+      result[edit.paramId()] = (byte) value;
+    }
+    return result;
+  }
+}
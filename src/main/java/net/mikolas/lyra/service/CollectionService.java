@@ -1,22 +1,33 @@
 package net.mikolas.lyra.service;
 
+import com.j256.ormlite.misc.TransactionManager;
+import net.mikolas.lyra.db.BatchSql;
 import net.mikolas.lyra.db.Database;
 import net.mikolas.lyra.model.Collection;
 import net.mikolas.lyra.model.Sound;
-import net.mikolas.lyra.model.SoundCollection;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Service for managing sound collections.
+ *
+ * <p>Bulk operations run as set-based SQL in a single transaction; membership is updated in
+ * the {@link SoundIndexService} rather than by refreshing each sound.
  */
 public class CollectionService {
 
   private final Database database;
+  private final SoundIndexService index;
 
   public CollectionService(Database database) {
+    this(database, null);
+  }
+
+  public CollectionService(Database database, SoundIndexService index) {
     this.database = database;
+    this.index = index;
   }
 
   /**
@@ -24,27 +35,40 @@ public class CollectionService {
    *
    * @param sounds sounds to add
    * @param collection target collection
-   * @return number of sounds added
+   * @return number of sounds added (sounds already in the collection are not counted)
    * @throws SQLException if database operation fails
    */
   public int addSoundsToCollection(List<Sound> sounds, Collection collection) throws SQLException {
-    int added = 0;
-    for (Sound sound : sounds) {
-      SoundCollection sc = SoundCollection.builder()
-          .sound(sound)
-          .collection(collection)
-          .build();
-      
-      try {
-        database.soundCollections.create(sc);
-        database.sounds.refresh(sound);
-        added++;
-      } catch (SQLException e) {
-        // Ignore duplicate constraint violations
-        if (!e.getMessage().contains("UNIQUE") && !e.getMessage().contains("unique")) {
-          throw e;
-        }
-      }
+    return addSoundIdsToCollection(sounds.stream().map(Sound::getId).toList(), collection);
+  }
+
+  /**
+   * Add sounds to a collection by ID using {@code INSERT OR IGNORE ... SELECT}.
+   *
+   * @param soundIds IDs of sounds to add
+   * @param collection target collection
+   * @return number of new memberships
+   * @throws SQLException if database operation fails
+   */
+  public int addSoundIdsToCollection(java.util.Collection<Integer> soundIds, Collection collection)
+      throws SQLException {
+    List<String> chunks = BatchSql.inLists(soundIds);
+    if (chunks.isEmpty()) return 0;
+
+    int added = TransactionManager.callInTransaction(
+        database.soundCollections.getConnectionSource(),
+        (Callable<Integer>) () -> {
+          int count = 0;
+          for (String ids : chunks) {
+            count += database.soundCollections.executeRaw(
+                "INSERT OR IGNORE INTO sound_collections (sound_id, collection_id) "
+                    + "SELECT id, " + collection.getId() + " FROM sounds WHERE id IN (" + ids + ")");
+          }
+          return count;
+        });
+
+    if (index != null) {
+      index.addToCollection(collection, soundIds.stream().filter(id -> id != null).toList());
     }
     return added;
   }
@@ -58,23 +82,36 @@ public class CollectionService {
    * @throws SQLException if database operation fails
    */
   public int removeSoundsFromCollection(List<Sound> sounds, Collection collection) throws SQLException {
-    int removed = 0;
-    for (Sound sound : sounds) {
-      List<SoundCollection> existing = database.soundCollections.queryBuilder()
-          .where()
-          .eq("sound_id", sound.getId())
-          .and()
-          .eq("collection_id", collection.getId())
-          .query();
-      
-      for (SoundCollection sc : existing) {
-        database.soundCollections.delete(sc);
-        removed++;
-      }
-      
-      if (!existing.isEmpty()) {
-        database.sounds.refresh(sound);
-      }
+    return removeSoundIdsFromCollection(sounds.stream().map(Sound::getId).toList(), collection);
+  }
+
+  /**
+   * Remove sounds from a collection by ID using {@code DELETE ... WHERE sound_id IN (...)}.
+   *
+   * @param soundIds IDs of sounds to remove
+   * @param collection target collection
+   * @return number of removed memberships
+   * @throws SQLException if database operation fails
+   */
+  public int removeSoundIdsFromCollection(java.util.Collection<Integer> soundIds,
+      Collection collection) throws SQLException {
+    List<String> chunks = BatchSql.inLists(soundIds);
+    if (chunks.isEmpty()) return 0;
+
+    int removed = TransactionManager.callInTransaction(
+        database.soundCollections.getConnectionSource(),
+        (Callable<Integer>) () -> {
+          int count = 0;
+          for (String ids : chunks) {
+            count += database.soundCollections.executeRaw(
+                "DELETE FROM sound_collections WHERE collection_id = " + collection.getId()
+                    + " AND sound_id IN (" + ids + ")");
+          }
+          return count;
+        });
+
+    if (index != null) {
+      index.removeFromCollection(collection, soundIds.stream().filter(id -> id != null).toList());
     }
     return removed;
   }
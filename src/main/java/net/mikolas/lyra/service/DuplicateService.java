@@ -0,0 +1,64 @@
+package net.mikolas.lyra.service;
+
+import com.j256.ormlite.dao.GenericRawResults;
+import net.mikolas.lyra.db.Database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Service for finding sounds with identical content.
+ *
+ * <p>Sounds are grouped by their indexed content hash (parameters minus name and category), so
+ * the report is a single aggregate query rather than a pairwise comparison.
+ */
+public class DuplicateService {
+
+  private final Database database;
+
+  public DuplicateService(Database database) {
+    this.database = database;
+  }
+
+  /**
+   * Group of sounds sharing the same content.
+   *
+   * @param contentHash shared content hash
+   * @param soundIds sound IDs, ascending (the first is the oldest copy)
+   */
+  public record DuplicateGroup(long contentHash, List<Integer> soundIds) {
+
+    /** Sound IDs other than the oldest copy. */
+    public List<Integer> copies() {
+      return soundIds.subList(1, soundIds.size());
+    }
+  }
+
+  /**
+   * Find all groups of two or more sounds with identical content.
+   *
+   * @return duplicate groups ordered by their oldest sound
+   * @throws SQLException if the query fails
+   */
+  public List<DuplicateGroup> findDuplicates() throws SQLException {
+    List<DuplicateGroup> groups = new ArrayList<>();
+    try (GenericRawResults<String[]> rows = database.sounds.queryRaw(
+        "SELECT contentHash, GROUP_CONCAT(id) FROM sounds WHERE contentHash IS NOT NULL "
+            + "GROUP BY contentHash HAVING COUNT(*) > 1 ORDER BY MIN(id)")) {
+      for (String[] row : rows) {
+        List<Integer> ids = Arrays.stream(row[1].split(","))
+            .map(Integer::valueOf)
+            .sorted()
+            .toList();
+        groups.add(new DuplicateGroup(Long.parseLong(row[0]), ids));
+      }
+    } catch (SQLException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new SQLException("Failed to find duplicates", e);
+    }
+    return groups;
+  }
+}
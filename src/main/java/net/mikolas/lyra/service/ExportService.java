@@ -1,68 +1,151 @@
 package net.mikolas.lyra.service;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.List;
-import javax.sound.midi.InvalidMidiDataException;
-import javax.sound.midi.MidiEvent;
-import javax.sound.midi.MidiSystem;
-import javax.sound.midi.Sequence;
-import javax.sound.midi.SysexMessage;
-import javax.sound.midi.Track;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import net.mikolas.lyra.midi.SysExGenerator;
 import net.mikolas.lyra.model.Sound;
 
 /**
  * Service for exporting sounds to MIDI (.mid) and SysEx (.syx) files.
+ *
+ * <p>Both formats are streamed: dumps are written straight into a reusable direct buffer that is
+ * flushed to a {@link FileChannel} whenever it fills, and the MIDI track is emitted event by
+ * event, with its length patched in at the end. Memory use is constant in the number of sounds,
+ * so an export can be fed from a lazy {@link Iterable} such as a database iterator.
+ *
+ * <p>One export runs at a time per instance.
  */
 public class ExportService {
 
   /**
-   * Export a list of sounds to a raw SysEx file.
+   * Default time between dumps in exported MIDI files, in milliseconds. A 392-byte dump takes
+   * about 125 ms on a 31250 baud MIDI cable; this matches the delay used when dumping to the
+   * Blofeld directly.
+   */
+  public static final int DEFAULT_SPACING_MILLIS = 150;
+
+  /** Ticks per quarter note of exported MIDI files. */
+  static final int PPQ = 480;
+  /** Tempo in microseconds per quarter note; with {@link #PPQ} one tick is one millisecond. */
+  static final int TEMPO = 480_000;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final byte[] MTHD = {'M', 'T', 'h', 'd'};
+  private static final byte[] MTRK = {'M', 'T', 'r', 'k'};
+  /** Offset of the track length field: MThd chunk (14 bytes) plus "MTrk". */
+  private static final int TRACK_LENGTH_OFFSET = 18;
+  /** Largest track event: 4-byte delta, F0, 2-byte length, dump without its F0. */
+  private static final int MAX_EVENT_SIZE = 4 + 1 + 2 + SysExGenerator.SOUND_DUMP_SIZE - 1;
+
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+  /**
+   * Export sounds to a raw SysEx file.
    *
    * @param sounds sounds to export
    * @param file target file
    * @throws IOException if writing fails
    */
-  public void exportToSyx(List<Sound> sounds, File file) throws IOException {
-    try (FileOutputStream fos = new FileOutputStream(file)) {
+  public synchronized void exportToSyx(Iterable<? extends Sound> sounds, File file)
+      throws IOException {
+    try (FileChannel channel = open(file)) {
+      buffer.clear();
       for (Sound sound : sounds) {
-        byte[] sysex = SysExGenerator.generateSoundDump(sound);
-        fos.write(sysex);
+        if (buffer.remaining() < SysExGenerator.SOUND_DUMP_SIZE) {
+          drain(channel);
+        }
+        SysExGenerator.writeSoundDump(sound, 0x7F, buffer);
       }
+      drain(channel);
     }
   }
 
   /**
-   * Export a list of sounds to a Standard MIDI File (.mid).
+   * Export sounds to a Standard MIDI File (.mid), {@link #DEFAULT_SPACING_MILLIS} apart.
    *
    * @param sounds sounds to export
    * @param file target file
    * @throws IOException if writing fails
-   * @throws InvalidMidiDataException if MIDI data is invalid
    */
-  public void exportToMid(List<Sound> sounds, File file)
-      throws IOException, InvalidMidiDataException {
-    // Type 0 sequence (single track)
-    Sequence sequence = new Sequence(Sequence.PPQ, 480);
-    Track track = sequence.createTrack();
-
-    long tick = 0;
-    for (Sound sound : sounds) {
-      byte[] sysex = SysExGenerator.generateSoundDump(sound);
-      SysexMessage msg = new SysexMessage();
-      // SysexMessage.setMessage(byte[] data, int length) 
-      // Note: javax.sound.midi SysexMessage expects the data WITHOUT the leading F0
-      // because it is added automatically, OR it expects the whole thing.
-      // Actually, setMessage(byte[] data, int length) takes the WHOLE message including F0 and F7.
-      msg.setMessage(sysex, sysex.length);
-      track.add(new MidiEvent(msg, tick));
-      
-      // Add a small delay between messages (e.g. 1 tick) to be safe
-      tick += 1;
+  public void exportToMid(Iterable<? extends Sound> sounds, File file) throws IOException {
+    exportToMid(sounds, file, DEFAULT_SPACING_MILLIS);
+  }
+
+  /**
+   * Export sounds to a type 0 Standard MIDI File (.mid).
+   *
+   * @param sounds sounds to export
+   * @param file target file
+   * @param spacingMillis time between consecutive dumps when the file is played back
+   * @throws IOException if writing fails or the track exceeds the SMF size limit
+   */
+  public synchronized void exportToMid(Iterable<? extends Sound> sounds, File file,
+      int spacingMillis) throws IOException {
+    if (spacingMillis < 0 || spacingMillis > 0x0FFFFFFF) {
+      throw new IllegalArgumentException("Invalid spacing: " + spacingMillis);
     }
+    try (FileChannel channel = open(file)) {
+      buffer.clear();
+      // Header chunk: format 0, one track
+      buffer.put(MTHD).putInt(6).putShort((short) 0).putShort((short) 1).putShort((short) PPQ);
+      buffer.put(MTRK).putInt(0); // Length patched below
+
+      // Tempo meta event so ticks are milliseconds
+      buffer.put((byte) 0).put((byte) 0xFF).put((byte) 0x51).put((byte) 3)
+          .put((byte) (TEMPO >> 16)).put((byte) (TEMPO >> 8)).put((byte) TEMPO);
+
+      boolean first = true;
+      for (Sound sound : sounds) {
+        if (buffer.remaining() < MAX_EVENT_SIZE) {
+          drain(channel);
+        }
+        putVarInt(first ? 0 : spacingMillis);
+        first = false;
+        // SMF sysex event is F0 <length> <message without F0>. The dump is written two bytes
+        // ahead so its own F0 lands on the second length byte, which then overwrites it.
+        int start = buffer.position();
+        buffer.position(start + 2);
+        SysExGenerator.writeSoundDump(sound, 0x7F, buffer);
+        buffer.put(start, (byte) 0xF0);
+        buffer.put(start + 1, (byte) (0x80 | ((SysExGenerator.SOUND_DUMP_SIZE - 1) >> 7)));
+        buffer.put(start + 2, (byte) ((SysExGenerator.SOUND_DUMP_SIZE - 1) & 0x7F));
+      }
+
+      // End of track
+      buffer.put((byte) 0).put((byte) 0xFF).put((byte) 0x2F).put((byte) 0);
+      drain(channel);
+
+      long trackLength = channel.size() - TRACK_LENGTH_OFFSET - 4;
+      if (trackLength > 0xFFFFFFFFL) {
+        throw new IOException("Too many sounds for one MIDI file");
+      }
+      buffer.putInt((int) trackLength).flip();
+      channel.write(buffer, TRACK_LENGTH_OFFSET);
+    }
+  }
+
+  private static FileChannel open(File file) throws IOException {
+    return FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  /** Write the buffer's contents to the channel and clear it. */
+  private void drain(FileChannel channel) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
 
-    MidiSystem.write(sequence, 0, file);
+  /** Write an SMF variable-length quantity. */
+  private void putVarInt(int value) {
+    if (value >= 1 << 21) buffer.put((byte) (0x80 | (value >> 21)));
+    if (value >= 1 << 14) buffer.put((byte) (0x80 | ((value >> 14) & 0x7F)));
+    if (value >= 1 << 7) buffer.put((byte) (0x80 | ((value >> 7) & 0x7F)));
+    buffer.put((byte) (value & 0x7F));
   }
 }
@@ -27,10 +27,7 @@ public class HarmonicsService {
     
     // Add each harmonic
     for (Harmonic harmonic : harmonics) {
-      int[] harmonicWave = harmonic.generateWave();
-      for (int i = 0; i < samples.length; i++) {
-        result[i] = Math.clamp(result[i] + harmonicWave[i], -1048576, 1048575);
-      }
+      harmonic.accumulate(result, 1.0);
     }
     
     return result;
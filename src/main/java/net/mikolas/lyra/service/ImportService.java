@@ -1,29 +1,59 @@
 package net.mikolas.lyra.service;
 
-import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.dao.GenericRawResults;
 import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.Map;
 import javax.sound.midi.InvalidMidiDataException;
 import net.mikolas.lyra.db.Database;
 import net.mikolas.lyra.midi.MidiFileReader;
 import net.mikolas.lyra.midi.SysExParser;
 import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.model.Tag;
 
 /**
  * Service for importing sounds from MIDI files.
  *
- * <p>Reads .mid/.syx files, extracts sound dumps, and saves to database.
+ * <p>Reads .mid/.syx files, extracts sound dumps, and saves to database. Incoming sounds are
+ * matched against the library by content hash (parameters minus name and category), and
+ * duplicates are handled according to the {@link DuplicatePolicy}; by default they are imported
+ * like any other sound and only reported. A sound imported into an
+ * occupied bank/program slot overwrites that slot's sound, whose previous parameters are kept in
+ * its revision history.
  */
 public class ImportService {
 
+  /** Name of the tag applied to duplicates imported with {@link DuplicatePolicy#FLAG}. */
+  public static final String DUPLICATE_TAG = "Duplicate";
+
+  /** What to do with an incoming sound whose content already exists in the library. */
+  public enum DuplicatePolicy {
+    /** Import it like any other sound; the duplicate is only counted in the result. */
+    IMPORT,
+    /** Do not import it. */
+    SKIP,
+    /** Do not import it; report the existing sound instead so callers can point at it. */
+    LINK,
+    /** Import it anyway and tag it with {@link #DUPLICATE_TAG}. */
+    FLAG
+  }
+
   private final Database database;
+  private final DuplicatePolicy duplicatePolicy;
+  private final SoundHistoryService history;
 
   public ImportService(Database database) {
+    this(database, DuplicatePolicy.IMPORT);
+  }
+
+  public ImportService(Database database, DuplicatePolicy duplicatePolicy) {
     this.database = database;
+    this.duplicatePolicy = duplicatePolicy;
+    this.history = new SoundHistoryService(database);
   }
 
   /**
@@ -36,40 +66,85 @@ public class ImportService {
    */
   public ImportResult importFromFile(File file) throws IOException, InvalidMidiDataException {
     List<byte[]> sysexMessages = MidiFileReader.readSysExMessages(file);
+    List<Sound> parsed = new ArrayList<>(sysexMessages.size());
+    for (byte[] sysex : sysexMessages) {
+      parsed.add(SysExParser.parseSoundDump(sysex));
+    }
+    return importSounds(parsed);
+  }
 
+  /**
+   * Import parsed sounds.
+   *
+   * @param parsed sounds to import (null entries count as invalid messages)
+   * @return import result with counts
+   */
+  public ImportResult importSounds(List<Sound> parsed) {
     int total = 0;
     int imported = 0;
     int skipped = 0;
     List<String> errors = new ArrayList<>();
+    List<Integer> duplicateOf = new ArrayList<>();
+    List<Integer> flagged = new ArrayList<>();
 
-    for (byte[] sysex : sysexMessages) {
+    Map<Long, Integer> known;
+    try {
+      known = loadContentHashes();
+    } catch (SQLException e) {
+      errors.add("Failed to read library hashes: " + e.getMessage());
+      return new ImportResult(parsed.size(), 0, parsed.size(), 0, List.of(), errors);
+    }
+
+    for (Sound sound : parsed) {
       total++;
-      final Sound sound = SysExParser.parseSoundDump(sysex);
 
-      if (sound == null) {
+      if (sound == null || sound.getParameters() == null) {
         skipped++;
         errors.add("Invalid SysEx message at index " + total);
         continue;
       }
 
+      long hash = sound.updateContentHash();
       try {
-        TransactionManager.callInTransaction(database.sounds.getConnectionSource(), 
-            (Callable<Void>) () -> {
-              if (sound.getBank() != null && sound.getProgram() != null) {
-                Sound existing = database.sounds.queryBuilder()
-                    .where()
-                    .eq("bank", sound.getBank())
-                    .and()
-                    .eq("program", sound.getProgram())
-                    .queryForFirst();
-                
-                if (existing != null) {
-                  database.sounds.delete(existing);
-                }
-              }
-              database.sounds.create(sound);
-              return null;
-            });
+        Integer existingId = findDuplicate(known, hash, sound);
+        if (existingId != null) {
+          duplicateOf.add(existingId);
+          if (duplicatePolicy == DuplicatePolicy.SKIP
+              || duplicatePolicy == DuplicatePolicy.LINK) {
+            skipped++;
+            continue;
+          }
+        }
+
+        database.sounds.callInTransaction(() -> {
+          Sound existing = null;
+          if (sound.getBank() != null && sound.getProgram() != null) {
+            existing = database.sounds.queryBuilder()
+                .where()
+                .eq("bank", sound.getBank())
+                .and()
+                .eq("program", sound.getProgram())
+                .queryForFirst();
+          }
+
+          if (existing != null) {
+            // Overwrite the slot in place so its history, tags and collections survive
+            history.record(existing);
+            if (existing.getContentHash() != null) {
+              known.remove(existing.getContentHash(), existing.getId());
+            }
+            sound.setId(existing.getId());
+            database.sounds.update(sound);
+          } else {
+            database.sounds.create(sound);
+          }
+          history.record(sound);
+          return null;
+        });
+        known.putIfAbsent(hash, sound.getId());
+        if (existingId != null && duplicatePolicy == DuplicatePolicy.FLAG) {
+          flagged.add(sound.getId());
+        }
         imported++;
       } catch (SQLException e) {
         skipped++;
@@ -77,18 +152,71 @@ public class ImportService {
       }
     }
 
-    return new ImportResult(total, imported, skipped, errors);
+    if (!flagged.isEmpty()) {
+      try {
+        new TagService(database).addTagToSoundIds(flagged, duplicateTag());
+      } catch (SQLException e) {
+        errors.add("Failed to flag duplicates: " + e.getMessage());
+      }
+    }
+
+    return new ImportResult(total, imported, skipped, duplicateOf.size(), duplicateOf, errors);
+  }
+
+  private Map<Long, Integer> loadContentHashes() throws SQLException {
+    Map<Long, Integer> hashes = new HashMap<>();
+    try (GenericRawResults<String[]> rows = database.sounds.queryRaw(
+        "SELECT contentHash, MIN(id) FROM sounds WHERE contentHash IS NOT NULL GROUP BY contentHash")) {
+      for (String[] row : rows) {
+        hashes.put(Long.parseLong(row[0]), Integer.parseInt(row[1]));
+      }
+    } catch (SQLException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new SQLException("Failed to read content hashes", e);
+    }
+    return hashes;
   }
 
-  /** Result of an import operation. */
-  public record ImportResult(int total, int imported, int skipped, List<String> errors) {
+  private Integer findDuplicate(Map<Long, Integer> known, long hash, Sound sound)
+      throws SQLException {
+    Integer id = known.get(hash);
+    if (id == null) return null;
+    // Guard against hash collisions with a byte comparison of the one candidate
+    Sound candidate = database.sounds.queryForId(id);
+    return candidate != null && Sound.sameContent(candidate.getParameters(), sound.getParameters())
+        ? id : null;
+  }
+
+  private Tag duplicateTag() throws SQLException {
+    Tag tag = database.tags.queryBuilder().where().eq("name", DUPLICATE_TAG).queryForFirst();
+    if (tag == null) {
+      tag = Tag.builder().name(DUPLICATE_TAG).build();
+      database.tags.create(tag);
+    }
+    return tag;
+  }
+
+  /**
+   * Result of an import operation.
+   *
+   * @param total sound messages found
+   * @param imported sounds saved
+   * @param skipped sounds not saved (invalid, failed, or skipped/linked duplicates)
+   * @param duplicates incoming sounds whose content already existed
+   * @param duplicateOf IDs of the existing sounds those duplicates matched
+   * @param errors error messages
+   */
+  public record ImportResult(int total, int imported, int skipped, int duplicates,
+      List<Integer> duplicateOf, List<String> errors) {
     public boolean hasErrors() {
       return !errors.isEmpty();
     }
 
     public String getSummary() {
-      return String.format(
+      String summary = String.format(
           "Imported %d of %d sounds (%d skipped)", imported, total, skipped);
+      return duplicates > 0 ? summary + String.format(", %d duplicates", duplicates) : summary;
     }
   }
 }
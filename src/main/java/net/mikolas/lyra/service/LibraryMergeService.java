@@ -0,0 +1,355 @@
+package net.mikolas.lyra.service;
+
+import com.j256.ormlite.dao.GenericRawResults;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import net.mikolas.lyra.db.BatchSql;
+import net.mikolas.lyra.db.Database;
+import net.mikolas.lyra.model.Collection;
+import net.mikolas.lyra.model.MultiPatch;
+import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.model.Tag;
+import net.mikolas.lyra.model.Wavetable;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Service for merging another Lyra library into this one.
+ *
+ * <p>Sounds are matched by content hash, wavetables and multis by a hash of their data, and tags
+ * and collections by name. The differences are computed in memory against the target's state
+ * before the merge, and only missing rows and missing tag/collection assignments are written, all
+ * in one transaction. Nothing in the target is overwritten: a sound whose content differs is added
+ * as a new sound, moved out of its bank/program slot if that slot is taken. Factory wavetables are
+ * not merged, since every library has them.
+ *
+ * <p>Merging is one-way; merging each library into the other syncs them.
+ */
+public class LibraryMergeService {
+
+  private final Database target;
+
+  public LibraryMergeService(Database target) {
+    this.target = target;
+  }
+
+  /**
+   * Result of a merge.
+   *
+   * @param soundsAdded sounds copied from the source
+   * @param soundsMatched source sounds whose content already existed
+   * @param tagsAdded tags created
+   * @param collectionsAdded collections created
+   * @param tagLinksAdded sound-tag assignments created
+   * @param collectionLinksAdded sound-collection assignments created
+   * @param wavetablesAdded user wavetables copied
+   * @param multisAdded multis copied
+   */
+  public record MergeResult(int soundsAdded, int soundsMatched, int tagsAdded,
+      int collectionsAdded, int tagLinksAdded, int collectionLinksAdded, int wavetablesAdded,
+      int multisAdded) {
+
+    public String getSummary() {
+      return String.format(
+          "Added %d sounds (%d already present), %d wavetables and %d multis.%n"
+              + "Added %d tags, %d collections, %d tag and %d collection assignments.",
+          soundsAdded, soundsMatched, wavetablesAdded, multisAdded, tagsAdded, collectionsAdded,
+          tagLinksAdded, collectionLinksAdded);
+    }
+  }
+
+  /**
+   * Merge a library file into the target without modifying the file.
+   *
+   * <p>Opening a {@link Database} migrates its schema and may move parameters into or out of a
+   * parameter store, so the source is first copied to a temporary directory (read-only, with
+   * {@code VACUUM INTO}) and only the copy is opened.
+   *
+   * @param sourceFile library database to read from; a {@code .params} parameter store next to
+   *     it is read too
+   * @return counts of what was added
+   * @throws SQLException if reading the source or writing the target fails (the target is left
+   *     unchanged)
+   * @throws IOException if the temporary copy cannot be made
+   */
+  public MergeResult merge(Path sourceFile) throws SQLException, IOException {
+    Path dir = Files.createTempDirectory("lyra-merge");
+    Path copy = dir.resolve("source.db");
+    Path copyParams = dir.resolve("source.db.params");
+    try {
+      SQLiteConfig config = new SQLiteConfig();
+      config.setReadOnly(true);
+      try (Connection connection =
+              DriverManager.getConnection("jdbc:sqlite:" + sourceFile, config.toProperties());
+          Statement statement = connection.createStatement()) {
+        statement.execute("VACUUM INTO '" + copy.toString().replace("'", "''") + "'");
+      }
+      Path params = Path.of(sourceFile + ".params");
+      if (Files.exists(params)) {
+        Files.copy(params, copyParams);
+      }
+      try (Database source = new Database(copy.toString(),
+          Files.exists(copyParams) ? copyParams : null)) {
+        return merge(source);
+      } catch (SQLException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new SQLException("Failed to read merge source", e);
+      }
+    } finally {
+      Files.deleteIfExists(copyParams);
+      Files.deleteIfExists(copy);
+      Files.deleteIfExists(dir);
+    }
+  }
+
+  /**
+   * Merge a source library into the target.
+   *
+   * @param source library to read from (not modified by the merge; use {@link #merge(Path)} for a
+   *     library file, since opening it as a {@link Database} migrates it)
+   * @return counts of what was added
+   * @throws SQLException if reading the source or writing the target fails (the target is left
+   *     unchanged)
+   */
+  public MergeResult merge(Database source) throws SQLException {
+    // Read everything from the source up front so the transaction only writes
+    List<Tag> sourceTags = source.tags.queryForAll();
+    List<Collection> sourceCollections = source.collections.queryForAll();
+    List<Sound> sourceSounds = source.sounds.queryForAll();
+    List<int[]> sourceTagLinks = readPairs(source, "SELECT sound_id, tag_id FROM sound_tags");
+    List<int[]> sourceCollectionLinks =
+        readPairs(source, "SELECT sound_id, collection_id FROM sound_collections");
+    List<Wavetable> sourceWavetables = source.wavetables.queryBuilder()
+        .where().eq("isFactory", false).query();
+    List<MultiPatch> sourceMultis = source.multis.queryForAll();
+
+    return target.sounds.callInTransaction(() -> {
+      Map<Integer, Integer> tagIds = new HashMap<>();
+      int tagsAdded = mergeTags(sourceTags, tagIds);
+      Map<Integer, Integer> collectionIds = new HashMap<>();
+      int collectionsAdded = mergeCollections(sourceCollections, collectionIds);
+
+      Map<Integer, Integer> soundIds = new HashMap<>();
+      int soundsAdded = mergeSounds(sourceSounds, soundIds);
+
+      int tagLinksAdded = insertLinks("sound_tags", "tag_id",
+          remap(sourceTagLinks, soundIds, tagIds));
+      int collectionLinksAdded = insertLinks("sound_collections", "collection_id",
+          remap(sourceCollectionLinks, soundIds, collectionIds));
+
+      int wavetablesAdded = mergeWavetables(sourceWavetables);
+      int multisAdded = mergeMultis(sourceMultis);
+
+      return new MergeResult(soundsAdded, sourceSounds.size() - soundsAdded, tagsAdded,
+          collectionsAdded, tagLinksAdded, collectionLinksAdded, wavetablesAdded,
+          multisAdded);
+    });
+  }
+
+  private int mergeTags(List<Tag> sourceTags, Map<Integer, Integer> tagIds) throws SQLException {
+    Map<String, Integer> byName = new HashMap<>();
+    for (Tag tag : target.tags.queryForAll()) {
+      byName.put(tag.getName(), tag.getId());
+    }
+    int added = 0;
+    for (Tag tag : sourceTags) {
+      Integer id = byName.get(tag.getName());
+      if (id == null) {
+        Tag copy = Tag.builder().name(tag.getName()).color(tag.getColor()).build();
+        target.tags.create(copy);
+        id = copy.getId();
+        byName.put(copy.getName(), id);
+        added++;
+      }
+      tagIds.put(tag.getId(), id);
+    }
+    return added;
+  }
+
+  private int mergeCollections(List<Collection> sourceCollections,
+      Map<Integer, Integer> collectionIds) throws SQLException {
+    Map<String, Collection> byName = new HashMap<>();
+    for (Collection collection : target.collections.queryForAll()) {
+      byName.put(collection.getName(), collection);
+    }
+    List<Collection> created = new ArrayList<>();
+    Map<Collection, String> parentNames = new HashMap<>();
+    for (Collection collection : sourceCollections) {
+      Collection existing = byName.get(collection.getName());
+      if (existing == null) {
+        existing = Collection.builder().name(collection.getName()).build();
+        target.collections.create(existing);
+        byName.put(existing.getName(), existing);
+        created.add(existing);
+        if (collection.getParent() != null) {
+          parentNames.put(existing, collection.getParent().getName());
+        }
+      }
+      collectionIds.put(collection.getId(), existing.getId());
+    }
+    // Parents may be created after their children, so link them once all exist
+    for (Collection collection : created) {
+      String parentName = parentNames.get(collection);
+      if (parentName != null && byName.containsKey(parentName)) {
+        collection.setParent(byName.get(parentName));
+        target.collections.update(collection);
+      }
+    }
+    return created.size();
+  }
+
+  private int mergeSounds(List<Sound> sourceSounds, Map<Integer, Integer> soundIds)
+      throws SQLException {
+    Map<Long, Integer> hashes = new HashMap<>();
+    Set<Integer> slots = new HashSet<>();
+    try (GenericRawResults<String[]> rows = target.sounds.queryRaw(
+        "SELECT contentHash, MIN(id) FROM sounds WHERE contentHash IS NOT NULL "
+            + "GROUP BY contentHash")) {
+      for (String[] row : rows) {
+        hashes.put(Long.parseLong(row[0]), Integer.parseInt(row[1]));
+      }
+      try (GenericRawResults<String[]> slotRows = target.sounds.queryRaw(
+          "SELECT bank, program FROM sounds WHERE bank IS NOT NULL AND program IS NOT NULL")) {
+        for (String[] row : slotRows) {
+          slots.add(Integer.parseInt(row[0]) * 128 + Integer.parseInt(row[1]));
+        }
+      }
+    } catch (SQLException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new SQLException("Failed to read target sounds", e);
+    }
+
+    int added = 0;
+    for (Sound sound : sourceSounds) {
+      if (sound.getParameters() == null) continue;
+      long hash = sound.getContentHash() != null
+          ? sound.getContentHash() : Sound.contentHashOf(sound.getParameters());
+      Integer existing = hashes.get(hash);
+      if (existing != null) {
+        soundIds.put(sound.getId(), existing);
+        continue;
+      }
+
+      boolean slotFree = sound.getBank() != null && sound.getProgram() != null
+          && slots.add(sound.getBank() * 128 + sound.getProgram());
+      Sound copy = Sound.builder()
+          .name(sound.getName())
+          .category(sound.getCategory())
+          .bank(slotFree ? sound.getBank() : null)
+          .program(slotFree ? sound.getProgram() : null)
+          .parameters(sound.getParameters().clone())
+          .contentHash(hash)
+          .build();
+      target.sounds.create(copy);
+      soundIds.put(sound.getId(), copy.getId());
+      added++;
+    }
+    return added;
+  }
+
+  private int mergeWavetables(List<Wavetable> sourceWavetables) throws SQLException {
+    Set<Long> hashes = new HashSet<>();
+    for (Wavetable wavetable : target.wavetables.queryBuilder()
+        .selectColumns("id", "binaryData")
+        .where().eq("isFactory", false).query()) {
+      hashes.add(hashOf(wavetable.getBinaryData()));
+    }
+    int added = 0;
+    for (Wavetable wavetable : sourceWavetables) {
+      if (wavetable.getBinaryData() == null || !hashes.add(hashOf(wavetable.getBinaryData()))) {
+        continue;
+      }
+      target.wavetables.create(Wavetable.builder()
+          .name(wavetable.getName())
+          .slot(wavetable.getSlot())
+          .binaryData(wavetable.getBinaryData().clone())
+          .build());
+      added++;
+    }
+    return added;
+  }
+
+  private int mergeMultis(List<MultiPatch> sourceMultis) throws SQLException {
+    Set<Long> hashes = new HashSet<>();
+    Set<Integer> indexes = new HashSet<>();
+    for (MultiPatch multi : target.multis.queryForAll()) {
+      hashes.add(hashOf(multi.getData()));
+      if (multi.getMultiIndex() != null) {
+        indexes.add(multi.getMultiIndex());
+      }
+    }
+    int added = 0;
+    for (MultiPatch multi : sourceMultis) {
+      if (multi.getData() == null || !hashes.add(hashOf(multi.getData()))) continue;
+      // multiIndex is unique; a taken index leaves the copy unassigned
+      boolean indexFree = multi.getMultiIndex() != null && indexes.add(multi.getMultiIndex());
+      target.multis.create(MultiPatch.builder()
+          .name(multi.getName())
+          .multiIndex(indexFree ? multi.getMultiIndex() : null)
+          .data(multi.getData().clone())
+          .build());
+      added++;
+    }
+    return added;
+  }
+
+  private int insertLinks(String table, String column, List<int[]> pairs) throws SQLException {
+    int inserted = 0;
+    for (String values : BatchSql.valueLists(pairs)) {
+      inserted += target.sounds.executeRaw(
+          "INSERT OR IGNORE INTO " + table + " (sound_id, " + column + ") VALUES " + values);
+    }
+    return inserted;
+  }
+
+  /** Translate source (sound, other) ID pairs to target IDs, dropping unmapped pairs. */
+  private static List<int[]> remap(List<int[]> pairs, Map<Integer, Integer> soundIds,
+      Map<Integer, Integer> otherIds) {
+    List<int[]> mapped = new ArrayList<>(pairs.size());
+    for (int[] pair : pairs) {
+      Integer soundId = soundIds.get(pair[0]);
+      Integer otherId = otherIds.get(pair[1]);
+      if (soundId != null && otherId != null) {
+        mapped.add(new int[] {soundId, otherId});
+      }
+    }
+    return mapped;
+  }
+
+  private static List<int[]> readPairs(Database database, String sql) throws SQLException {
+    List<int[]> pairs = new ArrayList<>();
+    try (GenericRawResults<String[]> rows = database.sounds.queryRaw(sql)) {
+      for (String[] row : rows) {
+        pairs.add(new int[] {Integer.parseInt(row[0]), Integer.parseInt(row[1])});
+      }
+    } catch (SQLException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new SQLException("Failed to read " + sql, e);
+    }
+    return pairs;
+  }
+
+  /** FNV-1a 64 over a whole blob. */
+  static long hashOf(byte[] data) {
+    if (data == null) return 0;
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : data) {
+      hash ^= b & 0xFF;
+      hash *= 0x100000001b3L;
+    }
+    return hash ^ data.length;
+  }
+}
@@ -0,0 +1,101 @@
+package net.mikolas.lyra.service;
+
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.mikolas.lyra.model.ParameterMetadata;
+import net.mikolas.lyra.model.ParameterMetadata.ParamDef;
+
+/**
+ * Parsed {@code param:} filter condition over a single sound parameter.
+ *
+ * <p>Syntax is {@code <param><op><value>} where {@code param} is a parameter ID or attribute
+ * name (e.g. {@code osc1Shape}), {@code op} is one of {@code = != < <= > >=}, and {@code value}
+ * is a raw value, a display value (e.g. {@code sawtooth}) or an inclusive range {@code a..b}.
+ * Every condition is normalized to an inclusive raw range, optionally negated.
+ *
+ * @param paramId parameter ID (0-384)
+ * @param min lowest matching raw value
+ * @param max highest matching raw value
+ * @param negate true to match values outside the range
+ */
+public record ParamCondition(int paramId, int min, int max, boolean negate) {
+
+  private static final Pattern SYNTAX =
+      Pattern.compile("\\s*([A-Za-z0-9_]+)\\s*(!=|<=|>=|=|<|>)\\s*(.+?)\\s*");
+
+  /**
+   * Test a raw parameter value.
+   *
+   * @param value raw value (0-127)
+   * @return true if the value satisfies the condition
+   */
+  public boolean test(int value) {
+    return (value >= min && value <= max) != negate;
+  }
+
+  /**
+   * Parse a condition expression.
+   *
+   * @param expression expression after the {@code param:} prefix
+   * @return parsed condition, or empty if the syntax, parameter or value is unknown
+   */
+  public static Optional<ParamCondition> parse(String expression) {
+    if (expression == null) return Optional.empty();
+    Matcher m = SYNTAX.matcher(expression);
+    if (!m.matches()) return Optional.empty();
+
+    Integer paramId = resolveParam(m.group(1));
+    if (paramId == null) return Optional.empty();
+    String op = m.group(2);
+    String value = m.group(3);
+
+    int range = value.indexOf("..");
+    if (range > 0) {
+      if (!op.equals("=") && !op.equals("!=")) return Optional.empty();
+      Integer lo = resolveValue(paramId, value.substring(0, range).trim());
+      Integer hi = resolveValue(paramId, value.substring(range + 2).trim());
+      if (lo == null || hi == null) return Optional.empty();
+      return Optional.of(new ParamCondition(
+          paramId, Math.min(lo, hi), Math.max(lo, hi), op.equals("!=")));
+    }
+
+    Integer v = resolveValue(paramId, value);
+    if (v == null) return Optional.empty();
+    return Optional.of(switch (op) {
+      case "=" -> new ParamCondition(paramId, v, v, false);
+      case "!=" -> new ParamCondition(paramId, v, v, true);
+      case "<" -> new ParamCondition(paramId, 0, v - 1, false);
+      case "<=" -> new ParamCondition(paramId, 0, v, false);
+      case ">" -> new ParamCondition(paramId, v + 1, 255, false);
+      default -> new ParamCondition(paramId, v, 255, false);
+    });
+  }
+
+  static Integer resolveParam(String name) {
+    if (name.chars().allMatch(Character::isDigit)) {
+      int id = Integer.parseInt(name);
+      return id < ParameterColumnStore.PARAM_COUNT ? id : null;
+    }
+    for (ParamDef def : ParameterMetadata.getAll().values()) {
+      if (def.attrName() != null && def.attrName().equalsIgnoreCase(name)) {
+        return def.id();
+      }
+    }
+    return null;
+  }
+
+  static Integer resolveValue(int paramId, String value) {
+    if (value.matches("\\d{1,3}")) {
+      return Integer.parseInt(value);
+    }
+    ParamDef def = ParameterMetadata.get(paramId);
+    if (def == null || !ParameterMetadata.hasValueMapping(paramId)) return null;
+    for (int raw = def.min(); raw <= def.max(); raw++) {
+      if (value.equalsIgnoreCase(ParameterMetadata.getValueString(paramId, raw))) {
+        return raw;
+      }
+    }
+    return null;
+  }
+}
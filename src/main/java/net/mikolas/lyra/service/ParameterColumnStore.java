@@ -0,0 +1,123 @@
+package net.mikolas.lyra.service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Columnar copy of every sound's parameters.
+ *
+ * <p>Holds one {@code byte[]} per parameter ID, indexed by sound ID, so a query over one
+ * parameter is a sequential scan of a single array rather than a walk over every {@code Sound}
+ * and its 385-byte blob. Scans are branch-free and build the result 64 sounds at a time.
+ *
+ * <p>Not thread-safe; {@link SoundIndexService} guards access.
+ */
+public class ParameterColumnStore {
+
+  /** Number of parameters per sound. */
+  public static final int PARAM_COUNT = 385;
+
+  private final byte[][] columns = new byte[PARAM_COUNT][0];
+  private final BitSet present = new BitSet();
+  private int capacity;
+
+  /**
+   * Store (or overwrite) a sound's parameters.
+   *
+   * @param soundId sound ID
+   * @param parameters parameter blob (shorter blobs leave the remaining columns at 0)
+   */
+  public void put(int soundId, byte[] parameters) {
+    ensureCapacity(soundId + 1);
+    int n = parameters == null ? 0 : Math.min(parameters.length, PARAM_COUNT);
+    for (int p = 0; p < n; p++) {
+      columns[p][soundId] = parameters[p];
+    }
+    for (int p = n; p < PARAM_COUNT; p++) {
+      columns[p][soundId] = 0;
+    }
+    present.set(soundId);
+  }
+
+  /**
+   * Update a single parameter of a stored sound.
+   *
+   * @param soundId sound ID
+   * @param paramId parameter ID
+   * @param value raw value
+   */
+  public void set(int soundId, int paramId, int value) {
+    if (!present.get(soundId)) return;
+    columns[paramId][soundId] = (byte) value;
+  }
+
+  /**
+   * Remove a sound.
+   *
+   * @param soundId sound ID
+   */
+  public void remove(int soundId) {
+    present.clear(soundId);
+  }
+
+  /** Drop all data. */
+  public void clear() {
+    Arrays.fill(columns, new byte[0]);
+    present.clear();
+    capacity = 0;
+  }
+
+  /**
+   * Read a stored parameter value.
+   *
+   * @param soundId sound ID
+   * @param paramId parameter ID
+   * @return raw unsigned value, or -1 if the sound is not stored
+   */
+  public int get(int soundId, int paramId) {
+    return present.get(soundId) ? columns[paramId][soundId] & 0xFF : -1;
+  }
+
+  /**
+   * Find all stored sounds whose parameter satisfies a condition.
+   *
+   * @param condition parameter condition
+   * @return matching sound IDs
+   */
+  public BitSet select(ParamCondition condition) {
+    byte[] column = columns[condition.paramId()];
+    int lo = condition.min();
+    int span = condition.max() - lo;
+    long[] words = new long[(capacity + 63) >>> 6];
+
+    if (span >= 0) {
+      for (int w = 0; w < words.length; w++) {
+        int base = w << 6;
+        int end = Math.min(64, capacity - base);
+        long bits = 0;
+        for (int b = 0; b < end; b++) {
+          // In range iff v >= 0 and v <= span, i.e. neither v nor span - v is negative
+          int v = (column[base + b] & 0xFF) - lo;
+          bits |= (long) (~(v | (span - v)) >>> 31) << b;
+        }
+        words[w] = bits;
+      }
+    }
+
+    BitSet result = BitSet.valueOf(words);
+    if (condition.negate()) {
+      result.flip(0, capacity);
+    }
+    result.and(present);
+    return result;
+  }
+
+  private void ensureCapacity(int required) {
+    if (required <= capacity) return;
+    int newCapacity = Math.max(required, Math.max(1024, capacity * 2));
+    for (int p = 0; p < PARAM_COUNT; p++) {
+      columns[p] = Arrays.copyOf(columns[p], newCapacity);
+    }
+    capacity = newCapacity;
+  }
+}
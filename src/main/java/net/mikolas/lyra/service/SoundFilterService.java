@@ -7,27 +7,84 @@ import net.mikolas.lyra.model.SoundTag;
 import net.mikolas.lyra.ui.FilterType;
 import net.mikolas.lyra.ui.SoundFilter;
 
+import java.util.BitSet;
 import java.util.List;
 import java.util.stream.Collectors;
 
 /**
  * Service for filtering sounds by text search and filter criteria.
+ *
+ * <p>When constructed with a {@link SoundIndexService}, bank, category, tag and collection
+ * filters are resolved as one bitmap intersection instead of per-sound lookups, and search
+ * text goes through its trigram index.
  */
 public class SoundFilterService {
 
+  private final SoundIndexService index;
+
+  public SoundFilterService() {
+    this(null);
+  }
+
+  public SoundFilterService(SoundIndexService index) {
+    this.index = index;
+  }
+
   /**
    * Filter sounds by search text and filter criteria.
    *
    * @param sounds all sounds to filter
-   * @param searchText text search (case-insensitive, matches name)
-   * @param filters list of filter criteria (AND logic)
+   * @param searchText text search (case-insensitive; with an index it also matches tag,
+   *     collection and category names and results are ranked by relevance)
+   * @param filters list of filter criteria (AND logic; with an index a "similar sounds" filter
+   *     orders the results closest first)
    * @return filtered list of sounds
    */
   public List<Sound> filter(List<Sound> sounds, String searchText, List<SoundFilter> filters) {
-    return sounds.stream()
-        .filter(sound -> matchesSearchText(sound, searchText))
-        .filter(sound -> matchesAllFilters(sound, filters))
+    if (index == null) {
+      return sounds.stream()
+          .filter(sound -> matchesSearchText(sound, searchText))
+          .filter(sound -> matchesAllFilters(sound, filters))
+          .collect(Collectors.toList());
+    }
+
+    boolean hasText = searchText != null && !searchText.isBlank();
+    BitSet allowed = index.resolve(filters);
+    if (hasText) {
+      BitSet matches = index.search(searchText);
+      if (allowed != null) matches.and(allowed);
+      allowed = matches;
+    }
+
+    BitSet ids = allowed;
+    List<Sound> result = sounds.stream()
+        .filter(sound -> ids == null || (sound.getId() != null && ids.get(sound.getId())))
         .collect(Collectors.toList());
+    Integer similarTo = similarSoundId(filters);
+    if (similarTo != null) {
+      result = index.rankBySimilarity(result, similarTo);
+    }
+    // Text ranking is stable, so equally relevant sounds stay in similarity order
+    return hasText ? index.rank(result, searchText) : result;
+  }
+
+  private static Integer similarSoundId(List<SoundFilter> filters) {
+    for (SoundFilter filter : filters) {
+      if (filter.similarSoundId() != null) return filter.similarSoundId();
+    }
+    return null;
+  }
+
+  /**
+   * Whether {@link #filter} returns its result in relevance order rather than input order.
+   *
+   * @param searchText text search
+   * @param filters list of filter criteria
+   * @return true if the result order should be shown as is
+   */
+  public boolean isRanked(String searchText, List<SoundFilter> filters) {
+    return index != null
+        && ((searchText != null && !searchText.isBlank()) || similarSoundId(filters) != null);
   }
 
   private boolean matchesSearchText(Sound sound, String searchText) {
@@ -54,9 +111,20 @@ public class SoundFilterService {
       case COLLECTION -> matchesCollectionFilter(sound, filter.value());
       case TAG -> matchesTagFilter(sound, filter.value());
       case TEXT -> matchesSearchText(sound, filter.value());
+      case PARAM -> matchesParamFilter(sound, filter.value());
+      // Similarity needs the index; without it only the reference sound matches
+      case SIMILAR -> sound.getId() != null && sound.getId().equals(filter.similarSoundId());
     };
   }
 
+  private boolean matchesParamFilter(Sound sound, String expression) {
+    byte[] params = sound.getParameters();
+    return ParamCondition.parse(expression)
+        .filter(c -> params != null && c.paramId() < params.length)
+        .map(c -> c.test(params[c.paramId()] & 0xFF))
+        .orElse(false);
+  }
+
   private boolean matchesBankFilter(Sound sound, String bankValue) {
     Integer bank = sound.getBank();
     if (bank == null) {
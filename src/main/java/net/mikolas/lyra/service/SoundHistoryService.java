@@ -0,0 +1,225 @@
+package net.mikolas.lyra.service;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import net.mikolas.lyra.db.Database;
+import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.model.SoundRevision;
+
+/**
+ * Service for per-sound version history.
+ *
+ * <p>Every saved state of a sound is stored as a {@link SoundRevision}. A full snapshot is written
+ * for the first revision and then every {@link #SNAPSHOT_INTERVAL} revisions; the revisions in
+ * between store only the parameters that differ from that snapshot, so a typical revision costs a
+ * few bytes rather than 385. Because deltas are taken against the snapshot rather than the
+ * previous revision, reconstructing any revision reads at most two rows.
+ */
+public class SoundHistoryService {
+
+  /** Maximum number of revisions covered by one snapshot (the snapshot included). */
+  public static final int SNAPSHOT_INTERVAL = 16;
+
+  private final Database database;
+
+  public SoundHistoryService(Database database) {
+    this.database = database;
+  }
+
+  /**
+   * Record the sound's current parameters as a new revision, unless they match the latest one.
+   *
+   * <p>Call after saving a sound, and before overwriting one that may have no history yet.
+   *
+   * @param sound saved sound (must have an ID)
+   * @return the new revision, or empty if nothing changed
+   * @throws SQLException if the history cannot be read or written
+   */
+  public Optional<SoundRevision> record(Sound sound) throws SQLException {
+    if (sound.getId() == null || sound.getParameters() == null) return Optional.empty();
+    byte[] params = sound.getParameters();
+
+    SoundRevision latest = database.soundRevisions.queryBuilder()
+        .orderBy("revision", false)
+        .where().eq("soundId", sound.getId())
+        .queryForFirst();
+
+    boolean snapshot = true;
+    byte[] data = params.clone();
+    int revision = 1;
+    if (latest != null) {
+      revision = latest.getRevision() + 1;
+      SoundRevision base = latest.isSnapshot() ? latest : baseOf(latest);
+      if (Arrays.equals(apply(base, latest), params)) return Optional.empty();
+
+      if (revision - base.getRevision() < SNAPSHOT_INTERVAL
+          && base.getData().length == params.length) {
+        byte[] delta = diff(base.getData(), params);
+        if (delta.length < params.length) {
+          snapshot = false;
+          data = delta;
+        }
+      }
+    }
+
+    SoundRevision entry = SoundRevision.builder()
+        .soundId(sound.getId())
+        .revision(revision)
+        .createdAt(System.currentTimeMillis())
+        .name(sound.getName())
+        .snapshot(snapshot)
+        .data(data)
+        .build();
+    database.soundRevisions.create(entry);
+    return Optional.of(entry);
+  }
+
+  /**
+   * Overwrite a revision with the sound's current parameters, if it is still the latest one.
+   *
+   * <p>Lets a stream of autosaves build up one revision instead of one per save. If another
+   * revision was recorded in the meantime, a new one is recorded instead.
+   *
+   * @param sound saved sound (must have an ID)
+   * @param revision revision number to amend
+   * @return the amended or new revision, or empty if nothing changed
+   * @throws SQLException if the history cannot be read or written
+   */
+  public Optional<SoundRevision> amend(Sound sound, int revision) throws SQLException {
+    if (sound.getId() == null || sound.getParameters() == null) return Optional.empty();
+    SoundRevision latest = database.soundRevisions.queryBuilder()
+        .orderBy("revision", false)
+        .where().eq("soundId", sound.getId())
+        .queryForFirst();
+    if (latest == null || latest.getRevision() != revision) return record(sound);
+
+    // No revision is based on the latest one, so it can be rewritten in place
+    byte[] params = sound.getParameters();
+    boolean snapshot = true;
+    byte[] data = params.clone();
+    if (!latest.isSnapshot()) {
+      SoundRevision base = baseOf(latest);
+      if (base.getData().length == params.length) {
+        byte[] delta = diff(base.getData(), params);
+        if (delta.length < params.length) {
+          snapshot = false;
+          data = delta;
+        }
+      }
+    }
+    latest.setSnapshot(snapshot);
+    latest.setData(data);
+    latest.setName(sound.getName());
+    latest.setCreatedAt(System.currentTimeMillis());
+    database.soundRevisions.update(latest);
+    return Optional.of(latest);
+  }
+
+  /**
+   * List a sound's revisions, newest first, without their parameter data.
+   *
+   * @param soundId sound ID
+   * @return revisions
+   * @throws SQLException if the query fails
+   */
+  public List<SoundRevision> history(int soundId) throws SQLException {
+    return database.soundRevisions.queryBuilder()
+        .selectColumns("id", "soundId", "revision", "createdAt", "name", "snapshot")
+        .orderBy("revision", false)
+        .where().eq("soundId", soundId)
+        .query();
+  }
+
+  /**
+   * Reconstruct the parameters of a revision.
+   *
+   * @param soundId sound ID
+   * @param revision revision number
+   * @return parameter blob, or empty if the revision does not exist
+   * @throws SQLException if the query fails
+   */
+  public Optional<byte[]> reconstruct(int soundId, int revision) throws SQLException {
+    SoundRevision entry = database.soundRevisions.queryBuilder()
+        .where().eq("soundId", soundId).and().eq("revision", revision)
+        .queryForFirst();
+    if (entry == null) return Optional.empty();
+    return Optional.of(entry.isSnapshot() ? entry.getData().clone() : apply(baseOf(entry), entry));
+  }
+
+  /**
+   * Restore a sound to an earlier revision, save it, and record the result as a new revision.
+   *
+   * @param sound sound to restore (its in-memory parameters are replaced)
+   * @param revision revision number to restore
+   * @return true if the revision existed and was restored
+   * @throws SQLException if the history cannot be read or the sound cannot be saved
+   */
+  public boolean restore(Sound sound, int revision) throws SQLException {
+    Optional<byte[]> params = reconstruct(sound.getId(), revision);
+    if (params.isEmpty() || params.get().length != sound.getParameters().length) return false;
+    // Make sure the state being replaced can be restored too
+    record(sound);
+    sound.replaceParameters(params.get());
+    sound.updateContentHash();
+    database.sounds.update(sound);
+    record(sound);
+    return true;
+  }
+
+  /**
+   * Delete all revisions of a sound.
+   *
+   * @param soundId sound ID
+   * @return number of deleted revisions
+   * @throws SQLException if the delete fails
+   */
+  public int deleteHistory(int soundId) throws SQLException {
+    var builder = database.soundRevisions.deleteBuilder();
+    builder.where().eq("soundId", soundId);
+    return builder.delete();
+  }
+
+  private SoundRevision baseOf(SoundRevision entry) throws SQLException {
+    SoundRevision base = database.soundRevisions.queryBuilder()
+        .orderBy("revision", false)
+        .where().eq("soundId", entry.getSoundId())
+        .and().eq("snapshot", true)
+        .and().lt("revision", entry.getRevision())
+        .queryForFirst();
+    if (base == null) {
+      throw new SQLException("Missing snapshot for sound " + entry.getSoundId()
+          + " revision " + entry.getRevision());
+    }
+    return base;
+  }
+
+  /** Apply a revision's delta (or take its snapshot) on top of a base snapshot. */
+  static byte[] apply(SoundRevision base, SoundRevision entry) {
+    if (entry.isSnapshot()) return entry.getData().clone();
+    byte[] params = base.getData().clone();
+    byte[] delta = entry.getData();
+    for (int i = 0; i + 2 < delta.length; i += 3) {
+      int index = ((delta[i] & 0xFF) << 8) | (delta[i + 1] & 0xFF);
+      if (index < params.length) {
+        params[index] = delta[i + 2];
+      }
+    }
+    return params;
+  }
+
+  /** Encode the parameters that differ from the base as (index high, index low, value) triples. */
+  static byte[] diff(byte[] base, byte[] params) {
+    ByteArrayOutputStream delta = new ByteArrayOutputStream();
+    for (int i = 0; i < params.length; i++) {
+      if (base[i] != params[i]) {
+        delta.write(i >>> 8);
+        delta.write(i);
+        delta.write(params[i]);
+      }
+    }
+    return delta.toByteArray();
+  }
+}
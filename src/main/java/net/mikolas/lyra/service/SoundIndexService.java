@@ -0,0 +1,487 @@
+package net.mikolas.lyra.service;
+
+import com.j256.ormlite.dao.GenericRawResults;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import net.mikolas.lyra.db.Database;
+import net.mikolas.lyra.midi.SysExParser;
+import net.mikolas.lyra.model.Collection;
+import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.model.Tag;
+import net.mikolas.lyra.ui.SoundFilter;
+
+/**
+ * In-memory membership index for sound filtering.
+ *
+ * <p>Keeps one bitmap of sound IDs per tag, collection, category and bank, so filter chips
+ * resolve as bitmap intersections instead of walking each sound's lazy join collections.
+ * Sound IDs are dense SQLite row IDs, so a {@link BitSet} costs one bit per sound.
+ *
+ * <p>The index is built once from the join tables and then maintained incrementally by the
+ * write paths ({@link TagService}, {@link CollectionService} and the librarian).
+ *
+ * <p>Text search is answered here too: names go through a {@link SoundSearchIndex}, while tag,
+ * collection and category names are matched against their (small) vocabularies and expanded
+ * through the membership bitmaps above. {@code param:} filters scan a
+ * {@link ParameterColumnStore} built from the same sounds, and "similar sounds" filters query a
+ * {@link SoundSimilarityIndex} over their feature vectors.
+ */
+public class SoundIndexService {
+
+  private final Map<Integer, BitSet> byTag = new HashMap<>();
+  private final Map<Integer, BitSet> byCollection = new HashMap<>();
+  private final Map<String, BitSet> byCategory = new HashMap<>();
+  private final Map<String, BitSet> byBank = new HashMap<>();
+  private final Map<String, Integer> tagIds = new HashMap<>();
+  private final Map<String, Integer> collectionIds = new HashMap<>();
+  private final SoundSearchIndex names = new SoundSearchIndex();
+  private final ParameterColumnStore params = new ParameterColumnStore();
+  private final SoundSimilarityIndex similarity = new SoundSimilarityIndex();
+
+  /** Number of neighbours a "similar sounds" filter shows. */
+  public static final int SIMILAR_LIMIT = 25;
+
+  /** Library size from which similarity queries switch to the approximate index. */
+  static final int APPROXIMATE_SIMILARITY_THRESHOLD = 200_000;
+  private static final int APPROXIMATE_SIMILARITY_PROBES = 8;
+  /** Sounds assigned to similarity lists per hold of the lock while the index is built. */
+  private static final int APPROXIMATE_SIMILARITY_CHUNK = 1024;
+
+  private ExecutorService similarityBuilder;
+  private boolean similarityBuildPending;
+  /** Bumped whenever the approximate index is dropped, so a running build stops. */
+  private int similarityGeneration;
+
+  /**
+   * Rebuild the whole index from the database.
+   *
+   * <p>Similarity rows of unchanged sounds are kept, together with their place in the approximate
+   * index, so a refresh only re-assigns sounds whose parameters changed. The approximate index
+   * itself is built in the background the first time the library is large enough.
+   *
+   * @param database database to read join tables from
+   * @param sounds all sounds in the library
+   * @throws SQLException if a query fails
+   */
+  public synchronized void rebuild(Database database, List<Sound> sounds) throws SQLException {
+    clearMemberships();
+    BitSet ids = new BitSet();
+    for (Sound sound : sounds) {
+      indexSoundLocked(sound);
+      if (sound.getId() != null) {
+        ids.set(sound.getId());
+      }
+    }
+    similarity.retainAll(ids);
+
+    for (Tag tag : database.tags.queryForAll()) {
+      tagIds.put(tag.getName(), tag.getId());
+    }
+    for (Collection collection : database.collections.queryForAll()) {
+      collectionIds.put(collection.getName(), collection.getId());
+    }
+
+    loadJoinTable(database, "SELECT sound_id, tag_id FROM sound_tags", byTag);
+    loadJoinTable(database, "SELECT sound_id, collection_id FROM sound_collections", byCollection);
+
+    if (similarity.size() >= APPROXIMATE_SIMILARITY_THRESHOLD) {
+      startApproximateSimilarityBuild();
+    } else if (similarity.size() < APPROXIMATE_SIMILARITY_THRESHOLD / 2) {
+      // Well below the threshold (so a few deletions do not throw away the trained lists)
+      dropApproximateSimilarity();
+    }
+  }
+
+  /** Train and fill the approximate similarity index on a background thread, if not done yet. */
+  private void startApproximateSimilarityBuild() {
+    if (similarity.hasCentroids() || similarityBuildPending) return;
+    similarityBuildPending = true;
+    if (similarityBuilder == null) {
+      similarityBuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "lyra-similarity-index");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    int generation = similarityGeneration;
+    similarityBuilder.execute(() -> buildApproximateSimilarity(generation));
+  }
+
+  private void buildApproximateSimilarity(int generation) {
+    try {
+      float[] sample;
+      int listCount;
+      synchronized (this) {
+        if (generation != similarityGeneration) return;
+        listCount = (int) Math.sqrt(similarity.size());
+        sample = similarity.trainingSample(listCount, 0L);
+      }
+      // k-means runs on the sample copy, without the lock
+      float[] centroids = SoundSimilarityIndex.trainCentroids(sample, listCount);
+      synchronized (this) {
+        if (generation != similarityGeneration) return;
+        similarity.useCentroids(centroids);
+      }
+      // Queries stay exact until the last chunk is assigned
+      boolean done = false;
+      while (!done) {
+        synchronized (this) {
+          if (generation != similarityGeneration) return;
+          done = similarity.assignNext(APPROXIMATE_SIMILARITY_CHUNK);
+        }
+      }
+    } finally {
+      synchronized (this) {
+        if (generation == similarityGeneration) {
+          similarityBuildPending = false;
+        }
+      }
+    }
+  }
+
+  private void dropApproximateSimilarity() {
+    similarity.dropApproximateIndex();
+    similarityGeneration++;
+    similarityBuildPending = false;
+  }
+
+  private void loadJoinTable(Database database, String sql, Map<Integer, BitSet> target)
+      throws SQLException {
+    try (GenericRawResults<String[]> rows = database.sounds.queryRaw(sql)) {
+      for (String[] row : rows) {
+        int soundId = Integer.parseInt(row[0]);
+        int ownerId = Integer.parseInt(row[1]);
+        target.computeIfAbsent(ownerId, _ -> new BitSet()).set(soundId);
+      }
+    } catch (SQLException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new SQLException("Failed to read " + sql, e);
+    }
+  }
+
+  /** Drop all index data. */
+  public synchronized void clear() {
+    clearMemberships();
+    similarity.clear();
+    dropApproximateSimilarity();
+  }
+
+  /** Drop everything but the similarity index. */
+  private void clearMemberships() {
+    byTag.clear();
+    byCollection.clear();
+    byCategory.clear();
+    byBank.clear();
+    tagIds.clear();
+    collectionIds.clear();
+    names.clear();
+    params.clear();
+  }
+
+  /**
+   * Index (or re-index) a sound's name, category, bank and parameters.
+   *
+   * @param sound saved sound with an ID
+   */
+  public synchronized void indexSound(Sound sound) {
+    if (sound.getId() == null) return;
+    clearBits(byCategory, sound.getId());
+    clearBits(byBank, sound.getId());
+    indexSoundLocked(sound);
+  }
+
+  private void indexSoundLocked(Sound sound) {
+    Integer id = sound.getId();
+    if (id == null) return;
+    names.put(id, sound.getName());
+    params.put(id, sound.getParameters());
+    similarity.put(id, sound.getParameters());
+    String category = SysExParser.getCategoryName(sound.getCategory());
+    byCategory.computeIfAbsent(category, _ -> new BitSet()).set(id);
+    if (sound.getBank() != null) {
+      String bank = String.valueOf((char) ('A' + sound.getBank()));
+      byBank.computeIfAbsent(bank, _ -> new BitSet()).set(id);
+    }
+  }
+
+  /**
+   * Remove a deleted sound from every bitmap.
+   *
+   * @param soundId ID of the deleted sound
+   */
+  public synchronized void removeSound(int soundId) {
+    clearBits(byCategory, soundId);
+    clearBits(byBank, soundId);
+    clearBits(byTag, soundId);
+    clearBits(byCollection, soundId);
+    names.remove(soundId);
+    params.remove(soundId);
+    similarity.remove(soundId);
+  }
+
+  /**
+   * Record a single parameter change without re-indexing the whole sound.
+   *
+   * @param soundId sound ID
+   * @param paramId parameter ID
+   * @param value new raw value
+   */
+  public synchronized void updateParameter(int soundId, int paramId, int value) {
+    params.set(soundId, paramId, value);
+    similarity.set(soundId, paramId, value);
+  }
+
+  /**
+   * Find the sounds whose parameters are closest to a sound.
+   *
+   * @param soundId query sound
+   * @param k maximum number of results
+   * @return nearest sounds, closest first, excluding the query sound
+   */
+  public synchronized List<SoundSimilarityIndex.Match> similar(int soundId, int k) {
+    if (similarity.size() >= APPROXIMATE_SIMILARITY_THRESHOLD) {
+      // The library may have grown past the threshold since the last rebuild
+      startApproximateSimilarityBuild();
+    }
+    return similarity.nearest(soundId, k, APPROXIMATE_SIMILARITY_PROBES);
+  }
+
+  /** Register a new or renamed tag. */
+  public synchronized void registerTag(Tag tag) {
+    tagIds.values().removeIf(id -> id.equals(tag.getId()));
+    tagIds.put(tag.getName(), tag.getId());
+  }
+
+  /** Forget a deleted tag and its memberships. */
+  public synchronized void deleteTag(Tag tag) {
+    tagIds.values().removeIf(id -> id.equals(tag.getId()));
+    byTag.remove(tag.getId());
+  }
+
+  /** Register a new or renamed collection. */
+  public synchronized void registerCollection(Collection collection) {
+    collectionIds.values().removeIf(id -> id.equals(collection.getId()));
+    collectionIds.put(collection.getName(), collection.getId());
+  }
+
+  /** Forget a deleted collection and its memberships. */
+  public synchronized void deleteCollection(Collection collection) {
+    collectionIds.values().removeIf(id -> id.equals(collection.getId()));
+    byCollection.remove(collection.getId());
+  }
+
+  /**
+   * Record tag membership for sounds.
+   *
+   * @param tag tag that was added
+   * @param soundIds IDs of the tagged sounds
+   */
+  public synchronized void addTag(Tag tag, Iterable<Integer> soundIds) {
+    registerTag(tag);
+    BitSet bits = byTag.computeIfAbsent(tag.getId(), _ -> new BitSet());
+    for (Integer id : soundIds) {
+      bits.set(id);
+    }
+  }
+
+  /**
+   * Remove tag membership for sounds.
+   *
+   * @param tag tag that was removed
+   * @param soundIds IDs of the untagged sounds
+   */
+  public synchronized void removeTag(Tag tag, Iterable<Integer> soundIds) {
+    BitSet bits = byTag.get(tag.getId());
+    if (bits == null) return;
+    for (Integer id : soundIds) {
+      bits.clear(id);
+    }
+  }
+
+  /**
+   * Record collection membership for sounds.
+   *
+   * @param collection collection that sounds were added to
+   * @param soundIds IDs of the added sounds
+   */
+  public synchronized void addToCollection(Collection collection, Iterable<Integer> soundIds) {
+    registerCollection(collection);
+    BitSet bits = byCollection.computeIfAbsent(collection.getId(), _ -> new BitSet());
+    for (Integer id : soundIds) {
+      bits.set(id);
+    }
+  }
+
+  /**
+   * Remove collection membership for sounds.
+   *
+   * @param collection collection that sounds were removed from
+   * @param soundIds IDs of the removed sounds
+   */
+  public synchronized void removeFromCollection(Collection collection, Iterable<Integer> soundIds) {
+    BitSet bits = byCollection.get(collection.getId());
+    if (bits == null) return;
+    for (Integer id : soundIds) {
+      bits.clear(id);
+    }
+  }
+
+  /**
+   * Check whether a filter type is answered by this index.
+   *
+   * @param filter filter chip
+   * @return true for every filter type
+   */
+  public boolean isIndexed(SoundFilter filter) {
+    return switch (filter.type()) {
+      case BANK, CATEGORY, TAG, COLLECTION, TEXT, PARAM, SIMILAR -> true;
+    };
+  }
+
+  /**
+   * Find sounds matching a search query by name, tag, collection or category.
+   *
+   * @param query search text (case-insensitive substring)
+   * @return matching sound IDs (empty for a blank query)
+   */
+  public synchronized BitSet search(String query) {
+    String q = SoundSearchIndex.normalize(query);
+    BitSet result = names.matches(q);
+    if (q.isEmpty()) return result;
+    result.or(membersMatching(tagIds, byTag, q));
+    result.or(membersMatching(collectionIds, byCollection, q));
+    byCategory.forEach((category, bits) -> {
+      if (category.toLowerCase().contains(q)) result.or(bits);
+    });
+    return result;
+  }
+
+  /**
+   * Order sounds by search relevance.
+   *
+   * <p>Name matches rank above tag, collection and category matches; within the same score the
+   * original order is kept.
+   *
+   * @param sounds sounds that matched {@link #search(String)}
+   * @param query search text
+   * @return sounds sorted by descending relevance
+   */
+  public synchronized List<Sound> rank(List<Sound> sounds, String query) {
+    String q = SoundSearchIndex.normalize(query);
+    if (q.isEmpty()) return sounds;
+    BitSet tagHits = membersMatching(tagIds, byTag, q);
+    BitSet collectionHits = membersMatching(collectionIds, byCollection, q);
+
+    Map<Sound, Integer> scores = new IdentityHashMap<>();
+    for (Sound sound : sounds) {
+      int score = 0;
+      Integer id = sound.getId();
+      if (id != null) {
+        score += SoundSearchIndex.nameScore(names.name(id), q);
+        if (tagHits.get(id)) score += 20;
+        if (collectionHits.get(id)) score += 15;
+      }
+      if (SysExParser.getCategoryName(sound.getCategory()).toLowerCase().contains(q)) score += 10;
+      scores.put(sound, score);
+    }
+
+    List<Sound> ranked = new ArrayList<>(sounds);
+    ranked.sort(Comparator.comparingInt((Sound sound) -> scores.get(sound)).reversed());
+    return ranked;
+  }
+
+  /**
+   * Order sounds by parameter distance to a reference sound.
+   *
+   * @param sounds sounds that matched a {@link net.mikolas.lyra.ui.FilterType#SIMILAR} filter
+   * @param soundId reference sound
+   * @return the reference sound first, then its neighbours closest first, then any other sounds
+   *     in their original order
+   */
+  public synchronized List<Sound> rankBySimilarity(List<Sound> sounds, int soundId) {
+    Map<Integer, Integer> positions = new HashMap<>();
+    positions.put(soundId, -1);
+    List<SoundSimilarityIndex.Match> matches = similar(soundId, SIMILAR_LIMIT);
+    for (int i = 0; i < matches.size(); i++) {
+      positions.putIfAbsent(matches.get(i).soundId(), i);
+    }
+
+    List<Sound> ranked = new ArrayList<>(sounds);
+    ranked.sort(Comparator.comparingInt((Sound sound) -> sound.getId() == null
+        ? Integer.MAX_VALUE : positions.getOrDefault(sound.getId(), Integer.MAX_VALUE)));
+    return ranked;
+  }
+
+  private static BitSet membersMatching(Map<String, Integer> ids, Map<Integer, BitSet> members,
+      String query) {
+    BitSet result = new BitSet();
+    ids.forEach((name, id) -> {
+      BitSet bits = members.get(id);
+      if (bits != null && name.toLowerCase().contains(query)) result.or(bits);
+    });
+    return result;
+  }
+
+  /**
+   * Intersect the bitmaps of all indexed filters (AND logic).
+   *
+   * @param filters active filter chips
+   * @return matching sound IDs, or null if no filter is indexed
+   */
+  public synchronized BitSet resolve(List<SoundFilter> filters) {
+    BitSet result = null;
+    for (SoundFilter filter : filters) {
+      if (!isIndexed(filter)) continue;
+      BitSet bits = lookup(filter);
+      if (bits == null) {
+        return new BitSet();
+      }
+      if (result == null) {
+        result = (BitSet) bits.clone();
+      } else {
+        result.and(bits);
+      }
+    }
+    return result;
+  }
+
+  private BitSet lookup(SoundFilter filter) {
+    return switch (filter.type()) {
+      case BANK -> byBank.get(filter.value());
+      case CATEGORY -> byCategory.get(filter.value());
+      case TAG -> {
+        Integer id = tagIds.get(filter.value());
+        yield id == null ? null : byTag.get(id);
+      }
+      case COLLECTION -> {
+        Integer id = collectionIds.get(filter.value());
+        yield id == null ? null : byCollection.get(id);
+      }
+      case TEXT -> search(filter.value());
+      case PARAM -> ParamCondition.parse(filter.value()).map(params::select).orElse(null);
+      case SIMILAR -> {
+        Integer id = filter.similarSoundId();
+        if (id == null) yield null;
+        BitSet bits = new BitSet();
+        bits.set(id);
+        similar(id, SIMILAR_LIMIT).forEach(match -> bits.set(match.soundId()));
+        yield bits;
+      }
+    };
+  }
+
+  private static <K> void clearBits(Map<K, BitSet> bitmaps, int soundId) {
+    for (BitSet bits : bitmaps.values()) {
+      bits.clear(soundId);
+    }
+  }
+}
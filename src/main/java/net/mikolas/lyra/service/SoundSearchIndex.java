@@ -0,0 +1,140 @@
+package net.mikolas.lyra.service;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Trigram index over sound names.
+ *
+ * <p>Each lowercased name is split into overlapping three-character grams, and every gram keeps
+ * a bitmap of the sound IDs containing it. A substring query of three or more characters is
+ * answered by intersecting the bitmaps of its own grams and verifying the few survivors, instead
+ * of scanning every name. Shorter queries have no grams to intersect and fall back to scanning
+ * the cached lowercase names.
+ *
+ * <p>Not thread-safe; {@link SoundIndexService} guards access.
+ */
+public class SoundSearchIndex {
+
+  private final Map<Long, BitSet> grams = new HashMap<>();
+  private final Map<Integer, String> names = new HashMap<>();
+
+  /**
+   * Normalize text for indexing and querying.
+   *
+   * @param text raw text (may be null)
+   * @return trimmed lowercase text, never null
+   */
+  public static String normalize(String text) {
+    return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Index (or re-index) a sound name.
+   *
+   * @param soundId sound ID
+   * @param name sound name
+   */
+  public void put(int soundId, String name) {
+    remove(soundId);
+    String lower = normalize(name);
+    if (lower.isEmpty()) return;
+    names.put(soundId, lower);
+    for (int i = 0; i + 3 <= lower.length(); i++) {
+      grams.computeIfAbsent(gram(lower, i), _ -> new BitSet()).set(soundId);
+    }
+  }
+
+  /**
+   * Remove a sound from the index.
+   *
+   * @param soundId sound ID
+   */
+  public void remove(int soundId) {
+    String old = names.remove(soundId);
+    if (old == null) return;
+    for (int i = 0; i + 3 <= old.length(); i++) {
+      long key = gram(old, i);
+      BitSet bits = grams.get(key);
+      if (bits != null) {
+        bits.clear(soundId);
+        if (bits.isEmpty()) grams.remove(key);
+      }
+    }
+  }
+
+  /** Drop all index data. */
+  public void clear() {
+    grams.clear();
+    names.clear();
+  }
+
+  /**
+   * Lowercased name of an indexed sound.
+   *
+   * @param soundId sound ID
+   * @return normalized name, or null if not indexed
+   */
+  public String name(int soundId) {
+    return names.get(soundId);
+  }
+
+  /**
+   * Find sounds whose name contains the query.
+   *
+   * @param query normalized query (see {@link #normalize(String)})
+   * @return matching sound IDs
+   */
+  public BitSet matches(String query) {
+    BitSet result = new BitSet();
+    if (query.isEmpty()) return result;
+
+    if (query.length() < 3) {
+      names.forEach((id, name) -> {
+        if (name.contains(query)) result.set(id);
+      });
+      return result;
+    }
+
+    BitSet candidates = null;
+    for (int i = 0; i + 3 <= query.length(); i++) {
+      BitSet bits = grams.get(gram(query, i));
+      if (bits == null) return result;
+      if (candidates == null) {
+        candidates = (BitSet) bits.clone();
+      } else {
+        candidates.and(bits);
+      }
+    }
+
+    // Grams can match out of order ("abcab" vs "cabc"), so confirm the substring
+    for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+      if (names.get(id).contains(query)) result.set(id);
+    }
+    return result;
+  }
+
+  /**
+   * Rank how well a name matches a query.
+   *
+   * @param name normalized name
+   * @param query normalized query
+   * @return 100 exact, 80 prefix, 60 word prefix, 40 substring, 0 no match
+   */
+  static int nameScore(String name, String query) {
+    if (name == null || query.isEmpty()) return 0;
+    if (name.equals(query)) return 100;
+    if (name.startsWith(query)) return 80;
+    if (!name.contains(query)) return 0;
+    for (int at = name.indexOf(query); at >= 0; at = name.indexOf(query, at + 1)) {
+      if (!Character.isLetterOrDigit(name.charAt(at - 1))) return 60;
+    }
+    return 40;
+  }
+
+  private static long gram(String s, int i) {
+    return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+  }
+}
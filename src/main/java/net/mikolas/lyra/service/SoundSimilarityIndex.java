@@ -0,0 +1,463 @@
+package net.mikolas.lyra.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import net.mikolas.lyra.model.ParameterMetadata;
+import net.mikolas.lyra.model.ParameterMetadata.ParamDef;
+
+/**
+ * Nearest-neighbour index over sound parameters.
+ *
+ * <p>Each sound becomes a feature vector: every parameter with a range in {@link
+ * ParameterMetadata} is normalized to 0..1 and weighted by {@code 1/sqrt(familySize)}, so a
+ * family with sixteen arp steps counts as much as one with a single glide switch. Name
+ * characters and the category are not features. Vectors live in one contiguous {@code float[]}
+ * matrix, row per sound, and queries are squared Euclidean distance scans over it.
+ *
+ * <p>For very large libraries an optional inverted-file index (k-means lists over the same
+ * vectors) limits a query to the closest few lists; results are then approximate. It can be built
+ * in one call ({@link #buildApproximateIndex}) or in stages, so a caller can train the centroids
+ * on a sample copy without holding its lock and assign sounds in short chunks: {@link
+ * #trainingSample}, {@link #trainCentroids}, {@link #useCentroids}, then {@link #assignNext} until
+ * it returns true. Once centroids are in use, {@link #put}, {@link #set} and {@link #remove} keep
+ * the lists current, and re-putting an unchanged sound costs no centroid search.
+ *
+ * <p>Not thread-safe; {@link SoundIndexService} guards access.
+ */
+public class SoundSimilarityIndex {
+
+  /** Query result: sound ID and squared distance (0 = identical features). */
+  public record Match(int soundId, float distance) {}
+
+  /** Feature vector length. */
+  public static final int DIMENSIONS;
+
+  private static final int[] PARAM_IDS;
+  private static final int[] DIMENSION_OF = new int[ParameterColumnStore.PARAM_COUNT];
+  private static final float[] OFFSETS;
+  private static final float[] INV_RANGES;
+  private static final float[] WEIGHTS;
+
+  private static final int KMEANS_ITERATIONS = 5;
+  private static final int KMEANS_SAMPLES_PER_LIST = 32;
+
+  static {
+    List<ParamDef> defs = ParameterMetadata.getAll().values().stream()
+        .filter(SoundSimilarityIndex::isFeature)
+        .sorted(Comparator.comparingInt(ParamDef::id))
+        .toList();
+    Map<String, Long> familySizes = defs.stream()
+        .collect(Collectors.groupingBy(SoundSimilarityIndex::family, Collectors.counting()));
+
+    DIMENSIONS = defs.size();
+    PARAM_IDS = new int[DIMENSIONS];
+    OFFSETS = new float[DIMENSIONS];
+    INV_RANGES = new float[DIMENSIONS];
+    WEIGHTS = new float[DIMENSIONS];
+    Arrays.fill(DIMENSION_OF, -1);
+    for (int d = 0; d < DIMENSIONS; d++) {
+      ParamDef def = defs.get(d);
+      PARAM_IDS[d] = def.id();
+      DIMENSION_OF[def.id()] = d;
+      OFFSETS[d] = def.min();
+      INV_RANGES[d] = 1f / (def.max() - def.min());
+      WEIGHTS[d] = (float) (1.0 / Math.sqrt(familySizes.get(family(def))));
+    }
+  }
+
+  private static boolean isFeature(ParamDef def) {
+    return def.id() < ParameterColumnStore.PARAM_COUNT
+        && def.max() > def.min()
+        && !"Name Char".equals(def.family())
+        && !"category".equals(def.attrName());
+  }
+
+  private static String family(ParamDef def) {
+    return Objects.requireNonNullElse(def.family(), "");
+  }
+
+  private float[] matrix = new float[0];
+  private int[] rowIds = new int[0];
+  private int rows;
+  private final Map<Integer, Integer> rowOf = new HashMap<>();
+
+  // Optional inverted-file index
+  private float[] centroids;
+  private int lists;
+  private List<Set<Integer>> members;
+  private final Map<Integer, Integer> listOf = new HashMap<>();
+  /** Next row {@link #assignNext} looks at, or -1 once every sound is in a list. */
+  private int assignCursor = -1;
+
+  /** Number of indexed sounds. */
+  public int size() {
+    return rows;
+  }
+
+  /** Drop all data, including the approximate index. */
+  public void clear() {
+    matrix = new float[0];
+    rowIds = new int[0];
+    rows = 0;
+    rowOf.clear();
+    dropApproximateIndex();
+  }
+
+  /**
+   * Index (or re-index) a sound's parameters.
+   *
+   * @param soundId sound ID
+   * @param parameters parameter blob
+   */
+  public void put(int soundId, byte[] parameters) {
+    Integer row = rowOf.get(soundId);
+    boolean changed = row == null;
+    if (row == null) {
+      ensureCapacity(rows + 1);
+      row = rows++;
+      rowOf.put(soundId, row);
+      rowIds[row] = soundId;
+    }
+    int offset = row * DIMENSIONS;
+    for (int d = 0; d < DIMENSIONS; d++) {
+      int p = PARAM_IDS[d];
+      float value = feature(d, parameters != null && p < parameters.length
+          ? parameters[p] & 0xFF : (int) OFFSETS[d]);
+      changed |= matrix[offset + d] != value;
+      matrix[offset + d] = value;
+    }
+    if (changed) {
+      reassign(soundId, offset);
+    }
+  }
+
+  /**
+   * Update one parameter of an indexed sound.
+   *
+   * @param soundId sound ID
+   * @param paramId parameter ID
+   * @param value new raw value
+   */
+  public void set(int soundId, int paramId, int value) {
+    Integer row = rowOf.get(soundId);
+    int d = paramId < DIMENSION_OF.length ? DIMENSION_OF[paramId] : -1;
+    if (row == null || d < 0) return;
+    matrix[row * DIMENSIONS + d] = feature(d, value);
+    reassign(soundId, row * DIMENSIONS);
+  }
+
+  /**
+   * Remove a sound.
+   *
+   * @param soundId sound ID
+   */
+  public void remove(int soundId) {
+    Integer row = rowOf.remove(soundId);
+    if (row == null) return;
+    int last = --rows;
+    if (row != last) {
+      // Keep rows contiguous by moving the last row into the gap
+      System.arraycopy(matrix, last * DIMENSIONS, matrix, row * DIMENSIONS, DIMENSIONS);
+      rowIds[row] = rowIds[last];
+      rowOf.put(rowIds[row], row);
+    }
+    Integer list = listOf.remove(soundId);
+    if (list != null) members.get(list).remove(soundId);
+  }
+
+  /**
+   * Remove every sound not in a set, keeping the rest (and their lists) as they are.
+   *
+   * @param soundIds sounds to keep
+   */
+  public void retainAll(BitSet soundIds) {
+    for (int r = rows - 1; r >= 0; r--) {
+      if (!soundIds.get(rowIds[r])) {
+        remove(rowIds[r]);
+      }
+    }
+  }
+
+  /**
+   * Find the sounds closest to an indexed sound, using the approximate index if built.
+   *
+   * @param soundId query sound
+   * @param k maximum number of results
+   * @param probes number of inverted lists to scan (ignored without an approximate index)
+   * @return nearest sounds, closest first, excluding the query sound
+   */
+  public List<Match> nearest(int soundId, int k, int probes) {
+    Integer row = rowOf.get(soundId);
+    if (row == null || k <= 0) return List.of();
+    int queryOffset = row * DIMENSIONS;
+    TopK top = new TopK(k);
+
+    if (!isApproximate()) {
+      for (int r = 0; r < rows; r++) {
+        if (r != row) top.offer(rowIds[r], distance(matrix, queryOffset, matrix, r * DIMENSIONS));
+      }
+      return top.toList();
+    }
+
+    TopK closestLists = new TopK(Math.clamp(probes, 1, lists));
+    for (int c = 0; c < lists; c++) {
+      closestLists.offer(c, distance(matrix, queryOffset, centroids, c * DIMENSIONS));
+    }
+    for (int i = 0; i < closestLists.size; i++) {
+      for (int id : members.get(closestLists.ids[i])) {
+        if (id == soundId) continue;
+        top.offer(id, distance(matrix, queryOffset, matrix, rowOf.get(id) * DIMENSIONS));
+      }
+    }
+    return top.toList();
+  }
+
+  /**
+   * Build the approximate inverted-file index in one go.
+   *
+   * <p>Centroids are trained with a few k-means iterations on a random sample, then every sound
+   * is assigned to its nearest centroid. Later {@link #put} and {@link #remove} calls keep the
+   * assignment current; centroids are only retrained by calling this again.
+   *
+   * @param listCount number of lists (typically about {@code sqrt(size)})
+   * @param seed random seed for sampling
+   */
+  public void buildApproximateIndex(int listCount, long seed) {
+    if (rows == 0) {
+      dropApproximateIndex();
+      return;
+    }
+    useCentroids(trainCentroids(trainingSample(listCount, seed), listCount));
+    while (!assignNext(Integer.MAX_VALUE)) {
+      // Assign everything
+    }
+  }
+
+  /**
+   * Copy a random sample of feature rows to train centroids on.
+   *
+   * @param listCount number of lists the centroids are for
+   * @param seed random seed for sampling
+   * @return sampled rows, {@link #DIMENSIONS} floats each
+   */
+  public float[] trainingSample(int listCount, long seed) {
+    int count = Math.clamp(listCount, 1, Math.max(rows, 1));
+    int[] sample = sampleRows(Math.min(rows, count * KMEANS_SAMPLES_PER_LIST), new Random(seed));
+    float[] vectors = new float[sample.length * DIMENSIONS];
+    for (int i = 0; i < sample.length; i++) {
+      System.arraycopy(matrix, sample[i] * DIMENSIONS, vectors, i * DIMENSIONS, DIMENSIONS);
+    }
+    return vectors;
+  }
+
+  /**
+   * Train centroids with a few k-means iterations. Touches no index state, so it can run
+   * without the caller's lock.
+   *
+   * @param sample rows from {@link #trainingSample}
+   * @param listCount number of lists
+   * @return centroids, {@link #DIMENSIONS} floats each (fewer lists if the sample is smaller)
+   */
+  public static float[] trainCentroids(float[] sample, int listCount) {
+    int samples = sample.length / DIMENSIONS;
+    int count = Math.clamp(listCount, 1, Math.max(samples, 1));
+    // The sample is already shuffled, so its first rows are random seeds
+    float[] trained = Arrays.copyOf(sample, count * DIMENSIONS);
+
+    float[] sums = new float[count * DIMENSIONS];
+    int[] counts = new int[count];
+    for (int iteration = 0; iteration < KMEANS_ITERATIONS; iteration++) {
+      Arrays.fill(sums, 0f);
+      Arrays.fill(counts, 0);
+      for (int i = 0; i < samples; i++) {
+        int c = closest(sample, i * DIMENSIONS, trained, count);
+        counts[c]++;
+        for (int d = 0; d < DIMENSIONS; d++) {
+          sums[c * DIMENSIONS + d] += sample[i * DIMENSIONS + d];
+        }
+      }
+      for (int c = 0; c < count; c++) {
+        if (counts[c] == 0) continue; // keep previous centroid
+        for (int d = 0; d < DIMENSIONS; d++) {
+          trained[c * DIMENSIONS + d] = sums[c * DIMENSIONS + d] / counts[c];
+        }
+      }
+    }
+    return trained;
+  }
+
+  /**
+   * Start using trained centroids. Queries stay exact until {@link #assignNext} has put every
+   * sound in a list; sounds put in the meantime are assigned right away.
+   *
+   * @param trained centroids from {@link #trainCentroids}
+   */
+  public void useCentroids(float[] trained) {
+    dropApproximateIndex();
+    centroids = trained;
+    lists = trained.length / DIMENSIONS;
+    members = new ArrayList<>(lists);
+    for (int c = 0; c < lists; c++) {
+      members.add(new LinkedHashSet<>());
+    }
+    assignCursor = 0;
+  }
+
+  /**
+   * Assign up to {@code maxRows} more sounds to their nearest centroid.
+   *
+   * @param maxRows maximum number of sounds to assign in this call
+   * @return true once every sound is assigned (or no centroids are in use)
+   */
+  public boolean assignNext(int maxRows) {
+    if (centroids == null || assignCursor < 0) return true;
+    int end = (int) Math.min(rows, (long) assignCursor + maxRows);
+    for (int r = assignCursor; r < end; r++) {
+      if (!listOf.containsKey(rowIds[r])) {
+        reassign(rowIds[r], r * DIMENSIONS);
+      }
+    }
+    assignCursor = end;
+    if (assignCursor < rows) return false;
+    // Removals move rows down, possibly behind the cursor
+    for (int r = 0; r < rows; r++) {
+      if (!listOf.containsKey(rowIds[r])) {
+        reassign(rowIds[r], r * DIMENSIONS);
+      }
+    }
+    assignCursor = -1;
+    return true;
+  }
+
+  /** Discard the approximate index; queries go back to exact scans. */
+  public void dropApproximateIndex() {
+    centroids = null;
+    lists = 0;
+    members = null;
+    listOf.clear();
+    assignCursor = -1;
+  }
+
+  /** Whether queries currently use the approximate index. */
+  public boolean isApproximate() {
+    return centroids != null && assignCursor < 0;
+  }
+
+  /** Whether centroids are in use, even if sounds are still being assigned. */
+  public boolean hasCentroids() {
+    return centroids != null;
+  }
+
+  private void reassign(int soundId, int offset) {
+    if (centroids == null) return;
+    Integer previous = listOf.get(soundId);
+    if (previous != null) members.get(previous).remove(soundId);
+    int c = closest(matrix, offset, centroids, lists);
+    members.get(c).add(soundId);
+    listOf.put(soundId, c);
+  }
+
+  private static int closest(float[] vectors, int offset, float[] centers, int count) {
+    int best = 0;
+    float bestDistance = Float.MAX_VALUE;
+    for (int c = 0; c < count; c++) {
+      float d = distance(vectors, offset, centers, c * DIMENSIONS);
+      if (d < bestDistance) {
+        bestDistance = d;
+        best = c;
+      }
+    }
+    return best;
+  }
+
+  private int[] sampleRows(int count, Random random) {
+    int[] all = new int[rows];
+    for (int r = 0; r < rows; r++) all[r] = r;
+    for (int i = 0; i < count; i++) {
+      int j = i + random.nextInt(rows - i);
+      int tmp = all[i];
+      all[i] = all[j];
+      all[j] = tmp;
+    }
+    return Arrays.copyOf(all, count);
+  }
+
+  private static float feature(int d, int value) {
+    return Math.clamp((value - OFFSETS[d]) * INV_RANGES[d], 0f, 1f) * WEIGHTS[d];
+  }
+
+  /**
+   * Squared Euclidean distance between two rows.
+   *
+   * <p>Four independent accumulators break the add dependency chain so the JIT can keep
+   * several multiply-adds in flight.
+   */
+  static float distance(float[] a, int aOffset, float[] b, int bOffset) {
+    float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+    int d = 0;
+    for (int upper = DIMENSIONS & ~3; d < upper; d += 4) {
+      float d0 = a[aOffset + d] - b[bOffset + d];
+      float d1 = a[aOffset + d + 1] - b[bOffset + d + 1];
+      float d2 = a[aOffset + d + 2] - b[bOffset + d + 2];
+      float d3 = a[aOffset + d + 3] - b[bOffset + d + 3];
+      s0 += d0 * d0;
+      s1 += d1 * d1;
+      s2 += d2 * d2;
+      s3 += d3 * d3;
+    }
+    for (; d < DIMENSIONS; d++) {
+      float diff = a[aOffset + d] - b[bOffset + d];
+      s0 += diff * diff;
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  private void ensureCapacity(int required) {
+    if (required <= rowIds.length) return;
+    int capacity = Math.max(required, Math.max(256, rowIds.length * 2));
+    matrix = Arrays.copyOf(matrix, capacity * DIMENSIONS);
+    rowIds = Arrays.copyOf(rowIds, capacity);
+  }
+
+  /** Bounded, sorted top-k collector (insertion sort; k is small). */
+  private static final class TopK {
+    final int[] ids;
+    final float[] distances;
+    int size;
+
+    TopK(int k) {
+      ids = new int[k];
+      distances = new float[k];
+    }
+
+    void offer(int id, float distance) {
+      if (size == ids.length && distance >= distances[size - 1]) return;
+      int i = size < ids.length ? size++ : size - 1;
+      while (i > 0 && distances[i - 1] > distance) {
+        ids[i] = ids[i - 1];
+        distances[i] = distances[i - 1];
+        i--;
+      }
+      ids[i] = id;
+      distances[i] = distance;
+    }
+
+    List<Match> toList() {
+      List<Match> result = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        result.add(new Match(ids[i], distances[i]));
+      }
+      return result;
+    }
+  }
+}
@@ -1,22 +1,34 @@
 package net.mikolas.lyra.service;
 
+import com.j256.ormlite.misc.TransactionManager;
+import net.mikolas.lyra.db.BatchSql;
 import net.mikolas.lyra.db.Database;
 import net.mikolas.lyra.model.Sound;
-import net.mikolas.lyra.model.SoundTag;
 import net.mikolas.lyra.model.Tag;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Service for managing sound tags.
+ *
+ * <p>Bulk operations run as set-based SQL in a single transaction, so tagging thousands of
+ * sounds is a handful of statements rather than one per sound.
  */
 public class TagService {
 
   private final Database database;
+  private final SoundIndexService index;
 
   public TagService(Database database) {
+    this(database, null);
+  }
+
+  public TagService(Database database, SoundIndexService index) {
     this.database = database;
+    this.index = index;
   }
 
   /**
@@ -24,26 +36,38 @@ public class TagService {
    *
    * @param sounds sounds to tag
    * @param tag tag to add
-   * @return number of sounds tagged
+   * @return number of sounds tagged (sounds that already had the tag are not counted)
    * @throws SQLException if database operation fails
    */
   public int addTagsToSounds(List<Sound> sounds, Tag tag) throws SQLException {
-    int added = 0;
-    for (Sound sound : sounds) {
-      SoundTag st = SoundTag.builder()
-          .sound(sound)
-          .tag(tag)
-          .build();
-      
-      try {
-        database.soundTags.create(st);
-        database.sounds.refresh(sound);
-        added++;
-      } catch (SQLException e) {
-        if (!e.getMessage().contains("UNIQUE") && !e.getMessage().contains("unique")) {
-          throw e;
-        }
-      }
+    return addTagToSoundIds(sounds.stream().map(Sound::getId).toList(), tag);
+  }
+
+  /**
+   * Add tag to sounds by ID using {@code INSERT OR IGNORE ... SELECT}.
+   *
+   * @param soundIds IDs of sounds to tag
+   * @param tag tag to add
+   * @return number of new tag assignments
+   * @throws SQLException if database operation fails
+   */
+  public int addTagToSoundIds(Collection<Integer> soundIds, Tag tag) throws SQLException {
+    List<String> chunks = BatchSql.inLists(soundIds);
+    if (chunks.isEmpty()) return 0;
+
+    int added = TransactionManager.callInTransaction(database.soundTags.getConnectionSource(),
+        (Callable<Integer>) () -> {
+          int count = 0;
+          for (String ids : chunks) {
+            count += database.soundTags.executeRaw(
+                "INSERT OR IGNORE INTO sound_tags (sound_id, tag_id) "
+                    + "SELECT id, " + tag.getId() + " FROM sounds WHERE id IN (" + ids + ")");
+          }
+          return count;
+        });
+
+    if (index != null) {
+      index.addTag(tag, soundIds.stream().filter(id -> id != null).toList());
     }
     return added;
   }
@@ -57,23 +81,34 @@ public class TagService {
    * @throws SQLException if database operation fails
    */
   public int removeTagsFromSounds(List<Sound> sounds, Tag tag) throws SQLException {
-    int removed = 0;
-    for (Sound sound : sounds) {
-      List<SoundTag> existing = database.soundTags.queryBuilder()
-          .where()
-          .eq("sound_id", sound.getId())
-          .and()
-          .eq("tag_id", tag.getId())
-          .query();
-      
-      for (SoundTag st : existing) {
-        database.soundTags.delete(st);
-        removed++;
-      }
-      
-      if (!existing.isEmpty()) {
-        database.sounds.refresh(sound);
-      }
+    return removeTagFromSoundIds(sounds.stream().map(Sound::getId).toList(), tag);
+  }
+
+  /**
+   * Remove tag from sounds by ID using {@code DELETE ... WHERE sound_id IN (...)}.
+   *
+   * @param soundIds IDs of sounds to untag
+   * @param tag tag to remove
+   * @return number of removed tag assignments
+   * @throws SQLException if database operation fails
+   */
+  public int removeTagFromSoundIds(Collection<Integer> soundIds, Tag tag) throws SQLException {
+    List<String> chunks = BatchSql.inLists(soundIds);
+    if (chunks.isEmpty()) return 0;
+
+    int removed = TransactionManager.callInTransaction(database.soundTags.getConnectionSource(),
+        (Callable<Integer>) () -> {
+          int count = 0;
+          for (String ids : chunks) {
+            count += database.soundTags.executeRaw(
+                "DELETE FROM sound_tags WHERE tag_id = " + tag.getId()
+                    + " AND sound_id IN (" + ids + ")");
+          }
+          return count;
+        });
+
+    if (index != null) {
+      index.removeTag(tag, soundIds.stream().filter(id -> id != null).toList());
     }
     return removed;
   }
@@ -0,0 +1,394 @@
+package net.mikolas.lyra.service;
+
+import java.util.Arrays;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import net.mikolas.lyra.model.WaveFft;
+
+/**
+ * Software playback of a wavetable, for auditioning edits without uploading them to the Blofeld.
+ *
+ * <p>Audio is rendered on a dedicated high-priority thread in blocks of {@link #BLOCK_FRAMES}
+ * frames into a {@link SourceDataLine} holding only a few blocks, so notes start within about
+ * 20 ms. Each wave is kept as a set of band-limited copies, one per octave of harmonic content,
+ * resynthesized at four times the wave's resolution. A voice reads the copy whose highest
+ * harmonic stays below Nyquist at its pitch with cubic interpolation, which is accurate on the
+ * oversampled copy, and crossfades between adjacent waves at fractional positions.
+ *
+ * <p>The render loop neither allocates nor locks. Notes reach it through a single-producer ring
+ * of events, wave data as an immutable table swapped by reference, and position, sweep and
+ * volume through volatile fields. Call the public methods from one thread, e.g. the JavaFX
+ * application thread.
+ */
+public class WavetableAuditionEngine implements AutoCloseable {
+
+  public static final float SAMPLE_RATE = 44100;
+  /** Frames rendered per block. */
+  static final int BLOCK_FRAMES = 256;
+  /** Blocks of buffering in the line. */
+  private static final int LINE_BLOCKS = 3;
+
+  static final int WAVES = 64;
+  /** Band-limited copies per wave: harmonics 1-63, 1-32, 1-16 ... 1-1. */
+  static final int LEVELS = 7;
+  /** Samples per band-limited copy: the 128-sample wave oversampled four times. */
+  private static final int TABLE_SIZE = 4 * WaveFft.SIZE;
+  /** A copy plus one wrapped sample before and two after, for the interpolator. */
+  private static final int STRIDE = TABLE_SIZE + 3;
+  private static final float[] COS = new float[TABLE_SIZE];
+  private static final float[] SIN = new float[TABLE_SIZE];
+
+  private static final int VOICES = 8;
+  private static final float VOICE_GAIN = 0.3f;
+  private static final float ATTACK_STEP = 1 / (0.005f * SAMPLE_RATE);
+  private static final float RELEASE_STEP = 1 / (0.08f * SAMPLE_RATE);
+  /** Largest position change per sample when following the editor: the full table in 50 ms. */
+  private static final double GLIDE_STEP = WAVES / (0.05 * SAMPLE_RATE);
+
+  private static final int EVENT_CAPACITY = 64;
+  private static final int NOTE_ON = 0x100;
+  private static final int ALL_NOTES_OFF = 0x200;
+
+  static {
+    for (int i = 0; i < TABLE_SIZE; i++) {
+      COS[i] = (float) Math.cos(2 * Math.PI * i / TABLE_SIZE);
+      SIN[i] = (float) Math.sin(2 * Math.PI * i / TABLE_SIZE);
+    }
+  }
+
+  /** Render-thread state of one voice. */
+  private static final class Voice {
+    int note = -1;
+    boolean held;
+    double phase;
+    double step;
+    int level;
+    float envelope;
+    long started;
+  }
+
+  // Shared with the render thread
+  private volatile float[] tables;
+  private volatile double targetPosition;
+  private volatile double sweepRate;
+  private volatile boolean looping;
+  private volatile int sweepCount;
+  private volatile float volume = 1;
+  private final int[] events = new int[EVENT_CAPACITY];
+  private volatile int eventsWritten;
+  private volatile int eventsRead;
+
+  // Owned by the render thread
+  private final Voice[] voices = new Voice[VOICES];
+  private final double[] positions = new double[BLOCK_FRAMES];
+  private double position;
+  private int sweepsSeen;
+  private long noteCounter;
+
+  // Owned by the caller
+  private int[][] sourceWaves;
+  private SourceDataLine line;
+  private Thread thread;
+  private volatile boolean running;
+
+  public WavetableAuditionEngine() {
+    for (int i = 0; i < VOICES; i++) {
+      voices[i] = new Voice();
+    }
+  }
+
+  /**
+   * Open the default audio output and start rendering. Does nothing if already running.
+   *
+   * @throws LineUnavailableException if no suitable output is available
+   */
+  public synchronized void start() throws LineUnavailableException {
+    if (thread != null) return;
+    AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+    SourceDataLine output = AudioSystem.getSourceDataLine(format);
+    output.open(format, BLOCK_FRAMES * 2 * LINE_BLOCKS);
+    output.start();
+    line = output;
+    running = true;
+    thread = new Thread(() -> run(output), "Wavetable Audition");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MAX_PRIORITY);
+    thread.start();
+  }
+
+  public synchronized boolean isRunning() {
+    return thread != null;
+  }
+
+  /** Stop rendering and release the audio output. */
+  @Override
+  public synchronized void close() {
+    if (thread == null) return;
+    running = false;
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    line.stop();
+    line.close();
+    thread = null;
+    line = null;
+  }
+
+  private void run(SourceDataLine output) {
+    float[] block = new float[BLOCK_FRAMES];
+    byte[] bytes = new byte[BLOCK_FRAMES * 2];
+    while (running) {
+      render(block, BLOCK_FRAMES);
+      for (int i = 0; i < BLOCK_FRAMES; i++) {
+        int value = (int) (Math.clamp(block[i], -1f, 1f) * 32767);
+        bytes[2 * i] = (byte) value;
+        bytes[2 * i + 1] = (byte) (value >> 8);
+      }
+      output.write(bytes, 0, bytes.length);
+    }
+  }
+
+  /**
+   * Set the waves to play, normally a wavetable's bounced waves. Only waves that changed since
+   * the last call are resynthesized, so this is cheap enough to call after every edit.
+   *
+   * @param waves 64 waves of 128 samples
+   */
+  public void setWaves(int[][] waves) {
+    float[] previous = tables;
+    float[] next = previous == null ? new float[LEVELS * WAVES * STRIDE] : previous.clone();
+    if (sourceWaves == null) {
+      sourceWaves = new int[WAVES][];
+    }
+    boolean changed = false;
+    for (int w = 0; w < WAVES; w++) {
+      if (previous != null && Arrays.equals(sourceWaves[w], waves[w])) continue;
+      sourceWaves[w] = waves[w].clone();
+      synthesize(waves[w], next, w);
+      changed = true;
+    }
+    if (changed) {
+      tables = next;
+    }
+  }
+
+  /** Resynthesize every band-limited copy of one wave, without DC. */
+  private static void synthesize(int[] wave, float[] dest, int w) {
+    WaveFft.Spectrum spectrum = WaveFft.analyze(wave);
+    float[] cos = new float[WaveFft.BINS];
+    float[] sin = new float[WaveFft.BINS];
+    for (int k = 1; k < WaveFft.BINS; k++) {
+      // Bin k of an unnormalized 128-point FFT is 64 times the harmonic's amplitude; samples
+      // are scaled from 21 bits to +-1
+      double amplitude = spectrum.magnitude()[k] / (WaveFft.SIZE / 2) / 1048576.0;
+      cos[k] = (float) (amplitude * Math.cos(spectrum.phase()[k]));
+      sin[k] = (float) (amplitude * Math.sin(spectrum.phase()[k]));
+    }
+    float[] copy = new float[TABLE_SIZE];
+    for (int level = 0; level < LEVELS; level++) {
+      Arrays.fill(copy, 0);
+      for (int k = 1; k <= harmonics(level); k++) {
+        for (int n = 0; n < TABLE_SIZE; n++) {
+          int index = (k * n) & (TABLE_SIZE - 1);
+          copy[n] += cos[k] * COS[index] - sin[k] * SIN[index];
+        }
+      }
+      int base = (level * WAVES + w) * STRIDE;
+      for (int i = 0; i < STRIDE; i++) {
+        dest[base + i] = copy[(i - 1) & (TABLE_SIZE - 1)];
+      }
+    }
+  }
+
+  /** Highest harmonic kept in a band-limited copy. */
+  static int harmonics(int level) {
+    return Math.min(WaveFft.SIZE / 2 - 1, (WaveFft.SIZE / 2) >> level);
+  }
+
+  /** The copy with the most harmonics that all stay below Nyquist at a frequency. */
+  static int levelFor(double frequency) {
+    for (int level = 0; level < LEVELS - 1; level++) {
+      if (harmonics(level) * frequency < SAMPLE_RATE / 2) {
+        return level;
+      }
+    }
+    return LEVELS - 1;
+  }
+
+  /** Set the wave position (0-63) to play while not sweeping. Changes glide over 50 ms. */
+  public void setPosition(double wave) {
+    targetPosition = Math.clamp(wave, 0, WAVES - 1);
+  }
+
+  /** Sweep the position from the first to the last wave over the given time. */
+  public void sweep(double seconds) {
+    sweepRate = (WAVES - 1) / (seconds * SAMPLE_RATE);
+    sweepCount++;
+  }
+
+  /** Return to the position set by {@link #setPosition}. */
+  public void stopSweep() {
+    sweepRate = 0;
+  }
+
+  /** Whether a sweep starts over at the first wave once it reaches the last. */
+  public void setLooping(boolean looping) {
+    this.looping = looping;
+  }
+
+  /** @param volume output gain, 0-1 */
+  public void setVolume(double volume) {
+    this.volume = (float) Math.clamp(volume, 0, 1);
+  }
+
+  public void noteOn(int note) {
+    post(NOTE_ON | (note & 0x7F));
+  }
+
+  public void noteOff(int note) {
+    post(note & 0x7F);
+  }
+
+  public void allNotesOff() {
+    post(ALL_NOTES_OFF);
+  }
+
+  private void post(int event) {
+    int written = eventsWritten;
+    if (written - eventsRead == EVENT_CAPACITY) {
+      return; // Render thread stalled; drop rather than block the caller
+    }
+    events[written % EVENT_CAPACITY] = event;
+    eventsWritten = written + 1;
+  }
+
+  /**
+   * Render the next block. Called by the render thread, or directly when no output is open.
+   *
+   * @param out destination, overwritten
+   * @param frames frames to render, at most {@link #BLOCK_FRAMES}
+   */
+  void render(float[] out, int frames) {
+    int written = eventsWritten;
+    for (int read = eventsRead; read != written; read++) {
+      handle(events[read % EVENT_CAPACITY]);
+    }
+    eventsRead = written;
+
+    double p = position;
+    double rate = sweepRate;
+    if (sweepCount != sweepsSeen) {
+      sweepsSeen = sweepCount;
+      p = 0;
+    }
+    if (rate > 0) {
+      boolean loop = looping;
+      for (int s = 0; s < frames; s++) {
+        p += rate;
+        if (p > WAVES - 1) {
+          p = loop ? p - (WAVES - 1) : WAVES - 1;
+        }
+        positions[s] = p;
+      }
+    } else {
+      double target = targetPosition;
+      for (int s = 0; s < frames; s++) {
+        p += Math.clamp(target - p, -GLIDE_STEP, GLIDE_STEP);
+        positions[s] = p;
+      }
+    }
+    position = p;
+
+    Arrays.fill(out, 0, frames, 0);
+    float[] t = tables;
+    if (t == null) return;
+    float gain = VOICE_GAIN * volume;
+    for (Voice voice : voices) {
+      if (voice.note < 0) continue;
+      double phase = voice.phase;
+      float envelope = voice.envelope;
+      int levelBase = voice.level * WAVES * STRIDE;
+      for (int s = 0; s < frames; s++) {
+        double pos = positions[s];
+        int w = (int) pos;
+        float blend = (float) (pos - w);
+        float a = sample(t, levelBase + w * STRIDE, phase);
+        float value = blend > 0 ? a + (sample(t, levelBase + (w + 1) * STRIDE, phase) - a) * blend : a;
+
+        envelope = voice.held
+            ? Math.min(1, envelope + ATTACK_STEP)
+            : Math.max(0, envelope - RELEASE_STEP);
+        out[s] += value * envelope * gain;
+
+        phase += voice.step;
+        if (phase >= TABLE_SIZE) {
+          phase -= TABLE_SIZE;
+        }
+      }
+      voice.phase = phase;
+      voice.envelope = envelope;
+      if (!voice.held && envelope == 0) {
+        voice.note = -1;
+      }
+    }
+  }
+
+  /** Cubic Hermite interpolation of a band-limited copy at a fractional sample position. */
+  private static float sample(float[] t, int base, double phase) {
+    int i = (int) phase;
+    float f = (float) (phase - i);
+    int at = base + i;
+    float y0 = t[at];
+    float y1 = t[at + 1];
+    float y2 = t[at + 2];
+    float y3 = t[at + 3];
+    float c1 = 0.5f * (y2 - y0);
+    float c2 = y0 - 2.5f * y1 + 2 * y2 - 0.5f * y3;
+    float c3 = 0.5f * (y3 - y0) + 1.5f * (y1 - y2);
+    return ((c3 * f + c2) * f + c1) * f + y1;
+  }
+
+  private void handle(int event) {
+    if (event == ALL_NOTES_OFF) {
+      for (Voice voice : voices) {
+        voice.held = false;
+      }
+      return;
+    }
+    int note = event & 0x7F;
+    if ((event & NOTE_ON) == 0) {
+      for (Voice voice : voices) {
+        if (voice.note == note) {
+          voice.held = false;
+        }
+      }
+      return;
+    }
+
+    // Retrigger the same note, else take a free voice, else steal the oldest
+    Voice target = null;
+    for (Voice voice : voices) {
+      if (voice.note == note) {
+        target = voice;
+        break;
+      }
+      if (target == null || (target.note >= 0 && (voice.note < 0 || voice.started < target.started))) {
+        target = voice;
+      }
+    }
+    double frequency = 440 * Math.pow(2, (note - 69) / 12.0);
+    if (target.note != note) {
+      target.phase = 0;
+      target.envelope = 0;
+    }
+    target.note = note;
+    target.held = true;
+    target.step = frequency * TABLE_SIZE / SAMPLE_RATE;
+    target.level = levelFor(frequency);
+    target.started = noteCounter++;
+  }
+}
@@ -1,8 +1,13 @@
 package net.mikolas.lyra.service;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import net.mikolas.lyra.db.WavetableRepository;
 import net.mikolas.lyra.midi.BlofeldProtocol;
 import net.mikolas.lyra.midi.MidiFileReader;
@@ -11,13 +16,14 @@ import net.mikolas.lyra.model.Keyframe;
 import net.mikolas.lyra.model.Wavetable;
 
 /**
- * Service for importing wavetables from MIDI or SysEx files.
+ * Service for importing wavetables from MIDI or SysEx files, or whole folders of them.
  * Handles grouping 64-wave messages and re-indexing them to avoid collisions.
  */
 public class WavetableImportService {
 
     private final WavetableRepository repository;
     private final BlofeldProtocol protocol = new BlofeldProtocol();
+    private final AudioWavetableService audioService = new AudioWavetableService();
 
     public WavetableImportService(WavetableRepository repository) {
         this.repository = repository;
@@ -31,59 +37,152 @@ public class WavetableImportService {
      */
     public ImportResult importFromFile(File file) {
         try {
-            List<byte[]> messages = MidiFileReader.readSysExMessages(file);
-            List<WavetableDump> dumps = new ArrayList<>();
-            
-            for (byte[] data : messages) {
-                try {
-                    Object decoded = protocol.decode(data);
-                    if (decoded instanceof WavetableDump wtDump) {
-                        dumps.add(wtDump);
-                    }
-                } catch (Exception e) {
-                    // Ignore non-wavetable messages or decoding errors
-                }
-            }
-            
-            if (dumps.isEmpty()) {
+            Map<String, List<WavetableDump>> groups = readDumps(file);
+            if (groups.isEmpty()) {
                 return new ImportResult(0, 0, Collections.emptyList(), "No wavetable messages found.");
             }
+            return persist(groups.size(), reconstructAll(groups));
+        } catch (Exception e) {
+            return new ImportResult(0, 0, Collections.emptyList(), "Error: " + e.getMessage());
+        }
+    }
 
-            // Group by name + original slot to distinguish between different tables in one file
-            Map<String, List<WavetableDump>> groups = dumps.stream()
-                .collect(Collectors.groupingBy(d -> d.name() + "_slot_" + d.slot()));
-            
-            int importedCount = 0;
-            List<String> importedNames = new ArrayList<>();
-            
-            for (List<WavetableDump> group : groups.values()) {
-                if (group.size() < 64) {
-                    System.err.println("Skipping incomplete wavetable '" + group.get(0).name() + "' - only " + group.size() + " waves found.");
-                    continue;
-                }
-                
-                Wavetable wt = reconstructWavetable(group);
-                
-                // Refinement: Slot Staggering
-                Integer nextSlot = repository.findNextAvailableSlot();
-                if (nextSlot != null) {
-                    wt.setSlot(nextSlot);
-                } else {
-                    wt.setSlot(null); // Virtual Library / Unassigned
-                }
-                
-                repository.save(wt);
-                importedCount++;
-                importedNames.add(wt.getName());
+    /**
+     * Import every wavetable found in a directory tree: all tables in .syx/.mid files, and 64
+     * pitch-tracked cycles from each WAV/AIFF file.
+     *
+     * <p>Files are decoded in parallel. Slots are then handed out in file order from one scan of
+     * the library, and everything is written in a single transaction, so the library list is
+     * refreshed once however many tables are imported. Unreadable files are logged and skipped.
+     *
+     * @param root directory to search, including subdirectories
+     * @return Import result with counts and names
+     */
+    public ImportResult importFromDirectory(Path root) {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile)
+                .filter(p -> isSysExFile(p) || isAudioFile(p))
+                .sorted()
+                .toList();
+        } catch (IOException | UncheckedIOException e) {
+            return new ImportResult(0, 0, Collections.emptyList(), "Error: " + e.getMessage());
+        }
+        if (files.isEmpty()) {
+            return new ImportResult(0, 0, Collections.emptyList(), "No MIDI, SysEx or audio files found.");
+        }
+
+        // Ordered, so slots follow file order regardless of which decode finishes first
+        List<DecodedFile> decoded = files.parallelStream().map(this::decodeFile).toList();
+
+        int found = 0;
+        List<Wavetable> tables = new ArrayList<>();
+        for (DecodedFile file : decoded) {
+            found += file.found();
+            tables.addAll(file.tables());
+        }
+        if (found == 0) {
+            return new ImportResult(0, 0, Collections.emptyList(), "No wavetables found.");
+        }
+        try {
+            return persist(found, tables);
+        } catch (SQLException e) {
+            return new ImportResult(found, 0, Collections.emptyList(), "Error: " + e.getMessage());
+        }
+    }
+
+    /** Tables found in one file and those complete enough to import. */
+    private record DecodedFile(int found, List<Wavetable> tables) {
+        static final DecodedFile NONE = new DecodedFile(0, List.of());
+    }
+
+    private DecodedFile decodeFile(Path path) {
+        try {
+            if (isAudioFile(path)) {
+                return new DecodedFile(1, List.of(fromAudio(path)));
             }
-            
-            return new ImportResult(groups.size(), importedCount, importedNames, null);
-            
+            Map<String, List<WavetableDump>> groups = readDumps(path.toFile());
+            return new DecodedFile(groups.size(), reconstructAll(groups));
         } catch (Exception e) {
-            return new ImportResult(0, 0, Collections.emptyList(), "Error: " + e.getMessage());
+            System.err.println("Skipping " + path + ": " + e.getMessage());
+            return DecodedFile.NONE;
         }
     }
 
+    /**
+     * Read the wavetable dumps in a file, grouped by name + original slot to distinguish between
+     * different tables in one file. Other messages are skipped.
+     */
+    private Map<String, List<WavetableDump>> readDumps(File file) throws Exception {
+        Map<String, List<WavetableDump>> groups = new LinkedHashMap<>();
+        for (byte[] data : MidiFileReader.readSysExMessages(file)) {
+            if (BlofeldProtocol.isWavetableDump(data)
+                    && protocol.decode(data) instanceof WavetableDump wtDump) {
+                groups.computeIfAbsent(wtDump.name() + "_slot_" + wtDump.slot(), k -> new ArrayList<>())
+                    .add(wtDump);
+            }
+        }
+        return groups;
+    }
+
+    private List<Wavetable> reconstructAll(Map<String, List<WavetableDump>> groups) {
+        List<Wavetable> tables = new ArrayList<>();
+        for (List<WavetableDump> group : groups.values()) {
+            if (group.size() < 64) {
+                System.err.println("Skipping incomplete wavetable '" + group.get(0).name() + "' - only " + group.size() + " waves found.");
+                continue;
+            }
+            tables.add(reconstructWavetable(group));
+        }
+        return tables;
+    }
+
+    /** A table of 64 cycles tracked across the whole file, named after it. */
+    private Wavetable fromAudio(Path path) throws Exception {
+        AudioWavetableService.AudioData audio = audioService.load(path.toFile());
+        AudioWavetableService.Extraction extraction = audioService.extract(audio, 0, audio.samples().length);
+
+        String name = path.getFileName().toString();
+        name = name.substring(0, name.lastIndexOf('.'));
+        Wavetable wt = new Wavetable();
+        wt.setName(name.length() > 14 ? name.substring(0, 14) : name);
+        wt.setFactory(false);
+        int[][] waves = extraction.waves();
+        for (int i = 0; i < waves.length; i++) {
+            Keyframe kf = new Keyframe(i);
+            System.arraycopy(waves[i], 0, kf.getSamples(), 0, 128);
+            wt.getKeyframes().add(kf);
+            System.arraycopy(waves[i], 0, wt.getBouncedWaves()[i], 0, 128);
+        }
+        wt.prepareForSave();
+        return wt;
+    }
+
+    /**
+     * Give each table the next free user slot (none once they run out) and save them all at once.
+     */
+    private ImportResult persist(int found, List<Wavetable> tables) throws SQLException {
+        // Refinement: Slot Staggering
+        Iterator<Integer> freeSlots = repository.findAvailableSlots().iterator();
+        List<String> importedNames = new ArrayList<>();
+        for (Wavetable wt : tables) {
+            wt.setSlot(freeSlots.hasNext() ? freeSlots.next() : null); // null: Virtual Library / Unassigned
+            importedNames.add(wt.getName());
+        }
+        repository.saveAll(tables);
+        return new ImportResult(found, tables.size(), importedNames, null);
+    }
+
+    private static boolean isSysExFile(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".syx") || name.endsWith(".mid") || name.endsWith(".midi");
+    }
+
+    private static boolean isAudioFile(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".wav") || name.endsWith(".aif") || name.endsWith(".aiff");
+    }
+
     private Wavetable reconstructWavetable(List<WavetableDump> waves) {
         // Sort waves by their number (0-63)
         waves.sort(Comparator.comparingInt(WavetableDump::waveNumber));
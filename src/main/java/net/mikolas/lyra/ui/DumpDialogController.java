@@ -9,6 +9,7 @@ import net.mikolas.lyra.db.Database;
 import net.mikolas.lyra.midi.MidiManager;
 import net.mikolas.lyra.midi.MidiService;
 import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.service.SoundHistoryService;
 
 import java.io.File;
 import java.sql.SQLException;
@@ -26,6 +27,7 @@ public class DumpDialogController {
   @FXML private Button cancelBtn;
   
   private Database database;
+  private SoundHistoryService history;
   private File exportDirectory;
   private boolean dumping = false;
   private int totalSounds = 0;
@@ -33,6 +35,7 @@ public class DumpDialogController {
   
   public void setDatabase(Database database) {
     this.database = database;
+    this.history = new SoundHistoryService(database);
   }
   
   @FXML
@@ -129,11 +132,14 @@ public class DumpDialogController {
               .queryForFirst();
           
           if (existing != null) {
-            // Update existing sound
+            // Update existing sound, keeping its previous parameters in history
+            history.record(existing);
             sound.setId(existing.getId());
           }
           
+          sound.updateContentHash();
           database.sounds.createOrUpdate(sound);
+          history.record(sound);
         } catch (SQLException e) {
           System.err.println("Failed to save sound to database: " + e.getMessage());
         }
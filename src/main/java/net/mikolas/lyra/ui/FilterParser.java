@@ -1,6 +1,7 @@
 package net.mikolas.lyra.ui;
 
 import java.util.Optional;
+import net.mikolas.lyra.service.ParamCondition;
 
 /**
  * Utility for parsing tokenized search prefixes.
@@ -10,7 +11,7 @@ public class FilterParser {
   /**
    * Parse a text string into a SoundFilter if it matches a known prefix.
    *
-   * @param text input text (e.g. "tag:Analog")
+   * @param text input text (e.g. "tag:Analog", "param:osc1Shape=sawtooth")
    * @return Optional SoundFilter if parsed successfully
    */
   public static Optional<SoundFilter> parsePrefixFilter(String text) {
@@ -38,6 +39,12 @@ public class FilterParser {
         return Optional.of(new SoundFilter(FilterType.BANK, bank));
       }
     }
+
+    if (prefix.equals("param")) {
+      if (ParamCondition.parse(value).isPresent()) {
+        return Optional.of(new SoundFilter(FilterType.PARAM, value));
+      }
+    }
     
     return Optional.empty();
   }
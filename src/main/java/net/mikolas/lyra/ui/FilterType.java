@@ -10,5 +10,7 @@ public enum FilterType {
   CATEGORY,
   COLLECTION,
   TAG,
-  TEXT
+  TEXT,
+  PARAM,
+  SIMILAR
 }
@@ -24,18 +24,33 @@ import net.mikolas.lyra.midi.MidiService;
 import net.mikolas.lyra.model.ParameterValueType;
 import net.mikolas.lyra.model.ParameterValues;
 import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.service.BulkEditService;
+import net.mikolas.lyra.service.DuplicateService;
 import net.mikolas.lyra.service.ExportService;
 import net.mikolas.lyra.service.ImportService;
+import net.mikolas.lyra.service.LibraryMergeService;
 import net.mikolas.lyra.service.SoundFilterService;
+import net.mikolas.lyra.service.SoundHistoryService;
+import net.mikolas.lyra.service.SoundIndexService;
 import net.mikolas.lyra.service.CollectionService;
 import net.mikolas.lyra.service.TagService;
 import net.mikolas.lyra.service.TreeNavigationService;
 
 import java.io.File;
 import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Controller for the Librarian view (REV3 - TreeView + Tokenized Search).
@@ -47,10 +62,13 @@ public class LibrarianController {
   @FXML private MenuBar menuBar;
   
   private final ExportService exportService = new ExportService();
-  private ImportService importService;
-  private final SoundFilterService filterService = new SoundFilterService();
-  private final CollectionService collectionService = new CollectionService(Database.getInstance());
-  private final TagService tagService = new TagService(Database.getInstance());
+  private final SoundIndexService soundIndex = SoundRepository.getInstance().getIndex();
+  private final SoundFilterService filterService = new SoundFilterService(soundIndex);
+  private final CollectionService collectionService =
+      new CollectionService(Database.getInstance(), soundIndex);
+  private final TagService tagService = new TagService(Database.getInstance(), soundIndex);
+  private final SoundHistoryService historyService =
+      new SoundHistoryService(Database.getInstance());
   private final TreeNavigationService treeNavigationService = new TreeNavigationService();
 
   // Tree browser
@@ -85,12 +103,12 @@ public class LibrarianController {
   private final ObservableList<Sound> allSounds = repository.getAllSounds();
   private FilteredList<Sound> filteredSounds;
   private SortedList<Sound> sortedSounds;
+  private Map<Sound, Integer> resultOrder; // Position in the ranked filter result, if any
   private List<SoundFilter> activeFilters = new ArrayList<>();
 
   @FXML
   public void initialize() {
     database = repository.getDatabase();
-    importService = new ImportService(database);
     
     setupTree();
     setupTable();
@@ -318,8 +336,10 @@ public class LibrarianController {
     filteredSounds = new FilteredList<>(allSounds, p -> true);
     sortedSounds = new SortedList<>(filteredSounds);
     
-    // Bind sorted list comparator to table
-    sortedSounds.comparatorProperty().bind(soundTable.comparatorProperty());
+    // Follow the table's column sort; ranked results are shown in rank order while unsorted.
+    // The sorted list does the sorting, so the default policy's bound-comparator check is skipped.
+    soundTable.comparatorProperty().addListener((obs, oldVal, newVal) -> updateSortComparator());
+    soundTable.setSortPolicy(table -> true);
     
     soundTable.setItems(sortedSounds);
     
@@ -393,6 +413,14 @@ public class LibrarianController {
     editItem.setOnAction(e -> handleEdit());
     contextMenu.getItems().add(editItem);
 
+    MenuItem similarItem = new MenuItem("Find Similar Sounds");
+    similarItem.setOnAction(e -> handleFindSimilar());
+    contextMenu.getItems().add(similarItem);
+
+    MenuItem historyItem = new MenuItem("Revision History...");
+    historyItem.setOnAction(e -> handleHistory());
+    contextMenu.getItems().add(historyItem);
+
     contextMenu.getItems().add(new SeparatorMenuItem());
 
     // Add to Collection submenu
@@ -417,6 +445,7 @@ public class LibrarianController {
       boolean hasSelection = !soundTable.getSelectionModel().isEmpty();
       auditionItem.setDisable(!hasSelection);
       editItem.setDisable(!hasSelection);
+      similarItem.setDisable(!hasSelection);
       updateAddToCollectionMenu(addToCollectionMenu);
       updateTagWithMenu(tagWithMenu);
       updateRemoveFromCollectionMenu(removeFromCollectionMenu);
@@ -485,6 +514,61 @@ public class LibrarianController {
     }
   }
 
+  private void handleFindSimilar() {
+    Sound selected = soundTable.getSelectionModel().getSelectedItem();
+    if (selected == null || selected.getId() == null) return;
+
+    // Only one reference sound at a time
+    activeFilters.removeIf(f -> f.type() == FilterType.SIMILAR);
+    addFilter(SoundFilter.similarTo(selected));
+  }
+
+  private void handleHistory() {
+    Sound selected = soundTable.getSelectionModel().getSelectedItem();
+    if (selected == null || selected.getId() == null) return;
+
+    List<net.mikolas.lyra.model.SoundRevision> revisions;
+    try {
+      revisions = historyService.history(selected.getId());
+    } catch (SQLException e) {
+      showError("Error", "Failed to load history: " + e.getMessage());
+      return;
+    }
+    if (revisions.size() < 2) {
+      showInfo("Revision History", "No earlier revisions of " + selected.getName() + ".");
+      return;
+    }
+
+    DateTimeFormatter format =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+    Map<String, Integer> choices = new LinkedHashMap<>();
+    // The newest revision is the current state; offer the ones before it
+    for (net.mikolas.lyra.model.SoundRevision r : revisions.subList(1, revisions.size())) {
+      String when = r.getCreatedAt() == null
+          ? "" : format.format(Instant.ofEpochMilli(r.getCreatedAt()));
+      choices.put(String.format("#%d  %s  %s", r.getRevision(), when, r.getName()),
+          r.getRevision());
+    }
+
+    List<String> labels = new ArrayList<>(choices.keySet());
+    ChoiceDialog<String> dialog = new ChoiceDialog<>(labels.get(0), labels);
+    dialog.setTitle("Revision History");
+    dialog.setHeaderText("Restore an earlier revision of: " + selected.getName());
+    dialog.setContentText("Revision:");
+
+    dialog.showAndWait().ifPresent(choice -> {
+      try {
+        if (historyService.restore(selected, choices.get(choice))) {
+          soundIndex.indexSound(selected);
+          soundTable.refresh();
+          updateSelection(selected);
+        }
+      } catch (SQLException e) {
+        showError("Error", "Failed to restore revision: " + e.getMessage());
+      }
+    });
+  }
+
   private void handleEdit() {
     Sound selected = soundTable.getSelectionModel().getSelectedItem();
     if (selected == null) return;
@@ -603,10 +687,38 @@ public class LibrarianController {
   private void applyFilters() {
     String searchText = searchField.getText();
     List<Sound> filtered = filterService.filter(allSounds, searchText, activeFilters);
-    filteredSounds.setPredicate(sound -> filtered.contains(sound));
+    boolean wasRanked = resultOrder != null;
+    if (filterService.isRanked(searchText, activeFilters)) {
+      resultOrder = new IdentityHashMap<>(filtered.size() * 2);
+      for (int i = 0; i < filtered.size(); i++) {
+        resultOrder.put(filtered.get(i), i);
+      }
+      // Entering a ranked search drops the column sort; clicking a header sorts again
+      if (!wasRanked) soundTable.getSortOrder().clear();
+    } else {
+      resultOrder = null;
+      if (wasRanked && soundTable.getSortOrder().isEmpty()) {
+        soundTable.getSortOrder().setAll(List.of(bankColumn, programColumn));
+      }
+    }
+    Set<Sound> visible = Collections.newSetFromMap(new IdentityHashMap<>(filtered.size() * 2));
+    visible.addAll(filtered);
+    filteredSounds.setPredicate(visible::contains);
+    updateSortComparator();
     updateStatusBar();
   }
 
+  private void updateSortComparator() {
+    Comparator<Sound> columns = soundTable.getComparator();
+    Map<Sound, Integer> order = resultOrder;
+    if (columns != null || order == null) {
+      sortedSounds.setComparator(columns);
+    } else {
+      sortedSounds.setComparator(
+          Comparator.comparingInt(sound -> order.getOrDefault(sound, Integer.MAX_VALUE)));
+    }
+  }
+
   private void updateSelection(Sound sound) {
     if (sound == null) {
       selectedNameLabel.setText("Selected: (none)");
@@ -688,6 +800,7 @@ public class LibrarianController {
   private void removeFromCollection(Sound sound, net.mikolas.lyra.model.SoundCollection sc) {
     try {
       database.soundCollections.delete(sc);
+      soundIndex.removeFromCollection(sc.getCollection(), List.of(sound.getId()));
       database.sounds.refresh(sound);
       updateMetadataChips(sound);
     } catch (SQLException e) {
@@ -698,6 +811,7 @@ public class LibrarianController {
   private void removeTag(Sound sound, net.mikolas.lyra.model.SoundTag st) {
     try {
       database.soundTags.delete(st);
+      soundIndex.removeTag(st.getTag(), List.of(sound.getId()));
       database.sounds.refresh(sound);
       updateMetadataChips(sound);
     } catch (SQLException e) {
@@ -739,8 +853,11 @@ public class LibrarianController {
 
     File file = fileChooser.showOpenDialog(soundTable.getScene().getWindow());
     if (file != null) {
+      Optional<ImportService.DuplicatePolicy> policy = askDuplicatePolicy(file);
+      if (policy.isEmpty()) return;
       try {
-        ImportService.ImportResult result = importService.importFromFile(file);
+        ImportService.ImportResult result =
+            new ImportService(database, policy.get()).importFromFile(file);
         
         if (result.imported() > 0) {
           loadSounds(); // Refresh table
@@ -765,6 +882,27 @@ public class LibrarianController {
     }
   }
 
+  /**
+   * Ask how sounds already in the library (by content) should be imported.
+   *
+   * @param file file about to be imported
+   * @return chosen policy, or empty if the import was cancelled
+   */
+  private Optional<ImportService.DuplicatePolicy> askDuplicatePolicy(File file) {
+    Map<String, ImportService.DuplicatePolicy> choices = new LinkedHashMap<>();
+    choices.put("Skip sounds already in the library", ImportService.DuplicatePolicy.SKIP);
+    choices.put("Import them and tag them \"" + ImportService.DUPLICATE_TAG + "\"",
+        ImportService.DuplicatePolicy.FLAG);
+    choices.put("Import them like any other sound", ImportService.DuplicatePolicy.IMPORT);
+
+    List<String> labels = new ArrayList<>(choices.keySet());
+    ChoiceDialog<String> dialog = new ChoiceDialog<>(labels.get(0), labels);
+    dialog.setTitle("Import Sounds");
+    dialog.setHeaderText("Import " + file.getName());
+    dialog.setContentText("Duplicates:");
+    return dialog.showAndWait().map(choices::get);
+  }
+
   @FXML
   private void handleExportSelected() {
     List<Sound> selected = soundTable.getSelectionModel().getSelectedItems();
@@ -843,6 +981,7 @@ public class LibrarianController {
             .name(name.trim())
             .build();
         database.collections.create(c);
+        soundIndex.registerCollection(c);
         setupTree(); // Refresh tree
       } catch (SQLException e) {
         showError("Error", "Failed to create collection: " + e.getMessage());
@@ -860,6 +999,7 @@ public class LibrarianController {
           (item, newName) -> {
             item.setName(newName);
             database.collections.update(item);
+            soundIndex.registerCollection(item);
           },
           item -> {
             // Delete associations first
@@ -867,12 +1007,14 @@ public class LibrarianController {
             dbldr.where().eq("collection_id", item.getId());
             dbldr.delete();
             database.collections.delete(item);
+            soundIndex.deleteCollection(item);
           },
           name -> {
             net.mikolas.lyra.model.Collection c = net.mikolas.lyra.model.Collection.builder()
                 .name(name)
                 .build();
             database.collections.create(c);
+            soundIndex.registerCollection(c);
             return c;
           }
       );
@@ -896,6 +1038,7 @@ public class LibrarianController {
             .name(name.trim())
             .build();
         database.tags.create(t);
+        soundIndex.registerTag(t);
         setupTree(); // Refresh tree
       } catch (SQLException e) {
         showError("Error", "Failed to create tag: " + e.getMessage());
@@ -913,6 +1056,7 @@ public class LibrarianController {
           (item, newName) -> {
             item.setName(newName);
             database.tags.update(item);
+            soundIndex.registerTag(item);
           },
           item -> {
             // Delete associations first
@@ -920,12 +1064,14 @@ public class LibrarianController {
             dbldr.where().eq("tag_id", item.getId());
             dbldr.delete();
             database.tags.delete(item);
+            soundIndex.deleteTag(item);
           },
           name -> {
             net.mikolas.lyra.model.Tag t = net.mikolas.lyra.model.Tag.builder()
                 .name(name)
                 .build();
             database.tags.create(t);
+            soundIndex.registerTag(t);
             return t;
           }
       );
@@ -1040,7 +1186,130 @@ public class LibrarianController {
 
   @FXML
   private void handleFindDuplicates() {
-    showNotImplemented("Find Duplicates");
+    if (database == null) return;
+
+    List<DuplicateService.DuplicateGroup> groups;
+    try {
+      groups = new DuplicateService(database).findDuplicates();
+    } catch (SQLException e) {
+      showError("Error", "Failed to find duplicates: " + e.getMessage());
+      return;
+    }
+    if (groups.isEmpty()) {
+      showInfo("Find Duplicates", "No duplicate sounds found.");
+      return;
+    }
+
+    Map<Integer, Sound> byId = new HashMap<>();
+    for (Sound sound : allSounds) {
+      if (sound.getId() != null) byId.put(sound.getId(), sound);
+    }
+    StringBuilder report = new StringBuilder();
+    List<Integer> copies = new ArrayList<>();
+    for (DuplicateService.DuplicateGroup group : groups) {
+      copies.addAll(group.copies());
+      List<String> entries = new ArrayList<>();
+      for (Integer id : group.soundIds()) {
+        Sound sound = byId.get(id);
+        if (sound == null) continue;
+        String slot = sound.getBank() != null && sound.getProgram() != null
+            ? String.format("%c%03d", (char) ('A' + sound.getBank()), sound.getProgram() + 1)
+            : "unassigned";
+        entries.add(sound.getName() + " (" + slot + ")");
+      }
+      report.append(String.join(", ", entries)).append("\n");
+    }
+
+    TextArea details = new TextArea(report.toString());
+    details.setEditable(false);
+    details.setWrapText(true);
+
+    ButtonType tagCopies = new ButtonType("Tag Copies", ButtonBar.ButtonData.OK_DONE);
+    Alert alert = new Alert(Alert.AlertType.INFORMATION, "", tagCopies, ButtonType.CLOSE);
+    alert.setTitle("Find Duplicates");
+    alert.setHeaderText(String.format("%d sounds have identical copies (%d extra copies)",
+        groups.size(), copies.size()));
+    alert.setContentText("Tag the extra copies with \"" + ImportService.DUPLICATE_TAG
+        + "\" to review or remove them.");
+    alert.getDialogPane().setExpandableContent(details);
+    alert.getDialogPane().setExpanded(true);
+
+    alert.showAndWait().filter(response -> response == tagCopies).ifPresent(response -> {
+      try {
+        net.mikolas.lyra.model.Tag tag = database.tags.queryBuilder()
+            .where().eq("name", ImportService.DUPLICATE_TAG).queryForFirst();
+        if (tag == null) {
+          tag = net.mikolas.lyra.model.Tag.builder().name(ImportService.DUPLICATE_TAG).build();
+          database.tags.create(tag);
+        }
+        tagService.addTagToSoundIds(copies, tag);
+        setupTree(); // Refresh tree
+        addFilter(new SoundFilter(FilterType.TAG, tag.getName()));
+      } catch (SQLException e) {
+        showError("Error", "Failed to tag duplicates: " + e.getMessage());
+      }
+    });
+  }
+
+  @FXML
+  private void handleBulkEdit() {
+    if (database == null || filteredSounds.isEmpty()) return;
+    List<Sound> targets = new ArrayList<>(filteredSounds);
+
+    TextInputDialog dialog = new TextInputDialog();
+    dialog.setTitle("Bulk Edit");
+    dialog.setHeaderText("Edit parameters of the " + targets.size() + " visible sounds");
+    dialog.setContentText("Edits (e.g. arpeggiatorMode = off; amplifierVolume *= 0.8):");
+
+    dialog.showAndWait().ifPresent(expression -> {
+      Optional<List<BulkEditService.ParamEdit>> edits =
+          BulkEditService.ParamEdit.parseAll(expression);
+      if (edits.isEmpty()) {
+        showError("Bulk Edit", "Invalid edit: " + expression
+            + "\nUse <param> = <value>, += <n>, -= <n> or *= <factor>, separated by ';'.");
+        return;
+      }
+      try {
+        BulkEditService.BulkEditResult result =
+            new BulkEditService(database, soundIndex).apply(targets, edits.get());
+        soundTable.refresh();
+        applyFilters();
+        updateSelection(soundTable.getSelectionModel().getSelectedItem());
+        showInfo("Bulk Edit", result.getSummary());
+      } catch (SQLException e) {
+        showError("Error", "Bulk edit failed: " + e.getMessage());
+      }
+    });
+  }
+
+  @FXML
+  private void handleMergeLibrary() {
+    if (database == null) return;
+    FileChooser fileChooser = new FileChooser();
+    fileChooser.setTitle("Merge Library");
+    fileChooser.getExtensionFilters().addAll(
+        new FileChooser.ExtensionFilter("Lyra Libraries (*.db)", "*.db"),
+        new FileChooser.ExtensionFilter("All Files", "*.*")
+    );
+
+    File file = fileChooser.showOpenDialog(soundTable.getScene().getWindow());
+    if (file == null) return;
+    try {
+      // Reads a copy, so the chosen library is never migrated or otherwise modified
+      LibraryMergeService.MergeResult result =
+          new LibraryMergeService(database).merge(file.toPath());
+      loadSounds();
+      setupTree(); // Refresh tree
+      if (result.wavetablesAdded() > 0) {
+        net.mikolas.lyra.db.WavetableRepository.getInstance().refresh();
+      }
+      if (result.multisAdded() > 0) {
+        net.mikolas.lyra.db.MultiRepository.getInstance().refresh();
+      }
+      showInfo("Merge Complete", result.getSummary());
+    } catch (Exception e) {
+      showError("Merge Failed", "Error merging library: " + e.getMessage());
+    }
   }
 
   // Event handlers - Dump menu
@@ -1242,8 +1511,11 @@ public class LibrarianController {
       if (finalName.length() > 16) finalName = finalName.substring(0, 16);
       
       try {
+        historyService.record(selected);
         selected.setNameAndSyncParameters(finalName);
         database.sounds.update(selected);
+        historyService.record(selected);
+        soundIndex.indexSound(selected);
         soundTable.refresh();
         updateSelection(selected);
       } catch (SQLException e) {
@@ -1265,6 +1537,7 @@ public class LibrarianController {
       clone.setProgram(null);
       
       database.sounds.create(clone);
+      soundIndex.indexSound(clone);
       allSounds.add(clone);
       soundTable.getSelectionModel().select(clone);
       updateStatusBar();
@@ -1297,8 +1570,11 @@ public class LibrarianController {
           stBldr.where().eq("sound_id", selected.getId());
           stBldr.delete();
 
+          historyService.deleteHistory(selected.getId());
+
           // 2. Delete the sound
           database.sounds.delete(selected);
+          soundIndex.removeSound(selected.getId());
           
           // 3. Update UI
           allSounds.remove(selected);
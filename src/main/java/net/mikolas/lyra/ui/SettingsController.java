@@ -5,6 +5,7 @@ import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
+import net.mikolas.lyra.db.DatabaseBackupService;
 import net.mikolas.lyra.midi.MidiManager;
 import net.mikolas.lyra.midi.MidiService;
 import net.mikolas.lyra.model.AppSettings;
@@ -51,6 +52,7 @@ public class SettingsController {
   @FXML private Button dbRestoreBtn;
   @FXML private CheckBox backupEnabledCheck;
   @FXML private Spinner<Integer> backupIntervalSpinner;
+  @FXML private CheckBox mappedSoundStoreCheck;
   
   // Miscellaneous
   @FXML private CheckBox singleClickProgramChangeCheck;
@@ -189,6 +191,7 @@ public class SettingsController {
     dbPathField.setText(settings.getDatabasePath());
     backupEnabledCheck.setSelected(settings.isDatabaseBackupEnabled());
     backupIntervalSpinner.getValueFactory().setValue(settings.getBackupIntervalMinutes());
+    mappedSoundStoreCheck.setSelected(settings.isMappedSoundStoreEnabled());
     
     // Browse button
     dbBrowseBtn.setOnAction(e -> {
@@ -337,6 +340,8 @@ public class SettingsController {
     settings.setDatabasePath(dbPathField.getText());
     settings.setDatabaseBackupEnabled(backupEnabledCheck.isSelected());
     settings.setBackupIntervalMinutes(backupIntervalSpinner.getValue());
+    settings.setMappedSoundStoreEnabled(mappedSoundStoreCheck.isSelected());
+    DatabaseBackupService.getInstance().start(settings);
     
     // Save MIDI preferences
     settings.setAutoConnectEnabled(autoConnectCheck.isSelected());
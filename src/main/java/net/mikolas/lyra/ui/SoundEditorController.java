@@ -3,6 +3,9 @@ package net.mikolas.lyra.ui;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
+import net.mikolas.lyra.db.EditJournal;
+import net.mikolas.lyra.model.AppSettings;
+import net.mikolas.lyra.model.AutosaveMode;
 import net.mikolas.lyra.model.Sound;
 import net.mikolas.lyra.model.ParameterValues;
 import net.mikolas.lyra.model.ParameterValueType;
@@ -216,7 +219,15 @@ public class SoundEditorController {
 
     private void setupMidiListeners() {
         // Setup MIDI sync listener (outgoing)
+        boolean autosave = new AppSettings().getAutosaveMode() != AutosaveMode.ALWAYS_OFF;
         sound.setParameterChangeListener((paramId, value) -> {
+            if (autosave && sound.getId() != null) {
+                try {
+                    EditJournal.getInstance().record(sound.getId(), paramId, value);
+                } catch (java.io.IOException e) {
+                    System.err.println("Autosave Error: " + e.getMessage());
+                }
+            }
             try {
                 MidiService midi = MidiManager.getInstance().getService();
                 if (midi != null) {
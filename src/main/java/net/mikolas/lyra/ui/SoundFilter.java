@@ -1,5 +1,7 @@
 package net.mikolas.lyra.ui;
 
+import net.mikolas.lyra.model.Sound;
+
 /**
  * Filter chip for tokenized search.
  *
@@ -8,6 +10,30 @@ package net.mikolas.lyra.ui;
  */
 public record SoundFilter(FilterType type, String value) {
 
+  /**
+   * Create a "similar sounds" filter. The value is {@code name#id}.
+   *
+   * @param sound reference sound (must be saved)
+   * @return filter chip
+   */
+  public static SoundFilter similarTo(Sound sound) {
+    return new SoundFilter(FilterType.SIMILAR, sound.getName() + "#" + sound.getId());
+  }
+
+  /**
+   * Reference sound ID of a {@link FilterType#SIMILAR} filter.
+   *
+   * @return sound ID, or null for other filter types or a malformed value
+   */
+  public Integer similarSoundId() {
+    if (type != FilterType.SIMILAR) return null;
+    try {
+      return Integer.parseInt(value.substring(value.lastIndexOf('#') + 1));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
   public String getDisplayText() {
     return switch (type) {
       case BANK -> "📂 Bank: " + value;
@@ -15,6 +41,8 @@ public record SoundFilter(FilterType type, String value) {
       case COLLECTION -> "📚 Coll: " + value;
       case TAG -> "🏷️ Tag: " + value;
       case TEXT -> value;
+      case PARAM -> "🎛️ Param: " + value;
+      case SIMILAR -> "≈ Like: " + value.substring(0, Math.max(0, value.lastIndexOf('#')));
     };
   }
 }
@@ -11,6 +11,7 @@ import javafx.beans.property.Property;
 import javafx.scene.paint.Color;
 import net.mikolas.lyra.model.Harmonic;
 import net.mikolas.lyra.model.Keyframe;
+import net.mikolas.lyra.model.WaveFft;
 import net.mikolas.lyra.model.Wavetable;
 
 public class WavetableEditorController {
@@ -23,6 +24,7 @@ public class WavetableEditorController {
     
     @FXML private Canvas full3DCanvas;
     @FXML private Slider volumeSlider;
+    @FXML private ToggleButton loopToggle;
     @FXML private Pane pianoContainer;
     
     @FXML private TextField nameField;
@@ -38,7 +40,9 @@ public class WavetableEditorController {
     @FXML private Canvas waveEditCanvas;
     @FXML private ToggleGroup morphGroup;
     @FXML private RadioButton constantRadio, curveRadio, translateRadio, spectralRadio;
+    @FXML private RadioButton spectralMorphRadio;
     @FXML private ComboBox<String> curveFuncCombo;
+    @FXML private ComboBox<Keyframe.PhaseMode> phaseModeCombo;
     @FXML private Spinner<Integer> translateSpinner;
     @FXML private Button applyMorphBtn;
 
@@ -80,6 +84,15 @@ public class WavetableEditorController {
     @FXML private HBox harmonicsContainer;
     @FXML private ComboBox<String> harmonicsWaveTypeCombo;
     @FXML private CheckBox addHarmonicsChk;
+    @FXML private Canvas spectrumCanvas;
+    @FXML private CheckBox spectrumAllWavesChk;
+    @FXML private Label spectrumInfoLabel;
+
+    // Spectrum view: magnitudes in dB relative to a full-scale sine, phases in the bottom strip
+    private static final double SPECTRUM_FLOOR_DB = -96.0;
+    private static final double FULL_SCALE_BIN = 64 * NORM_Y;
+    private static final double PHASE_STRIP = 0.25;
+    private Keyframe spectrumKeyframe = null; // Keyframe whose bins are being dragged
     
     @FXML private Canvas audioPreviewCanvas;
     @FXML private ListView<String> audioFileListView;
@@ -91,7 +104,18 @@ public class WavetableEditorController {
     
     private final Slider[] harmonicSliders = new Slider[50];
     private float[] loadedAudioData;
-    private int audioSampleRate;
+    private net.mikolas.lyra.service.AudioWavetableService.AudioData loadedAudio;
+    private final net.mikolas.lyra.service.AudioWavetableService audioWavetableService = new net.mikolas.lyra.service.AudioWavetableService();
+
+    // Audition
+    private static final int KEYBOARD_LOW_NOTE = 36; // C2
+    private static final int KEYBOARD_WHITE_KEYS = 28; // Four octaves
+    private static final int SWEEP_NOTE = 48; // C3
+    private static final double SWEEP_SECONDS = 4.0;
+    private final net.mikolas.lyra.service.WavetableAuditionEngine auditionEngine = new net.mikolas.lyra.service.WavetableAuditionEngine();
+    private final Canvas keyboardCanvas = new Canvas();
+    private int heldKeyboardNote = -1;
+    private boolean sweepNoteHeld = false;
 
     @FXML
     public void initialize() {
@@ -104,7 +128,9 @@ public class WavetableEditorController {
         setup3DInteraction();
         setupMorphBindings();
         setupHarmonicsEditor();
+        setupSpectrumEditor();
         setupAudioImport();
+        setupAudition();
         setupLibraryDock();
         setupBindings();
         
@@ -143,6 +169,128 @@ public class WavetableEditorController {
         audioPreviewCanvas.heightProperty().addListener(e -> renderAudioPreview());
     }
 
+    private void setupAudition() {
+        pianoContainer.setMinHeight(36);
+        pianoContainer.getChildren().add(keyboardCanvas);
+        keyboardCanvas.widthProperty().bind(pianoContainer.widthProperty());
+        keyboardCanvas.heightProperty().bind(pianoContainer.heightProperty());
+        keyboardCanvas.widthProperty().addListener(e -> renderKeyboard());
+        keyboardCanvas.heightProperty().addListener(e -> renderKeyboard());
+
+        keyboardCanvas.setOnMousePressed(e -> playKeyboardNote(keyboardNoteAt(e.getX(), e.getY())));
+        // Dragging across keys plays each one in turn
+        keyboardCanvas.setOnMouseDragged(e -> {
+            int note = keyboardNoteAt(e.getX(), e.getY());
+            if (note != heldKeyboardNote) playKeyboardNote(note);
+        });
+        keyboardCanvas.setOnMouseReleased(e -> playKeyboardNote(-1));
+
+        auditionEngine.setVolume(volumeSlider.getValue());
+        volumeSlider.valueProperty().addListener((obs, old, val) -> auditionEngine.setVolume(val.doubleValue()));
+        loopToggle.selectedProperty().addListener((obs, old, val) -> auditionEngine.setLooping(val));
+    }
+
+    /**
+     * Open the audio output on first use; it is released when the editor window closes.
+     * @return false if no output is available
+     */
+    private boolean startAudition() {
+        if (auditionEngine.isRunning()) return true;
+        try {
+            auditionEngine.start();
+        } catch (javax.sound.sampled.LineUnavailableException | IllegalArgumentException e) {
+            statusLabel.setText("Audio output unavailable: " + e.getMessage());
+            return false;
+        }
+        statusLabel.getScene().getWindow().addEventHandler(javafx.stage.WindowEvent.WINDOW_HIDDEN, e -> auditionEngine.close());
+        auditionEngine.setLooping(loopToggle.isSelected());
+        updateAudition();
+        return true;
+    }
+
+    /** Keep the audition engine on the current waves and selected position. */
+    private void updateAudition() {
+        if (!auditionEngine.isRunning()) return;
+        auditionEngine.setWaves(wavetable.getBouncedWaves());
+        auditionEngine.setPosition(selectedWaveIndex);
+    }
+
+    /** Release the held key, if any, and press another (-1 for none). */
+    private void playKeyboardNote(int note) {
+        if (heldKeyboardNote >= 0) auditionEngine.noteOff(heldKeyboardNote);
+        heldKeyboardNote = -1;
+        if (note >= 0 && startAudition()) {
+            auditionEngine.noteOn(note);
+            heldKeyboardNote = note;
+        }
+        renderKeyboard();
+    }
+
+    @FXML
+    private void handlePlaySweep() {
+        if (!startAudition()) return;
+        if (!sweepNoteHeld) {
+            auditionEngine.noteOn(SWEEP_NOTE);
+            sweepNoteHeld = true;
+        }
+        auditionEngine.sweep(SWEEP_SECONDS);
+        statusLabel.setText("Sweeping all 64 waves" + (loopToggle.isSelected() ? " (looping)" : ""));
+    }
+
+    @FXML
+    private void handleStopAudition() {
+        auditionEngine.allNotesOff();
+        auditionEngine.stopSweep();
+        sweepNoteHeld = false;
+        heldKeyboardNote = -1;
+        renderKeyboard();
+    }
+
+    private static boolean isBlackKey(int note) {
+        int pc = note % 12;
+        return pc == 1 || pc == 3 || pc == 6 || pc == 8 || pc == 10;
+    }
+
+    private static int whiteKeyNote(int whiteIndex) {
+        int[] offsets = {0, 2, 4, 5, 7, 9, 11};
+        return KEYBOARD_LOW_NOTE + (whiteIndex / 7) * 12 + offsets[whiteIndex % 7];
+    }
+
+    private int keyboardNoteAt(double x, double y) {
+        double keyWidth = keyboardCanvas.getWidth() / KEYBOARD_WHITE_KEYS;
+        int whiteIndex = (int) (x / keyWidth);
+        if (keyWidth <= 0 || x < 0 || whiteIndex >= KEYBOARD_WHITE_KEYS) return -1;
+        int note = whiteKeyNote(whiteIndex);
+        if (y < keyboardCanvas.getHeight() * 0.6) {
+            // Black keys straddle the white key edges, 0.6 key widths wide
+            double within = x / keyWidth - whiteIndex;
+            if (within < 0.3 && whiteIndex > 0 && isBlackKey(note - 1)) return note - 1;
+            if (within > 0.7 && isBlackKey(note + 1) && whiteIndex < KEYBOARD_WHITE_KEYS - 1) return note + 1;
+        }
+        return note;
+    }
+
+    private void renderKeyboard() {
+        GraphicsContext gc = keyboardCanvas.getGraphicsContext2D();
+        double w = keyboardCanvas.getWidth();
+        double h = keyboardCanvas.getHeight();
+        double keyWidth = w / KEYBOARD_WHITE_KEYS;
+        gc.clearRect(0, 0, w, h);
+
+        gc.setStroke(Color.web("#333333"));
+        for (int i = 0; i < KEYBOARD_WHITE_KEYS; i++) {
+            gc.setFill(whiteKeyNote(i) == heldKeyboardNote ? Color.web("#00FFFF") : Color.web("#DDDDDD"));
+            gc.fillRect(i * keyWidth, 0, keyWidth, h);
+            gc.strokeRect(i * keyWidth, 0, keyWidth, h);
+        }
+        for (int i = 1; i < KEYBOARD_WHITE_KEYS; i++) {
+            int note = whiteKeyNote(i) - 1;
+            if (!isBlackKey(note)) continue;
+            gc.setFill(note == heldKeyboardNote ? Color.web("#008888") : Color.web("#121212"));
+            gc.fillRect((i - 0.3) * keyWidth, 0, keyWidth * 0.6, h * 0.6);
+        }
+    }
+
     private void setupLibraryDock() {
         net.mikolas.lyra.db.WavetableRepository repo = net.mikolas.lyra.db.WavetableRepository.getInstance();
         
@@ -233,7 +381,7 @@ public class WavetableEditorController {
         javafx.stage.FileChooser fileChooser = new javafx.stage.FileChooser();
         fileChooser.setTitle("Open Audio File");
         fileChooser.getExtensionFilters().add(
-            new javafx.stage.FileChooser.ExtensionFilter("Audio Files", "*.wav")
+            new javafx.stage.FileChooser.ExtensionFilter("Audio Files", "*.wav", "*.aif", "*.aiff")
         );
         java.io.File file = fileChooser.showOpenDialog(audioPreviewCanvas.getScene().getWindow());
         if (file != null) {
@@ -243,24 +391,12 @@ public class WavetableEditorController {
 
     private void loadAudioFile(java.io.File file) {
         try {
-            javax.sound.sampled.AudioInputStream ais = javax.sound.sampled.AudioSystem.getAudioInputStream(file);
-            javax.sound.sampled.AudioFormat format = ais.getFormat();
+            // Streamed and downmixed to mono; any PCM WAV/AIFF up to 32-bit
+            loadedAudio = audioWavetableService.load(file);
+            loadedAudioData = loadedAudio.samples();
+            ((SpinnerValueFactory.IntegerSpinnerValueFactory) audioOffsetSpinner.getValueFactory())
+                    .setMax(Math.max(0, loadedAudioData.length - 1));
             
-            byte[] bytes = ais.readAllBytes();
-            int numSamples = bytes.length / format.getFrameSize();
-            loadedAudioData = new float[numSamples];
-            
-            // Simple 16-bit PCM mono loading
-            java.nio.ByteBuffer bb = java.nio.ByteBuffer.wrap(bytes).order(java.nio.ByteOrder.LITTLE_ENDIAN);
-            for (int i = 0; i < numSamples; i++) {
-                if (format.getSampleSizeInBits() == 16) {
-                    loadedAudioData[i] = bb.getShort() / 32768.0f;
-                } else {
-                    loadedAudioData[i] = (bb.get() & 0xFF) / 128.0f - 1.0f;
-                }
-            }
-            
-            audioSampleRate = (int) format.getSampleRate();
             audioFileListView.getItems().add(file.getName());
             audioFileListView.getSelectionModel().select(file.getName());
             
@@ -308,45 +444,56 @@ public class WavetableEditorController {
 
     @FXML
     private void handleImportFullAudio() {
-        if (loadedAudioData == null) return;
+        if (loadedAudio == null) return;
         
+        // 64 pitch-tracked single cycles spread from the offset to the end of the file
         int offset = audioOffsetSpinner.getValue();
-        wavetable.getKeyframes().clear();
+        net.mikolas.lyra.service.AudioWavetableService.Extraction extraction =
+                audioWavetableService.extract(loadedAudio, offset, loadedAudioData.length);
         
+        wavetable.recordKeyframeListEdit();
+        wavetable.getKeyframes().clear();
         for (int i = 0; i < 64; i++) {
             Keyframe kf = new Keyframe(i);
             for (int s = 0; s < 128; s++) {
-                int idx = offset + (i * 128) + s;
-                float val = (idx < loadedAudioData.length) ? loadedAudioData[idx] : 0;
-                kf.setSample(s, (int) (val * NORM_Y));
+                kf.setSample(s, extraction.waves()[i][s]);
             }
             wavetable.getKeyframes().add(kf);
         }
         
         wavetable.markDirty();
         renderAll();
-        statusLabel.setText("Imported 64 waves from audio.");
+        statusLabel.setText(extraction.getSummary());
     }
 
     @FXML
     private void handleImportSelectedAudio() {
-        // For now, same as full import starting at selectedWaveIndex
-        if (loadedAudioData == null) return;
+        if (loadedAudio == null) return;
         
         int offset = audioOffsetSpinner.getValue();
+        wavetable.beginEdit();
         ensureKeyframeAtSelected();
         Keyframe kf = getSelectedKeyframe();
+        wavetable.recordKeyframeEdit(kf);
+        wavetable.endEdit();
         
-        if (kf != null) {
+        int[] cycle = new int[128];
+        double frequency = audioWavetableService.extractCycle(loadedAudio, offset, cycle);
+        if (Double.isNaN(frequency)) {
+            // Unpitched audio: take the raw 128 samples at the offset
             for (int s = 0; s < 128; s++) {
                 int idx = offset + s;
                 float val = (idx < loadedAudioData.length) ? loadedAudioData[idx] : 0;
-                kf.setSample(s, (int) (val * NORM_Y));
+                cycle[s] = (int) (val * NORM_Y);
             }
-            wavetable.markDirty();
-            renderAll();
-            statusLabel.setText("Imported wave from audio offset.");
         }
+        for (int s = 0; s < 128; s++) {
+            kf.setSample(s, cycle[s]);
+        }
+        wavetable.markDirty(kf);
+        renderAll();
+        statusLabel.setText(Double.isNaN(frequency) ? "Imported wave from audio offset."
+                : String.format("Imported %.1f Hz cycle from audio offset.", frequency));
     }
 
     private void setupHarmonicsEditor() {
@@ -374,11 +521,95 @@ public class WavetableEditorController {
         }
     }
 
+    private void setupSpectrumEditor() {
+        spectrumAllWavesChk.setOnAction(e -> renderSpectrum());
+
+        spectrumCanvas.setOnMousePressed(e -> {
+            if (spectrumAllWavesChk.isSelected()) {
+                // Overview: click a column to select its wave
+                int index = (int) (e.getX() / spectrumCanvas.getWidth() * 64);
+                if (index >= 0 && index < 64) {
+                    selectedWaveIndex = index;
+                    renderAll();
+                }
+                return;
+            }
+            wavetable.beginEdit();
+            spectrumKeyframe = keyframeForSpectrumEdit();
+            wavetable.recordKeyframeEdit(spectrumKeyframe);
+            handleSpectrumDrag(e.getX(), e.getY());
+        });
+
+        spectrumCanvas.setOnMouseDragged(e -> {
+            if (spectrumKeyframe != null) {
+                handleSpectrumDrag(e.getX(), e.getY());
+            }
+        });
+
+        spectrumCanvas.setOnMouseReleased(e -> {
+            if (spectrumKeyframe != null) {
+                wavetable.endEdit();
+                spectrumKeyframe = null;
+                renderAll();
+            }
+        });
+    }
+
+    /**
+     * The selected keyframe, created from the currently bounced wave if there is none, so
+     * spectral edits start from what the user sees.
+     */
+    private Keyframe keyframeForSpectrumEdit() {
+        Keyframe kf = getSelectedKeyframe();
+        if (kf == null) {
+            int[] wave = wavetable.getWave(selectedWaveIndex);
+            kf = new Keyframe(selectedWaveIndex);
+            for (int i = 0; i < 128; i++) kf.setSample(i, wave[i]);
+            wavetable.recordKeyframeListEdit();
+            wavetable.getKeyframes().add(kf);
+            wavetable.markKeyframesChanged();
+        }
+        return kf;
+    }
+
+    /**
+     * Set the bin under the cursor: magnitude in the upper area, phase in the bottom strip.
+     * Only the edited keyframe is resynthesized; the 3D view catches up on release.
+     */
+    private void handleSpectrumDrag(double x, double y) {
+        double w = spectrumCanvas.getWidth();
+        double h = spectrumCanvas.getHeight();
+        int bin = (int) (x / w * WaveFft.BINS);
+        if (bin < 0 || bin >= WaveFft.BINS) return;
+
+        double magnitudeHeight = h * (1 - PHASE_STRIP);
+        WaveFft.Spectrum spectrum = spectrumKeyframe.getSpectrum();
+        if (y < magnitudeHeight) {
+            double db = SPECTRUM_FLOOR_DB * Math.clamp(y / magnitudeHeight, 0, 1);
+            double magnitude = db <= SPECTRUM_FLOOR_DB ? 0 : FULL_SCALE_BIN * Math.pow(10, db / 20);
+            spectrumKeyframe.setBin(bin, magnitude, spectrum.phase()[bin]);
+        } else {
+            double t = Math.clamp((y - magnitudeHeight) / (h - magnitudeHeight), 0, 1);
+            spectrumKeyframe.setBin(bin, spectrum.magnitude()[bin], Math.PI - 2 * Math.PI * t);
+        }
+        wavetable.markDirty(spectrumKeyframe);
+
+        WaveFft.Spectrum edited = spectrumKeyframe.getSpectrum();
+        spectrumInfoLabel.setText(String.format("Bin %d: %.1f dB, phase %.2f", bin,
+                20 * Math.log10(Math.max(edited.magnitude()[bin], 1e-9) / FULL_SCALE_BIN),
+                edited.phase()[bin]));
+        renderSpectrum();
+        renderEditCanvas();
+        renderCurrentWave();
+    }
+
     @FXML
     private void handleApplyHarmonics() {
+        wavetable.beginEdit();
         ensureKeyframeAtSelected();
         Keyframe kf = getSelectedKeyframe();
-        if (kf == null) return;
+        wavetable.recordKeyframeEdit(kf);
+        wavetable.endEdit();
         
         // Clear existing harmonics
         kf.getHarmonics().clear();
@@ -404,7 +635,7 @@ public class WavetableEditorController {
             kf.setSample(i, result[i]);
         }
         
-        wavetable.markDirty();
+        wavetable.markDirty(kf);
         renderAll();
         statusLabel.setText("Applied " + kf.getHarmonics().size() + " harmonics");
     }
@@ -420,21 +651,36 @@ public class WavetableEditorController {
         curveRadio.setOnAction(e -> updateSelectedMorphMode(Keyframe.TransformMode.CURVE));
         translateRadio.setOnAction(e -> updateSelectedMorphMode(Keyframe.TransformMode.TRANSLATE));
         spectralRadio.setOnAction(e -> updateSelectedMorphMode(Keyframe.TransformMode.SPECTRAL));
+        spectralMorphRadio.setOnAction(
+                e -> updateSelectedMorphMode(Keyframe.TransformMode.SPECTRAL_MORPH));
 
         curveFuncCombo.setOnAction(e -> {
             Keyframe kf = getSelectedKeyframe();
             if (kf != null) {
+                wavetable.recordKeyframeEdit(kf);
                 kf.setCurveFunction(curveFuncCombo.getValue());
-                wavetable.markDirty();
+                wavetable.markDirty(kf);
+                renderAll();
+            }
+        });
+
+        phaseModeCombo.setOnAction(e -> {
+            Keyframe kf = getSelectedKeyframe();
+            if (kf != null && phaseModeCombo.getValue() != null) {
+                wavetable.recordKeyframeEdit(kf);
+                kf.setPhaseMode(phaseModeCombo.getValue());
+                wavetable.markDirty(kf);
                 renderAll();
             }
         });
 
         translateSpinner.valueProperty().addListener((obs, old, val) -> {
             Keyframe kf = getSelectedKeyframe();
-            if (kf != null) {
+            // Also fires when updateMorphUI syncs the spinner to a newly selected keyframe
+            if (kf != null && kf.getTranslateOffset() != val) {
+                wavetable.recordKeyframeEdit(kf);
                 kf.setTranslateOffset(val);
-                wavetable.markDirty();
+                wavetable.markDirty(kf);
                 renderAll();
             }
         });
@@ -443,8 +689,9 @@ public class WavetableEditorController {
     private void updateSelectedMorphMode(Keyframe.TransformMode mode) {
         Keyframe kf = getSelectedKeyframe();
         if (kf != null) {
+            wavetable.recordKeyframeEdit(kf);
             kf.setTransformMode(mode);
-            wavetable.markDirty();
+            wavetable.markDirty(kf);
             renderAll();
         }
     }
@@ -469,15 +716,25 @@ public class WavetableEditorController {
                 .findFirst().orElse(null);
     }
 
+    private void markSelectedKeyframeDirty() {
+        Keyframe kf = getSelectedKeyframe();
+        if (kf != null) {
+            wavetable.markDirty(kf);
+        } else {
+            wavetable.markDirty();
+        }
+    }
+
     @FXML
     private void handleNormalize() {
         Keyframe kf = getSelectedKeyframe();
         if (kf == null) return;
         
+        wavetable.recordKeyframeEdit(kf);
         int[] result = waveToolService.normalize(kf.getSamples(), (int) NORM_Y);
         for (int i = 0; i < 128; i++) kf.setSample(i, result[i]);
         
-        wavetable.markDirty();
+        wavetable.markDirty(kf);
         renderAll();
     }
 
@@ -486,10 +743,11 @@ public class WavetableEditorController {
         Keyframe kf = getSelectedKeyframe();
         if (kf == null) return;
         
+        wavetable.recordKeyframeEdit(kf);
         int[] result = waveToolService.smooth(kf.getSamples());
         for (int i = 0; i < 128; i++) kf.setSample(i, result[i]);
         
-        wavetable.markDirty();
+        wavetable.markDirty(kf);
         renderAll();
     }
 
@@ -498,10 +756,11 @@ public class WavetableEditorController {
         Keyframe kf = getSelectedKeyframe();
         if (kf == null) return;
         
+        wavetable.recordKeyframeEdit(kf);
         int[] result = waveToolService.invert(kf.getSamples());
         for (int i = 0; i < 128; i++) kf.setSample(i, result[i]);
         
-        wavetable.markDirty();
+        wavetable.markDirty(kf);
         renderAll();
     }
 
@@ -510,10 +769,11 @@ public class WavetableEditorController {
         Keyframe kf = getSelectedKeyframe();
         if (kf == null) return;
         
+        wavetable.recordKeyframeEdit(kf);
         int[] result = waveToolService.reverse(kf.getSamples());
         for (int i = 0; i < 128; i++) kf.setSample(i, result[i]);
         
-        wavetable.markDirty();
+        wavetable.markDirty(kf);
         renderAll();
     }
     
@@ -585,6 +845,7 @@ public class WavetableEditorController {
                 if (slidingKeyframe != null) {
                     isSliding = true;
                     originalSlideIndex = selectedWaveIndex;
+                    wavetable.beginEdit();
                 }
                 
                 renderAll();
@@ -608,9 +869,10 @@ public class WavetableEditorController {
                 if (newIndex != slidingKeyframe.getIndex()) {
                     // Basic "Push" logic: remove if another exists? 
                     // No, let's just update index for now.
+                    wavetable.recordKeyframeEdit(slidingKeyframe);
                     slidingKeyframe.setIndex(newIndex);
                     selectedWaveIndex = newIndex;
-                    wavetable.markDirty();
+                    wavetable.markKeyframesChanged();
                     renderAll();
                 }
             }
@@ -618,9 +880,10 @@ public class WavetableEditorController {
 
         full3DCanvas.setOnMouseReleased(e -> {
             if (isSliding) {
+                wavetable.endEdit();
                 isSliding = false;
                 slidingKeyframe = null;
-                wavetable.markDirty();
+                wavetable.markKeyframesChanged();
                 renderAll();
             }
         });
@@ -659,6 +922,8 @@ public class WavetableEditorController {
     private void setupCurveFuncCombo() {
         curveFuncCombo.getItems().addAll("Linear", "InQuad", "OutQuad", "InOutQuad", "Sine", "Exp");
         curveFuncCombo.getSelectionModel().selectFirst();
+        phaseModeCombo.getItems().addAll(Keyframe.PhaseMode.values());
+        phaseModeCombo.getSelectionModel().selectFirst();
     }
 
     private void setupSpinners() {
@@ -675,18 +940,23 @@ public class WavetableEditorController {
                     statusLabel.setText("Line mode: Click end point");
                 } else {
                     // Second click - draw line
+                    wavetable.beginEdit();
                     ensureKeyframeAtSelected();
+                    wavetable.recordKeyframeEdit(getSelectedKeyframe());
                     drawLine(lineStartX, lineStartY, e.getX(), e.getY());
+                    wavetable.endEdit();
                     lineStartX = -1;
                     lineStartY = -1;
-                    wavetable.markDirty();
+                    markSelectedKeyframeDirty();
                     renderAll();
                     statusLabel.setText("Line drawn");
                 }
             } else {
-                // Freehand mode
+                // Freehand mode: the whole stroke is one undo entry
                 isDrawing = true;
+                wavetable.beginEdit();
                 ensureKeyframeAtSelected();
+                wavetable.recordKeyframeEdit(getSelectedKeyframe());
                 handleDraw(e.getX(), e.getY());
             }
         });
@@ -699,8 +969,11 @@ public class WavetableEditorController {
         
         waveEditCanvas.setOnMouseReleased(e -> {
             if (drawMode == DrawMode.FREEHAND) {
+                if (isDrawing) {
+                    wavetable.endEdit();
+                }
                 isDrawing = false;
-                wavetable.markDirty();
+                markSelectedKeyframeDirty();
                 renderAll();
             }
         });
@@ -721,6 +994,7 @@ public class WavetableEditorController {
         boolean exists = wavetable.getKeyframes().stream()
                 .anyMatch(kf -> kf.getIndex() == selectedWaveIndex);
         if (!exists) {
+            wavetable.recordKeyframeListEdit();
             wavetable.getKeyframes().add(new Keyframe(selectedWaveIndex));
         }
     }
@@ -849,6 +1123,8 @@ public class WavetableEditorController {
         render3D();
         renderCurrentWave();
         renderEditCanvas();
+        renderSpectrum();
+        updateAudition();
         updateUndoRedoMenus();
         System.out.println("renderAll() complete");
     }
@@ -861,15 +1137,19 @@ public class WavetableEditorController {
             curveRadio.setOnAction(null);
             translateRadio.setOnAction(null);
             spectralRadio.setOnAction(null);
+            spectralMorphRadio.setOnAction(null);
             curveFuncCombo.setOnAction(null);
+            phaseModeCombo.setOnAction(null);
 
             switch (kf.getTransformMode()) {
                 case CONSTANT -> constantRadio.setSelected(true);
                 case CURVE -> curveRadio.setSelected(true);
                 case TRANSLATE -> translateRadio.setSelected(true);
                 case SPECTRAL -> spectralRadio.setSelected(true);
+                case SPECTRAL_MORPH -> spectralMorphRadio.setSelected(true);
             }
             curveFuncCombo.setValue(kf.getCurveFunction());
+            phaseModeCombo.setValue(kf.getPhaseMode());
             translateSpinner.getValueFactory().setValue(kf.getTranslateOffset());
 
             // Restore signals
@@ -1004,6 +1284,30 @@ public class WavetableEditorController {
         }
     }
 
+    @FXML
+    private void handleImportFolder() {
+        javafx.stage.DirectoryChooser chooser = new javafx.stage.DirectoryChooser();
+        chooser.setTitle("Import Wavetables from Folder");
+
+        java.io.File dir = chooser.showDialog(statusLabel.getScene().getWindow());
+        if (dir != null) {
+            net.mikolas.lyra.service.WavetableImportService importService =
+                new net.mikolas.lyra.service.WavetableImportService(net.mikolas.lyra.db.WavetableRepository.getInstance());
+
+            statusLabel.setText("Importing wavetables from " + dir.getName() + "...");
+
+            javafx.concurrent.Task<net.mikolas.lyra.service.WavetableImportService.ImportResult> task = new javafx.concurrent.Task<>() {
+                @Override protected net.mikolas.lyra.service.WavetableImportService.ImportResult call() {
+                    return importService.importFromDirectory(dir.toPath());
+                }
+            };
+
+            task.setOnSucceeded(e -> statusLabel.setText(task.getValue().getSummary()));
+            task.setOnFailed(e -> statusLabel.setText("Import failed: " + task.getException().getMessage()));
+            new Thread(task).start();
+        }
+    }
+
     @FXML private void handleClose() { 
         ((javafx.stage.Stage)statusLabel.getScene().getWindow()).close(); 
     }
@@ -1067,14 +1371,15 @@ public class WavetableEditorController {
     @FXML
     private void handleAddKeyframe() {
         ensureKeyframeAtSelected();
-        wavetable.markDirty();
+        wavetable.markKeyframesChanged();
         renderAll();
     }
 
     @FXML
     private void handleRemoveKeyframe() {
+        wavetable.recordKeyframeListEdit();
         wavetable.getKeyframes().removeIf(kf -> kf.getIndex() == selectedWaveIndex && selectedWaveIndex != 0);
-        wavetable.markDirty();
+        wavetable.markKeyframesChanged();
         renderAll();
     }
 
@@ -1231,6 +1536,67 @@ public class WavetableEditorController {
         }
     }
 
+    /**
+     * Renders the spectrum of the selected wave, or of all 64 waves as a heat map.
+     */
+    private void renderSpectrum() {
+        GraphicsContext gc = spectrumCanvas.getGraphicsContext2D();
+        double w = spectrumCanvas.getWidth();
+        double h = spectrumCanvas.getHeight();
+        gc.setFill(Color.BLACK);
+        gc.fillRect(0, 0, w, h);
+
+        if (spectrumAllWavesChk.isSelected()) {
+            // Waves left to right, bins 1-64 bottom to top
+            double columnWidth = w / 64;
+            double rowHeight = h / (WaveFft.BINS - 1);
+            for (int i = 0; i < 64; i++) {
+                WaveFft.Spectrum spectrum = wavetable.getWaveSpectrum(i);
+                for (int k = 1; k < WaveFft.BINS; k++) {
+                    double level = spectrumLevel(spectrum.magnitude()[k]);
+                    if (level <= 0) continue;
+                    gc.setFill(Color.hsb(180, 1.0, level));
+                    gc.fillRect(i * columnWidth, h - k * rowHeight, columnWidth + 0.5, rowHeight + 0.5);
+                }
+            }
+            gc.setStroke(Color.YELLOW);
+            gc.setLineWidth(1.0);
+            gc.strokeRect(selectedWaveIndex * columnWidth, 0, columnWidth, h);
+            return;
+        }
+
+        Keyframe kf = getSelectedKeyframe();
+        WaveFft.Spectrum spectrum = kf != null ? kf.getSpectrum()
+                : wavetable.getWaveSpectrum(selectedWaveIndex);
+        double magnitudeHeight = h * (1 - PHASE_STRIP);
+        double binWidth = w / WaveFft.BINS;
+
+        gc.setStroke(Color.web("#333333"));
+        gc.setLineWidth(1.0);
+        gc.strokeLine(0, magnitudeHeight, w, magnitudeHeight);
+        gc.strokeLine(0, magnitudeHeight + (h - magnitudeHeight) / 2, w, magnitudeHeight + (h - magnitudeHeight) / 2);
+
+        for (int k = 0; k < WaveFft.BINS; k++) {
+            double level = spectrumLevel(spectrum.magnitude()[k]);
+            if (level <= 0) continue;
+            double x = k * binWidth;
+            // Highlight the fundamental as the harmonic sliders do
+            gc.setFill(k == 1 ? Color.web("#008888") : Color.CYAN);
+            gc.fillRect(x + 1, magnitudeHeight * (1 - level), Math.max(binWidth - 2, 1), magnitudeHeight * level);
+
+            double py = magnitudeHeight + (Math.PI - spectrum.phase()[k]) / (2 * Math.PI) * (h - magnitudeHeight);
+            gc.setFill(Color.YELLOW);
+            gc.fillOval(x + binWidth / 2 - 2, py - 2, 4, 4);
+        }
+    }
+
+    /** Bin magnitude as 0-1 on the dB scale of the spectrum view. */
+    private static double spectrumLevel(double magnitude) {
+        if (magnitude <= 0) return 0;
+        double db = 20 * Math.log10(magnitude / FULL_SCALE_BIN);
+        return Math.clamp(1 - db / SPECTRUM_FLOOR_DB, 0, 1);
+    }
+
     private void renderCurrentWave() {
         GraphicsContext gc = currentWaveCanvas.getGraphicsContext2D();
         double w = currentWaveCanvas.getWidth();
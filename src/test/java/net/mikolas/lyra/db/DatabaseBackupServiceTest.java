@@ -0,0 +1,122 @@
+package net.mikolas.lyra.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.j256.ormlite.dao.GenericRawResults;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+import net.mikolas.lyra.model.Sound;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for online database snapshots and rotation.
+ */
+class DatabaseBackupServiceTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void testSnapshotIsReadableCopy() throws Exception {
+    Path dbFile = dir.resolve("lyra.db");
+    try (Database db = new Database(dbFile.toString())) {
+      db.sounds.create(Sound.builder().name("Keep me").parameters(new byte[385]).build());
+
+      DatabaseBackupService service =
+          new DatabaseBackupService(dbFile, dir.resolve("backups"), 3, 0);
+      Path snapshot = service.snapshot();
+
+      try (Database copy = new Database(snapshot.toString())) {
+        List<Sound> sounds = copy.sounds.queryForAll();
+        assertEquals(1, sounds.size());
+        assertEquals("Keep me", sounds.get(0).getName());
+      }
+    }
+  }
+
+  @Test
+  void testSnapshotCopiesParameterStore() throws Exception {
+    Path dbFile = dir.resolve("lyra.db");
+    byte[] params = new byte[385];
+    params[42] = 7;
+    try (Database db = new Database(dbFile.toString(), dir.resolve("lyra.db.params"))) {
+      db.sounds.create(Sound.builder().name("Mapped").parameters(params).build());
+
+      DatabaseBackupService service = new DatabaseBackupService(dbFile, dir.resolve("backups"),
+          3, 0, db.sounds.getParameterStore());
+      Path snapshot = service.snapshot();
+
+      Path snapshotParams = Path.of(snapshot + ".params");
+      assertTrue(Files.exists(snapshotParams));
+      try (Database copy = new Database(snapshot.toString(), snapshotParams)) {
+        assertArrayEquals(params, copy.sounds.queryForAll().get(0).getParameters());
+      }
+    }
+  }
+
+  @Test
+  void testDatabaseRunsInWalMode() throws Exception {
+    // Snapshots with a parameter store read through a long transaction that must not block writers
+    try (Database db = new Database(dir.resolve("lyra.db").toString());
+        GenericRawResults<String[]> rows = db.sounds.queryRaw("PRAGMA journal_mode")) {
+      assertEquals("wal", rows.getFirstResult()[0]);
+    }
+  }
+
+  @Test
+  void testSkipsUnchangedDatabase() throws Exception {
+    Path dbFile = dir.resolve("lyra.db");
+    try (Database db = new Database(dbFile.toString())) {
+      DatabaseBackupService service =
+          new DatabaseBackupService(dbFile, dir.resolve("backups"), 3, 0);
+
+      assertTrue(service.backupIfChanged().isPresent());
+      assertEquals(Optional.empty(), service.backupIfChanged());
+
+      db.sounds.create(Sound.builder().name("New").parameters(new byte[385]).build());
+      Files.setLastModifiedTime(dbFile,
+          FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+      assertTrue(service.backupIfChanged().isPresent());
+    }
+  }
+
+  @Test
+  void testSnapshotRemovesInterruptedCopies() throws Exception {
+    Path dbFile = dir.resolve("lyra.db");
+    Path backups = Files.createDirectories(dir.resolve("backups"));
+    Path stale = Files.writeString(backups.resolve("lyra-20260101-090000.db.tmp"), "x");
+    try (Database db = new Database(dbFile.toString())) {
+      DatabaseBackupService service = new DatabaseBackupService(dbFile, backups, 3, 0);
+      service.snapshot();
+    }
+    assertFalse(Files.exists(stale));
+    assertEquals(1, new DatabaseBackupService(dbFile, backups, 3, 0).listSnapshots().size());
+  }
+
+  @Test
+  void testPruneKeepsLatestAndOnePerDay() throws Exception {
+    Path backups = Files.createDirectories(dir.resolve("backups"));
+    String[] names = {
+        "lyra-20260103-120000.db", "lyra-20260103-110000.db", "lyra-20260103-100000.db",
+        "lyra-20260102-230000.db", "lyra-20260102-120000.db",
+        "lyra-20260101-090000.db", "lyra-20251231-090000.db"
+    };
+    for (String name : names) {
+      Files.writeString(backups.resolve(name), "x");
+    }
+
+    DatabaseBackupService service =
+        new DatabaseBackupService(dir.resolve("lyra.db"), backups, 2, 2);
+    int deleted = service.prune();
+
+    List<String> kept = service.listSnapshots().stream()
+        .map(p -> p.getFileName().toString())
+        .toList();
+    assertEquals(List.of(
+        "lyra-20260103-120000.db", "lyra-20260103-110000.db", "lyra-20260102-230000.db"), kept);
+    assertEquals(4, deleted);
+  }
+}
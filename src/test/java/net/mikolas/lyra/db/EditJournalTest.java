@@ -0,0 +1,209 @@
+package net.mikolas.lyra.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.service.SoundHistoryService;
+import net.mikolas.lyra.service.SoundIndexService;
+import net.mikolas.lyra.ui.FilterType;
+import net.mikolas.lyra.ui.SoundFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the write-ahead edit journal.
+ */
+class EditJournalTest {
+
+  @TempDir Path dir;
+
+  private Sound createSound(Database db, String name) throws Exception {
+    Sound sound = Sound.builder().name(name).parameters(new byte[385]).build();
+    sound.setNameAndSyncParameters(name);
+    db.sounds.create(sound);
+    return sound;
+  }
+
+  @Test
+  void testPendingKeepsLastValuePerParameter() throws Exception {
+    EditJournal journal = new EditJournal(dir.resolve("lyra.journal"), 1000);
+    journal.record(1, 10, 5);
+    journal.record(1, 10, 7);
+    journal.record(2, 3, 9);
+
+    Map<Integer, Map<Integer, Integer>> pending = journal.pending();
+    assertEquals(3, journal.size());
+    assertEquals(Map.of(10, 7), pending.get(1));
+    assertEquals(Map.of(3, 9), pending.get(2));
+    journal.close();
+  }
+
+  @Test
+  void testCompactWritesEditsAndEmptiesJournal() throws Exception {
+    try (Database db = new Database(dir.resolve("lyra.db").toString())) {
+      Sound sound = createSound(db, "Before");
+      EditJournal journal = new EditJournal(dir.resolve("lyra.journal"), 1000);
+      journal.record(sound.getId(), 8, 2);
+      journal.record(sound.getId(), 379, 3);
+
+      assertEquals(2, journal.compact(db));
+      assertEquals(0, journal.size());
+
+      Sound saved = db.sounds.queryForId(sound.getId());
+      assertEquals(2, saved.getParameters()[8]);
+      assertEquals(Integer.valueOf(3), saved.getCategory());
+      assertEquals(Sound.contentHashOf(saved.getParameters()), saved.getContentHash());
+      journal.close();
+    }
+  }
+
+  @Test
+  void testStartCompactsThroughItsOwnConnection() throws Exception {
+    try (Database db = new Database(dir.resolve("lyra.db").toString())) {
+      Sound sound = createSound(db, "Shared");
+      EditJournal journal = new EditJournal(dir.resolve("lyra.journal"), 1000);
+      journal.start(db);
+      journal.record(sound.getId(), 8, 4);
+      journal.shutdown();
+
+      // The journal's connection is closed; the app's is still open and sees the edit
+      assertEquals(4, db.sounds.queryForId(sound.getId()).getParameters()[8]);
+    }
+  }
+
+  @Test
+  void testCompactReindexesSounds() throws Exception {
+    try (Database db = new Database(dir.resolve("lyra.db").toString())) {
+      Sound sound = createSound(db, "Indexed");
+      SoundIndexService index = new SoundIndexService();
+      index.rebuild(db, List.of(sound));
+      EditJournal journal = new EditJournal(dir.resolve("lyra.journal"), 1000);
+      journal.setIndex(index);
+      journal.record(sound.getId(), 8, 2);
+      journal.compact(db);
+
+      assertTrue(index.resolve(List.of(new SoundFilter(FilterType.PARAM, "8=2")))
+          .get(sound.getId()));
+      journal.close();
+    }
+  }
+
+  @Test
+  void testCompactionsShareOneRevisionPerSession() throws Exception {
+    try (Database db = new Database(dir.resolve("lyra.db").toString())) {
+      Sound sound = createSound(db, "Session");
+      EditJournal journal = new EditJournal(dir.resolve("lyra.journal"), 1000);
+      journal.record(sound.getId(), 8, 2);
+      journal.compact(db);
+      journal.record(sound.getId(), 9, 3);
+      journal.compact(db);
+
+      SoundHistoryService history = new SoundHistoryService(db);
+      // The state before the session, then the session's edits
+      assertEquals(2, history.history(sound.getId()).size());
+      byte[] latest = history.reconstruct(sound.getId(), 2).orElseThrow();
+      assertEquals(2, latest[8]);
+      assertEquals(3, latest[9]);
+      assertEquals(0, history.reconstruct(sound.getId(), 1).orElseThrow()[8]);
+      journal.close();
+    }
+  }
+
+  @Test
+  void testReplayAfterCrash() throws Exception {
+    Path file = dir.resolve("lyra.journal");
+    try (Database db = new Database(dir.resolve("lyra.db").toString())) {
+      Sound sound = createSound(db, "Crashy");
+
+      // Simulated crash: records are written but never compacted or closed
+      EditJournal crashed = new EditJournal(file, 1000);
+      crashed.record(sound.getId(), 1, 42);
+      crashed.record(sound.getId(), 363, 'X');
+
+      EditJournal reopened = new EditJournal(file, 1000);
+      assertEquals(2, reopened.size());
+      assertEquals(2, reopened.compact(db));
+
+      Sound saved = db.sounds.queryForId(sound.getId());
+      assertEquals(42, saved.getParameters()[1]);
+      assertEquals("Xrashy", saved.getName());
+      crashed.close();
+      reopened.close();
+    }
+  }
+
+  @Test
+  void testTornRecordIsIgnored() throws Exception {
+    Path file = dir.resolve("lyra.journal");
+    EditJournal journal = new EditJournal(file, 1000);
+    journal.record(1, 10, 5);
+    journal.record(1, 11, 6);
+    journal.close();
+
+    // Tear the second record: its check byte never reached the disk
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {0}), EditJournal.RECORD_SIZE + 15);
+    }
+
+    EditJournal reopened = new EditJournal(file, 1000);
+    assertEquals(1, reopened.size());
+    assertEquals(Map.of(10, 5), reopened.pending().get(1));
+    reopened.close();
+  }
+
+  @Test
+  void testRecordsAfterTornRecordDoNotResurface() throws Exception {
+    Path file = dir.resolve("lyra.journal");
+    EditJournal journal = new EditJournal(file, 1000);
+    journal.record(1, 10, 5);
+    journal.record(1, 11, 6);
+    journal.record(1, 12, 7);
+    journal.close();
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {0}), EditJournal.RECORD_SIZE + 15);
+    }
+
+    EditJournal reopened = new EditJournal(file, 1000);
+    assertEquals(1, reopened.size());
+    reopened.record(1, 20, 8);
+    reopened.close();
+
+    EditJournal again = new EditJournal(file, 1000);
+    assertEquals(2, again.size());
+    assertEquals(Map.of(10, 5, 20, 8), again.pending().get(1));
+    again.close();
+  }
+
+  @Test
+  void testEditsForDeletedSoundsAreDropped() throws Exception {
+    try (Database db = new Database(dir.resolve("lyra.db").toString())) {
+      EditJournal journal = new EditJournal(dir.resolve("lyra.journal"), 1000);
+      journal.record(999, 10, 5);
+
+      assertEquals(1, journal.compact(db));
+      assertEquals(0, journal.size());
+      journal.close();
+    }
+  }
+
+  @Test
+  void testGrowsPastInitialCapacity() throws Exception {
+    EditJournal journal = new EditJournal(dir.resolve("lyra.journal"), 1000);
+    for (int i = 0; i < 10_000; i++) {
+      journal.record(1, i % 300, i & 0x7F);
+    }
+    assertEquals(10_000, journal.size());
+    journal.close();
+
+    EditJournal reopened = new EditJournal(dir.resolve("lyra.journal"), 1000);
+    assertEquals(10_000, reopened.size());
+    reopened.close();
+  }
+}
@@ -0,0 +1,126 @@
+package net.mikolas.lyra.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import net.mikolas.lyra.model.ParameterValueType;
+import net.mikolas.lyra.model.ParameterValues;
+import net.mikolas.lyra.model.Wavetable;
+import net.mikolas.lyra.model.WavetableCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the factory wavetable bundle and how the repository serves it.
+ */
+class FactoryWavetableBundleTest {
+
+  @TempDir Path dir;
+
+  private static Wavetable table(String name, int slot, int seed) {
+    Wavetable wt = new Wavetable();
+    wt.setName(name);
+    wt.setSlot(slot);
+    wt.setFactory(true);
+    int[][] waves = wt.getBouncedWaves();
+    for (int w = 0; w < 64; w++) {
+      for (int s = 0; s < 128; s++) {
+        waves[w][s] = ((s * 7919 + w * 104729 + seed) % 2000000) - 1000000;
+      }
+    }
+    return wt;
+  }
+
+  private static List<String> names(WavetableRepository repository) {
+    return repository.getAllWavetables().stream().map(Wavetable::getName).toList();
+  }
+
+  @Test
+  void testWriteAndOpen() throws Exception {
+    Path file = dir.resolve("factory.bundle");
+    Wavetable saw = table("Saw", 2, 2);
+    FactoryWavetableBundle.write(file, List.of(table("Pulse", 1, 1), saw));
+
+    FactoryWavetableBundle bundle = FactoryWavetableBundle.open(file);
+    assertEquals(2, bundle.entries().size());
+    FactoryWavetableBundle.Entry entry = bundle.entries().get(1);
+    assertEquals(2, entry.slot());
+    assertEquals("Saw", entry.name());
+
+    int[] wave = new int[128];
+    WavetableCodec.decodeWave(bundle.read(entry), 40, wave);
+    assertArrayEquals(saw.getBouncedWaves()[40], wave);
+  }
+
+  @Test
+  void testWavetableIsReadWhenLoaded() throws Exception {
+    Path file = dir.resolve("factory.bundle");
+    Wavetable pulse = table("Pulse", 1, 1);
+    FactoryWavetableBundle.write(file, List.of(pulse));
+    FactoryWavetableBundle bundle = FactoryWavetableBundle.open(file);
+
+    Wavetable wt = bundle.wavetable(bundle.entries().get(0));
+    assertTrue(wt.isFactory());
+    assertNull(wt.getId());
+    assertNull(wt.getBinaryData(), "Nothing read before the table is opened");
+
+    wt.loadFromData();
+    assertNotNull(wt.getBinaryData());
+    assertArrayEquals(pulse.getBouncedWaves()[63], wt.getBouncedWaves()[63]);
+    assertTrue(wt.getKeyframes().isEmpty());
+  }
+
+  @Test
+  void testRejectsOtherFiles() throws Exception {
+    Path file = dir.resolve("other.bin");
+    Files.write(file, new byte[64]);
+    assertThrows(IOException.class, () -> FactoryWavetableBundle.open(file));
+  }
+
+  @Test
+  void testShippedBundleHasAllFactoryTables() throws Exception {
+    FactoryWavetableBundle bundle = FactoryWavetableBundle.openResource();
+    List<String> oscShapes = ParameterValues.getValues(ParameterValueType.OSC_SHAPES);
+    assertEquals(72, bundle.entries().size());
+    for (int i = 0; i < 72; i++) {
+      FactoryWavetableBundle.Entry entry = bundle.entries().get(i);
+      assertEquals(i + 1, entry.slot());
+      assertEquals(oscShapes.get(i + 1), entry.name());
+      assertTrue(WavetableCodec.isReadable(bundle.read(entry)), entry.name());
+    }
+  }
+
+  @Test
+  void testRepositoryStoresFactoryTablesOnlyOnceEdited() throws Exception {
+    Path file = dir.resolve("factory.bundle");
+    FactoryWavetableBundle.write(file, List.of(table("Pulse", 1, 1), table("Saw", 2, 2)));
+
+    try (Database db = new Database(dir.resolve("lib.db").toString())) {
+      WavetableRepository repository =
+          new WavetableRepository(db, FactoryWavetableBundle.open(file));
+      assertEquals(List.of("Pulse", "Saw"), names(repository));
+      assertEquals(0, db.wavetables.countOf());
+
+      Wavetable mine = table("Mine", 80, 3);
+      mine.setFactory(false);
+      mine.prepareForSave();
+      repository.save(mine);
+
+      Wavetable saw = repository.getAllWavetables().get(1);
+      saw.loadFromData();
+      saw.setName("Saw Edit");
+      saw.prepareForSave();
+      repository.save(saw);
+      assertEquals(2, db.wavetables.countOf());
+      assertEquals(List.of("Pulse", "Saw Edit", "Mine"), names(repository),
+          "Saved copy replaces the bundled table in place");
+
+      repository.delete(repository.getAllWavetables().get(1));
+      assertEquals(List.of("Pulse", "Saw", "Mine"), names(repository));
+      assertNull(repository.getAllWavetables().get(1).getId(), "Bundled table is back");
+    }
+  }
+}
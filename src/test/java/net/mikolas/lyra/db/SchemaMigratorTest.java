@@ -0,0 +1,140 @@
+package net.mikolas.lyra.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.j256.ormlite.dao.GenericRawResults;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.model.Wavetable;
+import net.mikolas.lyra.model.WavetableCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the versioned schema migrations.
+ */
+class SchemaMigratorTest {
+
+  @TempDir Path dir;
+
+  private static List<String> indexNames(Database db) throws Exception {
+    List<String> names = new ArrayList<>();
+    try (GenericRawResults<String[]> rows = db.sounds.queryRaw(
+        "SELECT name FROM sqlite_master WHERE type = 'index'")) {
+      for (String[] row : rows) {
+        names.add(row[0]);
+      }
+    }
+    return names;
+  }
+
+  @Test
+  void testNewDatabaseIsAtLatestVersion() throws Exception {
+    try (Database db = new Database(dir.resolve("new.db").toString())) {
+      SchemaMigrator migrator = new SchemaMigrator(db);
+      assertEquals(SchemaMigrator.LATEST_VERSION, migrator.version());
+      assertEquals(0, migrator.migrate(), "Up-to-date database has nothing to apply");
+      assertTrue(indexNames(db).contains("sound_tags_tag_id_idx"));
+      assertTrue(indexNames(db).contains("sound_collections_collection_id_idx"));
+    }
+  }
+
+  @Test
+  void testUpgradesPreVersioningDatabase() throws Exception {
+    String path = dir.resolve("legacy.db").toString();
+    // Tables as written before the contentHash and isFactory columns existed
+    try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+        Statement statement = connection.createStatement()) {
+      statement.executeUpdate("CREATE TABLE sounds (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+          + "name VARCHAR NOT NULL, category INTEGER, bank INTEGER, program INTEGER, "
+          + "parameters BLOB NOT NULL, UNIQUE (bank, program))");
+      statement.executeUpdate("CREATE TABLE wavetables (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+          + "name VARCHAR, slot INTEGER, binaryData BLOB)");
+      statement.executeUpdate(
+          "INSERT INTO sounds (name, parameters) VALUES ('Old', zeroblob(385))");
+      statement.executeUpdate("INSERT INTO wavetables (name, slot) VALUES ('Old', 80)");
+    }
+
+    try (Database db = new Database(path)) {
+      assertEquals(SchemaMigrator.LATEST_VERSION, new SchemaMigrator(db).version());
+      Sound sound = db.sounds.queryForAll().get(0);
+      assertEquals(Sound.contentHashOf(new byte[385]), sound.getContentHash());
+      Wavetable wavetable = db.wavetables.queryForAll().get(0);
+      assertFalse(wavetable.isFactory());
+      assertTrue(indexNames(db).contains("sounds_contentHash_idx"));
+      assertEquals(0, db.soundRevisions.countOf());
+    }
+  }
+
+  /** A bundled factory table in the raw format earlier versions copied into the database. */
+  private static byte[] rawFactoryTable(int slot) throws Exception {
+    FactoryWavetableBundle bundle = FactoryWavetableBundle.openResource();
+    byte[] blob = bundle.read(bundle.entries().get(slot - 1));
+    ByteBuffer raw = ByteBuffer.allocate(WavetableCodec.LEGACY_SIZE);
+    int[] wave = new int[128];
+    for (int w = 0; w < 64; w++) {
+      WavetableCodec.decodeWave(blob, w, wave);
+      for (int sample : wave) {
+        raw.putInt(sample);
+      }
+    }
+    return raw.array();
+  }
+
+  @Test
+  void testDropsUneditedFactoryWavetableCopies() throws Exception {
+    String path = dir.resolve("copies.db").toString();
+    try (Database db = new Database(path)) {
+      byte[] edited = rawFactoryTable(3);
+      edited[100] ^= 1;
+      db.wavetables.create(Wavetable.builder().name("Pulse").slot(1).isFactory(true)
+          .binaryData(rawFactoryTable(1)).build());
+      db.wavetables.create(Wavetable.builder().name("Saw").slot(2).isFactory(true)
+          .binaryData(new byte[21510]).build()); // Edited and re-encoded
+      db.wavetables.create(Wavetable.builder().name("Triangle").slot(3).isFactory(true)
+          .binaryData(edited).build()); // Edited before re-encoding existed
+      db.wavetables.create(Wavetable.builder().name("Mine").slot(80)
+          .binaryData(rawFactoryTable(4)).build());
+      db.sounds.executeRaw("PRAGMA user_version = 3");
+    }
+
+    try (Database db = new Database(path)) {
+      assertEquals(List.of("Saw", "Triangle", "Mine"),
+          db.wavetables.queryForAll().stream().map(Wavetable::getName).toList());
+    }
+  }
+
+  @Test
+  void testFailedMigrationKeepsPreviousVersion() throws Exception {
+    try (Database db = new Database(dir.resolve("fail.db").toString())) {
+      List<SchemaMigrator.Migration> migrations = new ArrayList<>(SchemaMigrator.MIGRATIONS);
+      migrations.add(database -> database.sounds.executeRaw("CREATE TABLE extra (id INTEGER)"));
+      migrations.add(database -> {
+        database.sounds.executeRaw("CREATE TABLE half_done (id INTEGER)");
+        throw new SQLException("boom");
+      });
+      SchemaMigrator migrator = new SchemaMigrator(db, migrations);
+
+      assertThrows(SQLException.class, migrator::migrate);
+      assertEquals(SchemaMigrator.LATEST_VERSION + 1, migrator.version());
+      assertEquals(0, db.sounds.queryRawValue(
+          "SELECT count(*) FROM sqlite_master WHERE name = 'half_done'"));
+    }
+  }
+
+  @Test
+  void testRejectsNewerSchema() throws Exception {
+    String path = dir.resolve("newer.db").toString();
+    try (Database db = new Database(path)) {
+      db.sounds.executeRaw("PRAGMA user_version = " + (SchemaMigrator.LATEST_VERSION + 1));
+    }
+    assertThrows(SQLException.class, () -> new Database(path));
+  }
+}
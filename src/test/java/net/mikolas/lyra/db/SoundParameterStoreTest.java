@@ -0,0 +1,148 @@
+package net.mikolas.lyra.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.j256.ormlite.dao.GenericRawResults;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import net.mikolas.lyra.model.Sound;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the memory-mapped parameter store and the mapped sound DAO mode.
+ */
+class SoundParameterStoreTest {
+
+  @TempDir Path dir;
+
+  private static byte[] params(int seed) {
+    byte[] params = new byte[385];
+    for (int i = 0; i < params.length; i++) {
+      params[i] = (byte) ((i * 7 + seed) & 0x7F);
+    }
+    return params;
+  }
+
+  private static int storedBlobLength(Database db, int soundId) throws Exception {
+    try (GenericRawResults<String[]> rows = db.sounds.queryRaw(
+        "SELECT length(parameters) FROM sounds WHERE id = " + soundId)) {
+      return Integer.parseInt(rows.getFirstResult()[0]);
+    }
+  }
+
+  @Test
+  void testPutGetAndReopen() throws Exception {
+    Path file = dir.resolve("lyra.db.params");
+    try (SoundParameterStore store = new SoundParameterStore(file)) {
+      store.put(3, params(1));
+      store.put(5000, params(2));
+      assertTrue(store.contains(3));
+      assertFalse(store.contains(4));
+      assertArrayEquals(params(2), store.get(5000));
+    }
+
+    try (SoundParameterStore store = new SoundParameterStore(file)) {
+      assertTrue(store.contains(5000));
+      assertFalse(store.contains(4));
+      assertArrayEquals(params(1), store.get(3));
+      store.remove(3);
+      assertNull(store.get(3));
+    }
+  }
+
+  @Test
+  void testRejectsForeignFile() throws Exception {
+    Path file = dir.resolve("not-a-store");
+    Files.write(file, new byte[64]);
+    assertThrows(IOException.class, () -> new SoundParameterStore(file));
+  }
+
+  @Test
+  void testMappedModeKeepsParametersOutOfSqlite() throws Exception {
+    Path dbFile = dir.resolve("lyra.db");
+    Path storeFile = dir.resolve("lyra.db.params");
+    try (Database db = new Database(dbFile.toString(), storeFile)) {
+      Sound sound = Sound.builder().name("Mapped").parameters(params(3)).build();
+      db.sounds.create(sound);
+      assertArrayEquals(params(3), sound.getParameters(), "Caller keeps its parameters");
+      assertEquals(0, storedBlobLength(db, sound.getId()));
+
+      Sound loaded = db.sounds.queryForId(sound.getId());
+      assertArrayEquals(params(3), loaded.getParameters());
+      assertEquals("Mapped", db.sounds.queryForAll().get(0).getName());
+      assertArrayEquals(params(3), db.sounds.queryForAll().get(0).getParameters());
+
+      loaded.setParameters(params(4));
+      db.sounds.update(loaded);
+      assertArrayEquals(params(4), db.sounds.queryForId(sound.getId()).getParameters());
+
+      db.sounds.updateParameters(sound.getId(), params(5));
+      assertArrayEquals(params(5), db.sounds.queryForId(sound.getId()).getParameters());
+    }
+  }
+
+  @Test
+  void testWritesLeaveCallerSoundUntouched() throws Exception {
+    try (Database db = new Database(dir.resolve("lyra.db").toString(),
+        dir.resolve("lyra.db.params"))) {
+      byte[] created = params(4);
+      Sound sound = Sound.builder().name("Live").parameters(created).build();
+      db.sounds.create(sound);
+      assertNotNull(sound.getId());
+      assertSame(created, sound.getParameters());
+
+      byte[] updated = params(5);
+      sound.setParameters(updated);
+      db.sounds.update(sound);
+      assertSame(updated, sound.getParameters());
+      assertArrayEquals(params(5), db.sounds.queryForId(sound.getId()).getParameters());
+      assertEquals(0, storedBlobLength(db, sound.getId()));
+    }
+  }
+
+  @Test
+  void testRolledBackTransactionRestoresStore() throws Exception {
+    Path storeFile = dir.resolve("lyra.db.params");
+    try (Database db = new Database(dir.resolve("lyra.db").toString(), storeFile)) {
+      Sound sound = Sound.builder().name("Kept").parameters(params(3)).build();
+      db.sounds.create(sound);
+      Sound added = Sound.builder().name("Dropped").parameters(params(8)).build();
+
+      assertThrows(SQLException.class, () -> db.sounds.callInTransaction(() -> {
+        db.sounds.updateParameters(sound.getId(), params(7));
+        db.sounds.create(added);
+        throw new SQLException("Simulated failure");
+      }));
+
+      assertArrayEquals(params(3), db.sounds.queryForId(sound.getId()).getParameters());
+      assertNull(db.sounds.queryForId(added.getId()));
+      assertFalse(db.sounds.getParameterStore().contains(added.getId()));
+    }
+  }
+
+  @Test
+  void testSwitchingModesMovesParameters() throws Exception {
+    Path dbFile = dir.resolve("lyra.db");
+    Path storeFile = dir.resolve("lyra.db.params");
+    int id;
+    try (Database db = new Database(dbFile.toString())) {
+      Sound sound = Sound.builder().name("Inline").parameters(params(6)).build();
+      db.sounds.create(sound);
+      id = sound.getId();
+    }
+
+    try (Database db = new Database(dbFile.toString(), storeFile)) {
+      assertEquals(0, storedBlobLength(db, id));
+      assertArrayEquals(params(6), db.sounds.queryForId(id).getParameters());
+    }
+
+    try (Database db = new Database(dbFile.toString())) {
+      assertEquals(385, storedBlobLength(db, id));
+      assertArrayEquals(params(6), db.sounds.queryForId(id).getParameters());
+    }
+    assertFalse(Files.exists(storeFile));
+  }
+}
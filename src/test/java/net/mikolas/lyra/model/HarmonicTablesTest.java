@@ -0,0 +1,52 @@
+package net.mikolas.lyra.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the cached harmonic tables and the accumulate kernel.
+ */
+class HarmonicTablesTest {
+
+    @Test
+    void testTablesAreShared() {
+        assertSame(HarmonicTables.unit(Harmonic.WaveType.SINE, 3),
+                HarmonicTables.unit(Harmonic.WaveType.SINE, 3));
+        assertNotSame(HarmonicTables.unit(Harmonic.WaveType.SINE, 3),
+                HarmonicTables.unit(Harmonic.WaveType.SQUARE, 3));
+    }
+
+    @Test
+    void testAccumulateMatchesGeneratedWave() {
+        double[] gains = {1.0, 0.75, 1.0 / 3, 0.0};
+        for (Harmonic.WaveType type : Harmonic.WaveType.values()) {
+            for (int number : new int[] {1, 2, 7, 50, HarmonicTables.MAX_CACHED_NUMBER + 5}) {
+                Harmonic h = new Harmonic(number, type, 0.37);
+                for (double gain : gains) {
+                    int[] base = new int[128];
+                    for (int s = 0; s < 128; s++) {
+                        base[s] = (s * 16411) % 2000000 - 1000000;
+                    }
+                    int[] expected = base.clone();
+                    int[] wave = h.generateWave();
+                    for (int s = 0; s < 128; s++) {
+                        expected[s] = Math.clamp(expected[s] + (int)(wave[s] * gain),
+                                -1048576, 1048575);
+                    }
+
+                    h.accumulate(base, gain);
+                    assertArrayEquals(expected, base, type + " #" + number + " x" + gain);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testAccumulateClampsAfterEachHarmonic() {
+        int[] wave = new int[128];
+        java.util.Arrays.fill(wave, 1048000);
+        new Harmonic(1, Harmonic.WaveType.SQUARE, 1.0).accumulate(wave, 1.0);
+        assertEquals(1048575, wave[0]);
+        assertEquals(-1048576 + 1048000, wave[100], 1);
+    }
+}
@@ -0,0 +1,144 @@
+package net.mikolas.lyra.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the wave FFT and the spectral morph built on it.
+ */
+class WaveFftTest {
+
+    private static int[] sine(int harmonic, double amplitude, double phase) {
+        int[] wave = new int[128];
+        for (int s = 0; s < 128; s++) {
+            wave[s] = (int) Math.round(amplitude * Math.sin(2 * Math.PI * harmonic * s / 128 + phase));
+        }
+        return wave;
+    }
+
+    private static Keyframe keyframe(int index, int[] samples) {
+        Keyframe kf = new Keyframe(index);
+        for (int s = 0; s < 128; s++) {
+            kf.setSample(s, samples[s]);
+        }
+        return kf;
+    }
+
+    @Test
+    void testSineLandsInItsBin() {
+        WaveFft.Spectrum spectrum = WaveFft.analyze(sine(5, 100000, 0));
+
+        assertEquals(64 * 100000, spectrum.magnitude()[5], 64 * 2.0);
+        for (int k = 0; k < WaveFft.BINS; k++) {
+            if (k != 5) {
+                assertTrue(spectrum.magnitude()[k] < 64 * 2.0, "Bin " + k);
+            }
+        }
+    }
+
+    @Test
+    void testRoundTripIsExact() {
+        int[] wave = new int[128];
+        for (int s = 0; s < 128; s++) {
+            wave[s] = ((s * 7919) % 2000000) - 1000000;
+        }
+        wave[3] = -1048576;
+        wave[4] = 1048575;
+
+        int[] restored = new int[128];
+        WaveFft.synthesize(WaveFft.analyze(wave), restored);
+
+        assertArrayEquals(wave, restored);
+    }
+
+    @Test
+    void testSpectrumIsCachedUntilSamplesChange() {
+        Keyframe kf = keyframe(0, sine(1, 50000, 0));
+        WaveFft.Spectrum first = kf.getSpectrum();
+        assertSame(first, kf.getSpectrum());
+
+        kf.getSamples()[10] += 1; // Direct write, bypassing setSample
+        assertNotSame(first, kf.getSpectrum());
+    }
+
+    @Test
+    void testMorphInterpolatesMagnitudes() {
+        Wavetable wt = new Wavetable();
+        Keyframe a = keyframe(0, sine(3, 400000, 0));
+        a.setTransformMode(Keyframe.TransformMode.SPECTRAL_MORPH);
+        a.setPhaseMode(Keyframe.PhaseMode.SOURCE);
+        wt.getKeyframes().add(a);
+        wt.getKeyframes().add(keyframe(32, sine(7, 200000, 1.0)));
+        wt.markDirty();
+        wt.bounce();
+
+        WaveFft.Spectrum middle = WaveFft.analyze(wt.getWave(16));
+        assertEquals(64 * 200000, middle.magnitude()[3], 64 * 4.0);
+        assertEquals(64 * 100000, middle.magnitude()[7], 64 * 4.0);
+        assertEquals(0, WavetableKernels.wrapPhase(middle.phase()[7] - a.getSpectrum().phase()[7]),
+                1e-3, "Source phase kept");
+        assertArrayEquals(a.getSamples(), wt.getWave(0));
+        assertTrue(wt.verifyBounce());
+    }
+
+    @Test
+    void testInterpolatedPhaseTakesShortestArc() {
+        assertEquals(-0.2, WavetableKernels.wrapPhase(2 * Math.PI - 0.2), 1e-12);
+        assertEquals(0.5, WavetableKernels.wrapPhase(0.5), 1e-12);
+
+        Wavetable wt = new Wavetable();
+        Keyframe a = keyframe(0, sine(2, 300000, 3.0));
+        a.setTransformMode(Keyframe.TransformMode.SPECTRAL_MORPH);
+        wt.getKeyframes().add(a);
+        wt.getKeyframes().add(keyframe(2, sine(2, 300000, -3.0)));
+        wt.markDirty();
+        wt.bounce();
+
+        // Halfway between phases 3 and -3 along the short arc is pi, not 0
+        WaveFft.Spectrum middle = WaveFft.analyze(wt.getWave(1));
+        assertEquals(0, WavetableKernels.wrapPhase(middle.phase()[2] - (Math.PI - Math.PI / 2)),
+                1e-3);
+        assertEquals(64 * 300000, middle.magnitude()[2], 64 * 4.0);
+    }
+
+    @Test
+    void testSetBinResynthesizesFromEditedSpectrum() {
+        Keyframe kf = keyframe(0, sine(1, 500000, 0));
+        double fundamental = kf.getSpectrum().magnitude()[1];
+
+        kf.setBin(4, 64 * 100000, 0.5);
+        WaveFft.Spectrum edited = kf.getSpectrum();
+        kf.setBin(4, 64 * 200000, 0.5);
+
+        assertNotSame(edited, kf.getSpectrum(), "Each edit publishes a new spectrum");
+        assertEquals(64 * 200000, kf.getSpectrum().magnitude()[4]);
+        assertEquals(fundamental, kf.getSpectrum().magnitude()[1]);
+        int[] expected = new int[128];
+        for (int s = 0; s < 128; s++) {
+            expected[s] = (int) Math.round(500000 * Math.sin(2 * Math.PI * s / 128)
+                    + 200000 * Math.cos(2 * Math.PI * 4 * s / 128 + 0.5));
+        }
+        for (int s = 0; s < 128; s++) {
+            assertEquals(expected[s], kf.getSamples()[s], 1);
+        }
+    }
+
+    @Test
+    void testWaveSpectraAreCachedPerWave() {
+        Wavetable wt = new Wavetable();
+        Keyframe a = keyframe(0, sine(1, 300000, 0));
+        a.setTransformMode(Keyframe.TransformMode.CURVE);
+        wt.getKeyframes().add(a);
+        wt.getKeyframes().add(keyframe(16, sine(2, 300000, 0)));
+        wt.getKeyframes().add(keyframe(32, sine(3, 300000, 0)));
+        wt.markDirty();
+
+        WaveFft.Spectrum wave40 = wt.getWaveSpectrum(40);
+        WaveFft.Spectrum wave8 = wt.getWaveSpectrum(8);
+        a.setBin(5, 64 * 1000, 0);
+        wt.markDirty(a);
+
+        assertNotSame(wave8, wt.getWaveSpectrum(8));
+        assertSame(wave40, wt.getWaveSpectrum(40), "Untouched wave keeps its spectrum");
+    }
+}
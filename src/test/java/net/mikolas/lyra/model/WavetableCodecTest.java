@@ -0,0 +1,150 @@
+package net.mikolas.lyra.model;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the compact persisted wavetable format.
+ */
+class WavetableCodecTest {
+
+    @Test
+    void testPackRoundTripIncludesExtremes() {
+        int[] wave = new int[128];
+        for (int s = 0; s < 128; s++) {
+            wave[s] = (s % 2 == 0 ? 1 : -1) * s * 8191;
+        }
+        wave[0] = -1048576;
+        wave[1] = 1048575;
+
+        byte[] packed = new byte[WavetableCodec.PACKED_WAVE_SIZE];
+        WavetableCodec.packWave(wave, packed, 0);
+        int[] restored = new int[128];
+        WavetableCodec.unpackWave(packed, 0, restored);
+
+        assertArrayEquals(wave, restored);
+        assertEquals(336, WavetableCodec.PACKED_WAVE_SIZE);
+    }
+
+    @Test
+    void testKeyframeGraphIsPersisted() {
+        Wavetable wt = Wavetable.createNew();
+        Keyframe kf0 = wt.getKeyframes().get(0);
+        for (int s = 0; s < 128; s++) kf0.setSample(s, s * 1000);
+        kf0.setTransformMode(Keyframe.TransformMode.SPECTRAL);
+        kf0.getHarmonics().add(new Harmonic(3, Harmonic.WaveType.TRIANGLE, 0.25));
+
+        Keyframe kf40 = new Keyframe(40);
+        for (int s = 0; s < 128; s++) kf40.setSample(s, -s * 500);
+        kf40.setTransformMode(Keyframe.TransformMode.TRANSLATE);
+        kf40.setTranslateOffset(-17);
+        kf40.setCurveFunction("InOutQuad");
+        wt.getKeyframes().add(kf40);
+        wt.markDirty();
+
+        wt.prepareForSave();
+        int[] expectedWave20 = wt.getWave(20).clone();
+
+        Wavetable loaded = new Wavetable();
+        loaded.setBinaryData(wt.getBinaryData());
+        loaded.loadFromData();
+
+        assertEquals(2, loaded.getKeyframes().size());
+        Keyframe a = loaded.getKeyframes().get(0);
+        Keyframe b = loaded.getKeyframes().get(1);
+        assertEquals(Keyframe.TransformMode.SPECTRAL, a.getTransformMode());
+        assertEquals(1, a.getHarmonics().size());
+        assertEquals(3, a.getHarmonics().get(0).getNumber());
+        assertEquals(Harmonic.WaveType.TRIANGLE, a.getHarmonics().get(0).getType());
+        assertEquals(0.25, a.getHarmonics().get(0).getAmplitude());
+        assertArrayEquals(kf0.getSamples(), a.getSamples());
+
+        assertEquals(40, b.getIndex());
+        assertEquals(Keyframe.TransformMode.TRANSLATE, b.getTransformMode());
+        assertEquals(-17, b.getTranslateOffset());
+        assertEquals("InOutQuad", b.getCurveFunction());
+        assertArrayEquals(kf40.getSamples(), b.getSamples());
+
+        assertArrayEquals(expectedWave20, loaded.getWave(20));
+    }
+
+    @Test
+    void testEditedWaveKeepsKeyframeSamplesInline() {
+        Wavetable wt = Wavetable.createNew();
+        Keyframe kf0 = wt.getKeyframes().get(0);
+        for (int s = 0; s < 128; s++) kf0.setSample(s, 12345);
+        wt.markDirty();
+        wt.bounce();
+
+        int[] edited = new int[128];
+        edited[5] = 777;
+        wt.setWave(0, edited);
+        wt.prepareForSave();
+
+        Wavetable loaded = new Wavetable();
+        loaded.setBinaryData(wt.getBinaryData());
+        loaded.loadFromData();
+
+        assertEquals(777, loaded.getWave(0)[5]);
+        assertEquals(12345, loaded.getKeyframes().get(0).getSamples()[5]);
+    }
+
+    @Test
+    void testLegacyRawIntFormatStillLoads() {
+        ByteBuffer bb = ByteBuffer.allocate(WavetableCodec.LEGACY_SIZE);
+        for (int i = 0; i < 64; i++) {
+            for (int s = 0; s < 128; s++) {
+                bb.putInt(i * 100 - s);
+            }
+        }
+        byte[] legacy = bb.array();
+        assertTrue(WavetableCodec.isLegacy(legacy));
+
+        Wavetable wt = new Wavetable();
+        wt.setBinaryData(legacy);
+        wt.loadFromData();
+
+        assertEquals(63 * 100 - 127, wt.getWave(63)[127]);
+        assertEquals(-5, wt.getWave(0)[5]);
+        assertTrue(wt.getKeyframes().isEmpty());
+    }
+
+    @Test
+    void testRejectsNewerFormatVersion() {
+        Wavetable wt = Wavetable.createNew();
+        wt.prepareForSave();
+        byte[] data = wt.getBinaryData();
+        data[3] = (byte) (WavetableCodec.FORMAT_VERSION + 1);
+
+        assertFalse(WavetableCodec.isReadable(data));
+        assertThrows(IllegalArgumentException.class,
+                () -> WavetableCodec.decodeWave(data, 0, new int[128]));
+    }
+
+    @Test
+    void testSpectralMorphAndPhaseModeArePersisted() {
+        Wavetable wt = Wavetable.createNew();
+        Keyframe kf0 = wt.getKeyframes().get(0);
+        kf0.setTransformMode(Keyframe.TransformMode.SPECTRAL_MORPH);
+        kf0.setPhaseMode(Keyframe.PhaseMode.TARGET);
+        wt.markDirty();
+        wt.prepareForSave();
+        byte[] data = wt.getBinaryData();
+
+        Keyframe loaded = WavetableCodec.decodeKeyframes(data).get(0);
+        assertEquals(Keyframe.TransformMode.SPECTRAL_MORPH, loaded.getTransformMode());
+        assertEquals(Keyframe.PhaseMode.TARGET, loaded.getPhaseMode());
+
+        // v1 blobs have no phase bits set
+        kf0.setPhaseMode(Keyframe.PhaseMode.INTERPOLATE);
+        kf0.setTransformMode(Keyframe.TransformMode.CURVE);
+        wt.markDirty();
+        wt.prepareForSave();
+        byte[] v1 = wt.getBinaryData();
+        v1[3] = 1;
+        assertTrue(WavetableCodec.isReadable(v1));
+        assertEquals(Keyframe.PhaseMode.INTERPOLATE,
+                WavetableCodec.decodeKeyframes(v1).get(0).getPhaseMode());
+    }
+}
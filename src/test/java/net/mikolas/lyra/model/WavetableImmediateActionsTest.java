@@ -29,7 +29,7 @@ class WavetableImmediateActionsTest {
         // Save to binary
         wt.prepareForSave();
         assertNotNull(wt.getBinaryData());
-        assertEquals(64 * 128 * 4, wt.getBinaryData().length); // 4 bytes per int
+        assertTrue(wt.getBinaryData().length < 64 * 128 * 4); // 21-bit packed, smaller than raw ints
         
         // Clear waves and reload
         for (int i = 0; i < 64; i++) {
@@ -41,10 +41,10 @@ class WavetableImmediateActionsTest {
         // Load from binary
         wt.loadFromData();
         
-        // Verify data restored correctly
+        // Verify data restored correctly (decoded lazily on access)
         for (int i = 0; i < 64; i++) {
             for (int s = 0; s < 128; s++) {
-                assertEquals((i * 1000) + s, testWaves[i][s], 
+                assertEquals((i * 1000) + s, wt.getWave(i)[s], 
                     "Wave " + i + " sample " + s + " mismatch");
             }
         }
@@ -0,0 +1,124 @@
+package net.mikolas.lyra.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for dirty-segment incremental bouncing.
+ */
+class WavetableIncrementalBounceTest {
+
+    private static Keyframe keyframe(int index, int seed, Keyframe.TransformMode mode) {
+        Keyframe kf = new Keyframe(index);
+        for (int s = 0; s < 128; s++) {
+            kf.setSample(s, ((s * 7919 + seed * 104729) % 2000000) - 1000000);
+        }
+        kf.setTransformMode(mode);
+        return kf;
+    }
+
+    /** Keyframes at 0, 16, 32 and 48 with a mix of transform modes. */
+    private static Wavetable fourSegments() {
+        Wavetable wt = new Wavetable();
+        wt.getKeyframes().add(keyframe(0, 1, Keyframe.TransformMode.CURVE));
+        Keyframe spectral = keyframe(16, 2, Keyframe.TransformMode.SPECTRAL);
+        spectral.getHarmonics().add(new Harmonic(3, Harmonic.WaveType.SINE, 0.25));
+        wt.getKeyframes().add(spectral);
+        Keyframe translate = keyframe(32, 3, Keyframe.TransformMode.TRANSLATE);
+        translate.setTranslateOffset(17);
+        wt.getKeyframes().add(translate);
+        wt.getKeyframes().add(keyframe(48, 4, Keyframe.TransformMode.CONSTANT));
+        wt.markDirty();
+        wt.bounce();
+        return wt;
+    }
+
+    @Test
+    void testFirstBounceIsFull() {
+        Wavetable wt = fourSegments();
+        assertEquals(4, wt.lastBounceSegments());
+        assertTrue(wt.verifyBounce());
+    }
+
+    @Test
+    void testSampleEditRecomputesAdjacentSegmentsOnly() {
+        Wavetable wt = fourSegments();
+        int[] untouched = wt.getWave(40).clone();
+
+        Keyframe kf = wt.getKeyframes().get(1); // index 16
+        kf.setSample(5, 123456);
+        wt.markDirty(kf);
+        wt.bounce();
+
+        assertEquals(2, wt.lastBounceSegments(), "Segments 0-15 and 16-31");
+        assertEquals(123456, wt.getWave(16)[5]);
+        assertArrayEquals(untouched, wt.getWave(40));
+        assertTrue(wt.verifyBounce());
+    }
+
+    @Test
+    void testMovedKeyframeRecomputesOldAndNewNeighbours() {
+        Wavetable wt = fourSegments();
+
+        wt.getKeyframes().get(2).setIndex(40); // 32 -> 40
+        wt.markKeyframesChanged();
+        wt.bounce();
+
+        assertEquals(2, wt.lastBounceSegments(), "Segments 16-39 and 40-47");
+        assertTrue(wt.verifyBounce());
+    }
+
+    @Test
+    void testAddAndRemoveKeyframe() {
+        Wavetable wt = fourSegments();
+
+        wt.addKeyframe(24);
+        wt.bounce();
+        assertEquals(2, wt.lastBounceSegments());
+        assertTrue(wt.verifyBounce());
+
+        wt.removeKeyframe(48);
+        wt.bounce();
+        assertEquals(1, wt.lastBounceSegments(), "Only segment 32 now reaches the end");
+        assertTrue(wt.verifyBounce());
+    }
+
+    @Test
+    void testDirectlySetWaveIsRecomputedByNextBounce() {
+        Wavetable wt = fourSegments();
+        int[] bounced = wt.getWave(20).clone();
+
+        wt.setWave(20, new int[128]);
+        Keyframe last = wt.getKeyframes().get(3);
+        last.setSample(0, 0);
+        wt.markDirty(last);
+        wt.bounce();
+
+        assertArrayEquals(bounced, wt.getWave(20), "Overwritten wave matches a full bounce again");
+        assertTrue(wt.verifyBounce());
+    }
+
+    @Test
+    void testDuplicateIndicesFallBackToFullBounce() {
+        Wavetable wt = fourSegments();
+
+        wt.getKeyframes().get(3).setIndex(32);
+        wt.markKeyframesChanged();
+        wt.bounce();
+
+        assertEquals(4, wt.lastBounceSegments());
+        assertTrue(wt.verifyBounce());
+    }
+
+    @Test
+    void testVerifyRepairsMissedEdit() {
+        Wavetable wt = fourSegments();
+
+        // Edited without telling the wavetable
+        wt.getKeyframes().get(0).setSample(0, 42);
+
+        assertFalse(wt.verifyBounce());
+        assertEquals(42, wt.getWave(0)[0]);
+        assertTrue(wt.verifyBounce());
+    }
+}
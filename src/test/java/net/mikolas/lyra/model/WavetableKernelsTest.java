@@ -0,0 +1,129 @@
+package net.mikolas.lyra.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the per-mode bounce kernels reproduce the original per-sample interpolation.
+ */
+class WavetableKernelsTest {
+
+    private static Keyframe randomKeyframe(Random random, int index) {
+        Keyframe kf = new Keyframe(index);
+        for (int s = 0; s < 128; s++) {
+            kf.setSample(s, random.nextInt(2097152) - 1048576);
+        }
+        return kf;
+    }
+
+    /** The interpolation as it was before the kernels, one switch per wave. */
+    private static void reference(int[][] out, Keyframe a, Keyframe b, int start, int end) {
+        int range = end - start;
+        for (int i = start + 1; i < end; i++) {
+            double ratio = (double)(i - start) / range;
+            switch (a.getTransformMode()) {
+                case CONSTANT -> System.arraycopy(a.getSamples(), 0, out[i], 0, 128);
+                case CURVE -> {
+                    double p = WavetableKernels.ease(a.getCurveFunction(), ratio);
+                    for (int s = 0; s < 128; s++) {
+                        out[i][s] = (int)((1 - p) * a.getSamples()[s] + p * b.getSamples()[s]);
+                    }
+                }
+                case TRANSLATE -> {
+                    int offset = (int)(a.getTranslateOffset() * ratio);
+                    for (int s = 0; s < 128; s++) {
+                        int sourceIdx = (s - offset) % 128;
+                        if (sourceIdx < 0) sourceIdx += 128;
+                        out[i][s] = (int)((1 - ratio) * a.getSamples()[s] + ratio * b.getSamples()[sourceIdx]);
+                    }
+                }
+                case SPECTRAL -> {
+                    for (int s = 0; s < 128; s++) {
+                        out[i][s] = (int)((1 - ratio) * a.getSamples()[s] + ratio * b.getSamples()[s]);
+                    }
+                    for (Harmonic h : a.getHarmonics()) {
+                        int[] harmonicWave = h.generateWave();
+                        for (int s = 0; s < 128; s++) {
+                            out[i][s] = Math.clamp(out[i][s] + (int)(harmonicWave[s] * (1 - ratio)),
+                                    -1048576, 1048575);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertMatchesReference(Keyframe a, Keyframe b) {
+        int[][] expected = new int[64][128];
+        int[][] actual = new int[64][128];
+        reference(expected, a, b, a.getIndex(), b.getIndex());
+        WavetableKernels.interpolate(actual, a, b, a.getIndex(), b.getIndex());
+        for (int w = 0; w < 64; w++) {
+            assertArrayEquals(expected[w], actual[w], a.getTransformMode() + " wave " + w);
+        }
+    }
+
+    @Test
+    void testCurveKernelsMatchReference() {
+        Random random = new Random(1);
+        for (String function : new String[] {"Linear", "InQuad", "OutQuad", "InOutQuad", "Sine", "Exp"}) {
+            Keyframe a = randomKeyframe(random, 3);
+            a.setTransformMode(Keyframe.TransformMode.CURVE);
+            a.setCurveFunction(function);
+            assertMatchesReference(a, randomKeyframe(random, 41));
+        }
+    }
+
+    @Test
+    void testTranslateKernelMatchesReference() {
+        Random random = new Random(2);
+        for (int offset : new int[] {0, 1, 17, 127, 128, -1, -77, -128}) {
+            Keyframe a = randomKeyframe(random, 0);
+            a.setTransformMode(Keyframe.TransformMode.TRANSLATE);
+            a.setTranslateOffset(offset);
+            assertMatchesReference(a, randomKeyframe(random, 63));
+        }
+    }
+
+    @Test
+    void testConstantAndSpectralKernelsMatchReference() {
+        Random random = new Random(3);
+        Keyframe constant = randomKeyframe(random, 10);
+        assertMatchesReference(constant, randomKeyframe(random, 20));
+
+        Keyframe spectral = randomKeyframe(random, 5);
+        spectral.setTransformMode(Keyframe.TransformMode.SPECTRAL);
+        for (int n = 1; n <= 50; n++) {
+            spectral.getHarmonics().add(new Harmonic(n, Harmonic.WaveType.values()[n % 5], 1.0 / n));
+        }
+        assertMatchesReference(spectral, randomKeyframe(random, 60));
+    }
+
+    @Test
+    void testParallelBounceMatchesFullBounce() {
+        Random random = new Random(4);
+        List<Wavetable> tables = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Wavetable wt = new Wavetable();
+            for (int index = 0; index < 64; index += 8) {
+                Keyframe kf = randomKeyframe(random, index);
+                kf.setTransformMode(Keyframe.TransformMode.SPECTRAL);
+                for (int n = 1; n <= 40; n++) {
+                    kf.getHarmonics().add(new Harmonic(n, Harmonic.WaveType.SINE, 0.02));
+                }
+                wt.getKeyframes().add(kf);
+            }
+            tables.add(wt);
+        }
+
+        Wavetable.bounceAll(tables);
+
+        for (Wavetable wt : tables) {
+            assertEquals(8, wt.lastBounceSegments());
+            assertTrue(wt.verifyBounce());
+        }
+    }
+}
@@ -128,21 +128,22 @@ class WavetableUndoRedoTest {
 
   @Test
   void testUndoLimitEnforced() {
-    // Make more than limit changes (assume limit is 50)
-    for (int i = 0; i < 60; i++) {
+    // Make more than limit changes
+    for (int i = 0; i < Wavetable.MAX_UNDO_HISTORY + 10; i++) {
       int[] wave = new int[128];
       wave[0] = i;
       wavetable.setWave(0, wave);
     }
 
-    // Undo 50 times should work
-    for (int i = 0; i < 50; i++) {
+    // Undo up to the limit should work
+    for (int i = 0; i < Wavetable.MAX_UNDO_HISTORY; i++) {
       assertTrue(wavetable.canUndo());
       wavetable.undo();
     }
 
-    // 51st undo should not be possible
+    // One more undo should not be possible
     assertFalse(wavetable.canUndo());
+    assertEquals(9, wavetable.getWave(0)[0]);
   }
 
   @Test
@@ -176,4 +177,72 @@ class WavetableUndoRedoTest {
 
     assertArrayEquals(originalWave, wavetable.getWave(0));
   }
+
+  @Test
+  void testStrokeIsOneUndoEntry() {
+    Keyframe kf = new Keyframe(0);
+    wavetable.getKeyframes().add(kf);
+    wavetable.markKeyframesChanged();
+
+    wavetable.beginEdit();
+    for (int i = 0; i < 128; i++) {
+      wavetable.recordKeyframeEdit(kf);
+      kf.setSample(i, i * 1000);
+      wavetable.markDirty(kf);
+    }
+    wavetable.endEdit();
+    int[] drawn = kf.getSamples().clone();
+
+    wavetable.undo();
+    assertArrayEquals(new int[128], kf.getSamples());
+    assertArrayEquals(new int[128], wavetable.getWave(10));
+    assertFalse(wavetable.canUndo(), "Whole stroke undone at once");
+
+    wavetable.redo();
+    assertArrayEquals(drawn, kf.getSamples());
+    assertArrayEquals(drawn, wavetable.getWave(10));
+  }
+
+  @Test
+  void testEmptyGroupLeavesNoEntry() {
+    wavetable.beginEdit();
+    wavetable.endEdit();
+
+    assertFalse(wavetable.canUndo());
+  }
+
+  @Test
+  void testUndoRestoresKeyframeSettingsAndIdentity() {
+    Keyframe kf = new Keyframe(16);
+    kf.getHarmonics().add(new Harmonic(2, Harmonic.WaveType.SINE, 0.5));
+    wavetable.getKeyframes().add(kf);
+
+    wavetable.recordKeyframeEdit(kf);
+    kf.setTransformMode(Keyframe.TransformMode.SPECTRAL_MORPH);
+    kf.setIndex(20);
+    kf.getHarmonics().clear();
+    wavetable.removeKeyframe(20);
+
+    wavetable.undo();
+    assertSame(kf, wavetable.getKeyframes().get(0), "Removed keyframe comes back as itself");
+    wavetable.undo();
+    assertEquals(16, kf.getIndex());
+    assertEquals(Keyframe.TransformMode.CONSTANT, kf.getTransformMode());
+    assertEquals(1, kf.getHarmonics().size());
+  }
+
+  @Test
+  void testUndoOnlyTouchesJournaledWaves() {
+    int[] wave1 = new int[128];
+    wave1[0] = 7;
+    wavetable.setWave(1, wave1);
+    int[] wave2 = new int[128];
+    wave2[0] = 9;
+    wavetable.setWave(2, wave2);
+
+    wavetable.undo();
+
+    assertEquals(7, wavetable.getWave(1)[0]);
+    assertEquals(0, wavetable.getWave(2)[0]);
+  }
 }
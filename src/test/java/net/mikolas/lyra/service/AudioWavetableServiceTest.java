@@ -0,0 +1,137 @@
+package net.mikolas.lyra.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Path;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for AudioWavetableService. */
+class AudioWavetableServiceTest {
+
+  private static final float RATE = 44100;
+
+  @TempDir Path dir;
+
+  private final AudioWavetableService service = new AudioWavetableService();
+
+  /** Band-limited saw gliding linearly between two frequencies. */
+  private static float[] glide(double fromHz, double toHz, double seconds) {
+    int n = (int) (RATE * seconds);
+    float[] out = new float[n];
+    double phase = 0;
+    for (int i = 0; i < n; i++) {
+      phase += 2 * Math.PI * (fromHz + (toHz - fromHz) * i / n) / RATE;
+      double value = 0;
+      for (int k = 1; k <= 8; k++) {
+        value += Math.sin(k * phase) / k;
+      }
+      out[i] = (float) (0.4 * value);
+    }
+    return out;
+  }
+
+  private File write(float[] samples, int bits, int channels, boolean bigEndian,
+      AudioFileFormat.Type type, String name) throws Exception {
+    int bytes = bits / 8;
+    byte[] data = new byte[samples.length * bytes * channels];
+    long max = (1L << (bits - 1)) - 1;
+    for (int i = 0, pos = 0; i < samples.length; i++) {
+      long value = Math.round(samples[i] * max);
+      for (int c = 0; c < channels; c++) {
+        for (int b = 0; b < bytes; b++, pos++) {
+          int shift = bigEndian ? 8 * (bytes - 1 - b) : 8 * b;
+          data[pos] = (byte) (value >> shift);
+        }
+      }
+    }
+    AudioFormat format = new AudioFormat(RATE, bits, channels, true, bigEndian);
+    File file = dir.resolve(name).toFile();
+    AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(data), format,
+        samples.length), type, file);
+    return file;
+  }
+
+  private static double correlation(int[] a, int[] b) {
+    double dot = 0;
+    double na = 0;
+    double nb = 0;
+    for (int s = 0; s < a.length; s++) {
+      dot += (double) a[s] * b[s];
+      na += (double) a[s] * a[s];
+      nb += (double) b[s] * b[s];
+    }
+    return dot / Math.sqrt(na * nb);
+  }
+
+  @Test
+  void testReads24BitStereoWavAnd16BitAiff() throws Exception {
+    float[] source = glide(220, 220, 0.5);
+
+    AudioWavetableService.AudioData wav = service.load(
+        write(source, 24, 2, false, AudioFileFormat.Type.WAVE, "stereo.wav"));
+    AudioWavetableService.AudioData aiff = service.load(
+        write(source, 16, 1, true, AudioFileFormat.Type.AIFF, "mono.aif"));
+
+    assertEquals(RATE, wav.sampleRate());
+    assertEquals(source.length, wav.samples().length);
+    assertEquals(source.length, aiff.samples().length);
+    for (int i = 0; i < source.length; i += 97) {
+      assertEquals(source[i], wav.samples()[i], 1e-6);
+      assertEquals(source[i], aiff.samples()[i], 1e-4);
+    }
+  }
+
+  @Test
+  void testDetectsPeriod() {
+    float[] audio = glide(110, 110, 0.5);
+
+    double period = AudioWavetableService.detectPeriod(audio, 1000, 11, 1470);
+
+    assertEquals(RATE / 110, period, 0.1);
+  }
+
+  @Test
+  void testExtractsPhaseAlignedCyclesAcrossGlide() {
+    float[] audio = glide(110, 220, 3);
+
+    AudioWavetableService.Extraction extraction = service.extract(
+        new AudioWavetableService.AudioData(audio, RATE), 0, audio.length);
+
+    assertEquals(64, extraction.voiced());
+    assertEquals(110, extraction.frequencies()[0], 2);
+    assertEquals(220, extraction.frequencies()[63], 5);
+    for (int i = 1; i < 64; i++) {
+      assertTrue(extraction.frequencies()[i] > extraction.frequencies()[i - 1] - 1);
+      // Same saw shape, starting at the same phase, whatever the pitch
+      assertTrue(correlation(extraction.waves()[0], extraction.waves()[i]) > 0.99, "Wave " + i);
+    }
+    int peak = 0;
+    for (int[] wave : extraction.waves()) {
+      for (int sample : wave) {
+        peak = Math.max(peak, Math.abs(sample));
+      }
+    }
+    assertEquals(1048575, peak);
+  }
+
+  @Test
+  void testSilenceFallsBackToSlices() {
+    float[] audio = new float[100_000];
+
+    AudioWavetableService.Extraction extraction = service.extract(
+        new AudioWavetableService.AudioData(audio, RATE), 0, audio.length);
+
+    assertEquals(0, extraction.voiced());
+    assertTrue(Double.isNaN(extraction.frequencies()[10]));
+    assertArrayEquals(new int[128], extraction.waves()[10]);
+    assertTrue(Double.isNaN(service.extractCycle(
+        new AudioWavetableService.AudioData(audio, RATE), 0, new int[128])));
+  }
+}
@@ -0,0 +1,148 @@
+package net.mikolas.lyra.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import net.mikolas.lyra.db.Database;
+import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.service.BulkEditService.Operation;
+import net.mikolas.lyra.service.BulkEditService.ParamEdit;
+import net.mikolas.lyra.ui.FilterType;
+import net.mikolas.lyra.ui.SoundFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for BulkEditService. */
+class BulkEditServiceTest {
+
+  private static final int VOLUME = 121;
+  private static final int ARP_MODE = 311;
+
+  private Database database;
+  private SoundIndexService index;
+  private BulkEditService service;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    database = new Database(":memory:");
+    index = new SoundIndexService();
+    service = new BulkEditService(database, index);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    database.close();
+  }
+
+  private List<Sound> createSounds(int count) throws Exception {
+    List<Sound> sounds = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      byte[] params = new byte[385];
+      params[VOLUME] = (byte) (i * 10);
+      params[ARP_MODE] = 1;
+      Sound sound = Sound.builder().name("Sound " + i).category(0).parameters(params).build();
+      database.sounds.create(sound);
+      index.indexSound(sound);
+      sounds.add(sound);
+    }
+    return sounds;
+  }
+
+  @Test
+  void testParseExpressions() {
+    assertEquals(new ParamEdit(ARP_MODE, Operation.SET, 0),
+        ParamEdit.parse("arpeggiatorMode = off").orElseThrow());
+    assertEquals(new ParamEdit(VOLUME, Operation.OFFSET, -5),
+        ParamEdit.parse("amplifierVolume -= 5").orElseThrow());
+    assertEquals(new ParamEdit(VOLUME, Operation.SCALE, 0.5),
+        ParamEdit.parse("121 *= 0.5").orElseThrow());
+    assertTrue(ParamEdit.parse("amplifierVolume *= loud").isEmpty());
+    assertTrue(ParamEdit.parse("noSuchParam = 1").isEmpty());
+    assertTrue(ParamEdit.parse("363 = 65").isEmpty(), "Name characters are not bulk-editable");
+    assertEquals(2, ParamEdit.parseAll("arpeggiatorMode = off; amplifierVolume += 1")
+        .orElseThrow().size());
+    assertTrue(ParamEdit.parseAll("arpeggiatorMode = off; bogus").isEmpty());
+  }
+
+  @Test
+  void testApplyClampsToParameterRange() {
+    assertEquals(127, new ParamEdit(VOLUME, Operation.OFFSET, 50).apply(100));
+    assertEquals(0, new ParamEdit(VOLUME, Operation.OFFSET, -50).apply(10));
+    assertEquals(3, new ParamEdit(ARP_MODE, Operation.SET, 9).apply(0));
+    assertEquals(51, new ParamEdit(VOLUME, Operation.SCALE, 0.5).apply(101));
+  }
+
+  @Test
+  void testBulkEditSavesAndUpdatesMemoryAndIndex() throws Exception {
+    List<Sound> sounds = createSounds(5);
+    List<ParamEdit> edits =
+        ParamEdit.parseAll("arpeggiatorMode = off; amplifierVolume += 100").orElseThrow();
+
+    BulkEditService.BulkEditResult result = service.apply(sounds, edits);
+    assertEquals(5, result.total());
+    assertEquals(5, result.changed());
+
+    for (int i = 0; i < sounds.size(); i++) {
+      Sound sound = sounds.get(i);
+      int expectedVolume = Math.min(127, i * 10 + 100);
+      assertEquals(0, sound.getParameters()[ARP_MODE]);
+      assertEquals(expectedVolume, sound.getParameters()[VOLUME] & 0xFF);
+
+      Sound saved = database.sounds.queryForId(sound.getId());
+      assertEquals(0, saved.getParameters()[ARP_MODE]);
+      assertEquals(expectedVolume, saved.getParameters()[VOLUME] & 0xFF);
+      assertEquals(Sound.contentHashOf(saved.getParameters()), saved.getContentHash());
+    }
+
+    SoundFilter loud = new SoundFilter(FilterType.PARAM, "amplifierVolume = 127");
+    assertEquals(2, index.resolve(List.of(loud)).cardinality());
+  }
+
+  @Test
+  void testFailedBatchChangesNothing() throws Exception {
+    List<Sound> sounds = createSounds(3);
+    // Let the first sound's writes through, then fail on the second
+    database.sounds.executeRaw("CREATE TRIGGER fail_bulk_edit BEFORE UPDATE ON sounds "
+        + "WHEN NEW.id = " + sounds.get(1).getId() + " BEGIN SELECT RAISE(ABORT, 'boom'); END");
+
+    assertThrows(SQLException.class,
+        () -> service.apply(sounds, List.of(new ParamEdit(ARP_MODE, Operation.SET, 0))));
+
+    for (Sound sound : sounds) {
+      assertEquals(1, sound.getParameters()[ARP_MODE]);
+      Sound saved = database.sounds.queryForId(sound.getId());
+      assertEquals(1, saved.getParameters()[ARP_MODE]);
+      assertEquals(Sound.contentHashOf(saved.getParameters()), saved.getContentHash());
+    }
+    assertTrue(database.soundRevisions.queryForAll().isEmpty());
+  }
+
+  @Test
+  void testUnchangedSoundsAreNotWritten() throws Exception {
+    List<Sound> sounds = createSounds(3);
+    sounds.get(1).getParameters()[ARP_MODE] = 0;
+    database.sounds.update(sounds.get(1));
+
+    BulkEditService.BulkEditResult result =
+        service.apply(sounds, List.of(new ParamEdit(ARP_MODE, Operation.SET, 0)));
+    assertEquals(2, result.changed());
+    assertTrue(new SoundHistoryService(database).history(sounds.get(1).getId()).isEmpty());
+    assertEquals(2, new SoundHistoryService(database).history(sounds.get(0).getId()).size());
+  }
+
+  @Test
+  void testCategoryEditReindexesSound() throws Exception {
+    List<Sound> sounds = createSounds(2);
+    service.apply(sounds.subList(0, 1), List.of(new ParamEdit(379, Operation.SET, 3)));
+
+    assertEquals(Integer.valueOf(3), sounds.get(0).getCategory());
+    assertEquals(Integer.valueOf(3),
+        database.sounds.queryForId(sounds.get(0).getId()).getCategory());
+    SoundFilter bass = new SoundFilter(FilterType.CATEGORY, "Bass");
+    assertTrue(index.resolve(List.of(bass)).get(sounds.get(0).getId()));
+    assertFalse(index.resolve(List.of(bass)).get(sounds.get(1).getId()));
+  }
+}
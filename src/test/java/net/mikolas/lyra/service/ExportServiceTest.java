@@ -5,7 +5,16 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.SysexMessage;
+import javax.sound.midi.Track;
+import net.mikolas.lyra.midi.SysExGenerator;
 import net.mikolas.lyra.model.Sound;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -77,4 +86,75 @@ class ExportServiceTest {
     assertEquals('h', content[2]);
     assertEquals('d', content[3]);
   }
-}
\ No newline at end of file
+
+  private static List<Sound> manySounds(int count) {
+    List<Sound> sounds = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      byte[] params = new byte[385];
+      params[10] = (byte) (i & 0x7F);
+      sounds.add(Sound.builder()
+          .name("Sound " + i)
+          .bank((i / 128) % 8)
+          .program(i % 128)
+          .parameters(params)
+          .build());
+    }
+    return sounds;
+  }
+
+  @Test
+  void testSyxExportSpanningBufferFlushes() throws Exception {
+    List<Sound> sounds = manySounds(500);
+    File outputFile = tempDir.resolve("many.syx").toFile();
+    exportService.exportToSyx(sounds, outputFile);
+
+    byte[] content = Files.readAllBytes(outputFile.toPath());
+    assertEquals(392 * sounds.size(), content.length);
+    for (int i = 0; i < sounds.size(); i++) {
+      byte[] expected = SysExGenerator.generateSoundDump(sounds.get(i));
+      assertArrayEquals(expected, Arrays.copyOfRange(content, i * 392, (i + 1) * 392));
+    }
+  }
+
+  @Test
+  void testMidExportReadsBackWithSpacing() throws Exception {
+    List<Sound> sounds = manySounds(300);
+    File outputFile = tempDir.resolve("many.mid").toFile();
+    exportService.exportToMid(sounds, outputFile, 200);
+
+    Sequence sequence = MidiSystem.getSequence(outputFile);
+    assertEquals(1, sequence.getTracks().length);
+    assertEquals(ExportService.PPQ, sequence.getResolution());
+
+    List<MidiEvent> dumps = new ArrayList<>();
+    Track track = sequence.getTracks()[0];
+    for (int i = 0; i < track.size(); i++) {
+      if (track.get(i).getMessage() instanceof SysexMessage) {
+        dumps.add(track.get(i));
+      }
+    }
+    assertEquals(sounds.size(), dumps.size());
+    for (int i = 0; i < sounds.size(); i++) {
+      assertEquals(200L * i, dumps.get(i).getTick());
+      assertArrayEquals(SysExGenerator.generateSoundDump(sounds.get(i)),
+          dumps.get(i).getMessage().getMessage());
+    }
+    // 200 ticks at the exported tempo are 200 ms
+    assertEquals(200L * (sounds.size() - 1) * 1000, sequence.getMicrosecondLength());
+  }
+
+  @Test
+  void testMidExportOverwritesLongerFile() throws Exception {
+    File outputFile = tempDir.resolve("reuse.mid").toFile();
+    exportService.exportToMid(manySounds(50), outputFile);
+    exportService.exportToMid(Collections.singletonList(testSound), outputFile);
+
+    Sequence sequence = MidiSystem.getSequence(outputFile);
+    long dumps = 0;
+    Track track = sequence.getTracks()[0];
+    for (int i = 0; i < track.size(); i++) {
+      if (track.get(i).getMessage() instanceof SysexMessage) dumps++;
+    }
+    assertEquals(1, dumps);
+  }
+}
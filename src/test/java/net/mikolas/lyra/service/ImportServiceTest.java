@@ -126,4 +126,82 @@ class ImportServiceTest {
     assertEquals(1, sounds.size(), "Should still only have one sound");
     assertEquals("Imported", sounds.get(0).getName(), "Should have been overwritten");
   }
+
+  private static Sound dump(String name, int bank, int program, int detune) {
+    byte[] params = new byte[385];
+    params[3] = (byte) detune;
+    for (int i = 0; i < name.length(); i++) {
+      params[363 + i] = (byte) name.charAt(i);
+    }
+    return Sound.builder().name(name).bank(bank).program(program).parameters(params).build();
+  }
+
+  @Test
+  void testImportsDuplicatesByDefault() throws Exception {
+    importService.importSounds(List.of(dump("Bass", 0, 0, 10)));
+
+    ImportService.ImportResult result = importService.importSounds(List.of(
+        dump("Bass Copy", 2, 5, 10)));
+
+    assertEquals(1, result.imported());
+    assertEquals(0, result.skipped());
+    assertEquals(1, result.duplicates());
+    assertEquals(2, database.sounds.countOf());
+    assertEquals(0, database.soundTags.countOf());
+  }
+
+  @Test
+  void testSkipPolicySkipsDuplicateContentInOtherSlot() throws Exception {
+    ImportService skipping = new ImportService(database, ImportService.DuplicatePolicy.SKIP);
+    skipping.importSounds(List.of(dump("Bass", 0, 0, 10)));
+
+    ImportService.ImportResult result = skipping.importSounds(List.of(
+        dump("Bass Renamed", 2, 5, 10),
+        dump("Lead", 2, 6, 20)));
+
+    assertEquals(1, result.imported());
+    assertEquals(1, result.skipped());
+    assertEquals(1, result.duplicates());
+    assertEquals(2, database.sounds.countOf());
+  }
+
+  @Test
+  void testSkipPolicyDetectsDuplicatesWithinOneImport() throws Exception {
+    ImportService skipping = new ImportService(database, ImportService.DuplicatePolicy.SKIP);
+    ImportService.ImportResult result = skipping.importSounds(List.of(
+        dump("One", 0, 0, 42),
+        dump("Two", 0, 1, 42)));
+
+    assertEquals(1, result.imported());
+    assertEquals(1, result.duplicates());
+  }
+
+  @Test
+  void testFlagPolicyImportsAndTagsDuplicates() throws Exception {
+    ImportService flagging = new ImportService(database, ImportService.DuplicatePolicy.FLAG);
+    flagging.importSounds(List.of(dump("Pad", 0, 0, 7)));
+
+    ImportService.ImportResult result = flagging.importSounds(List.of(dump("Pad 2", 1, 0, 7)));
+
+    assertEquals(1, result.imported());
+    assertEquals(1, result.duplicates());
+    assertEquals(1, database.soundTags.countOf());
+    assertEquals(ImportService.DUPLICATE_TAG, database.tags.queryForAll().get(0).getName());
+
+    List<DuplicateService.DuplicateGroup> groups = new DuplicateService(database).findDuplicates();
+    assertEquals(1, groups.size());
+    assertEquals(2, groups.get(0).soundIds().size());
+    assertEquals(result.duplicateOf().get(0), groups.get(0).soundIds().get(0));
+  }
+
+  @Test
+  void testContentHashIgnoresNameAndCategory() {
+    Sound a = dump("Alpha", 0, 0, 1);
+    Sound b = dump("Beta", 0, 0, 1);
+    b.getParameters()[379] = 5;
+
+    assertEquals(Sound.contentHashOf(a.getParameters()), Sound.contentHashOf(b.getParameters()));
+    b.getParameters()[3] = 2;
+    assertNotEquals(Sound.contentHashOf(a.getParameters()), Sound.contentHashOf(b.getParameters()));
+  }
 }
@@ -0,0 +1,169 @@
+package net.mikolas.lyra.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import net.mikolas.lyra.db.Database;
+import net.mikolas.lyra.model.Collection;
+import net.mikolas.lyra.model.MultiPatch;
+import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.model.SoundCollection;
+import net.mikolas.lyra.model.SoundTag;
+import net.mikolas.lyra.model.Tag;
+import net.mikolas.lyra.model.Wavetable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for LibraryMergeService. */
+class LibraryMergeServiceTest {
+
+  private Database target;
+  private Database source;
+  private LibraryMergeService service;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    target = new Database(":memory:");
+    source = new Database(":memory:");
+    service = new LibraryMergeService(target);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    source.close();
+    target.close();
+  }
+
+  private static Sound sound(String name, int seed, Integer bank, Integer program) {
+    byte[] params = new byte[385];
+    for (int i = 0; i < 363; i++) {
+      params[i] = (byte) ((i + seed) & 0x7F);
+    }
+    Sound sound = Sound.builder().name(name).category(0).bank(bank).program(program)
+        .parameters(params).build();
+    sound.updateContentHash();
+    return sound;
+  }
+
+  @Test
+  void testMergeAddsOnlyMissingSounds() throws Exception {
+    target.sounds.create(sound("Shared", 1, 0, 0));
+    source.sounds.create(sound("Shared renamed", 1, 0, 5));
+    source.sounds.create(sound("New", 2, 0, 0));
+    source.sounds.create(sound("Other", 3, 1, 7));
+
+    LibraryMergeService.MergeResult result = service.merge(source);
+
+    assertEquals(2, result.soundsAdded());
+    assertEquals(1, result.soundsMatched());
+    assertEquals(3, target.sounds.countOf());
+
+    Sound moved = target.sounds.queryForEq("name", "New").get(0);
+    assertNull(moved.getBank(), "Occupied slot is not reused");
+    Sound kept = target.sounds.queryForEq("name", "Other").get(0);
+    assertEquals(1, kept.getBank());
+    assertEquals(7, kept.getProgram());
+  }
+
+  @Test
+  void testMergeFromFileLeavesSourceUntouched(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve("other.db");
+    try (Database other = new Database(file.toString())) {
+      other.sounds.create(sound("Elsewhere", 9, 0, 0));
+    }
+    byte[] before = Files.readAllBytes(file);
+
+    LibraryMergeService.MergeResult result = service.merge(file);
+
+    assertEquals(1, result.soundsAdded());
+    assertArrayEquals(before, Files.readAllBytes(file), "Source file was modified");
+  }
+
+  @Test
+  void testMergeIsIdempotent() throws Exception {
+    source.sounds.create(sound("A", 1, null, null));
+    Tag tag = Tag.builder().name("Pad").build();
+    source.tags.create(tag);
+    source.soundTags.create(
+        SoundTag.builder().sound(source.sounds.queryForAll().get(0)).tag(tag).build());
+
+    service.merge(source);
+    LibraryMergeService.MergeResult second = service.merge(source);
+
+    assertEquals(0, second.soundsAdded());
+    assertEquals(0, second.tagsAdded());
+    assertEquals(0, second.tagLinksAdded());
+    assertEquals(1, target.sounds.countOf());
+    assertEquals(1, target.soundTags.countOf());
+  }
+
+  @Test
+  void testMergeMapsTagsAndCollectionsOntoExistingSounds() throws Exception {
+    target.sounds.create(sound("Shared", 1, null, null));
+    Tag existingTag = Tag.builder().name("Bass").build();
+    target.tags.create(existingTag);
+
+    Sound shared = sound("Shared", 1, null, null);
+    source.sounds.create(shared);
+    Tag bass = Tag.builder().name("Bass").build();
+    Tag dark = Tag.builder().name("Dark").build();
+    source.tags.create(bass);
+    source.tags.create(dark);
+    source.soundTags.create(SoundTag.builder().sound(shared).tag(bass).build());
+    source.soundTags.create(SoundTag.builder().sound(shared).tag(dark).build());
+    Collection child = Collection.builder().name("Live").build();
+    source.collections.create(child);
+    Collection parent = Collection.builder().name("Gigs").build();
+    source.collections.create(parent);
+    child.setParent(parent);
+    source.collections.update(child);
+    source.soundCollections.create(
+        SoundCollection.builder().sound(shared).collection(child).build());
+
+    LibraryMergeService.MergeResult result = service.merge(source);
+
+    assertEquals(1, result.tagsAdded());
+    assertEquals(2, result.tagLinksAdded());
+    assertEquals(2, result.collectionsAdded());
+    assertEquals(1, result.collectionLinksAdded());
+
+    Collection live = target.collections.queryForEq("name", "Live").get(0);
+    assertEquals("Gigs", live.getParent().getName());
+    List<SoundTag> links = target.soundTags.queryForAll();
+    assertTrue(links.stream().allMatch(link -> link.getSound().getName().equals("Shared")));
+  }
+
+  @Test
+  void testMergeWavetablesAndMultis() throws Exception {
+    byte[] data = new byte[64];
+    data[0] = 1;
+    target.wavetables.create(Wavetable.builder().name("Mine").slot(80).binaryData(data).build());
+    source.wavetables.create(Wavetable.builder().name("Mine").slot(80)
+        .binaryData(data.clone()).build());
+    byte[] other = data.clone();
+    other[1] = 2;
+    source.wavetables.create(Wavetable.builder().name("Theirs").slot(81)
+        .binaryData(other).build());
+    source.wavetables.create(Wavetable.builder().name("Factory").slot(0).isFactory(true)
+        .binaryData(new byte[64]).build());
+
+    byte[] multiData = new byte[418];
+    multiData[0] = 9;
+    target.multis.create(MultiPatch.builder().name("Taken").multiIndex(3)
+        .data(new byte[418]).build());
+    source.multis.create(MultiPatch.builder().name("Incoming").multiIndex(3)
+        .data(multiData).build());
+
+    LibraryMergeService.MergeResult result = service.merge(source);
+
+    assertEquals(1, result.wavetablesAdded());
+    assertEquals(2, target.wavetables.countOf());
+    assertEquals(1, result.multisAdded());
+    MultiPatch incoming = target.multis.queryForEq("name", "Incoming").get(0);
+    assertNull(incoming.getMultiIndex());
+  }
+}
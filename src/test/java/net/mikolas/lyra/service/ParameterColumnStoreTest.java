@@ -0,0 +1,79 @@
+package net.mikolas.lyra.service;
+
+import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.ui.FilterType;
+import net.mikolas.lyra.ui.SoundFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParameterColumnStoreTest {
+
+  private static byte[] params(int shape, int arpMode) {
+    byte[] p = new byte[385];
+    p[8] = (byte) shape;
+    p[311] = (byte) arpMode;
+    return p;
+  }
+
+  @Test
+  void testParseNormalizesOperators() {
+    assertEquals(new ParamCondition(8, 2, 2, false), ParamCondition.parse("osc1Shape=Saw").get());
+    assertEquals(new ParamCondition(311, 1, 255, false), ParamCondition.parse("311>0").get());
+    assertEquals(new ParamCondition(57, 0, 63, false), ParamCondition.parse("glideRate<64").get());
+    assertEquals(new ParamCondition(57, 10, 20, true), ParamCondition.parse("57!=20..10").get());
+    assertTrue(ParamCondition.parse("57<10..20").isEmpty());
+  }
+
+  @Test
+  void testSelectScansColumn() {
+    ParameterColumnStore store = new ParameterColumnStore();
+    for (int id = 1; id <= 200; id++) {
+      store.put(id, params(id % 5, id % 2));
+    }
+
+    BitSet saws = store.select(ParamCondition.parse("osc1Shape=saw").get());
+    assertEquals(40, saws.cardinality());
+    assertTrue(saws.get(2));
+    assertFalse(saws.get(3));
+
+    BitSet notSaws = store.select(ParamCondition.parse("osc1Shape!=saw").get());
+    assertEquals(160, notSaws.cardinality());
+    assertFalse(notSaws.get(0));
+  }
+
+  @Test
+  void testIncrementalUpdatesAndRemoval() {
+    ParameterColumnStore store = new ParameterColumnStore();
+    store.put(5, params(1, 0));
+    store.put(3000, params(1, 0));
+
+    store.set(5, 311, 3);
+    store.remove(3000);
+
+    assertEquals(3, store.get(5, 311));
+    assertEquals(-1, store.get(3000, 311));
+    assertEquals(1, store.select(ParamCondition.parse("osc1Shape=1").get()).cardinality());
+    assertTrue(store.select(ParamCondition.parse("arpeggiatorMode=hold").get()).get(5));
+  }
+
+  @Test
+  void testParamFilterWithAndWithoutIndex() {
+    SoundIndexService index = new SoundIndexService();
+    Sound arp = Sound.builder()
+        .id(1).name("Arp").parameters(params(2, 1)).build();
+    Sound plain = Sound.builder()
+        .id(2).name("Plain").parameters(params(2, 0)).build();
+    index.indexSound(arp);
+    index.indexSound(plain);
+
+    List<SoundFilter> filters = List.of(new SoundFilter(FilterType.PARAM, "311>0"));
+    List<Sound> sounds = List.of(arp, plain);
+
+    assertEquals(List.of(arp), new SoundFilterService(index).filter(sounds, "", filters));
+    assertEquals(List.of(arp), new SoundFilterService().filter(sounds, "", filters));
+  }
+}
@@ -0,0 +1,152 @@
+package net.mikolas.lyra.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import net.mikolas.lyra.db.Database;
+import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.model.SoundRevision;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for SoundHistoryService. */
+class SoundHistoryServiceTest {
+
+  private Database database;
+  private SoundHistoryService history;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    database = new Database(":memory:");
+    history = new SoundHistoryService(database);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    database.close();
+  }
+
+  private Sound createSound() throws Exception {
+    Sound sound = Sound.builder().name("Init").parameters(new byte[385]).build();
+    sound.setNameAndSyncParameters("Init");
+    database.sounds.create(sound);
+    return sound;
+  }
+
+  private void edit(Sound sound, int paramId, int value) throws Exception {
+    sound.getParameters()[paramId] = (byte) value;
+    database.sounds.update(sound);
+    history.record(sound);
+  }
+
+  @Test
+  void testFirstRevisionIsSnapshotAndLaterOnesAreDeltas() throws Exception {
+    Sound sound = createSound();
+    history.record(sound);
+    edit(sound, 10, 64);
+    edit(sound, 11, 32);
+
+    List<SoundRevision> revisions = database.soundRevisions.queryBuilder()
+        .orderBy("revision", true).query();
+    assertEquals(3, revisions.size());
+    assertTrue(revisions.get(0).isSnapshot());
+    assertEquals(385, revisions.get(0).getData().length);
+    assertFalse(revisions.get(1).isSnapshot());
+    assertEquals(3, revisions.get(1).getData().length);
+    // Deltas are against the snapshot, so revision 3 carries both changes
+    assertEquals(6, revisions.get(2).getData().length);
+  }
+
+  @Test
+  void testUnchangedSoundIsNotRecorded() throws Exception {
+    Sound sound = createSound();
+    assertTrue(history.record(sound).isPresent());
+    assertTrue(history.record(sound).isEmpty());
+    assertEquals(1, history.history(sound.getId()).size());
+  }
+
+  @Test
+  void testAmendRewritesLatestRevisionOnly() throws Exception {
+    Sound sound = createSound();
+    history.record(sound);
+    edit(sound, 10, 64);
+
+    sound.getParameters()[11] = 32;
+    assertEquals(2, history.amend(sound, 2).orElseThrow().getRevision());
+    assertEquals(2, history.history(sound.getId()).size());
+    assertEquals(32, history.reconstruct(sound.getId(), 2).orElseThrow()[11]);
+    assertEquals(64, history.reconstruct(sound.getId(), 2).orElseThrow()[10]);
+
+    // Revision 1 is no longer the latest, so amending it records a new revision
+    sound.getParameters()[12] = 16;
+    assertEquals(3, history.amend(sound, 1).orElseThrow().getRevision());
+    assertEquals(0, history.reconstruct(sound.getId(), 1).orElseThrow()[10]);
+  }
+
+  @Test
+  void testReconstructEveryRevisionAcrossSnapshots() throws Exception {
+    Sound sound = createSound();
+    history.record(sound);
+    int revisions = SoundHistoryService.SNAPSHOT_INTERVAL * 2 + 3;
+    for (int i = 1; i < revisions; i++) {
+      edit(sound, 1 + i % 40, i);
+    }
+
+    byte[] expected = new byte[385];
+    System.arraycopy(history.reconstruct(sound.getId(), 1).orElseThrow(), 0, expected, 0, 385);
+    for (int i = 1; i < revisions; i++) {
+      expected[1 + i % 40] = (byte) i;
+      assertArrayEquals(expected, history.reconstruct(sound.getId(), i + 1).orElseThrow(),
+          "revision " + (i + 1));
+    }
+    long snapshots = database.soundRevisions.queryBuilder()
+        .where().eq("snapshot", true).countOf();
+    assertEquals(3, snapshots);
+  }
+
+  @Test
+  void testRestoreEarlierRevision() throws Exception {
+    Sound sound = createSound();
+    history.record(sound);
+    edit(sound, 10, 99);
+
+    assertTrue(history.restore(sound, 1));
+    assertEquals(0, sound.getParameters()[10]);
+    assertEquals(0, database.sounds.queryForId(sound.getId()).getParameters()[10]);
+
+    List<SoundRevision> revisions = history.history(sound.getId());
+    assertEquals(3, revisions.size());
+    assertEquals(3, revisions.get(0).getRevision());
+    assertFalse(history.restore(sound, 42));
+  }
+
+  @Test
+  void testImportOverwriteKeepsPreviousParameters() throws Exception {
+    Sound original = Sound.builder().name("Old").bank(0).program(0)
+        .parameters(new byte[385]).build();
+    original.getParameters()[5] = 7;
+    database.sounds.create(original);
+
+    byte[] incoming = new byte[385];
+    incoming[5] = 8;
+    Sound replacement = Sound.builder().name("New").bank(0).program(0)
+        .parameters(incoming).build();
+    new ImportService(database).importSounds(List.of(replacement));
+
+    assertEquals(original.getId(), replacement.getId());
+    List<SoundRevision> revisions = history.history(original.getId());
+    assertEquals(2, revisions.size());
+    assertEquals(7, history.reconstruct(original.getId(), 1).orElseThrow()[5]);
+    assertEquals(8, history.reconstruct(original.getId(), 2).orElseThrow()[5]);
+  }
+
+  @Test
+  void testDeleteHistory() throws Exception {
+    Sound sound = createSound();
+    history.record(sound);
+    edit(sound, 10, 1);
+    assertEquals(2, history.deleteHistory(sound.getId()));
+    assertTrue(history.history(sound.getId()).isEmpty());
+  }
+}
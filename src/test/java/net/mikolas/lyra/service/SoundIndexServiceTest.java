@@ -0,0 +1,155 @@
+package net.mikolas.lyra.service;
+
+import net.mikolas.lyra.db.Database;
+import net.mikolas.lyra.model.Collection;
+import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.model.Tag;
+import net.mikolas.lyra.ui.FilterType;
+import net.mikolas.lyra.ui.SoundFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SoundIndexServiceTest {
+
+  private Database database;
+  private SoundIndexService index;
+  private Sound bass;
+  private Sound lead;
+  private Sound pad;
+
+  @BeforeEach
+  void setUp() throws SQLException {
+    database = new Database(":memory:");
+    index = new SoundIndexService();
+
+    bass = Sound.builder().name("Bass 1").category(3).bank(0).program(0)
+        .parameters(new byte[385]).build();
+    lead = Sound.builder().name("Lead 1").category(7).bank(0).program(1)
+        .parameters(new byte[385]).build();
+    pad = Sound.builder().name("Pad 1").category(9).bank(1).program(0)
+        .parameters(new byte[385]).build();
+    database.sounds.create(bass);
+    database.sounds.create(lead);
+    database.sounds.create(pad);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    if (database != null) {
+      database.close();
+    }
+  }
+
+  @Test
+  void testRebuildReadsJoinTables() throws SQLException {
+    Tag tag = Tag.builder().name("Analog").build();
+    database.tags.create(tag);
+    new TagService(database).addTagsToSounds(List.of(bass, pad), tag);
+
+    index.rebuild(database, List.of(bass, lead, pad));
+    BitSet result = index.resolve(List.of(new SoundFilter(FilterType.TAG, "Analog")));
+
+    assertTrue(result.get(bass.getId()));
+    assertFalse(result.get(lead.getId()));
+    assertTrue(result.get(pad.getId()));
+  }
+
+  @Test
+  void testIntersectionOfBankAndCollection() throws SQLException {
+    index.rebuild(database, List.of(bass, lead, pad));
+    Collection favorites = Collection.builder().name("Favorites").build();
+    database.collections.create(favorites);
+    new CollectionService(database, index).addSoundsToCollection(List.of(lead, pad), favorites);
+
+    BitSet result = index.resolve(List.of(
+        new SoundFilter(FilterType.BANK, "A"),
+        new SoundFilter(FilterType.COLLECTION, "Favorites")));
+
+    assertEquals(1, result.cardinality());
+    assertTrue(result.get(lead.getId()));
+  }
+
+  @Test
+  void testIncrementalRemoveAndDelete() throws SQLException {
+    index.rebuild(database, List.of(bass, lead, pad));
+    Tag tag = Tag.builder().name("Dark").build();
+    database.tags.create(tag);
+    TagService tagService = new TagService(database, index);
+    tagService.addTagsToSounds(List.of(bass, lead), tag);
+
+    tagService.removeTagsFromSounds(List.of(bass), tag);
+    index.removeSound(lead.getId());
+
+    BitSet result = index.resolve(List.of(new SoundFilter(FilterType.TAG, "Dark")));
+    assertTrue(result.isEmpty());
+    assertTrue(index.resolve(List.of(new SoundFilter(FilterType.CATEGORY, "Lead"))).isEmpty());
+  }
+
+  @Test
+  void testUnknownValuesMatchNothing() throws SQLException {
+    index.rebuild(database, List.of(bass, lead, pad));
+
+    assertTrue(index.resolve(List.of(new SoundFilter(FilterType.TAG, "Missing"))).isEmpty());
+    assertNull(index.resolve(List.of()));
+  }
+
+  @Test
+  void testSearchMatchesNamesTagsAndCategories() throws SQLException {
+    Tag tag = Tag.builder().name("Bassline").build();
+    database.tags.create(tag);
+    new TagService(database).addTagsToSounds(List.of(pad), tag);
+    index.rebuild(database, List.of(bass, lead, pad));
+
+    BitSet result = index.search("BASS");
+    assertTrue(result.get(bass.getId()));
+    assertTrue(result.get(pad.getId()));
+    assertFalse(result.get(lead.getId()));
+
+    assertTrue(index.search("ead").get(lead.getId()));
+    assertTrue(index.resolve(List.of(new SoundFilter(FilterType.TEXT, "pad"))).get(pad.getId()));
+  }
+
+  @Test
+  void testSearchRanksNameMatchesFirst() throws SQLException {
+    Tag tag = Tag.builder().name("Bassline").build();
+    database.tags.create(tag);
+    new TagService(database).addTagsToSounds(List.of(pad), tag);
+    index.rebuild(database, List.of(bass, lead, pad));
+
+    SoundFilterService service = new SoundFilterService(index);
+    List<Sound> ranked = service.filter(List.of(pad, lead, bass), "bass", List.of());
+
+    assertEquals(List.of(bass, pad), ranked);
+    assertTrue(service.isRanked("bass", List.of()));
+    assertFalse(service.isRanked(" ", List.of()));
+    assertFalse(new SoundFilterService().isRanked("bass", List.of()));
+  }
+
+  @Test
+  void testRenameReindexesName() throws SQLException {
+    index.rebuild(database, List.of(bass, lead, pad));
+    lead.setName("Sync Brass");
+    index.indexSound(lead);
+
+    assertFalse(index.search("lead 1").get(lead.getId()));
+    assertTrue(index.search("brass").get(lead.getId()));
+  }
+
+  @Test
+  void testFilterServiceUsesIndex() throws SQLException {
+    index.rebuild(database, List.of(bass, lead, pad));
+    SoundFilterService service = new SoundFilterService(index);
+
+    List<Sound> result = service.filter(List.of(bass, lead, pad), "lead",
+        List.of(new SoundFilter(FilterType.BANK, "A")));
+
+    assertEquals(List.of(lead), result);
+  }
+}
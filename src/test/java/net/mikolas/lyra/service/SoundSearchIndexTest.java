@@ -0,0 +1,51 @@
+package net.mikolas.lyra.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SoundSearchIndexTest {
+
+  @Test
+  void testTrigramQueryRequiresRealSubstring() {
+    SoundSearchIndex index = new SoundSearchIndex();
+    index.put(1, "abcab");
+    index.put(2, "cabc");
+
+    BitSet result = index.matches("cabc");
+
+    assertFalse(result.get(1));
+    assertTrue(result.get(2));
+  }
+
+  @Test
+  void testShortQueriesScanNames() {
+    SoundSearchIndex index = new SoundSearchIndex();
+    index.put(1, "Bass 1");
+    index.put(2, "Lead 1");
+
+    assertEquals(1, index.matches("as").cardinality());
+    assertEquals(2, index.matches("1").cardinality());
+  }
+
+  @Test
+  void testRemoveDropsGrams() {
+    SoundSearchIndex index = new SoundSearchIndex();
+    index.put(1, "Warm Pad");
+    index.remove(1);
+
+    assertTrue(index.matches("warm").isEmpty());
+    assertNull(index.name(1));
+  }
+
+  @Test
+  void testNameScoreOrdering() {
+    assertEquals(100, SoundSearchIndex.nameScore("pad", "pad"));
+    assertEquals(80, SoundSearchIndex.nameScore("pad 2", "pad"));
+    assertEquals(60, SoundSearchIndex.nameScore("warm pad", "pad"));
+    assertEquals(40, SoundSearchIndex.nameScore("superpad", "pad"));
+    assertEquals(0, SoundSearchIndex.nameScore("lead", "pad"));
+  }
+}
@@ -0,0 +1,157 @@
+package net.mikolas.lyra.service;
+
+import net.mikolas.lyra.model.Sound;
+import net.mikolas.lyra.ui.SoundFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SoundSimilarityIndexTest {
+
+  private static byte[] randomParams(Random random) {
+    byte[] p = new byte[385];
+    for (int i = 0; i < p.length; i++) {
+      p[i] = (byte) random.nextInt(128);
+    }
+    return p;
+  }
+
+  @Test
+  void testNearestFindsVariantsFirst() {
+    Random random = new Random(7);
+    SoundSimilarityIndex index = new SoundSimilarityIndex();
+    byte[] base = randomParams(random);
+    index.put(1, base);
+    for (int id = 2; id <= 100; id++) {
+      index.put(id, randomParams(random));
+    }
+    byte[] variant = base.clone();
+    variant[3] = (byte) (variant[3] ^ 1);
+    index.put(101, variant);
+    byte[] renamed = base.clone();
+    renamed[363] = 'X';
+    index.put(102, renamed);
+
+    List<SoundSimilarityIndex.Match> nearest = index.nearest(1, 3, 0);
+
+    assertEquals(3, nearest.size());
+    assertEquals(102, nearest.get(0).soundId());
+    assertEquals(0f, nearest.get(0).distance());
+    assertEquals(101, nearest.get(1).soundId());
+    assertTrue(nearest.get(1).distance() <= nearest.get(2).distance());
+  }
+
+  @Test
+  void testRemoveKeepsRowsConsistent() {
+    Random random = new Random(3);
+    SoundSimilarityIndex index = new SoundSimilarityIndex();
+    byte[] base = randomParams(random);
+    index.put(1, base);
+    index.put(2, randomParams(random));
+    index.put(3, base.clone());
+
+    index.remove(1);
+
+    assertEquals(2, index.size());
+    assertEquals(3, index.nearest(2, 1, 0).get(0).soundId());
+    assertTrue(index.nearest(1, 1, 0).isEmpty());
+  }
+
+  @Test
+  void testStagedApproximateBuildTracksConcurrentChanges() {
+    Random random = new Random(12);
+    SoundSimilarityIndex index = new SoundSimilarityIndex();
+    for (int id = 1; id <= 500; id++) {
+      index.put(id, randomParams(random));
+    }
+
+    index.useCentroids(SoundSimilarityIndex.trainCentroids(index.trainingSample(20, 42L), 20));
+    assertTrue(index.hasCentroids());
+    assertFalse(index.isApproximate());
+
+    // Changes between chunks, as the background build in SoundIndexService sees them
+    byte[] copy = randomParams(random);
+    assertFalse(index.assignNext(100));
+    index.put(1000, copy);
+    index.remove(2);
+    index.put(1001, copy.clone());
+    while (!index.assignNext(100)) {
+      assertFalse(index.isApproximate());
+    }
+
+    assertTrue(index.isApproximate());
+    assertEquals(1001, index.nearest(1000, 1, 1).get(0).soundId());
+    BitSet kept = new BitSet();
+    kept.set(1000);
+    kept.set(1001);
+    index.retainAll(kept);
+    assertEquals(2, index.size());
+    assertTrue(index.isApproximate());
+    assertEquals(1000, index.nearest(1001, 1, 1).get(0).soundId());
+  }
+
+  @Test
+  void testApproximateIndexFindsExactDuplicate() {
+    Random random = new Random(11);
+    SoundSimilarityIndex index = new SoundSimilarityIndex();
+    for (int id = 1; id <= 500; id++) {
+      index.put(id, randomParams(random));
+    }
+    byte[] copy = randomParams(random);
+    index.put(1000, copy);
+    index.put(1001, copy.clone());
+
+    index.buildApproximateIndex(20, 42L);
+    assertTrue(index.isApproximate());
+
+    assertEquals(1001, index.nearest(1000, 1, 1).get(0).soundId());
+  }
+
+  @Test
+  void testSimilarFilterResolvesThroughIndex() {
+    Random random = new Random(5);
+    SoundIndexService service = new SoundIndexService();
+    Sound reference = Sound.builder().id(1).name("Ref").parameters(randomParams(random)).build();
+    service.indexSound(reference);
+    for (int id = 2; id <= 60; id++) {
+      service.indexSound(Sound.builder().id(id).name("S" + id)
+          .parameters(randomParams(random)).build());
+    }
+
+    SoundFilter filter = SoundFilter.similarTo(reference);
+    BitSet result = service.resolve(List.of(filter));
+
+    assertEquals("≈ Like: Ref", filter.getDisplayText());
+    assertEquals(1, filter.similarSoundId());
+    assertEquals(SoundIndexService.SIMILAR_LIMIT + 1, result.cardinality());
+    assertTrue(result.get(1));
+  }
+
+  @Test
+  void testSimilarFilterOrdersByDistance() {
+    Random random = new Random(6);
+    SoundIndexService service = new SoundIndexService();
+    List<Sound> sounds = new ArrayList<>();
+    for (int id = 1; id <= 60; id++) {
+      Sound sound = Sound.builder().id(id).name("S" + id).parameters(randomParams(random)).build();
+      service.indexSound(sound);
+      sounds.add(sound);
+    }
+
+    SoundFilterService filter = new SoundFilterService(service);
+    List<SoundFilter> filters = List.of(SoundFilter.similarTo(sounds.get(29)));
+    List<Sound> result = filter.filter(sounds, null, filters);
+
+    List<SoundSimilarityIndex.Match> nearest = service.similar(30, SoundIndexService.SIMILAR_LIMIT);
+    assertEquals(30, result.get(0).getId());
+    for (int i = 0; i < nearest.size(); i++) {
+      assertEquals(nearest.get(i).soundId(), result.get(i + 1).getId(), "Neighbour " + i);
+    }
+    assertTrue(filter.isRanked(null, filters));
+  }
+}
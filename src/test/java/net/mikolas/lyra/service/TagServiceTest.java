@@ -4,11 +4,15 @@ import net.mikolas.lyra.db.Database;
 import net.mikolas.lyra.model.Sound;
 import net.mikolas.lyra.model.SoundTag;
 import net.mikolas.lyra.model.Tag;
+import net.mikolas.lyra.ui.FilterType;
+import net.mikolas.lyra.ui.SoundFilter;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -69,4 +73,43 @@ class TagServiceTest {
 
     assertEquals(1, removed);
   }
+
+  @Test
+  void testAddTagsIgnoresExistingAssignments() throws SQLException {
+    Tag tag = Tag.builder().name("Test Tag").build();
+    database.tags.create(tag);
+
+    Sound sound1 = Sound.builder().name("Sound 1").parameters(new byte[385]).build();
+    Sound sound2 = Sound.builder().name("Sound 2").parameters(new byte[385]).build();
+    database.sounds.create(sound1);
+    database.sounds.create(sound2);
+
+    service.addTagsToSounds(List.of(sound1), tag);
+    int added = service.addTagsToSounds(List.of(sound1, sound2, sound2), tag);
+
+    assertEquals(1, added);
+    assertEquals(2, database.soundTags.countOf());
+  }
+
+  @Test
+  void testBulkTagUpdatesIndex() throws SQLException {
+    SoundIndexService index = new SoundIndexService();
+    TagService indexed = new TagService(database, index);
+    Tag tag = Tag.builder().name("Bulk").build();
+    database.tags.create(tag);
+
+    List<Integer> ids = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      Sound sound = Sound.builder().name("Sound " + i).parameters(new byte[385]).build();
+      database.sounds.create(sound);
+      ids.add(sound.getId());
+    }
+
+    assertEquals(50, indexed.addTagToSoundIds(ids, tag));
+    assertEquals(25, indexed.removeTagFromSoundIds(ids.subList(0, 25), tag));
+
+    BitSet bits = index.resolve(List.of(new SoundFilter(FilterType.TAG, "Bulk")));
+    assertEquals(25, bits.cardinality());
+    assertEquals(25, database.soundTags.countOf());
+  }
 }
@@ -0,0 +1,131 @@
+package net.mikolas.lyra.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/** Tests for WavetableAuditionEngine, rendering directly without an audio device. */
+class WavetableAuditionEngineTest {
+
+  private static final int BLOCK = WavetableAuditionEngine.BLOCK_FRAMES;
+
+  private final WavetableAuditionEngine engine = new WavetableAuditionEngine();
+
+  /** Full-scale sine at the given harmonic, or silence for harmonic 0. */
+  private static int[] sine(int harmonic) {
+    int[] wave = new int[128];
+    for (int i = 0; i < 128; i++) {
+      wave[i] = (int) Math.round(1048575 * Math.sin(2 * Math.PI * harmonic * i / 128));
+    }
+    return wave;
+  }
+
+  private static int[][] waves(int sineFrom) {
+    int[][] waves = new int[64][];
+    for (int w = 0; w < 64; w++) {
+      waves[w] = sine(w >= sineFrom ? 1 : 0);
+    }
+    return waves;
+  }
+
+  /** Render the given number of blocks into one array. */
+  private float[] render(int blocks) {
+    float[] out = new float[blocks * BLOCK];
+    float[] block = new float[BLOCK];
+    for (int b = 0; b < blocks; b++) {
+      engine.render(block, BLOCK);
+      System.arraycopy(block, 0, out, b * BLOCK, BLOCK);
+    }
+    return out;
+  }
+
+  private static float peak(float[] samples, int from) {
+    float peak = 0;
+    for (int i = from; i < samples.length; i++) {
+      peak = Math.max(peak, Math.abs(samples[i]));
+    }
+    return peak;
+  }
+
+  @Test
+  void testSilentWithoutNotes() {
+    engine.setWaves(waves(0));
+    assertEquals(0, peak(render(4), 0));
+  }
+
+  @Test
+  void testPlaysNotePitch() {
+    engine.setWaves(waves(0));
+    engine.noteOn(69);
+    int blocks = (int) (WavetableAuditionEngine.SAMPLE_RATE / BLOCK);
+    float[] out = render(blocks);
+
+    int crossings = 0;
+    for (int i = 1; i < out.length; i++) {
+      if (out[i - 1] < 0 && out[i] >= 0) crossings++;
+    }
+    double seconds = out.length / WavetableAuditionEngine.SAMPLE_RATE;
+    assertEquals(440, crossings / seconds, 2);
+    assertEquals(0.3, peak(out, out.length / 2), 0.01, "Voice gain at full volume");
+  }
+
+  @Test
+  void testNoteOffReleasesToSilence() {
+    engine.setWaves(waves(0));
+    engine.noteOn(60);
+    assertTrue(peak(render(8), 0) > 0.1);
+    engine.noteOff(60);
+    float[] out = render(32);
+    assertEquals(0, peak(out, out.length - BLOCK));
+  }
+
+  @Test
+  void testPositionCrossfadesWaves() {
+    engine.setWaves(waves(1)); // Wave 0 silent, the rest sine
+    engine.setPosition(0.5);
+    engine.noteOn(57);
+    float[] out = render(40);
+    assertEquals(0.15, peak(out, out.length / 2), 0.01);
+  }
+
+  @Test
+  void testSweepReachesLastWave() {
+    engine.setWaves(waves(63)); // Only the last wave is audible
+    engine.noteOn(57);
+    assertEquals(0, peak(render(8), 0), 1e-6);
+
+    engine.sweep(0.2);
+    float[] out = render((int) (0.3 * WavetableAuditionEngine.SAMPLE_RATE / BLOCK));
+    assertEquals(0.3, peak(out, out.length - 4 * BLOCK), 0.01);
+
+    engine.setLooping(true);
+    engine.sweep(0.2);
+    out = render((int) (0.25 * WavetableAuditionEngine.SAMPLE_RATE / BLOCK));
+    assertTrue(peak(out, out.length - 4 * BLOCK) < 0.1, "Looped back to the silent waves");
+  }
+
+  @Test
+  void testEditedWaveIsPickedUp() {
+    engine.setWaves(waves(64));
+    engine.noteOn(57);
+    assertEquals(0, peak(render(8), 0), 1e-6);
+
+    engine.setWaves(waves(0));
+    assertTrue(peak(render(8), 0) > 0.1);
+  }
+
+  @Test
+  void testLevelKeepsHarmonicsBelowNyquist() {
+    assertEquals(0, WavetableAuditionEngine.levelFor(100));
+    for (int note = 0; note < 128; note++) {
+      double frequency = 440 * Math.pow(2, (note - 69) / 12.0);
+      int level = WavetableAuditionEngine.levelFor(frequency);
+      assertTrue(WavetableAuditionEngine.harmonics(level) * frequency
+          < WavetableAuditionEngine.SAMPLE_RATE / 2, "Note " + note);
+      if (level > 0) {
+        assertTrue(WavetableAuditionEngine.harmonics(level - 1) * frequency
+            >= WavetableAuditionEngine.SAMPLE_RATE / 2, "Note " + note + " could keep more");
+      }
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package net.mikolas.lyra.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import net.mikolas.lyra.db.Database;
+import net.mikolas.lyra.db.WavetableRepository;
+import net.mikolas.lyra.midi.BlofeldProtocol;
+import net.mikolas.lyra.midi.SoundParameterChange;
+import net.mikolas.lyra.midi.WavetableDump;
+import net.mikolas.lyra.model.Wavetable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for WavetableImportService. */
+class WavetableImportServiceTest {
+
+  @TempDir Path dir;
+
+  private final BlofeldProtocol protocol = new BlofeldProtocol();
+
+  /** Append the WTBD messages of a table with the given number of waves. */
+  private void writeTable(ByteArrayOutputStream out, String name, int slot, int waves)
+      throws Exception {
+    for (int w = 0; w < waves; w++) {
+      int[] samples = new int[128];
+      for (int s = 0; s < 128; s++) {
+        samples[s] = (s - 64) * 1000 + w;
+      }
+      out.write(protocol.encode(new WavetableDump(0, slot, w, samples, name)));
+    }
+  }
+
+  /** One second of a 220 Hz saw. */
+  private void writeWav(Path path) throws Exception {
+    float rate = 44100;
+    byte[] data = new byte[(int) rate * 2];
+    for (int i = 0; i < data.length / 2; i++) {
+      double phase = (i * 220.0 / rate) % 1.0;
+      short value = (short) Math.round((phase - 0.5) * 16000);
+      data[2 * i] = (byte) value;
+      data[2 * i + 1] = (byte) (value >> 8);
+    }
+    AudioFormat format = new AudioFormat(rate, 16, 1, true, false);
+    AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(data), format,
+        data.length / 2), AudioFileFormat.Type.WAVE, path.toFile());
+  }
+
+  @Test
+  void testImportFromDirectoryTree() throws Exception {
+    Path library = dir.resolve("library");
+    Files.createDirectories(library.resolve("sub"));
+
+    ByteArrayOutputStream syx = new ByteArrayOutputStream();
+    syx.write(protocol.encode(new SoundParameterChange(0, 0, 1, 64)));
+    writeTable(syx, "Alpha", 80, 64);
+    writeTable(syx, "Beta", 81, 63);
+    Files.write(library.resolve("tables.syx"), syx.toByteArray());
+    writeWav(library.resolve("sub").resolve("A Very Long Recording.wav"));
+    Files.write(library.resolve("broken.mid"), new byte[] {1, 2, 3});
+    Files.write(library.resolve("readme.txt"), new byte[] {'h', 'i'});
+
+    try (Database db = new Database(dir.resolve("lib.db").toString())) {
+      WavetableRepository repository = new WavetableRepository(db);
+      Wavetable existing = new Wavetable();
+      existing.setName("Existing");
+      existing.setSlot(80);
+      existing.prepareForSave();
+      repository.save(existing);
+
+      WavetableImportService.ImportResult result =
+          new WavetableImportService(repository).importFromDirectory(library);
+
+      assertNull(result.error(), result.getSummary());
+      assertEquals(3, result.totalFound(), "Alpha, the incomplete Beta and the recording");
+      assertEquals(2, result.imported());
+      // Files in path order: sub/... sorts before tables.syx
+      assertEquals(List.of("A Very Long Re", "Alpha"), result.names());
+
+      List<Wavetable> all = repository.getAllWavetables();
+      assertEquals(3, all.size());
+      Wavetable audio = all.stream().filter(w -> w.getName().equals("A Very Long Re")).findFirst()
+          .orElseThrow();
+      Wavetable alpha = all.stream().filter(w -> w.getName().equals("Alpha")).findFirst()
+          .orElseThrow();
+      assertEquals(81, audio.getSlot());
+      assertEquals(82, alpha.getSlot());
+      assertFalse(alpha.isFactory());
+    }
+  }
+
+  @Test
+  void testImportFromMissingDirectory() throws Exception {
+    try (Database db = new Database(dir.resolve("lib.db").toString())) {
+      WavetableImportService.ImportResult result =
+          new WavetableImportService(new WavetableRepository(db)).importFromDirectory(dir.resolve("missing"));
+      assertNotNull(result.error());
+      assertEquals(0, result.imported());
+    }
+  }
+}
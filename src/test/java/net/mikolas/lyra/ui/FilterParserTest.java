@@ -54,4 +54,16 @@ class FilterParserTest {
     assertTrue(filter.isPresent());
     assertEquals("Warm", filter.get().value());
   }
+
+  @Test
+  void testParseParamPrefix() {
+    Optional<SoundFilter> filter = FilterParser.parsePrefixFilter("param:osc1shape=saw");
+    assertTrue(filter.isPresent());
+    assertEquals(FilterType.PARAM, filter.get().type());
+    assertEquals("osc1shape=saw", filter.get().value());
+
+    assertTrue(FilterParser.parsePrefixFilter("param:311>0").isPresent());
+    assertFalse(FilterParser.parsePrefixFilter("param:nosuchparam=1").isPresent());
+    assertFalse(FilterParser.parsePrefixFilter("param:osc1shape").isPresent());
+  }
 }